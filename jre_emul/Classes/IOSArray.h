@@ -29,7 +29,8 @@
 // An abstract class that represents a Java array.  Like a Java array,
 // an IOSArray is fixed-size but its elements are mutable.
 @interface IOSArray : NSObject < NSCopying > {
- @protected
+ @public
+  // Public so the subclasses' inline element accessors can check indexes.
   NSUInteger size_;
 }
 
@@ -73,4 +74,18 @@
 
 @end
 
+// Throws a NullPointerException if an array is nil, otherwise an
+// IndexOutOfBoundsException for an index that's out of range.
+FOUNDATION_EXPORT void IOSArray_throwIndexException(IOSArray *array, NSUInteger index)
+    __attribute__ ((noreturn));
+
+// Checks an index for the inline element accessors, such as
+// IOSIntArray_GetRef, which translated code uses instead of messages.
+__attribute__ ((unused))
+static inline void IOSArray_checkIndex(IOSArray *array, NSUInteger index) {
+  if (__builtin_expect(!array || index >= array->size_, 0)) {
+    IOSArray_throwIndexException(array, index);
+  }
+}
+
 #endif // _IOSARRAY_H
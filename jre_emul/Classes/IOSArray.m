@@ -22,6 +22,7 @@
 #import "IOSArray.h"
 #import "IOSArrayClass.h"
 #import "IOSClass.h"
+#import "NSObject+JavaObject.h"
 #import "java/lang/AssertionError.h"
 #import "java/lang/ArrayIndexOutOfBoundsException.h"
 
@@ -189,3 +190,13 @@
 }
 
 @end
+
+void IOSArray_throwIndexException(IOSArray *array, NSUInteger index) {
+  if (!array) {
+    [NSObject throwNullPointerException];
+  } else {
+    [array checkIndex:index];
+  }
+  // Not reached, since an exception was thrown.
+  __builtin_unreachable();
+}
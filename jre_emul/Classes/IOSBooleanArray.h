@@ -24,7 +24,7 @@
 // An emulation class that represents a Java boolean array.  Like a Java array,
 // an IOSBooleanArray is fixed-size but its elements are mutable.
 @interface IOSBooleanArray : IOSArray {
-@private
+ @public
   BOOL *buffer_;
 }
 
@@ -47,3 +47,19 @@
 
 @end
 
+// Returns a pointer to an element, for translated code's inline array
+// accesses.  Throws a NullPointerException if the array is nil, or an
+// IndexOutOfBoundsException if the index is out of range.
+__attribute__ ((unused))
+static inline BOOL *IOSBooleanArray_GetRef(IOSBooleanArray *array, NSUInteger index) {
+  IOSArray_checkIndex(array, index);
+  return &array->buffer_[index];
+}
+
+// Like IOSBooleanArray_GetRef, for a non-nil array and an index that the
+// translator proved is in range.
+__attribute__ ((unused))
+static inline BOOL *IOSBooleanArray_GetRefUnchecked(IOSBooleanArray *array, NSUInteger index) {
+  return &array->buffer_[index];
+}
+
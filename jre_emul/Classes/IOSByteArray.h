@@ -27,7 +27,7 @@
 // An emulation class that represents a Java byte array.  Like a Java array,
 // an IOSByteArray is fixed-size but its elements are mutable.
 @interface IOSByteArray : IOSArray {
- @private
+ @public
   char *buffer_;
 }
 
@@ -75,4 +75,20 @@
 
 @end
 
+// Returns a pointer to an element, for translated code's inline array
+// accesses.  Throws a NullPointerException if the array is nil, or an
+// IndexOutOfBoundsException if the index is out of range.
+__attribute__ ((unused))
+static inline char *IOSByteArray_GetRef(IOSByteArray *array, NSUInteger index) {
+  IOSArray_checkIndex(array, index);
+  return &array->buffer_[index];
+}
+
+// Like IOSByteArray_GetRef, for a non-nil array and an index that the
+// translator proved is in range.
+__attribute__ ((unused))
+static inline char *IOSByteArray_GetRefUnchecked(IOSByteArray *array, NSUInteger index) {
+  return &array->buffer_[index];
+}
+
 #endif // _IOSBYTEARRAY_H
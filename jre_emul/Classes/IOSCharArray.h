@@ -27,7 +27,7 @@
 // An emulation class that represents a Java char array.  Like a Java array,
 // an IOSCharArray is fixed-size but its elements are mutable.
 @interface IOSCharArray : IOSArray {
- @private
+ @public
   unichar *buffer_;
 }
 
@@ -67,4 +67,20 @@
 
 @end
 
+// Returns a pointer to an element, for translated code's inline array
+// accesses.  Throws a NullPointerException if the array is nil, or an
+// IndexOutOfBoundsException if the index is out of range.
+__attribute__ ((unused))
+static inline unichar *IOSCharArray_GetRef(IOSCharArray *array, NSUInteger index) {
+  IOSArray_checkIndex(array, index);
+  return &array->buffer_[index];
+}
+
+// Like IOSCharArray_GetRef, for a non-nil array and an index that the
+// translator proved is in range.
+__attribute__ ((unused))
+static inline unichar *IOSCharArray_GetRefUnchecked(IOSCharArray *array, NSUInteger index) {
+  return &array->buffer_[index];
+}
+
 #endif // _IOSCHARARRAY_H
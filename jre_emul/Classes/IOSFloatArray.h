@@ -24,7 +24,7 @@
 // An emulation class that represents a Java float array.  Like a Java array,
 // an IOSFloatArray is fixed-size but its elements are mutable.
 @interface IOSFloatArray : IOSArray {
-@private
+ @public
   float *buffer_;
 }
 
@@ -61,3 +61,19 @@
 
 @end
 
+// Returns a pointer to an element, for translated code's inline array
+// accesses.  Throws a NullPointerException if the array is nil, or an
+// IndexOutOfBoundsException if the index is out of range.
+__attribute__ ((unused))
+static inline float *IOSFloatArray_GetRef(IOSFloatArray *array, NSUInteger index) {
+  IOSArray_checkIndex(array, index);
+  return &array->buffer_[index];
+}
+
+// Like IOSFloatArray_GetRef, for a non-nil array and an index that the
+// translator proved is in range.
+__attribute__ ((unused))
+static inline float *IOSFloatArray_GetRefUnchecked(IOSFloatArray *array, NSUInteger index) {
+  return &array->buffer_[index];
+}
+
@@ -24,7 +24,7 @@
 // An emulation class that represents a Java int array.  Like a Java array,
 // an IOSIntArray is fixed-size but its elements are mutable.
 @interface IOSIntArray : IOSArray {
- @private
+ @public
   int *buffer_;
 }
 
@@ -60,3 +60,19 @@
 - (int)postDecr:(NSUInteger)index;
 
 @end
+
+// Returns a pointer to an element, for translated code's inline array
+// accesses.  Throws a NullPointerException if the array is nil, or an
+// IndexOutOfBoundsException if the index is out of range.
+__attribute__ ((unused))
+static inline int *IOSIntArray_GetRef(IOSIntArray *array, NSUInteger index) {
+  IOSArray_checkIndex(array, index);
+  return &array->buffer_[index];
+}
+
+// Like IOSIntArray_GetRef, for a non-nil array and an index that the
+// translator proved is in range.
+__attribute__ ((unused))
+static inline int *IOSIntArray_GetRefUnchecked(IOSIntArray *array, NSUInteger index) {
+  return &array->buffer_[index];
+}
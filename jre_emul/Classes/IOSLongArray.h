@@ -24,7 +24,7 @@
 // An emulation class that represents a Java long array.  Like a Java array,
 // an IOSLongArray is fixed-size but its elements are mutable.
 @interface IOSLongArray : IOSArray {
-@private
+ @public
   long long *buffer_;
 }
 
@@ -61,3 +61,19 @@
 
 @end
 
+// Returns a pointer to an element, for translated code's inline array
+// accesses.  Throws a NullPointerException if the array is nil, or an
+// IndexOutOfBoundsException if the index is out of range.
+__attribute__ ((unused))
+static inline long long *IOSLongArray_GetRef(IOSLongArray *array, NSUInteger index) {
+  IOSArray_checkIndex(array, index);
+  return &array->buffer_[index];
+}
+
+// Like IOSLongArray_GetRef, for a non-nil array and an index that the
+// translator proved is in range.
+__attribute__ ((unused))
+static inline long long *IOSLongArray_GetRefUnchecked(IOSLongArray *array, NSUInteger index) {
+  return &array->buffer_[index];
+}
+
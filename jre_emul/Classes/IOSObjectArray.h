@@ -69,4 +69,9 @@
 // is greater than the array size.
 - (void)getObjects:(NSObject **)buffer length:(NSUInteger)length;
 
+// Returns a pointer to the elements in a specified range, such as for a fast
+// enumeration's items.  An IndexOutOfBoundsException is thrown if the range
+// is out of bounds.  The pointer is only valid until the array is deallocated.
+- (__unsafe_unretained id *)objectsInRange:(NSRange)range;
+
 @end
@@ -186,6 +186,11 @@
   }
 }
 
+- (__unsafe_unretained id *)objectsInRange:(NSRange)range {
+  [self checkRange:range];
+  return (__unsafe_unretained id *) (void *) (buffer_ + range.location);
+}
+
 - (void) arraycopy:(NSRange)sourceRange
        destination:(IOSArray *)destination
             offset:(NSInteger)offset {
@@ -90,4 +90,16 @@ FOUNDATION_EXPORT
 
 FOUNDATION_EXPORT id JreOperatorRetainedAssign(id *pIvar, id value);
 
+// Concatenates the string values of its arguments, like Java's string
+// concatenation operator.  types has a type code for each argument:
+//   'B', 'I' and 'S': an int, printed in decimal
+//   'C': a unichar, appended as is
+//   'D' and 'F': a double, printed like "%f"
+//   'J': a long long, printed in decimal
+//   'Z': a BOOL, printed as "true" or "false"
+//   '$': an NSString
+//   '@': any other object, whose description is appended
+// nil objects and nil descriptions are appended as "null".
+FOUNDATION_EXPORT NSString *JreStrcat(const char *types, ...);
+
 #endif // __OBJC__
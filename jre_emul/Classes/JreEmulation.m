@@ -43,3 +43,102 @@ FOUNDATION_EXPORT
   }
   return args;
 }
+
+// Grows a concatenation's buffer, if needed, so that it can hold a specified
+// number of characters.  A buffer that's on the stack is copied to the heap.
+static unichar *JreStrcatReserve(unichar *buffer, unichar *stackBuffer,
+                                 NSUInteger *capacity, NSUInteger length,
+                                 NSUInteger required) {
+  if (required <= *capacity) {
+    return buffer;
+  }
+  NSUInteger newCapacity = MAX(*capacity * 2, required);
+  unichar *newBuffer;
+  if (buffer == stackBuffer) {
+    newBuffer = malloc(newCapacity * sizeof(unichar));
+    memcpy(newBuffer, buffer, length * sizeof(unichar));
+  } else {
+    newBuffer = realloc(buffer, newCapacity * sizeof(unichar));
+  }
+  *capacity = newCapacity;
+  return newBuffer;
+}
+
+NSString *JreStrcat(const char *types, ...) {
+  unichar stackBuffer[128];
+  unichar *buffer = stackBuffer;
+  NSUInteger capacity = sizeof(stackBuffer) / sizeof(unichar);
+  NSUInteger length = 0;
+  va_list args;
+  va_start(args, types);
+  for (const char *type = types; *type; type++) {
+    NSString *string = nil;
+    char chars[32];
+    int charCount = 0;
+    switch (*type) {
+      case 'B':
+      case 'I':
+      case 'S':
+        charCount = snprintf(chars, sizeof(chars), "%d", va_arg(args, int));
+        break;
+      case 'J':
+        charCount = snprintf(chars, sizeof(chars), "%lld", va_arg(args, long long));
+        break;
+      case 'D':
+      case 'F': {
+        double d = va_arg(args, double);
+        charCount = snprintf(chars, sizeof(chars), "%f", d);
+        if (charCount >= (int) sizeof(chars)) {
+          string = [NSString stringWithFormat:@"%f", d];
+          charCount = 0;
+        }
+        break;
+      }
+      case 'C':
+        buffer = JreStrcatReserve(buffer, stackBuffer, &capacity, length, length + 1);
+        buffer[length++] = (unichar) va_arg(args, int);
+        break;
+      case 'Z':
+        string = va_arg(args, int) ? @"true" : @"false";
+        break;
+      case '$':
+        string = va_arg(args, id);
+        if (!string) {
+          string = @"null";
+        }
+        break;
+      case '@': {
+        id object = va_arg(args, id);
+        string = object ? [object description] : nil;
+        if (!string) {
+          string = @"null";
+        }
+        break;
+      }
+      default:
+        va_end(args);
+        if (buffer != stackBuffer) {
+          free(buffer);
+        }
+        [NSException raise:NSInvalidArgumentException
+                    format:@"unknown JreStrcat type code: %c", *type];
+    }
+    if (charCount > 0) {
+      buffer = JreStrcatReserve(buffer, stackBuffer, &capacity, length, length + charCount);
+      for (int i = 0; i < charCount; i++) {
+        buffer[length++] = chars[i];
+      }
+    } else if (string) {
+      NSUInteger stringLength = [string length];
+      buffer = JreStrcatReserve(buffer, stackBuffer, &capacity, length, length + stringLength);
+      [string getCharacters:buffer + length range:NSMakeRange(0, stringLength)];
+      length += stringLength;
+    }
+  }
+  va_end(args);
+  NSString *result = [NSString stringWithCharacters:buffer length:length];
+  if (buffer != stackBuffer) {
+    free(buffer);
+  }
+  return result;
+}
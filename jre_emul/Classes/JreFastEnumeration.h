@@ -0,0 +1,50 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+//
+//  JreFastEnumeration.h
+//  JreEmulation
+//
+
+#import <Foundation/Foundation.h>
+#import "java/util/AbstractCollection.h"
+
+// Adds NSFastEnumeration support to the java.util collections, so the
+// translator can translate enhanced for statements over them into for...in
+// loops (see its --fast-enumeration option).  By default, a collection is
+// enumerated one element at a time with its iterator.  ArrayList, HashSet
+// and HashMap's and LinkedHashMap's key, value and entry views return their
+// elements in batches, unless a subclass overrides iterator().
+//
+// The map views' mutationsPtr is their map's modCount, so a loop checks it
+// before each element, and an element isn't read after the loop's body
+// modified the map.  ArrayList's modCount is an int, so it's checked once
+// per batch, and a batch's remaining elements are read from the list's
+// array as the body left it.  Either way, the loop throws a
+// ConcurrentModificationException once a modification is detected.  The
+// elements aren't retained by the loop, but the collections autorelease the
+// elements they remove, so the body can still use its current element.
+@interface JavaUtilAbstractCollection (JreFastEnumeration) <NSFastEnumeration>
+@end
+
+// Returns true if a collection's class overrides the iterator() method of
+// the specified class, so it must be enumerated with its iterator.
+FOUNDATION_EXPORT BOOL JreOverridesIterator(id collection, Class cls);
+
+// Checks a collection's modCount for a batched enumeration, which keeps it
+// in extra[0].  Returns true on the enumeration's first call, after
+// recording the modCount.  Later calls throw a
+// ConcurrentModificationException if the modCount changed.
+FOUNDATION_EXPORT BOOL JreCheckEnumerationModCount(NSFastEnumerationState *state,
+                                                   unsigned long modCount);
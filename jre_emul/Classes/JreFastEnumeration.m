@@ -0,0 +1,153 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+//
+//  JreFastEnumeration.m
+//  JreEmulation
+//
+
+#import "JreFastEnumeration.h"
+
+#import "IOSObjectArray.h"
+#import "JreEmulation.h"
+#import "java/util/ArrayList.h"
+#import "java/util/ConcurrentModificationException.h"
+#import "java/util/HashMap.h"
+#import "java/util/HashSet.h"
+#import "java/util/Iterator.h"
+
+#import <objc/runtime.h>
+
+// Called by a for...in loop that detects that its collection was modified.
+// The java.util collections throw a ConcurrentModificationException, like
+// their iterators; other collections raise the exception Foundation does.
+static void JreEnumerationMutationHandler(id collection) {
+  if ([collection isKindOfClass:[JavaUtilAbstractCollection class]]) {
+    @throw AUTORELEASE([[JavaUtilConcurrentModificationException alloc] init]);
+  }
+  [NSException raise:NSGenericException
+              format:@"*** Collection <%@: %p> was mutated while being enumerated.",
+                     [collection class], collection];
+}
+
+__attribute__((constructor))
+static void JreInstallEnumerationMutationHandler() {
+  objc_setEnumerationMutationHandler(JreEnumerationMutationHandler);
+}
+
+BOOL JreOverridesIterator(id collection, Class cls) {
+  return [collection methodForSelector:@selector(iterator)] !=
+      [cls instanceMethodForSelector:@selector(iterator)];
+}
+
+// The mutationsPtr is set to extra[0], which doesn't change, for callers
+// whose modCount isn't an unsigned long.
+BOOL JreCheckEnumerationModCount(NSFastEnumerationState *state, unsigned long modCount) {
+  if (state->state == 0) {
+    state->state = 1;
+    state->extra[0] = modCount;
+    state->mutationsPtr = &state->extra[0];
+    return YES;
+  }
+  if (state->extra[0] != modCount) {
+    @throw AUTORELEASE([[JavaUtilConcurrentModificationException alloc] init]);
+  }
+  return NO;
+}
+
+@implementation JavaUtilAbstractCollection (JreFastEnumeration)
+
+// The iterator is stored in extra[0], and is autoreleased so it lives
+// until the loop ends.  extra[1] is never modified, since the iterator
+// checks for modifications itself.  Each element is retained until the
+// loop's autorelease pool drains, since the body may remove it.
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  if (state->state == 0) {
+    state->state = 1;
+    state->mutationsPtr = &state->extra[1];
+    __autoreleasing id<JavaUtilIterator> iterator = [self iterator];
+    state->extra[0] = (unsigned long) (ARCBRIDGE void *) iterator;
+  }
+  id<JavaUtilIterator> iterator = (ARCBRIDGE id<JavaUtilIterator>) (void *) state->extra[0];
+  if (![iterator hasNext]) {
+    return 0;
+  }
+  __autoreleasing id next = [iterator next];
+#if ! __has_feature(objc_arc)
+  [[next retain] autorelease];
+#endif
+  stackbuf[0] = next;
+  state->itemsPtr = stackbuf;
+  return 1;
+}
+
+@end
+
+@implementation JavaUtilArrayList (JreFastEnumeration)
+
+// Returns the list's elements directly from its array, up to len at a time.
+// The array is kept until the loop ends, since the loop's body may grow the
+// list, which replaces it.  extra[1] is the index of the next element, and
+// extra[4] is set if a subclass overrides iterator().
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  if (state->state == 0) {
+    state->extra[4] = JreOverridesIterator(self, [JavaUtilArrayList class]);
+  }
+  if (state->extra[4]) {
+    return [super countByEnumeratingWithState:state objects:stackbuf count:len];
+  }
+  if (JreCheckEnumerationModCount(state, (unsigned long) modCount_)) {
+    state->extra[1] = 0;
+  }
+  NSUInteger index = state->extra[1];
+  if (index >= (NSUInteger) size__) {
+    return 0;
+  }
+  NSUInteger count = MIN(len, (NSUInteger) size__ - index);
+  __autoreleasing IOSObjectArray *array = array_;
+#if ! __has_feature(objc_arc)
+  [[array retain] autorelease];
+#endif
+  state->itemsPtr = [array objectsInRange:NSMakeRange(firstIndex_ + index, count)];
+  state->extra[1] = index + count;
+  return count;
+}
+
+@end
+
+@implementation JavaUtilHashSet (JreFastEnumeration)
+
+// Enumerates the backing map's key set, which is kept in extra[3].  extra[4]
+// is set if a subclass overrides iterator().
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  if (state->state == 0) {
+    state->extra[4] = JreOverridesIterator(self, [JavaUtilHashSet class]);
+    if (!state->extra[4]) {
+      state->extra[3] = (unsigned long) (ARCBRIDGE void *) [backingMap_ keySet];
+    }
+  }
+  if (state->extra[4]) {
+    return [super countByEnumeratingWithState:state objects:stackbuf count:len];
+  }
+  id<NSFastEnumeration> keySet = (ARCBRIDGE id<NSFastEnumeration>) (void *) state->extra[3];
+  return [keySet countByEnumeratingWithState:state objects:stackbuf count:len];
+}
+
+@end
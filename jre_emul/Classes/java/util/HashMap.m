@@ -6,6 +6,7 @@
 //  Copyright 2012 Google, Inc. All rights reserved.
 //
 
+#import "JreFastEnumeration.h"
 #import "java/lang/CloneNotSupportedException.h"
 #import "java/lang/IllegalArgumentException.h"
 #import "java/lang/IllegalStateException.h"
@@ -18,6 +19,53 @@
 #import "java/util/NoSuchElementException.h"
 #import "java/util/Set.h"
 
+// Returns the next batch of a map's entries, keys or values, walking its
+// buckets like its iterators do.  extra[1] is the next bucket and extra[2]
+// the next entry in the current bucket.  The mutationsPtr is the map's
+// modCount, so a loop stops at the first element after its body modifies
+// the map, before the batch's remaining elements or the next entry might
+// have been released.
+static NSUInteger JavaUtilHashMap_enumerate(JavaUtilHashMap *map,
+                                            JavaUtilHashMap_EnumerationKind kind,
+                                            NSFastEnumerationState *state,
+                                            __unsafe_unretained id *stackbuf,
+                                            NSUInteger len) {
+  if (JreCheckEnumerationModCount(state, map->modCount_)) {
+    state->mutationsPtr = &map->modCount_;
+    state->extra[1] = 0;
+    state->extra[2] = 0;
+  }
+  int position = (int) state->extra[1];
+  JavaUtilHashMap_Entry __unsafe_unretained *entry =
+      (ARCBRIDGE JavaUtilHashMap_Entry *) (void *) state->extra[2];
+  NSUInteger count = 0;
+  while (count < len) {
+    if (entry == nil) {
+      if (position >= map->elementDataLength_) {
+        break;
+      }
+      entry = map->elementData_[position++];
+      continue;
+    }
+    switch (kind) {
+      case JavaUtilHashMap_EnumerateEntries:
+        stackbuf[count++] = entry;
+        break;
+      case JavaUtilHashMap_EnumerateKeys:
+        stackbuf[count++] = entry->key_;
+        break;
+      case JavaUtilHashMap_EnumerateValues:
+        stackbuf[count++] = entry->value_;
+        break;
+    }
+    entry = entry->next_;
+  }
+  state->extra[1] = (unsigned long) position;
+  state->extra[2] = (unsigned long) (ARCBRIDGE void *) entry;
+  state->itemsPtr = stackbuf;
+  return count;
+}
+
 @implementation JavaUtilHashMap
 
 @synthesize elementCount = elementCount_;
@@ -97,7 +145,9 @@
       while (entry != nil) {
         JavaUtilHashMap_Entry *next = entry->next_;
 #if ! __has_feature(objc_arc)
-        [entry release];
+        // Autoreleased like removed entries, so a for...in loop's body that
+        // clears the map can still use its current element.
+        [entry autorelease];
 #endif
         entry = next;
       }
@@ -656,6 +706,13 @@
                       initWithJavaUtilHashMap:associatedMap_]);
 }
 
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  return JavaUtilHashMap_enumerate(associatedMap_, JavaUtilHashMap_EnumerateEntries,
+                                   state, stackbuf, len);
+}
+
 @end
 
 
@@ -683,6 +740,12 @@
                       initWithJavaUtilHashMap:outer_]);
 }
 
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  return JavaUtilHashMap_enumerate(outer_, JavaUtilHashMap_EnumerateKeys, state, stackbuf, len);
+}
+
 - (id)initWithJavaUtilHashMap:(JavaUtilHashMap *)outer {
   if ((self = [super init])) {
     outer_ = outer;
@@ -712,6 +775,12 @@
                       initWithJavaUtilHashMap:outer_]);
 }
 
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  return JavaUtilHashMap_enumerate(outer_, JavaUtilHashMap_EnumerateValues, state, stackbuf, len);
+}
+
 - (id)initWithJavaUtilHashMap:(JavaUtilHashMap *)outer {
   if ((self = [super init])) {
     outer_ = outer;
@@ -21,6 +21,13 @@
 #define JavaUtilHashMap_DEFAULT_LOAD_FACTOR 0.75f
 #define JavaUtilHashMap_serialVersionUID 362498820763181265
 
+// The elements that a map view's fast enumeration returns.
+typedef enum {
+  JavaUtilHashMap_EnumerateEntries,
+  JavaUtilHashMap_EnumerateKeys,
+  JavaUtilHashMap_EnumerateValues,
+} JavaUtilHashMap_EnumerationKind;
+
 @interface JavaUtilHashMap () {
 @public
   int elementCount_;
@@ -30,14 +37,16 @@
   // use __unsafe_unretained.
   JavaUtilHashMap_Entry * __unsafe_unretained *elementData_;
   int elementDataLength_;
-  int modCount_;
+  // An unsigned long, so that fast enumerations can use it as their
+  // mutationsPtr.
+  unsigned long modCount_;
   float loadFactor_;
   int threshold_;
 }
 
 @property (nonatomic, assign) int elementCount;
 @property (nonatomic, assign) int elementDataLength;
-@property (nonatomic, assign) int modCount;
+@property (nonatomic, assign) unsigned long modCount;
 @property (nonatomic, assign) float loadFactor;
 @property (nonatomic, assign) int threshold;
 
@@ -95,7 +104,7 @@
 @interface JavaUtilHashMap_AbstractMapIterator : NSObject {
  @public
   int position_;
-  int expectedModCount_;
+  unsigned long expectedModCount_;
   JavaUtilHashMap_Entry __unsafe_unretained *futureEntry_;
   JavaUtilHashMap_Entry __unsafe_unretained *currentEntry_;
   JavaUtilHashMap_Entry __unsafe_unretained *prevEntry_;
@@ -103,7 +112,7 @@
 }
 
 @property (nonatomic, assign) int position;
-@property (nonatomic, assign) int expectedModCount;
+@property (nonatomic, assign) unsigned long expectedModCount;
 @property (nonatomic, assign) JavaUtilHashMap_Entry *futureEntry;
 @property (nonatomic, assign) JavaUtilHashMap_Entry *currentEntry;
 @property (nonatomic, assign) JavaUtilHashMap_Entry *prevEntry;
@@ -151,6 +160,9 @@
 + (BOOL)valuesEqWithJavaUtilHashMap_Entry:(JavaUtilHashMap_Entry *)entry
                     withJavaUtilMap_Entry:(id<JavaUtilMap_Entry>)oEntry;
 - (id<JavaUtilIterator>)iterator;
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len;
 @end
 
 @interface JavaUtilHashMap_KeySet : JavaUtilAbstractSet {
@@ -164,6 +176,9 @@
 - (BOOL)removeWithId:(id)key;
 - (id<JavaUtilIterator>)iterator;
 - (id)initWithJavaUtilHashMap:(JavaUtilHashMap *)outer;
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len;
 @end
 
 @interface JavaUtilHashMap_ValuesCollection : JavaUtilAbstractCollection {
@@ -176,4 +191,7 @@
 - (void)clear;
 - (id<JavaUtilIterator>)iterator;
 - (id)initWithJavaUtilHashMap:(JavaUtilHashMap *)outer;
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len;
 @end
@@ -7,6 +7,7 @@
 //
 
 #import "IOSClass.h"
+#import "JreFastEnumeration.h"
 #import "java/lang/IllegalStateException.h"
 #import "java/util/Collection.h"
 #import "java/util/ConcurrentModificationException.h"
@@ -18,6 +19,42 @@
 #import "java/util/NoSuchElementException.h"
 #import "java/util/Set.h"
 
+// Returns the next batch of a map's entries, keys or values, in the order
+// of its chain.  extra[1] is the next entry.  The mutationsPtr is the map's
+// modCount, so a loop stops at the first element after its body modifies
+// the map, before the batch's remaining elements or the next entry might
+// have been released.
+static NSUInteger JavaUtilLinkedHashMap_enumerate(JavaUtilLinkedHashMap *map,
+                                                  JavaUtilHashMap_EnumerationKind kind,
+                                                  NSFastEnumerationState *state,
+                                                  __unsafe_unretained id *stackbuf,
+                                                  NSUInteger len) {
+  if (JreCheckEnumerationModCount(state, map->modCount_)) {
+    state->mutationsPtr = &map->modCount_;
+    state->extra[1] = (unsigned long) (ARCBRIDGE void *) map->head_;
+  }
+  JavaUtilLinkedHashMap_LinkedHashMapEntry __unsafe_unretained *entry =
+      (ARCBRIDGE JavaUtilLinkedHashMap_LinkedHashMapEntry *) (void *) state->extra[1];
+  NSUInteger count = 0;
+  while (count < len && entry != nil) {
+    switch (kind) {
+      case JavaUtilHashMap_EnumerateEntries:
+        stackbuf[count++] = entry;
+        break;
+      case JavaUtilHashMap_EnumerateKeys:
+        stackbuf[count++] = entry->key_;
+        break;
+      case JavaUtilHashMap_EnumerateValues:
+        stackbuf[count++] = entry->value_;
+        break;
+    }
+    entry = entry->chainForward_;
+  }
+  state->extra[1] = (unsigned long) (ARCBRIDGE void *) entry;
+  state->itemsPtr = stackbuf;
+  return count;
+}
+
 @implementation JavaUtilLinkedHashMap
 
 @synthesize accessOrder = accessOrder_;
@@ -438,6 +475,13 @@
                       initWithJavaUtilLinkedHashMap:(JavaUtilLinkedHashMap *) [self hashMap]]);
 }
 
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  return JavaUtilLinkedHashMap_enumerate((JavaUtilLinkedHashMap *) [self hashMap],
+                                         JavaUtilHashMap_EnumerateEntries, state, stackbuf, len);
+}
+
 @end
 
 
@@ -491,6 +535,13 @@
                       initWithJavaUtilLinkedHashMap:outer_]);
 }
 
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  return JavaUtilLinkedHashMap_enumerate(outer_, JavaUtilHashMap_EnumerateKeys,
+                                         state, stackbuf, len);
+}
+
 - (id)initWithJavaUtilLinkedHashMap:(JavaUtilLinkedHashMap *)outer {
   if ((self = [super init])) {
 #if ! __has_feature(objc_arc)
@@ -533,6 +584,13 @@
                       initWithJavaUtilLinkedHashMap:outer_]);
 }
 
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len {
+  return JavaUtilLinkedHashMap_enumerate(outer_, JavaUtilHashMap_EnumerateValues,
+                                         state, stackbuf, len);
+}
+
 - (id)initWithJavaUtilLinkedHashMap:(JavaUtilLinkedHashMap *)outer {
   if ((self = [super init])) {
 #if ! __has_feature(objc_arc)
@@ -54,7 +54,7 @@
 
 @interface JavaUtilLinkedHashMap_AbstractMapIterator : NSObject {
  @public
-  int expectedModCount_;
+  unsigned long expectedModCount_;
   JavaUtilLinkedHashMap_LinkedHashMapEntry __unsafe_unretained *futureEntry_;
   JavaUtilLinkedHashMap_LinkedHashMapEntry __unsafe_unretained *currentEntry_;
   JavaUtilLinkedHashMap __unsafe_unretained *associatedMap_;
@@ -93,6 +93,9 @@
 
 - (id)initWithJavaUtilLinkedHashMap:(JavaUtilLinkedHashMap *)lhm;
 - (id<JavaUtilIterator>)iterator;
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len;
 @end
 
 @interface JavaUtilLinkedHashMap_LinkedHashMapEntry : JavaUtilHashMap_Entry {
@@ -117,6 +120,9 @@
 - (BOOL)removeWithId:(id)key;
 - (id<JavaUtilIterator>)iterator;
 - (id)initWithJavaUtilLinkedHashMap:(JavaUtilLinkedHashMap *)outer;
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len;
 @end
 
 @interface JavaUtilLinkedHashMap_ValuesCollection : JavaUtilAbstractCollection {
@@ -129,4 +135,7 @@
 - (void)clear;
 - (id<JavaUtilIterator>)iterator;
 - (id)initWithJavaUtilLinkedHashMap:(JavaUtilLinkedHashMap *)outer;
+- (NSUInteger)countByEnumeratingWithState:(NSFastEnumerationState *)state
+                                  objects:(__unsafe_unretained id *)stackbuf
+                                    count:(NSUInteger)len;
 @end
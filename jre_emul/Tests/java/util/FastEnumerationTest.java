@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Command-line tests for the collections' fast enumeration support.  This
+ * test is translated with --fast-enumeration, so its enhanced for
+ * statements are for...in loops.
+ */
+public class FastEnumerationTest extends TestCase {
+
+  private static ArrayList<String> newList() {
+    ArrayList<String> list = new ArrayList<String>();
+    for (int i = 0; i < 3; i++) {
+      // Not literals, so removing them from the list can release them.
+      list.add(new StringBuilder("item").append(i).toString());
+    }
+    return list;
+  }
+
+  private static void fill(Map<String, String> map) {
+    for (String s : newList()) {
+      map.put(s, new StringBuilder(s).reverse().toString());
+    }
+  }
+
+  public void testListIsEnumerated() {
+    StringBuilder sb = new StringBuilder();
+    for (String s : newList()) {
+      sb.append(s);
+    }
+    assertEquals("item0item1item2", sb.toString());
+  }
+
+  public void testRemovingFromListThrows() {
+    ArrayList<String> list = newList();
+    try {
+      for (String s : list) {
+        list.remove(s);
+      }
+      fail("ConcurrentModificationException expected");
+    } catch (ConcurrentModificationException e) {
+      // Expected.  A list's modCount is only checked once per batch, so
+      // the loop may remove more than one element first.
+    }
+    assertTrue(list.size() < 3);
+  }
+
+  public void testAddingToListThrows() {
+    ArrayList<String> list = newList();
+    try {
+      for (String s : list) {
+        list.add(s);
+      }
+      fail("ConcurrentModificationException expected");
+    } catch (ConcurrentModificationException e) {
+      // Expected.
+    }
+  }
+
+  public void testRemovedListElementIsValid() {
+    ArrayList<String> list = newList();
+    for (String s : list) {
+      list.remove(s);
+      assertEquals("item0", s);
+      break;
+    }
+    assertEquals(Arrays.asList("item1", "item2"), list);
+  }
+
+  public void testRemovingFromHashSetThrows() {
+    HashSet<String> set = new HashSet<String>(newList());
+    try {
+      for (String s : set) {
+        set.remove(s);
+      }
+      fail("ConcurrentModificationException expected");
+    } catch (ConcurrentModificationException e) {
+      // Expected.
+    }
+  }
+
+  public void testMapViewsAreEnumerated() {
+    HashMap<String, String> map = new HashMap<String, String>();
+    fill(map);
+    int n = 0;
+    for (String key : map.keySet()) {
+      assertTrue(map.containsKey(key));
+      n++;
+    }
+    for (String value : map.values()) {
+      assertTrue(map.containsValue(value));
+      n++;
+    }
+    for (Map.Entry<String, String> e : map.entrySet()) {
+      assertEquals(map.get(e.getKey()), e.getValue());
+      n++;
+    }
+    assertEquals(9, n);
+  }
+
+  public void testRemovingFromHashMapThrows() {
+    HashMap<String, String> map = new HashMap<String, String>();
+    fill(map);
+    try {
+      for (String key : map.keySet()) {
+        map.remove(key);
+      }
+      fail("ConcurrentModificationException expected");
+    } catch (ConcurrentModificationException e) {
+      // Expected.
+    }
+    assertEquals(2, map.size());
+  }
+
+  public void testRemovedHashMapEntryIsValid() {
+    HashMap<String, String> map = new HashMap<String, String>();
+    fill(map);
+    for (Map.Entry<String, String> e : map.entrySet()) {
+      map.remove(e.getKey());
+      assertEquals(new StringBuilder(e.getKey()).reverse().toString(), e.getValue());
+      break;
+    }
+    assertEquals(2, map.size());
+  }
+
+  public void testLinkedHashMapIsEnumeratedInOrder() {
+    LinkedHashMap<String, String> map = new LinkedHashMap<String, String>();
+    fill(map);
+    StringBuilder sb = new StringBuilder();
+    for (String key : map.keySet()) {
+      sb.append(key);
+    }
+    for (String value : map.values()) {
+      sb.append(value);
+    }
+    assertEquals("item0item1item20meti1meti2meti", sb.toString());
+  }
+
+  public void testRemovingFromLinkedHashMapThrows() {
+    LinkedHashMap<String, String> map = new LinkedHashMap<String, String>();
+    fill(map);
+    try {
+      for (String value : map.values()) {
+        map.remove(new StringBuilder(value).reverse().toString());
+      }
+      fail("ConcurrentModificationException expected");
+    } catch (ConcurrentModificationException e) {
+      // Expected.
+    }
+    assertEquals(2, map.size());
+  }
+
+  public void testRemovedLinkedHashMapEntryIsValid() {
+    LinkedHashMap<String, String> map = new LinkedHashMap<String, String>();
+    fill(map);
+    for (Map.Entry<String, String> e : map.entrySet()) {
+      map.remove(e.getKey());
+      assertEquals("item0", e.getKey());
+      assertEquals("0meti", e.getValue());
+      break;
+    }
+    assertEquals(2, map.size());
+  }
+}
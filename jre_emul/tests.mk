@@ -133,6 +133,7 @@ TEST_OBJS = \
 	$(TESTS_DIR)/org/apache/harmony/luni/tests/java/util/EmptyStackExceptionTest.o \
 	$(TESTS_DIR)/org/apache/harmony/luni/tests/java/util/EnumSetTest.o \
 	$(TESTS_DIR)/org/apache/harmony/luni/tests/java/util/EventObjectTest.o \
+	$(TESTS_DIR)/java/util/FastEnumerationTest.o \
 	$(TESTS_DIR)/org/apache/harmony/luni/tests/java/util/GregorianCalendarTest.o \
 	$(TESTS_DIR)/org/apache/harmony/luni/tests/java/util/HashMapTest.o \
 	$(TESTS_DIR)/org/apache/harmony/luni/tests/java/util/HashSetTest.o \
@@ -287,6 +288,11 @@ $(TESTS_DIR)/%.h $(TESTS_DIR)/%.m: $(MATH_TEST_SUPPORT_ROOT)/%.java
 $(TESTS_DIR)/%.h $(TESTS_DIR)/%.m: $(MISC_TEST_ROOT)/%.java
 	@echo $? >> $(JAVA_SOURCE_LIST)
 
+# Tests the collections' enumerations, so its loops are translated into
+# for...in loops.
+$(TESTS_DIR)/java/util/FastEnumerationTest.m: $(MISC_TEST_ROOT)/java/util/FastEnumerationTest.java
+	$(TEST_JOC) --fast-enumeration $?
+
 $(TESTS_DIR)/%.h $(TESTS_DIR)/%.m: $(ANDROID_JRE_TEST_ROOT)/%.java
 	@echo $? >> $(JAVA_SOURCE_LIST)
 
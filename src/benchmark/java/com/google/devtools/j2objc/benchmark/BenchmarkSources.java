@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.benchmark;
+
+/**
+ * Generates the Java sources and ProGuard listings the benchmarks translate.
+ * They're generated rather than checked in so their sizes can be tuned, and
+ * are deterministic so results are comparable across versions.
+ */
+class BenchmarkSources {
+
+  private BenchmarkSources() {
+    // Don't instantiate.
+  }
+
+  /**
+   * The kinds of compilation unit translated by the benchmarks.
+   */
+  enum Unit {
+    COLLECTIONS("Collections") {
+      @Override
+      String generate(String name) {
+        return collections(name);
+      }
+    },
+    ENUM_SWITCH("EnumSwitch") {
+      @Override
+      String generate(String name) {
+        return enumSwitch(name);
+      }
+    },
+    ANONYMOUS_CLASSES("AnonymousClasses") {
+      @Override
+      String generate(String name) {
+        return anonymousClasses(name);
+      }
+    },
+    STRING_CONCATENATION("StringConcatenation") {
+      @Override
+      String generate(String name) {
+        return stringConcatenation(name);
+      }
+    },
+    LARGE_METHOD("LargeMethod") {
+      @Override
+      String generate(String name) {
+        return largeMethod(name);
+      }
+    };
+
+    private final String typeName;
+
+    private Unit(String typeName) {
+      this.typeName = typeName;
+    }
+
+    String getTypeName() {
+      return typeName;
+    }
+
+    String getSource() {
+      return generate(typeName);
+    }
+
+    abstract String generate(String name);
+  }
+
+  /**
+   * Returns a class whose methods use nested generic collections, bounded
+   * wildcards and generic methods, with enhanced for loops over them.
+   */
+  static String collections(String name) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("import java.util.*;\n");
+    sb.append("public class ").append(name).append("<K extends Comparable<K>, V> {\n");
+    sb.append("  private final Map<K, List<Set<V>>> index = new HashMap<K, List<Set<V>>>();\n");
+    for (int i = 0; i < 40; i++) {
+      sb.append("  public <T extends Collection<? super V>> T collect").append(i)
+          .append("(K key, T result) {\n");
+      sb.append("    List<Set<V>> sets = index.get(key);\n");
+      sb.append("    if (sets == null) {\n");
+      sb.append("      sets = new ArrayList<Set<V>>();\n");
+      sb.append("      index.put(key, sets);\n");
+      sb.append("    }\n");
+      sb.append("    for (Set<V> set : sets) {\n");
+      sb.append("      for (V value : set) {\n");
+      sb.append("        result.add(value);\n");
+      sb.append("      }\n");
+      sb.append("    }\n");
+      sb.append("    return result;\n");
+      sb.append("  }\n");
+      sb.append("  public Map<K, Integer> count").append(i)
+          .append("(Iterable<? extends Map.Entry<K, ? extends List<V>>> entries) {\n");
+      sb.append("    Map<K, Integer> counts = new TreeMap<K, Integer>();\n");
+      sb.append("    for (Map.Entry<K, ? extends List<V>> entry : entries) {\n");
+      sb.append("      Integer n = counts.get(entry.getKey());\n");
+      sb.append("      int size = entry.getValue().size();\n");
+      sb.append("      counts.put(entry.getKey(), n == null ? size : n + size);\n");
+      sb.append("    }\n");
+      sb.append("    return counts;\n");
+      sb.append("  }\n");
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a class with a large enum, and methods that switch on it.
+   */
+  static String enumSwitch(String name) {
+    final int constants = 200;
+    StringBuilder sb = new StringBuilder();
+    sb.append("public class ").append(name).append(" {\n");
+    sb.append("  public enum Kind {\n   ");
+    for (int i = 0; i < constants; i++) {
+      sb.append(" K").append(i).append(i < constants - 1 ? "," : ";");
+      if (i % 10 == 9) {
+        sb.append("\n   ");
+      }
+    }
+    sb.append("\n  }\n");
+    for (int m = 0; m < 4; m++) {
+      sb.append("  public int value").append(m).append("(Kind kind) {\n");
+      sb.append("    switch (kind) {\n");
+      for (int i = 0; i < constants; i++) {
+        sb.append("      case K").append(i).append(": return ").append(i * (m + 1)).append(";\n");
+      }
+      sb.append("      default: return -1;\n");
+      sb.append("    }\n");
+      sb.append("  }\n");
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a class with deeply nested anonymous classes, each capturing
+   * variables from the enclosing ones.
+   */
+  static String anonymousClasses(String name) {
+    final int depth = 25;
+    StringBuilder sb = new StringBuilder();
+    sb.append("public class ").append(name).append(" {\n");
+    sb.append("  private int count;\n");
+    sb.append("  public Runnable create(final int start) {\n");
+    StringBuilder indent = new StringBuilder("    ");
+    for (int i = 0; i < depth; i++) {
+      sb.append(indent).append("final int v").append(i).append(" = start + ").append(i)
+          .append(";\n");
+      sb.append(indent).append("return new Runnable() {\n");
+      indent.append("  ");
+      sb.append(indent).append("public void run() {\n");
+      indent.append("  ");
+      sb.append(indent).append("count += v").append(i).append(";\n");
+      sb.append(indent).append("create").append(i).append("().run();\n");
+      indent.setLength(indent.length() - 2);
+      sb.append(indent).append("}\n");
+      sb.append(indent).append("Runnable create").append(i).append("() {\n");
+      indent.append("  ");
+    }
+    sb.append(indent).append("return new Runnable() { public void run() { count++; } };\n");
+    for (int i = 0; i < depth; i++) {
+      indent.setLength(indent.length() - 2);
+      sb.append(indent).append("}\n");
+      indent.setLength(indent.length() - 2);
+      sb.append(indent).append("};\n");
+    }
+    sb.append("  }\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a class whose methods concatenate long runs of strings and
+   * primitives, both in single expressions and with {@code +=}.
+   */
+  static String stringConcatenation(String name) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("public class ").append(name).append(" {\n");
+    for (int m = 0; m < 20; m++) {
+      sb.append("  public String format").append(m)
+          .append("(String s, int i, long l, double d, char c, boolean b, Object o) {\n");
+      sb.append("    String result = \"start\"");
+      for (int i = 0; i < 60; i++) {
+        sb.append(i % 8 == 0 ? "\n        " : " ");
+        sb.append("+ ").append(operand(i)).append(" + \"/").append(i).append('"');
+      }
+      sb.append(";\n");
+      sb.append("    for (int n = 0; n < i; n++) {\n");
+      sb.append("      result += s + n + ',';\n");
+      sb.append("    }\n");
+      sb.append("    return result;\n");
+      sb.append("  }\n");
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  private static String operand(int i) {
+    switch (i % 7) {
+      case 0: return "s";
+      case 1: return "i";
+      case 2: return "l";
+      case 3: return "d";
+      case 4: return "c";
+      case 5: return "b";
+      default: return "o";
+    }
+  }
+
+  /**
+   * Returns a class with one method whose body has thousands of statements:
+   * local declarations, arithmetic, conditionals, loops, array accesses and
+   * method invocations.  The method is named {@code large}.
+   */
+  static String largeMethod(String name) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("public class ").append(name).append(" {\n");
+    sb.append("  private int[] values = new int[64];\n");
+    sb.append("  private StringBuilder log = new StringBuilder();\n");
+    sb.append("  private int twice(int n) { return n * 2; }\n");
+    sb.append("  public int large(int seed, Object o) {\n");
+    sb.append("    int total = seed;\n");
+    for (int i = 0; i < 400; i++) {
+      sb.append("    int v").append(i).append(" = twice(total + ").append(i).append(") % 64;\n");
+      sb.append("    if (v").append(i).append(" > 32 && o != null) {\n");
+      sb.append("      total += values[v").append(i).append("] ^ o.hashCode();\n");
+      sb.append("    } else {\n");
+      sb.append("      total -= v").append(i).append(" << 1;\n");
+      sb.append("    }\n");
+      sb.append("    for (int j = 0; j < v").append(i).append(" % 4; j++) {\n");
+      sb.append("      values[j] = (int) (values[j] * 1.5) + j;\n");
+      sb.append("    }\n");
+      sb.append("    log.append(\"step ").append(i).append(": \").append(total).append('\\n');\n");
+    }
+    sb.append("    return total;\n");
+    sb.append("  }\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a ProGuard usage listing, in the format read by
+   * {@link com.google.devtools.j2objc.util.ProGuardUsageParser}, with dead
+   * classes, fields and methods from a number of packages.
+   */
+  static String proGuardUsage(int classes) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("ProGuard, version 4.7\n");
+    sb.append("Reading program jar [/tmp/app.jar]\n");
+    sb.append("Reading library jar [/usr/lib/jvm/jre/lib/rt.jar]\n");
+    for (int i = 0; i < classes; i++) {
+      String className = "com.example.p" + (i % 50) + ".Class" + i;
+      if (i % 5 == 0) {
+        // Completely dead class.
+        sb.append(className).append('\n');
+        continue;
+      }
+      sb.append(className).append(":\n");
+      sb.append("    private static final int CONSTANT").append(i).append('\n');
+      sb.append("    java.util.List items\n");
+      sb.append("    public ").append(className).append("(java.lang.String,int)\n");
+      sb.append("    12:34:public void run()\n");
+      sb.append("    private static synchronized java.lang.String[] names")
+          .append("(java.util.Map,java.lang.Object[],long)\n");
+      sb.append("    56:78:protected final int[][] matrix(int,int)\n");
+      sb.append("    public static varargs void log(java.lang.String,java.lang.Object[])\n");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.devtools.j2objc.benchmark;
+
+import com.google.common.collect.Lists;
+import com.google.devtools.j2objc.types.Types;
+import com.google.devtools.j2objc.util.NameTable;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.Name;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NameTable#getName} and {@link Types#mapType}, which the
+ * generators call for nearly every name and expression they print.  Each
+ * invocation looks up every binding referenced by a translated unit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BindingLookupBenchmark {
+  private Translator translator;
+  private final List<IBinding> names = Lists.newArrayList();
+  private final List<ITypeBinding> types = Lists.newArrayList();
+
+  @Setup
+  public void setUp() throws IOException {
+    translator = new Translator();
+    BenchmarkSources.Unit unit = BenchmarkSources.Unit.COLLECTIONS;
+    CompilationUnit translated = translator.begin(unit.getTypeName(), unit.getSource());
+    translated.accept(new ASTVisitor() {
+      @Override
+      public void preVisit(ASTNode node) {
+        if (node instanceof Name) {
+          IBinding binding = Types.getBinding(node);
+          if (binding != null) {
+            names.add(binding);
+          }
+        }
+        if (node instanceof Expression) {
+          ITypeBinding binding = Types.getTypeBinding(node);
+          if (binding != null) {
+            types.add(binding);
+          }
+        }
+      }
+    });
+  }
+
+  @TearDown
+  public void tearDown() {
+    translator.end();
+    translator.close();
+  }
+
+  @Benchmark
+  public void nameTableGetName(Blackhole blackhole) {
+    for (IBinding binding : names) {
+      blackhole.consume(NameTable.getName(binding));
+    }
+  }
+
+  @Benchmark
+  public void typesMapType(Blackhole blackhole) {
+    for (ITypeBinding binding : types) {
+      blackhole.consume(Types.mapType(binding));
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.devtools.j2objc.benchmark;
+
+import com.google.devtools.j2objc.gen.HiddenFieldDetector;
+import com.google.devtools.j2objc.gen.SourceBuilder;
+import com.google.devtools.j2objc.gen.SourcePosition;
+import com.google.devtools.j2objc.gen.StatementGenerator;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link StatementGenerator} on the body of a translated method
+ * with thousands of statements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StatementGeneratorBenchmark {
+  private Translator translator;
+  private Block body;
+  private Set<IVariableBinding> fieldHiders;
+
+  @Setup
+  public void setUp() throws IOException {
+    translator = new Translator();
+    BenchmarkSources.Unit unit = BenchmarkSources.Unit.LARGE_METHOD;
+    CompilationUnit translated = translator.begin(unit.getTypeName(), unit.getSource());
+    translated.accept(new ASTVisitor() {
+      @Override
+      public boolean visit(MethodDeclaration node) {
+        if (node.getName().getIdentifier().equals("large")) {
+          body = node.getBody();
+        }
+        return false;
+      }
+    });
+    if (body == null) {
+      throw new IllegalStateException("method not found in " + unit.getTypeName());
+    }
+    fieldHiders = HiddenFieldDetector.getFieldNameConflicts(translated);
+  }
+
+  @TearDown
+  public void tearDown() {
+    translator.end();
+    translator.close();
+  }
+
+  @Benchmark
+  public String generateMethodBody() {
+    return StatementGenerator.generate(body, fieldHiders, false,
+        new SourcePosition(null, SourceBuilder.BEGINNING_OF_FILE, null));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.devtools.j2objc.benchmark;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing, and parsing plus translation and code generation, of
+ * representative compilation units.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TranslationBenchmark {
+
+  @Param({ "COLLECTIONS", "ENUM_SWITCH", "ANONYMOUS_CLASSES", "STRING_CONCATENATION" })
+  public String unitName;
+
+  private Translator translator;
+  private BenchmarkSources.Unit unit;
+  private String source;
+
+  @Setup
+  public void setUp() throws IOException {
+    translator = new Translator();
+    unit = BenchmarkSources.Unit.valueOf(unitName);
+    source = unit.getSource();
+  }
+
+  @TearDown
+  public void tearDown() {
+    translator.close();
+  }
+
+  @Benchmark
+  public CompilationUnit parse() {
+    return translator.parse(unit.getTypeName(), source);
+  }
+
+  @Benchmark
+  public void translate() {
+    translator.translate(unit.getTypeName(), source);
+  }
+}
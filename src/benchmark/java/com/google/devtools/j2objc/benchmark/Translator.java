@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.benchmark;
+
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.TranslationContext;
+import com.google.devtools.j2objc.gen.ObjectiveCHeaderGenerator;
+import com.google.devtools.j2objc.gen.ObjectiveCImplementationGenerator;
+import com.google.devtools.j2objc.sym.Symbols;
+import com.google.devtools.j2objc.types.Types;
+import com.google.devtools.j2objc.util.NameTable;
+
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs the translator's phases on a source, the way the j2objc command
+ * does for each file.  Its options are loaded when it's created, with
+ * output written to a temporary directory that {@link #close} deletes.
+ * <p>
+ * Translation state is per-thread, so a translator should only be used
+ * by the thread that created it.
+ */
+class Translator {
+  private final File outputDirectory;
+  private final String classpath;
+  private TranslationContext previousContext;
+
+  Translator() throws IOException {
+    outputDirectory = File.createTempFile("j2objc-benchmark", ".tmp");
+    outputDirectory.delete();
+    outputDirectory.mkdir();
+    Options.load(new String[] { "-d", outputDirectory.getAbsolutePath() });
+    classpath = System.getProperty("java.class.path");
+  }
+
+  /**
+   * Parses a source, resolving its bindings.
+   *
+   * @throws IllegalStateException if the source has compilation errors
+   */
+  CompilationUnit parse(String typeName, String source) {
+    ASTParser parser = ASTParser.newParser(AST.JLS3);
+    parser.setCompilerOptions(Options.getCompilerOptions());
+    parser.setSource(source.toCharArray());
+    parser.setResolveBindings(true);
+    parser.setUnitName(typeName + ".java");
+    parser.setEnvironment(new String[] { classpath },
+        new String[] { outputDirectory.getAbsolutePath() }, null, true);
+    CompilationUnit unit = (CompilationUnit) parser.createAST(null);
+    for (IProblem problem : unit.getProblems()) {
+      if (problem.isError()) {
+        throw new IllegalStateException(typeName + ": " + problem.getMessage());
+      }
+    }
+    return unit;
+  }
+
+  /**
+   * Parses and translates a source in a new translation context, which
+   * stays current until {@link #end} is called.
+   *
+   * @return the translated compilation unit
+   */
+  CompilationUnit begin(String typeName, String source) {
+    previousContext = new TranslationContext(typeName + ".java", null, null).install();
+    CompilationUnit unit = parse(typeName, source);
+    J2ObjC.initializeTranslation(unit);
+    J2ObjC.translate(unit, source);
+    return unit;
+  }
+
+  /**
+   * Generates the header and implementation files for a unit returned by
+   * {@link #begin}.
+   */
+  void generate(CompilationUnit unit, String source) {
+    String fileName = TranslationContext.current().getFileName();
+    ObjectiveCHeaderGenerator.generate(fileName, source, unit);
+    ObjectiveCImplementationGenerator.generate(fileName, Options.getLanguage(), unit, source);
+  }
+
+  /**
+   * Discards the translation state of the unit returned by {@link #begin}.
+   */
+  void end() {
+    NameTable.cleanup();
+    Symbols.cleanup();
+    Types.cleanup();
+    TranslationContext.restore(previousContext);
+    previousContext = null;
+  }
+
+  /**
+   * Translates a source and generates its output files.
+   */
+  void translate(String typeName, String source) {
+    CompilationUnit unit = begin(typeName, source);
+    try {
+      generate(unit, source);
+    } finally {
+      end();
+    }
+  }
+
+  void close() {
+    deleteRecursively(outputDirectory);
+    Options.reset();
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -16,13 +16,11 @@
 
 package com.google.devtools.j2objc;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
@@ -30,52 +28,70 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.eclipse.jdt.core.dom.PackageDeclaration;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.text.edits.MalformedTreeException;
 import org.eclipse.text.edits.TextEdit;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
-import com.google.common.io.CharStreams;
+import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import com.google.devtools.j2objc.gen.ObjectiveCHeaderGenerator;
 import com.google.devtools.j2objc.gen.ObjectiveCImplementationGenerator;
+import com.google.devtools.j2objc.gen.PackageHeaderGenerator;
+import com.google.devtools.j2objc.gen.SourceFileGenerator;
 import com.google.devtools.j2objc.sym.Symbols;
 import com.google.devtools.j2objc.translate.AnonymousClassConverter;
 import com.google.devtools.j2objc.translate.Autoboxer;
 import com.google.devtools.j2objc.translate.DeadCodeEliminator;
 import com.google.devtools.j2objc.translate.DestructorGenerator;
+import com.google.devtools.j2objc.translate.Devirtualizer;
 import com.google.devtools.j2objc.translate.GwtConverter;
 import com.google.devtools.j2objc.translate.InitializationNormalizer;
 import com.google.devtools.j2objc.translate.InnerClassExtractor;
 import com.google.devtools.j2objc.translate.JavaToIOSMethodTranslator;
 import com.google.devtools.j2objc.translate.JavaToIOSTypeConverter;
+import com.google.devtools.j2objc.translate.NilCheckResolver;
 import com.google.devtools.j2objc.translate.Rewriter;
+import com.google.devtools.j2objc.translate.StringBuilderRewriter;
 import com.google.devtools.j2objc.types.Types;
 import com.google.devtools.j2objc.util.ASTNodeException;
+import com.google.devtools.j2objc.util.BuildCache;
 import com.google.devtools.j2objc.util.DeadCodeMap;
+import com.google.devtools.j2objc.util.DependencyRecorder;
+import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
+import com.google.devtools.j2objc.util.MethodMappings;
 import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.util.ProGuardUsageParser;
+import com.google.devtools.j2objc.util.Profiler;
+import com.google.devtools.j2objc.util.SourcePath;
+import com.google.devtools.j2objc.util.TranslationManifest;
 import com.google.devtools.j2objc.wrapper.Renamer;
 
 /**
@@ -88,11 +104,9 @@ import com.google.devtools.j2objc.wrapper.Renamer;
  * @author Tom Ball
  */
 public class J2ObjC {
-  private static String currentFileName;
-  private static CompilationUnit currentUnit;
-  private static int nFiles = 0;
-  private static int nErrors = 0;
-  private static int nWarnings = 0;
+  private static final AtomicInteger nFiles = new AtomicInteger();
+  private static final AtomicInteger nErrors = new AtomicInteger();
+  private static final AtomicInteger nWarnings = new AtomicInteger();
 
   public enum Language {
     OBJECTIVE_C(".m"), OBJECTIVE_CPP(".mm");
@@ -108,15 +122,54 @@ public class J2ObjC {
     }
   }
 
-  static {
-    // Always enable assertions in translator.
-    ClassLoader loader = J2ObjC.class.getClassLoader();
-    if (loader != null) {
-      loader.setPackageAssertionStatus(J2ObjC.class.getPackage().getName(), true);
+  private static final Logger logger = Logger.getLogger(J2ObjC.class.getName());
+
+  private BuildCache buildCache = null;
+  private TranslationManifest manifest = null;
+  private SourcePath sourcePath = null;
+
+  // The entries of the source jars being translated, by path.  An entry is
+  // read from its jar's manifest, rather than looked up on the source path.
+  private final Map<String, SourcePath.Source> jarEntries = Maps.newConcurrentMap();
+
+  // The packages with translated types, for --package-headers.
+  private final Set<String> translatedPackages =
+      Collections.newSetFromMap(Maps.<String, Boolean>newConcurrentMap());
+
+  // Set while running as a translation server, so exiting ends the current
+  // request instead of the server.
+  private static volatile boolean isServer = false;
+
+  // The plugins and mapping files loaded by a previous run, which a server
+  // reuses while they are unchanged.
+  private static String loadedPluginsKey = null;
+  private static List<Plugin> loadedPlugins = null;
+  private static String loadedMappingsKey = null;
+
+  /**
+   * Thrown by {@link #exit(int)} when running as a server, to end the
+   * current request with an exit status.
+   */
+  static class ExitException extends RuntimeException {
+    private final int status;
+
+    ExitException(int status) {
+      super("exit status " + status);
+      this.status = status;
+    }
+
+    int getStatus() {
+      return status;
     }
   }
 
-  private static final Logger logger = Logger.getLogger(J2ObjC.class.getName());
+  private static PrintStream out() {
+    return TranslationContext.current().getOut();
+  }
+
+  private static PrintStream err() {
+    return TranslationContext.current().getErr();
+  }
 
   /**
    * Parse a specified Java source file and generate Objective C header(s)
@@ -125,34 +178,135 @@ public class J2ObjC {
    * @param filename the source file to translate
    */
   void translate(String filename) throws IOException {
-    long startTime = System.currentTimeMillis();
-    int beginningErrorLevel = getCurrentErrorLevel();
-    logger.finest("reading " + filename);
-
-    // Read file
-    currentFileName = filename;
-    String source = getSource(filename);
-    if (source == null) {
-      error("no such file: " + filename);
+    TranslationContext context = new TranslationContext(filename, TranslationContext.current());
+    TranslationContext previous = context.install();
+    try {
+      long startTime = System.currentTimeMillis();
+      logger.finest("reading " + filename);
+
+      // Read file
+      String source = getSource(filename);
+      if (source == null) {
+        error("no such file: " + filename);
+        return;
+      }
+      long readTime = System.currentTimeMillis();
+
+      // Parse and resolve source
+      CompilationUnit unit = parse(filename, source);
+      long compileTime = System.currentTimeMillis();
+      if (context.getErrorCount() > 0) {
+        return; // Continue to next file.
+      }
+      translate(filename, source, unit, startTime, readTime, compileTime);
+    } finally {
+      TranslationContext.restore(previous);
+    }
+  }
+
+  /**
+   * Parse a list of Java source files using a single ASTParser session, and
+   * generate Objective C header(s) and implementation file(s) from them.
+   * Sharing the session means the class and boot class paths are only read
+   * once, and core types like java.lang.Object are only resolved once,
+   * instead of once per file.  Each compilation unit is translated as soon
+   * as the parser delivers it.
+   *
+   * @param filenames the source files to translate
+   */
+  void translateBatch(List<String> filenames) throws IOException {
+    // Map the absolute paths handed to the parser back to the names used
+    // on the command-line, so diagnostics and output names are unchanged.
+    final Map<String, String> sourceFiles = Maps.newLinkedHashMap();
+    for (String filename : filenames) {
+      File file = findSourceFile(filename);
+      if (file == null) {
+        // Not a regular file (it may be in a source jar), so translate it
+        // separately.
+        translateFile(filename);
+      } else {
+        sourceFiles.put(file.getAbsolutePath(), filename);
+      }
+    }
+    if (sourceFiles.isEmpty()) {
       return;
     }
-    long readTime = System.currentTimeMillis();
 
-    // Parse and resolve source
-    currentUnit = parse(filename, source);
-    long compileTime = System.currentTimeMillis();
-    if (getCurrentErrorLevel() > beginningErrorLevel) {
-      return; // Continue to next file.
+    logger.finest("parsing batch of " + sourceFiles.size() + " files");
+    String[] paths = sourceFiles.keySet().toArray(new String[sourceFiles.size()]);
+    String[] encodings = new String[paths.length];
+    Arrays.fill(encodings, Charset.defaultCharset().name());
+    final long[] lastTime = { System.currentTimeMillis() };
+    FileASTRequestor requestor = new FileASTRequestor() {
+      @Override
+      public void acceptAST(String sourceFilePath, CompilationUnit unit) {
+        String filename = sourceFiles.get(sourceFilePath);
+        printInfo("translating " + filename);
+        long startTime = lastTime[0];
+        long compileTime = System.currentTimeMillis();
+        TranslationContext context =
+            new TranslationContext(filename, TranslationContext.current());
+        TranslationContext previous = context.install();
+        try {
+          reportCompilationErrors(filename, unit);
+          if (context.getErrorCount() == 0) {
+            String source = Files.toString(new File(sourceFilePath), Charset.defaultCharset());
+            long readTime = System.currentTimeMillis();
+            // Reading is done after compiling, so adjust the times to report
+            // the time spent in each step.
+            translate(filename, source, unit, startTime, startTime + (readTime - compileTime),
+                readTime);
+          }
+        } catch (IOException e) {
+          error(e.getMessage());
+        } finally {
+          TranslationContext.restore(previous);
+        }
+        nFiles.incrementAndGet();
+        lastTime[0] = System.currentTimeMillis();
+      }
+    };
+    TranslationContext previous =
+        TranslationContext.newSession(TranslationContext.current()).install();
+    try {
+      newParser().createASTs(paths, encodings, new String[0], requestor, null);
+    } finally {
+      TranslationContext.restore(previous);
     }
+  }
 
+  /**
+   * Translates a parsed compilation unit, and generates the Objective C
+   * header(s) and implementation file(s) from it.
+   */
+  private void translate(String filename, String source, CompilationUnit unit, long startTime,
+      long readTime, long compileTime) {
     logger.finest("translating " + filename);
     long translateTime = 0L;
-    initializeTranslation(currentUnit);
+    TranslationContext context = TranslationContext.current();
+    DependencyRecorder recorder = null;
+    if (buildCache != null || manifest != null) {
+      recorder = new DependencyRecorder();
+      context.addBindingCollector(recorder);
+    }
+    initializeTranslation(unit);
     try {
-      String newSource = translate(currentUnit, source);
+      String deadCodeSource = removeDeadCode(filename, unit, source);
+      if (deadCodeSource != null) {
+        // The generated code has no bindings, so they are resolved by
+        // parsing the rewritten source.
+        source = deadCodeSource;
+        unit = parse(filename, source);
+        if (context.getErrorCount() == 0) {
+          initializeTranslation(unit);
+        }
+      }
+      String newSource = context.getErrorCount() == 0 ? translate(unit, source) : null;
       translateTime = System.currentTimeMillis();
 
-      if (currentUnit.types().isEmpty()) {
+      if (newSource == null) {
+        // The rewritten source has errors, which were reported.
+      } else if (unit.types().isEmpty()) {
         logger.finest("skipping dead file " + filename);
       } else {
         if (Options.printConvertedSources()) {
@@ -163,11 +317,19 @@ public class J2ObjC {
             "writing output file(s) to " + Options.getOutputDirectory().getAbsolutePath());
 
         // write header
-        ObjectiveCHeaderGenerator.generate(filename, source, currentUnit);
+        Profiler.Phase phase = Profiler.begin("ObjectiveCHeaderGenerator");
+        ObjectiveCHeaderGenerator.generate(filename, source, unit);
+        Profiler.end(phase);
+        if (Options.packageHeaders()) {
+          PackageDeclaration pkg = unit.getPackage();
+          translatedPackages.add(pkg != null ? pkg.getName().getFullyQualifiedName() : "");
+        }
 
         // write implementation file
+        phase = Profiler.begin("ObjectiveCImplementationGenerator");
         ObjectiveCImplementationGenerator.generate(
-            filename, Options.getLanguage(), currentUnit, source);
+            filename, Options.getLanguage(), unit, source);
+        Profiler.end(phase);
       }
     } catch (ASTNodeException e) {
       error(e);
@@ -175,29 +337,62 @@ public class J2ObjC {
       cleanup();
     }
 
+    if (buildCache != null) {
+      if (context.getErrorCount() == 0) {
+        try {
+          buildCache.update(filename, recorder, context.getOutputFiles());
+        } catch (IOException e) {
+          error(e.getMessage());
+        }
+      } else {
+        buildCache.remove(filename);
+      }
+    }
+    if (manifest != null) {
+      if (context.getErrorCount() == 0) {
+        try {
+          manifest.update(filename, recorder, context.getOutputFiles());
+        } catch (IOException e) {
+          error(e.getMessage());
+        }
+      } else {
+        manifest.remove(filename);
+      }
+    }
+
     long endTime = System.currentTimeMillis();
     printTimingInfo(readTime - startTime, compileTime - readTime, translateTime - compileTime,
         endTime - translateTime, endTime - startTime);
   }
 
-  private static CompilationUnit parse(String filename, String source) {
-    logger.finest("parsing " + filename);
+  private static ASTParser newParser() {
     ASTParser parser = ASTParser.newParser(AST.JLS3);
     Map<String, String> compilerOptions = Options.getCompilerOptions();
     parser.setCompilerOptions(compilerOptions);
-    parser.setSource(source.toCharArray());
     parser.setResolveBindings(true);
     setPaths(parser);
+    return parser;
+  }
+
+  private static CompilationUnit parse(String filename, String source) {
+    logger.finest("parsing " + filename);
+    Profiler.Phase phase = Profiler.begin("parse");
+    ASTParser parser = newParser();
+    parser.setSource(source.toCharArray());
     parser.setUnitName(filename);
     CompilationUnit unit = (CompilationUnit) parser.createAST(null);
+    Profiler.end(phase);
+    reportCompilationErrors(filename, unit);
+    return unit;
+  }
 
+  private static void reportCompilationErrors(String filename, CompilationUnit unit) {
     for (IProblem problem : getCompilationErrors(unit)) {
       if (problem.isError()) {
         error(String.format("%s:%s: %s",
             filename, problem.getSourceLineNumber(), problem.getMessage()));
       }
     }
-    return unit;
   }
 
   private static List<IProblem> getCompilationErrors(CompilationUnit unit) {
@@ -234,7 +429,51 @@ public class J2ObjC {
     }
     logger.finest("removing dead code");
     new DeadCodeEliminator(Options.getDeadCodeMap()).run(unit);
+    return rewriteSource(unit, source);
+  }
+
+  /**
+   * Removes dead types and methods from a parsed unit, before it is
+   * translated.  Dead code is usually just deleted, and default values given
+   * to final fields are bound in place, so the unit doesn't need to be parsed
+   * again.  Declarations generated to keep the unit compilable, like stubs
+   * for dead methods that implement an abstract method, have no bindings
+   * though: they refer to types like AssertionError that the unit may not
+   * reference, and may declare new classes, and only the compiler can create
+   * bindings for those.  So in that case the rewritten source is returned,
+   * which the caller parses again.
+   *
+   * @return the rewritten source if the unit must be parsed again, else null
+   */
+  private static String removeDeadCode(String filename, CompilationUnit unit, String source) {
+    if (Options.getDeadCodeMap() == null) {
+      return null;
+    }
+    long startTime = System.currentTimeMillis();
+    logger.finest("removing dead code from " + filename);
+    DeadCodeEliminator eliminator = new DeadCodeEliminator(Options.getDeadCodeMap());
+    runPass(eliminator, unit);
+    String newSource = null;
+    if (eliminator.hasGeneratedCode()) {
+      newSource = rewriteSource(unit, source);
+    } else {
+      eliminator.resolveGeneratedInitializers();
+    }
+
+    long elapsedTime = System.currentTimeMillis() - startTime;
+    if (logger.getLevel().intValue() <= Level.FINE.intValue()) {
+      out().println(
+        String.format("dead-code elimination time: %.3f", inSeconds(elapsedTime)));
+    }
+    return newSource;
+  }
 
+  /**
+   * Returns the source of a unit with its recorded modifications applied.
+   *
+   * @throws AssertionError if the modifications are invalid edits
+   */
+  private static String rewriteSource(CompilationUnit unit, String source) {
     Document doc = new Document(source);
     TextEdit edit = unit.rewrite(doc, Options.getCompilerOptions());
     try {
@@ -247,81 +486,6 @@ public class J2ObjC {
     return doc.get();
   }
 
-  private String[] removeDeadCode(String[] files) throws IOException {
-    loadDeadCodeMap();
-    if (Options.getDeadCodeMap() != null) {
-      for (int i = 0; i < files.length; i++) {
-        String filename = files[i];
-        logger.finest("reading " + filename);
-
-        if (filename.endsWith(".java")) {
-          // Read file
-          String source = getSource(filename);
-          if (source == null) {
-            error("no such file: " + filename);
-            return files;
-          }
-
-          String newPath = removeDeadCode(filename, source);
-          if (!filename.equals(newPath)) {
-            files[i] = newPath;
-          }
-        } else if (filename.endsWith(".jar")) {
-          File f = new File(filename);
-          if (f.exists() && f.isFile()) {
-            ZipFile zfile = new ZipFile(f);
-            try {
-              Enumeration<? extends ZipEntry> enumerator = zfile.entries();
-              while (enumerator.hasMoreElements()) {
-                ZipEntry entry = enumerator.nextElement();
-                String path = entry.getName();
-                if (path.endsWith(".java")) {
-                  removeDeadCode(path, getSource(path));
-                }
-              }
-            } finally {
-              zfile.close();  // Also closes input stream.
-            }
-          }
-        }
-      }
-    }
-    Options.insertSourcePath(0, Options.getTemporaryDirectory());
-    return files;
-  }
-
-  private String removeDeadCode(String path, String source) throws IOException {
-    long startTime = System.currentTimeMillis();
-    int beginningErrorLevel = getCurrentErrorLevel();
-
-    // Parse and resolve source
-    CompilationUnit unit = parse(path, source);
-    if (getCurrentErrorLevel() > beginningErrorLevel) {
-      return path;
-    }
-    initializeTranslation(unit);
-    String newSource = removeDeadCode(unit, source);
-    if (!newSource.equals(source)) {
-      // Save the new source to the tmpdir and update the files list.
-      String pkg = unit.getPackage().getName().getFullyQualifiedName();
-      File packageDir = new File(Options.getTemporaryDirectory(),
-          pkg.replace('.', File.separatorChar));
-      packageDir.mkdirs();
-      int index = path.lastIndexOf(File.separatorChar);
-      String outputName = index >= 0 ? path.substring(index + 1) : path;
-      File outFile = new File(packageDir, outputName);
-      Files.write(newSource, outFile, Charsets.UTF_8);
-      path = outFile.getAbsolutePath();
-    }
-
-    long elapsedTime = System.currentTimeMillis() - startTime;
-    if (logger.getLevel().intValue() <= Level.FINE.intValue()) {
-      System.out.println(
-        String.format("dead-code elimination time: %.3f", inSeconds(elapsedTime)));
-    }
-    return path;
-  }
-
   /**
    * Translates a parsed source file, modifying the compilation unit by
    * substituting core Java type and method references with iOS equivalents.
@@ -343,57 +507,79 @@ public class J2ObjC {
   public static String translate(CompilationUnit unit, String source) {
 
     // Update code that has GWT references.
-    new GwtConverter().run(unit);
+    runPass(new GwtConverter(), unit);
 
     // Modify AST to be more compatible with Objective C
-    new Rewriter().run(unit);
+    runPass(new Rewriter(), unit);
 
-    new Renamer().run(unit);
+    // Build the strings that loops append to with StringBuilders.
+    if (Options.fastStringConcatenation()) {
+      runPass(new StringBuilderRewriter(), unit);
+    }
+
+    runPass(new Renamer(), unit);
 
     // Add auto-boxing conversions.
-    new Autoboxer(unit.getAST()).run(unit);
+    runPass(new Autoboxer(unit.getAST()), unit);
 
     // Extract inner and anonymous classes
-    new AnonymousClassConverter(unit).run(unit);
-    new InnerClassExtractor(unit).run(unit);
+    runPass(new AnonymousClassConverter(unit), unit);
+    runPass(new InnerClassExtractor(unit), unit);
 
     // Normalize init statements
-    new InitializationNormalizer().run(unit);
+    runPass(new InitializationNormalizer(), unit);
 
     // Translate core Java type use to similar iOS types
-    new JavaToIOSTypeConverter().run(unit);
-    Map<String, String> methodMappings = Options.getMethodMappings();
-    if (methodMappings.isEmpty()) {
-      // Method maps are loaded here so tests can call translate() directly.
-      loadMappingFiles();
-    }
-    new JavaToIOSMethodTranslator(unit, methodMappings).run(unit);
+    runPass(new JavaToIOSTypeConverter(), unit);
+    runPass(new JavaToIOSMethodTranslator(unit, getMethodMappings()), unit);
 
     // Add dealloc/finalize method(s), if necessary.  This is done
     // after inner class extraction, so that each class releases
     // only its own instance variables.
-    new DestructorGenerator().run(unit);
+    runPass(new DestructorGenerator(), unit);
 
     for (Plugin plugin : Options.getPlugins()) {
-      plugin.processUnit(unit);
+      Profiler.Phase phase = Profiler.begin(plugin.getClass().getName());
+      // Plugins aren't required to be thread-safe, and with -j several
+      // units are translated at once.
+      synchronized (plugin) {
+        plugin.processUnit(unit);
+      }
+      Profiler.end(phase);
+    }
+
+    // Find the methods to generate as C functions, once no more methods
+    // will be added or modified.
+    if (Options.devirtualize()) {
+      runPass(new Devirtualizer(), unit);
     }
 
+    // Find the dereferences that don't need nil checks.  This is done last,
+    // so it sees the statements that will be generated.
+    runPass(new NilCheckResolver(), unit);
+
     // Verify all modified nodes have type bindings
+    Profiler.Phase phase = Profiler.begin("verifyNode");
     Types.verifyNode(unit);
+    Profiler.end(phase);
 
-    Document doc = new Document(source);
-    TextEdit edit = unit.rewrite(doc, Options.getCompilerOptions());
-    try {
-      edit.apply(doc);
-    } catch (MalformedTreeException e) {
-      throw new AssertionError(e);
-    } catch (BadLocationException e) {
-      throw new AssertionError(e);
-    }
-    return doc.get();
+    phase = Profiler.begin("rewriteSource");
+    String newSource = rewriteSource(unit, source);
+    Profiler.end(phase);
+    return newSource;
+  }
+
+  /**
+   * Runs a translation pass on a unit, profiling it by the pass's name.
+   */
+  private static void runPass(ErrorReportingASTVisitor pass, CompilationUnit unit) {
+    Profiler.Phase phase = Profiler.begin(pass.getClass().getSimpleName());
+    pass.run(unit);
+    Profiler.end(phase);
   }
 
   public static void initializeTranslation(CompilationUnit unit) {
+    TranslationContext.current().setUnit(unit);
     unit.recordModifications();
     NameTable.initialize(unit);
     Types.initialize(unit);
@@ -448,88 +634,334 @@ public class J2ObjC {
   }
 
   private String getSource(String path) throws IOException {
-    File file = findSourceFile(path);
-    if (file == null) {
-      return findArchivedSource(path);
-    } else {
+    SourcePath.Source jarEntry = jarEntries.get(path);
+    if (jarEntry != null) {
+      return jarEntry.read();
+    }
+    File file = getFileOrNull(path);
+    if (file != null) {
       return Files.toString(file, Charset.defaultCharset());
     }
+    SourcePath.Source source = getSourcePath().find(path);
+    return source != null ? source.read() : null;
   }
 
-  private File findSourceFile(String filename) {
+  private File findSourceFile(String filename) throws IOException {
+    if (jarEntries.containsKey(filename)) {
+      return null;
+    }
     File f = getFileOrNull(filename);
     if (f != null) {
       return f;
     }
-    for (String pathEntry : Options.getSourcePathEntries()) {
-      f = getFileOrNull(pathEntry + File.separatorChar + filename);
-      if (f != null) {
-        return f;
+    SourcePath.Source source = getSourcePath().find(filename);
+    return source != null ? source.getFile() : null;
+  }
+
+  private File getFileOrNull(String fileName) {
+    File f = new File(fileName);
+    return f.exists() ? f : null;
+  }
+
+  /**
+   * Returns the index of the source path, which is created the first time
+   * a source is looked up, and closed when translateAll() is done.
+   */
+  private synchronized SourcePath getSourcePath() throws IOException {
+    if (sourcePath == null) {
+      sourcePath = new SourcePath(Options.getSourcePathEntries());
+    }
+    return sourcePath;
+  }
+
+  private synchronized void closeSourcePath() {
+    if (sourcePath != null) {
+      try {
+        sourcePath.close();
+      } catch (IOException e) {
+        error(e.getMessage());
       }
+      sourcePath = null;
     }
-    return null;
+    jarEntries.clear();
   }
 
-  private String findArchivedSource(String path) throws IOException {
-    for (String pathEntry : Options.getSourcePathEntries()) {
-      File f = new File(pathEntry);
-      if (f.exists() && f.isFile()) {
-        ZipFile zfile;
-        try {
-          zfile = new ZipFile(f);
-        } catch (ZipException e) {
-          // Not a zip or jar file, so skip it.
-          continue;
+  /**
+   * Reads a source jar's manifest, returning its .java entries in archive
+   * order.  The entries are read from the jar through the source path's
+   * shared handle when they are translated, so workers decode them
+   * concurrently.  If several jars have an entry with the same path, the
+   * first jar's entry is translated.
+   */
+  private List<String> getSourceJarEntries(String jarPath) throws IOException {
+    List<String> entries = Lists.newArrayList();
+    for (SourcePath.Source source : getSourcePath().getArchiveSources(jarPath)) {
+      String path = source.getPath();
+      if (!jarEntries.containsKey(path)) {
+        jarEntries.put(path, source);
+        entries.add(path);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Splits the files specified on the command-line into the lists of files
+   * that are translated together, in translation order.  If batch
+   * translation is enabled, each list is a parser batch; otherwise each file
+   * is translated separately.  Source jars are expanded into their .java
+   * entries, which are always translated separately, so a jar's entries are
+   * spread across the worker threads.
+   */
+  private List<List<String>> getTranslationLists(String[] files) throws IOException {
+    List<List<String>> fileLists = Lists.newArrayList();
+    int batchMaximum = Options.batchTranslateMaximum();
+    List<String> batch = Lists.newArrayList();
+    for (String file : files) {
+      if (file.endsWith(".java")) {  // Eclipse may send all project entities.
+        if (batchMaximum > 0) {
+          batch.add(file);
+          if (batch.size() >= batchMaximum) {
+            fileLists.add(batch);
+            batch = Lists.newArrayList();
+          }
+        } else {
+          fileLists.add(Lists.newArrayList(file));
         }
-        ZipEntry entry = zfile.getEntry(path);
-        if (entry == null) {
-          continue;
+      } else if (file.endsWith(".jar")) {
+        // Add any pending batch first, to preserve translation order.
+        if (!batch.isEmpty()) {
+          fileLists.add(batch);
+          batch = Lists.newArrayList();
         }
-        try {
-          Reader in = new InputStreamReader(zfile.getInputStream(entry));
-          return CharStreams.toString(in);
-        } finally {
-          zfile.close();  // Also closes input stream.
+        for (String entry : getSourceJarEntries(file)) {
+          fileLists.add(Lists.newArrayList(entry));
         }
       }
     }
-    return null;
+    if (!batch.isEmpty()) {
+      fileLists.add(batch);
+    }
+    return fileLists;
   }
 
-  private File getFileOrNull(String fileName) {
-    File f = new File(fileName);
-    return f.exists() ? f : null;
+  /**
+   * Translates a list of files, either as a single parser batch or one at a
+   * time.
+   */
+  void translateFiles(List<String> filenames) throws IOException {
+    if (Options.batchTranslateMaximum() > 0) {
+      translateBatch(filenames);
+    } else {
+      for (String filename : filenames) {
+        translateFile(filename);
+      }
+    }
   }
 
-  private static void translateSourceJar(J2ObjC compiler, String jarPath) throws IOException {
-    File f = new File(jarPath);
-    if (f.exists() && f.isFile()) {
-      ZipFile zfile = new ZipFile(f);
+  /**
+   * Translates a file by itself.  A file that can't be read is reported,
+   * without stopping the translation of the files after it.
+   */
+  private void translateFile(String filename) {
+    printInfo("translating " + filename);
+    try {
+      translate(filename);
+    } catch (IOException e) {
+      error(filename + ": " + e.getMessage());
+    }
+    nFiles.incrementAndGet();
+  }
+
+  /**
+   * Translates source files and source jars.  If a build cache is used, only
+   * the source files that changed since they were last translated are
+   * translated, followed by the unchanged files that reference a type whose
+   * API changed.
+   *
+   * @return false if the dead code report couldn't be read
+   */
+  boolean translateAll(String[] files) {
+    try {
+      loadManifest();
+      boolean result = Options.getBuildCacheFile() == null
+          ? translateSources(files) : translateChangedSources(files);
+      if (result && Options.packageHeaders()) {
+        writePackageHeaders();
+      }
+      saveManifest();
+      return result;
+    } finally {
+      closeSourcePath();
+    }
+  }
+
+  private void loadManifest() {
+    File manifestFile = Options.getManifestFile();
+    if (manifestFile != null) {
       try {
-        Enumeration<? extends ZipEntry> enumerator = zfile.entries();
-        while (enumerator.hasMoreElements()) {
-          ZipEntry entry = enumerator.nextElement();
-          String path = entry.getName();
-          if (path.endsWith(".java")) {
-            printInfo("translating " + path);
-            compiler.translate(path);
-            nFiles++;
-          }
+        manifest = TranslationManifest.load(manifestFile);
+      } catch (IOException e) {
+        error(e.getMessage());
+      }
+    }
+  }
+
+  private void saveManifest() {
+    if (manifest != null) {
+      try {
+        manifest.save();
+      } catch (IOException e) {
+        error(e.getMessage());
+      }
+      manifest = null;
+    }
+  }
+
+  private void writePackageHeaders() {
+    for (String pkg : translatedPackages) {
+      try {
+        PackageHeaderGenerator.generate(Options.getOutputDirectory(), pkg);
+      } catch (IOException e) {
+        error(e.getMessage());
+      }
+    }
+    translatedPackages.clear();
+  }
+
+  private boolean translateChangedSources(String[] files) {
+    try {
+      buildCache = BuildCache.load(Options.getBuildCacheFile(), getSourcePath());
+    } catch (IOException e) {
+      error(e.getMessage());
+      return translateSources(files);
+    }
+    List<String> changedFiles = Lists.newArrayList();
+    for (String file : files) {
+      String source = null;
+      if (file.endsWith(".java")) {
+        try {
+          source = getSource(file);
+        } catch (IOException e) {
+          // Reported when the file is translated.
+        }
+      }
+      if (source == null || !buildCache.isUnchanged(file, source)) {
+        changedFiles.add(file);
+      }
+    }
+    boolean result = translateSources(changedFiles.toArray(new String[changedFiles.size()]));
+    try {
+      List<String> staleFiles;
+      while (result && !(staleFiles = buildCache.getStaleFiles()).isEmpty()) {
+        result = translateSources(staleFiles.toArray(new String[staleFiles.size()]));
+      }
+      buildCache.save();
+    } catch (IOException e) {
+      error(e.getMessage());
+    }
+    int skipped = buildCache.getSkippedFileCount();
+    if (skipped > 0) {
+      printInfo(String.format("Skipped %d unchanged %s", skipped, skipped == 1 ? "file" : "files"));
+    }
+    return result;
+  }
+
+  private boolean translateSources(String[] files) {
+    // Dead code is removed from each unit after it is parsed.
+    try {
+      loadDeadCodeMap();
+    } catch (IOException e) {
+      error(e.getMessage());
+      return false;
+    }
+
+    List<List<String>> fileLists = null;
+    try {
+      fileLists = getTranslationLists(files);
+    } catch (IOException e) {
+      error(e.getMessage());
+      fileLists = Lists.newArrayList();
+    }
+    if (Options.threads() > 1) {
+      translateInParallel(fileLists, Options.threads());
+    } else {
+      for (List<String> fileList : fileLists) {
+        try {
+          translateFiles(fileList);
+        } catch (IOException e) {
+          error(e.getMessage());
         }
-      } catch (ZipException e) {
-        // Not a zip or jar file, so skip it.
-        return;
-      } finally {
-        zfile.close();  // Also closes input stream.
       }
     }
+    return true;
+  }
+
+  /**
+   * Translates each list of files on a pool of worker threads.  Compilation
+   * units don't share translation state, and each list uses its own parser,
+   * so the generated files are the same as for a sequential translation.
+   * Each worker buffers its messages, which are printed in the order the
+   * files were specified.
+   */
+  void translateInParallel(List<List<String>> fileLists, int nThreads) {
+    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    List<Future<BufferedOutput>> results = Lists.newArrayList();
+    try {
+      for (final List<String> fileList : fileLists) {
+        results.add(executor.submit(new Callable<BufferedOutput>() {
+          @Override
+          public BufferedOutput call() {
+            BufferedOutput output = new BufferedOutput();
+            TranslationContext previous = new TranslationContext(
+                null, new PrintStream(output.out, true), new PrintStream(output.err, true))
+                .install();
+            try {
+              translateFiles(fileList);
+            } catch (IOException e) {
+              error(e.getMessage());
+            } finally {
+              TranslationContext.restore(previous);
+            }
+            return output;
+          }
+        }));
+      }
+      for (Future<BufferedOutput> result : results) {
+        result.get().print();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AssertionError(e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new AssertionError(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The status messages and diagnostics printed while translating a list of
+   * files on a worker thread.
+   */
+  private static class BufferedOutput {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    void print() {
+      out().print(out.toString());
+      out().flush();
+      err().print(err.toString());
+      err().flush();
+    }
   }
 
   /**
    * Report an error during translation.
    */
   public static void error(String message) {
-    System.err.println("error: " + message);
+    err().println("error: " + message);
     error();
   }
 
@@ -539,28 +971,31 @@ public class J2ObjC {
    * error conditions.
    */
   public static void error() {
-    nErrors++;
+    nErrors.incrementAndGet();
+    TranslationContext.current().addError();
   }
 
   /**
    * Report an ASTVisitor error.
    */
   public static void error(ASTNodeException e) {
-    System.err.println(String.format("Internal error, translating %s, line %d\nStack trace:",
-        currentFileName, currentUnit.getLineNumber(e.getSourcePosition())));
-    nErrors++;
-    e.getCause().printStackTrace(System.err);
+    TranslationContext context = TranslationContext.current();
+    err().println(String.format("Internal error, translating %s, line %d\nStack trace:",
+        context.getFileName(), context.getUnit().getLineNumber(e.getSourcePosition())));
+    error();
+    e.getCause().printStackTrace(err());
   }
 
   /**
    * Report a warning during translation.
    */
   public static void warning(String message) {
-    System.err.println("warning: " + message);
+    err().println("warning: " + message);
     if (Options.treatWarningsAsErrors()) {
-      nErrors++;
+      error();
     } else {
-      nWarnings++;
+      nWarnings.incrementAndGet();
+      TranslationContext.current().addWarning();
     }
   }
 
@@ -569,7 +1004,7 @@ public class J2ObjC {
    */
   public static void error(ASTNode node, String message) {
     int line = getNodeLine(node);
-    error(String.format("%s:%s: %s", currentFileName, line, message));
+    error(String.format("%s:%s: %s", TranslationContext.current().getFileName(), line, message));
   }
 
   /**
@@ -577,11 +1012,7 @@ public class J2ObjC {
    */
   public static void warning(ASTNode node, String message) {
     int line = getNodeLine(node);
-    warning(String.format("%s:%s: %s", currentFileName, line, message));
-  }
-
-  private int getCurrentErrorLevel() {
-    return Options.treatWarningsAsErrors() ? nErrors + nWarnings : nErrors;
+    warning(String.format("%s:%s: %s", TranslationContext.current().getFileName(), line, message));
   }
 
   private static int getNodeLine(ASTNode node) {
@@ -589,83 +1020,94 @@ public class J2ObjC {
     return unit.getLineNumber(node.getStartPosition());
   }
 
-  private static void loadDeadCodeMap() {
+  private static void loadDeadCodeMap() throws IOException {
     DeadCodeMap map = null;
     File file = Options.getProGuardUsageFile();
     if (file != null) {
-      try {
-        map = ProGuardUsageParser.parse(Files.newReaderSupplier(file, Charset.defaultCharset()));
-      } catch (IOException e) {
-        throw new AssertionError(e);
-      }
+      map = ProGuardUsageParser.parse(Files.newReaderSupplier(file, Charset.defaultCharset()));
     }
     Options.setDeadCodeMap(map);
   }
 
-  private static void loadMappingFiles() {
-    for (String resourceName : Options.getMappingFiles()) {
-      Properties mappings = new Properties();
+  /**
+   * Returns the method mappings, loading them the first time they're used.
+   * They're loaded here so tests can call translate() directly.
+   */
+  private static synchronized MethodMappings getMethodMappings() {
+    MethodMappings mappings = Options.getMethodMappings();
+    if (mappings == null) {
       try {
-        File f = new File(resourceName);
-        if (f.exists()) {
-          FileReader reader = new FileReader(f);
-          try {
-            mappings.load(reader);
-          } finally {
-            reader.close();
-          }
-        } else {
-          InputStream stream = J2ObjC.class.getResourceAsStream(resourceName);
-          if (stream == null) {
-            error(resourceName + " not found");
-          } else {
-            try {
-              mappings.load(stream);
-            } finally {
-              stream.close();
-            }
-          }
-        }
+        mappings = MethodMappings.load(Options.getMappingFiles(),
+            Options.getMappingCacheDirectory());
       } catch (IOException e) {
         throw new AssertionError(e);
       }
-
-      Enumeration<?> keyIterator = mappings.propertyNames();
-      while (keyIterator.hasMoreElements()) {
-        String javaMethod = (String) keyIterator.nextElement();
-        String iosMethod = mappings.getProperty(javaMethod);
-        Options.getMethodMappings().put(javaMethod, iosMethod);
-      }
+      Options.setMethodMappings(mappings);
     }
+    return mappings;
   }
 
   @VisibleForTesting
   static void reset() {
-    nErrors = 0;
-    nWarnings = 0;
-    nFiles = 0;
-    currentFileName = null;
-    currentUnit = null;
+    nErrors.set(0);
+    nWarnings.set(0);
+    nFiles.set(0);
+    SourceFileGenerator.resetUnchangedFileCount();
+    Profiler.stop();
+    TranslationContext.reset();
   }
 
   public static int getErrorCount() {
-    return nErrors;
+    return nErrors.get();
   }
 
   public static int getWarningCount() {
-    return nWarnings;
+    return nWarnings.get();
   }
 
-  private static void exit() {
-    printInfo(String.format("Translated %d %s: %d errors, %d warnings",
-        nFiles, nFiles == 1 ? "file" : "files", nErrors, nWarnings));
-    Options.deleteTemporaryDirectory();
-    System.exit(nErrors);
+  /**
+   * Enables assertions in the translator's packages.  This must be called
+   * before the translator's classes are loaded, since a class's assertion
+   * status is fixed when it is initialized.
+   */
+  private static void enableAssertions() {
+    ClassLoader loader = J2ObjC.class.getClassLoader();
+    if (loader != null) {
+      loader.setPackageAssertionStatus(J2ObjC.class.getPackage().getName(), true);
+    }
+  }
+
+  private static void printSummary() {
+    int files = nFiles.get();
+    int unchangedFiles = SourceFileGenerator.getUnchangedFileCount();
+    printInfo(String.format("Translated %d %s: %d errors, %d warnings%s",
+        files, files == 1 ? "file" : "files", nErrors.get(), nWarnings.get(),
+        unchangedFiles > 0 ? String.format(", %d unchanged output %s not rewritten",
+            unchangedFiles, unchangedFiles == 1 ? "file" : "files") : ""));
+    if (Options.verifyBindings() && logger.getLevel().intValue() <= Level.FINE.intValue()) {
+      out().println(String.format("binding verification time: %.3f",
+          inSeconds(Types.getBindingVerificationTime() / 1000000)));
+    }
+  }
+
+  /**
+   * Terminates the translator with an exit status.  When running as a
+   * server, only the current request is ended.
+   */
+  static void exit(int status) {
+    if (isServer) {
+      throw new ExitException(status);
+    }
+    System.exit(status);
+  }
+
+  static void setServer(boolean server) {
+    isServer = server;
   }
 
   private static void printInfo(String msg) {
     if (logger.getLevel().intValue() <= Level.INFO.intValue()) {
-      System.out.println(msg);
+      out().println(msg);
     }
   }
 
@@ -676,7 +1118,7 @@ public class J2ObjC {
   private static void printTimingInfo(long read, long compile, long translate,
       long write, long total) {
     if (logger.getLevel().intValue() <= Level.FINE.intValue()) {
-      System.out.println(
+      out().println(
         String.format("time: read=%.3f compile=%.3f translate=%.3f write=%.3f total=%.3f",
         inSeconds(read), inSeconds(compile), inSeconds(translate),
         inSeconds(write), inSeconds(total)));
@@ -708,6 +1150,22 @@ public class J2ObjC {
 
   private static void initPlugins(String[] pluginPaths, String pluginOptionString)
       throws IOException {
+    // Plugins are reused when a server is given the same, unmodified plugin
+    // jars and options again, and are restarted for each request.
+    StringBuilder key = new StringBuilder(pluginOptionString);
+    for (String path : pluginPaths) {
+      File file = new File(path);
+      key.append('\0').append(path).append('\0').append(file.lastModified())
+          .append('\0').append(file.length());
+    }
+    if (key.toString().equals(loadedPluginsKey)) {
+      for (Plugin plugin : loadedPlugins) {
+        plugin.beginProcessing();
+        Options.getPlugins().add(plugin);
+      }
+      return;
+    }
+    loadedPluginsKey = null;
     JarFileLoader classLoader = new JarFileLoader();
     for (String path : pluginPaths) {
       if (path.endsWith(".jar")) {
@@ -740,29 +1198,71 @@ public class J2ObjC {
         logger.warning("Don't understand plugin path entry: " + path);
       }
     }
+    loadedPlugins = Lists.newArrayList(Options.getPlugins());
+    loadedPluginsKey = key.toString();
+  }
+
+  /**
+   * Discards the loaded method mappings if the mapping files differ from
+   * those of a previous run, or were modified since then.
+   */
+  private static synchronized void checkMappingFiles() {
+    StringBuilder key = new StringBuilder();
+    for (String name : Options.getMappingFiles()) {
+      key.append(name).append('\0').append(new File(name).lastModified()).append('\0');
+    }
+    if (!key.toString().equals(loadedMappingsKey)) {
+      Options.setMethodMappings(null);
+      loadedMappingsKey = key.toString();
+    }
   }
 
   public static void error(Exception e) {
     logger.log(Level.SEVERE, "Exiting due to exception", e);
-    System.exit(1);
+    exit(1);
   }
 
   /**
    * Entry point for tool.
    *
    * @param args command-line arguments: flags and source file names
-   * @throws IOException
    */
   public static void main(String[] args) {
+    exit(run(args));
+  }
+
+  /**
+   * Runs the translator with a command-line, returning its exit status.
+   */
+  static int run(String[] args) {
     String[] files = null;
     try {
       files = Options.load(args);
-      if (files.length == 0) {
-        Options.help(); // Exits, due to no files specified.
-      }
     } catch (IOException e) {
       error(e.getMessage());
-      System.exit(1);
+      return 1;
+    }
+    // A class's assertion status is fixed once it's initialized, so a
+    // server's requests can't change it.  Instead, a server started with
+    // --verify-bindings runs every request with assertions enabled.
+    if (Options.verifyBindings() && !isServer) {
+      enableAssertions();
+    }
+    if (Options.getServerPort() != 0) {
+      if (isServer) {
+        error("a translation server cannot start another server");
+        return 1;
+      }
+      try {
+        new TranslationServer(Options.getServerPort()).serve();
+        return 0;
+      } catch (IOException e) {
+        error(e.getMessage());
+        return 1;
+      }
+    }
+    if (files.length == 0) {
+      Options.help(); // Exits, due to no files specified.
     }
     J2ObjC compiler = new J2ObjC();
 
@@ -771,39 +1271,28 @@ public class J2ObjC {
     } catch (IOException e) {
       error(e);
     }
+    checkMappingFiles();
 
-    // Remove dead-code first, so modified file paths are replaced in the
-    // translation list.
-    int beginningErrorLevel = compiler.getCurrentErrorLevel();
-    try {
-      files = compiler.removeDeadCode(files);
-    } catch (IOException e) {
-      error(e.getMessage());
-    }
-    if (compiler.getCurrentErrorLevel() > beginningErrorLevel) {
-      return;
+    nFiles.set(0);
+    if (Options.getProfileFile() != null) {
+      Profiler.start();
     }
-
-    nFiles = 0;
-    for (int i = 0; i < files.length; i++) {
-      String file = files[i];
+    boolean translated = compiler.translateAll(files);
+    Profiler profiler = Profiler.stop();
+    if (profiler != null) {
       try {
-        if (file.endsWith(".java")) {  // Eclipse may send all project entities.
-          printInfo("translating " + file);
-          compiler.translate(file);
-          nFiles++;
-        } else if (file.endsWith(".jar")) {
-          translateSourceJar(compiler, file);
-        }
+        profiler.write(Options.getProfileFile());
       } catch (IOException e) {
         error(e.getMessage());
       }
     }
-
-    for (Plugin plugin : Options.getPlugins()) {
-      plugin.endProcessing(Options.getOutputDirectory());
+    if (translated) {
+      for (Plugin plugin : Options.getPlugins()) {
+        plugin.endProcessing(Options.getOutputDirectory());
+      }
+      printSummary();
     }
-
-    exit();
+    Options.deleteTemporaryDirectory();
+    return nErrors.get();
   }
 }
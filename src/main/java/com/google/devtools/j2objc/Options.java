@@ -24,10 +24,13 @@ import com.google.common.collect.Maps;
 import com.google.common.io.Resources;
 import com.google.devtools.j2objc.J2ObjC.Language;
 import com.google.devtools.j2objc.util.DeadCodeMap;
+import com.google.devtools.j2objc.util.MethodMappings;
+import com.google.devtools.j2objc.util.PrivateDirectory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
@@ -60,10 +63,23 @@ public class Options {
   private static boolean emitLineDirectives = false;
   private static boolean warningsAsErrors = false;
   private static boolean inlineFieldAccess = true;
-  private static Map<String, String> methodMappings = Maps.newLinkedHashMap();
+  private static boolean inlineArrayAccess = false;
+  private static boolean devirtualize = false;
+  private static boolean fastStringConcatenation = false;
+  private static boolean fastEnumeration = false;
+  private static boolean forwardDeclarations = false;
+  private static boolean packageHeaders = false;
+  private static MethodMappings methodMappings = null;
   private static boolean generateTestMain = true;
   private static boolean memoryDebug = false;
   private static boolean generateNativeStubs = false;
+  private static int batchTranslateMaximum = 0;
+  private static int threads = 1;
+  private static boolean verifyBindings = false;
+  private static File buildCacheFile = null;
+  private static File manifestFile = null;
+  private static File profileFile = null;
+  private static int serverPort = 0;
 
   private static DeadCodeMap deadCodeMap = null;
   private static File proGuardUsageFile = null;
@@ -167,6 +183,38 @@ public class Options {
           usage("--dead-code-report requires an argument");
         }
         proGuardUsageFile = new File(args[nArg]);
+      } else if (arg.equals("--build-cache")) {
+        if (++nArg == args.length) {
+          usage("--build-cache requires an argument");
+        }
+        buildCacheFile = new File(args[nArg]);
+      } else if (arg.equals("--manifest")) {
+        if (++nArg == args.length) {
+          usage("--manifest requires an argument");
+        }
+        manifestFile = new File(args[nArg]);
+      } else if (arg.equals("--profile")) {
+        if (++nArg == args.length) {
+          usage("--profile requires an argument");
+        }
+        profileFile = new File(args[nArg]);
+      } else if (arg.startsWith("--profile=")) {
+        profileFile = new File(arg.substring("--profile=".length()));
+      } else if (arg.equals("--server")) {
+        if (++nArg == args.length) {
+          usage("--server requires an argument");
+        }
+        serverPort = getIntArgument("--server", args[nArg]);
+      } else if (arg.equals("--batch-translate-maximum")) {
+        if (++nArg == args.length) {
+          usage("--batch-translate-maximum requires an argument");
+        }
+        batchTranslateMaximum = getIntArgument("--batch-translate-maximum", args[nArg]);
+      } else if (arg.equals("-j") || arg.equals("--threads")) {
+        if (++nArg == args.length) {
+          usage(arg + " requires an argument");
+        }
+        threads = Math.max(getIntArgument(arg, args[nArg]), 1);
       } else if (arg.equals("--prefix")) {
         if (++nArg == args.length) {
           usage("--prefix requires an argument");
@@ -199,12 +247,32 @@ public class Options {
         inlineFieldAccess = true;
       } else if (arg.equals("--no-inline-field-access")) {
         inlineFieldAccess = false;
+      } else if (arg.equals("--inline-array-access")) {
+        inlineArrayAccess = true;
+      } else if (arg.equals("--no-inline-array-access")) {
+        inlineArrayAccess = false;
+      } else if (arg.equals("--devirtualize")) {
+        devirtualize = true;
+      } else if (arg.equals("--no-devirtualize")) {
+        devirtualize = false;
+      } else if (arg.equals("--fast-string-concatenation")) {
+        fastStringConcatenation = true;
+      } else if (arg.equals("--no-fast-string-concatenation")) {
+        fastStringConcatenation = false;
+      } else if (arg.equals("--fast-enumeration")) {
+        fastEnumeration = true;
+      } else if (arg.equals("--no-fast-enumeration")) {
+        fastEnumeration = false;
       } else if (arg.equals("--generate-test-main")) {
         generateTestMain = true;
       } else if (arg.equals("--no-generate-test-main")) {
         generateTestMain = false;
       } else if (arg.equals("--no-package-directories")) {
         usePackageDirectories = false;
+      } else if (arg.equals("--forward-declarations")) {
+        forwardDeclarations = true;
+      } else if (arg.equals("--package-headers")) {
+        packageHeaders = true;
       } else if (arg.equals("-use-gc")) {
         checkMemoryManagementOption(MemoryManagementOption.GC);
       } else if (arg.equals("-use-arc")) {
@@ -225,6 +293,8 @@ public class Options {
         acceptJsniDelimiters = false;
       } else if (arg.equals("--mem-debug")) {
         memoryDebug = true;
+      } else if (arg.equals("--verify-bindings")) {
+        verifyBindings = true;
       } else if (arg.equals("--generate-native-stubs")) {
         generateNativeStubs = true;
       } else if (arg.startsWith("-h") || arg.equals("--help")) {
@@ -240,6 +310,9 @@ public class Options {
     if (memoryManagementOption == null) {
       memoryManagementOption = MemoryManagementOption.REFERENCE_COUNTING;
     }
+    if (packageHeaders && !usePackageDirectories) {
+      usage("--package-headers requires package directories");
+    }
 
     int nFiles = args.length - nArg;
     String[] files = new String[nFiles];
@@ -253,6 +326,19 @@ public class Options {
     return files;
   }
 
+  private static int getIntArgument(String flag, String argument) {
+    try {
+      int value = Integer.parseInt(argument);
+      if (value >= 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // Fall-through to usage message.
+    }
+    usage(flag + " requires a non-negative integer argument");
+    return 0;
+  }
+
   /**
    * Add prefix option, which has a format of "<package>=<prefix>".
    */
@@ -300,14 +386,62 @@ public class Options {
   }
 
   public static void usage(String invalidUseMsg) {
-    System.err.println("j2objc: " + invalidUseMsg);
-    System.err.println(usageMessage);
-    System.exit(1);
+    PrintStream err = TranslationContext.current().getErr();
+    err.println("j2objc: " + invalidUseMsg);
+    err.println(usageMessage);
+    J2ObjC.exit(1);
   }
 
   public static void help() {
-    System.err.println(helpMessage);
-    System.exit(0);
+    TranslationContext.current().getErr().println(helpMessage);
+    J2ObjC.exit(0);
+  }
+
+  /**
+   * Restores the per-invocation options to their default values, so that a
+   * translation server can load each request's command-line from scratch.
+   * The method mappings are not cleared, since they are expensive to load;
+   * the translator reloads them when the mapping files change.
+   */
+  public static void reset() {
+    sourcePathEntries = Lists.newArrayList(".");
+    classPathEntries = Lists.newArrayList(".");
+    pluginPathEntries = Lists.newArrayList();
+    pluginOptionString = "";
+    plugins = new ArrayList<Plugin>();
+    outputDirectory = new File(".");
+    usePackageDirectories = true;
+    language = Language.OBJECTIVE_C;
+    printConvertedSources = false;
+    ignoreMissingImports = false;
+    memoryManagementOption = null;
+    emitLineDirectives = false;
+    warningsAsErrors = false;
+    inlineFieldAccess = true;
+    inlineArrayAccess = false;
+    devirtualize = false;
+    fastStringConcatenation = false;
+    fastEnumeration = false;
+    forwardDeclarations = false;
+    packageHeaders = false;
+    generateTestMain = true;
+    memoryDebug = false;
+    generateNativeStubs = false;
+    batchTranslateMaximum = 0;
+    threads = 1;
+    verifyBindings = false;
+    buildCacheFile = null;
+    manifestFile = null;
+    profileFile = null;
+    serverPort = 0;
+    deadCodeMap = null;
+    proGuardUsageFile = null;
+    acceptJsniDelimiters = true;
+    mappingFiles.clear();
+    mappingFiles.add(JRE_MAPPINGS_FILE);
+    deleteTemporaryDirectory();
+    bootclasspath = null;
+    packagePrefixes.clear();
   }
 
   private static List<String> getPathArgument(String argument) {
@@ -389,6 +523,77 @@ public class Options {
     generateNativeStubs = value;
   }
 
+  /**
+   * Returns the maximum number of source files parsed together in a single
+   * ASTParser session, or zero if each file is parsed separately.
+   */
+  public static int batchTranslateMaximum() {
+    return batchTranslateMaximum;
+  }
+
+  public static void setBatchTranslateMaximum(int max) {
+    batchTranslateMaximum = max;
+  }
+
+  /**
+   * Returns the number of worker threads used to translate source files.
+   */
+  public static int threads() {
+    return threads;
+  }
+
+  public static void setThreads(int n) {
+    threads = n;
+  }
+
+  /**
+   * Returns the file that records what was translated by earlier runs, so
+   * unchanged files can be skipped, or null if every file is translated.
+   */
+  public static int getServerPort() {
+    return serverPort;
+  }
+
+  public static File getBuildCacheFile() {
+    return buildCacheFile;
+  }
+
+  public static void setBuildCacheFile(File file) {
+    buildCacheFile = file;
+  }
+
+  /**
+   * Returns the file where the files generated from each source file are
+   * listed, or null if no manifest is written.
+   */
+  public static File getManifestFile() {
+    return manifestFile;
+  }
+
+  public static void setManifestFile(File file) {
+    manifestFile = file;
+  }
+
+  public static File getProfileFile() {
+    return profileFile;
+  }
+
+  public static void setProfileFile(File file) {
+    profileFile = file;
+  }
+
+  /**
+   * If true, check that the translator's AST edits keep every node's binding
+   * resolvable, and enable the translator's internal assertions.
+   */
+  public static boolean verifyBindings() {
+    return verifyBindings;
+  }
+
+  public static void setVerifyBindings(boolean value) {
+    verifyBindings = value;
+  }
+
   /**
    * If true, put output files in sub-directories defined by
    * package declaration (like javac does).
@@ -413,6 +618,79 @@ public class Options {
     return inlineFieldAccess;
   }
 
+  /**
+   * If true, primitive array elements are accessed with the inline C
+   * functions declared by the array classes, instead of messages.
+   */
+  public static boolean inlineArrayAccess() {
+    return inlineArrayAccess;
+  }
+
+  public static void setInlineArrayAccess(boolean value) {
+    inlineArrayAccess = value;
+  }
+
+  /**
+   * If true, methods that can't be overridden are translated into C
+   * functions, which are called directly from their declaring class.
+   */
+  public static boolean devirtualize() {
+    return devirtualize;
+  }
+
+  public static void setDevirtualize(boolean value) {
+    devirtualize = value;
+  }
+
+  /**
+   * If true, string concatenations are translated into calls of the
+   * runtime's JreStrcat function instead of format strings, and strings
+   * that loops append to are built with a StringBuilder.
+   */
+  public static boolean fastStringConcatenation() {
+    return fastStringConcatenation;
+  }
+
+  public static void setFastStringConcatenation(boolean value) {
+    fastStringConcatenation = value;
+  }
+
+  /**
+   * If true, enhanced for statements over the java.util collections that
+   * support it are translated into Objective-C fast enumeration loops.
+   */
+  public static boolean fastEnumeration() {
+    return fastEnumeration;
+  }
+
+  public static void setFastEnumeration(boolean value) {
+    fastEnumeration = value;
+  }
+
+  /**
+   * If true, implementation files forward-declare the types they only
+   * declare variables and parameters of, instead of importing their headers.
+   */
+  public static boolean forwardDeclarations() {
+    return forwardDeclarations;
+  }
+
+  public static void setForwardDeclarations(boolean value) {
+    forwardDeclarations = value;
+  }
+
+  /**
+   * If true, write an umbrella header for each package that has translated
+   * types, which imports all of the package's headers.
+   */
+  public static boolean packageHeaders() {
+    return packageHeaders;
+  }
+
+  public static void setPackageHeaders(boolean value) {
+    packageHeaders = value;
+  }
+
   public static boolean useReferenceCounting() {
     return memoryManagementOption == MemoryManagementOption.REFERENCE_COUNTING;
   }
@@ -450,10 +728,30 @@ public class Options {
     return warningsAsErrors;
   }
 
-  public static Map<String, String> getMethodMappings() {
+  /**
+   * Returns the loaded method mappings, or null if they haven't been loaded.
+   */
+  public static MethodMappings getMethodMappings() {
     return methodMappings;
   }
 
+  public static void setMethodMappings(MethodMappings mappings) {
+    methodMappings = mappings;
+  }
+
+  /**
+   * Returns the directory where compiled method mappings are cached, in the
+   * user's private directory, or null if that directory can't be used.
+   */
+  public static File getMappingCacheDirectory() {
+    try {
+      return new File(PrivateDirectory.get(), "mappings");
+    } catch (IOException e) {
+      logger.log(Level.FINE, "not caching method mappings", e);
+      return null;
+    }
+  }
+
   public static List<String> getMappingFiles() {
     return mappingFiles;
   }
@@ -478,6 +776,10 @@ public class Options {
     return proGuardUsageFile;
   }
 
+  public static void setProGuardUsageFile(File file) {
+    proGuardUsageFile = file;
+  }
+
   public static DeadCodeMap getDeadCodeMap() {
     return deadCodeMap;
   }
@@ -24,9 +24,19 @@ import java.util.Map;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import com.google.common.base.Preconditions;
+import com.google.devtools.j2objc.types.BindingCollector;
 
 /**
  * A plugin invoked to do custom processing not part of J2ObjC.
+ * <p>
+ * When translating with several threads (the -j option), units are
+ * translated concurrently.  The translator synchronizes on the plugin when
+ * calling {@link #getBindingCollector} and {@link #processUnit}, so those
+ * are never called at the same time.  A returned BindingCollector is run
+ * without that lock, though, while other units are processed, so a plugin
+ * should return a new collector for each unit, or make its collector
+ * thread-safe.
+ * </p>
  *
  * @author Pankaj Kakkar
  */
@@ -64,9 +74,21 @@ public abstract class Plugin {
   /**
    * Called after options have been initialized and can be accessed via
    * getOption. Subclasses may override this to process any needed options.
+   * A translation server that reuses a plugin calls this again at the start
+   * of each request, after the previous request's endProcessing().
    */
   protected void beginProcessing() throws IOException { }
 
+  /**
+   * Returns a collector to run in the pass that builds the binding map for
+   * the given CompilationUnit, or null if this plugin doesn't need one.
+   * Called before the unit is translated, so collectors see the original
+   * source's nodes and bindings without walking the unit again.
+   */
+  public BindingCollector getBindingCollector(CompilationUnit unit) {
+    return null;
+  }
+
   /**
    * Called to process the given CompilationUnit after J2ObjC has processed
    * it.
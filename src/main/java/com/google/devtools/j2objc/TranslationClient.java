@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * A thin client for a j2objc translation server (see the --server flag).
+ * It forwards its command-line to the server, copies the server's output to
+ * its own, and exits with the translation's exit status.  It only uses
+ * JRE classes, so it starts quickly.  It must run as the server's user, so
+ * that it can read the server's token.
+ *
+ * <pre>
+ *   java -cp j2objc.jar com.google.devtools.j2objc.TranslationClient \
+ *       &lt;port&gt; [j2objc flags and files]
+ * </pre>
+ */
+public class TranslationClient {
+
+  /**
+   * Sends a command-line to the server listening on a port, returning
+   * the translation's exit status.
+   */
+  static int translate(int port, String[] args, PrintStream stdout, PrintStream stderr)
+      throws IOException {
+    String token = readToken(TranslationServer.getTokenFile(port));
+    Socket socket = new Socket(InetAddress.getByName(null), port);
+    try {
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      TranslationServer.writeString(out, TranslationServer.PROTOCOL);
+      TranslationServer.writeString(out, token);
+      TranslationServer.writeString(out, System.getProperty("user.dir"));
+      out.writeInt(args.length);
+      for (String arg : args) {
+        TranslationServer.writeString(out, arg);
+      }
+      out.flush();
+
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      while (true) {
+        int type = in.readByte();
+        if (type == TranslationServer.EXIT) {
+          stdout.flush();
+          stderr.flush();
+          return in.readInt();
+        }
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        PrintStream stream = type == TranslationServer.ERR ? stderr : stdout;
+        stream.write(bytes);
+        stream.flush();
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static String readToken(File tokenFile) throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(tokenFile));
+    try {
+      byte[] bytes = new byte[(int) tokenFile.length()];
+      in.readFully(bytes);
+      return new String(bytes, "UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.err.println("usage: TranslationClient <port> [j2objc arguments]");
+      System.exit(1);
+    }
+    int port = 0;
+    try {
+      port = Integer.parseInt(args[0]);
+    } catch (NumberFormatException e) {
+      System.err.println("invalid port: " + args[0]);
+      System.exit(1);
+    }
+    String[] translatorArgs = new String[args.length - 1];
+    System.arraycopy(args, 1, translatorArgs, 0, translatorArgs.length);
+    try {
+      System.exit(translate(port, translatorArgs, System.out, System.err));
+    } catch (IOException e) {
+      System.err.println("error: cannot reach j2objc server on port " + port + ": " + e);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.sym.Symbols;
+import com.google.devtools.j2objc.types.BindingCollector;
+import com.google.devtools.j2objc.types.SharedTypes;
+import com.google.devtools.j2objc.types.Types;
+import com.google.devtools.j2objc.util.NameTable;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of one compilation unit's translation: the unit and its source
+ * file name, the Types, NameTable and Symbols tables built for it, and the
+ * diagnostics reported while translating it.
+ * <p>
+ * Each thread has a current context, which is what the translator's static
+ * services like {@link Types}, {@link NameTable}, {@link Symbols} and
+ * {@link J2ObjC#error(String)} use.  Installing a separate context for each
+ * unit allows several translations to run in one JVM at the same time,
+ * without sharing any per-unit state.
+ * </p>
+ */
+public class TranslationContext {
+  private static final ThreadLocal<TranslationContext> current =
+      new ThreadLocal<TranslationContext>() {
+        @Override
+        protected TranslationContext initialValue() {
+          return new TranslationContext(null, null, null);
+        }
+      };
+
+  private final String fileName;
+  private final PrintStream out;
+  private final PrintStream err;
+
+  // The unit-independent type tables of each parser environment, keyed by
+  // the environment's java.lang.Object binding.  Shared by all contexts in a
+  // parser session, and null if this context isn't part of one.
+  private final Map<ITypeBinding, SharedTypes> sharedTypes;
+
+  private CompilationUnit unit;
+  private Types types;
+  private NameTable nameTable;
+  private Symbols symbols;
+  private final Set<IBinding> pendingBindings = Sets.newLinkedHashSet();
+  private final List<BindingCollector> bindingCollectors = Lists.newArrayList();
+  private final List<File> outputFiles = Lists.newArrayList();
+  private int errorCount = 0;
+  private int warningCount = 0;
+
+  /**
+   * Creates a context for translating a source file.
+   *
+   * @param fileName the name of the source file, as used in diagnostics
+   * @param out the stream for status messages, or null for System.out
+   * @param err the stream for diagnostics, or null for System.err
+   */
+  public TranslationContext(String fileName, PrintStream out, PrintStream err) {
+    this(fileName, out, err, null);
+  }
+
+  /**
+   * Creates a context for translating a source file, which reports to the
+   * same streams as a parent context, and is part of its parser session.
+   */
+  public TranslationContext(String fileName, TranslationContext parent) {
+    this(fileName, parent.out, parent.err, parent.sharedTypes);
+  }
+
+  private TranslationContext(String fileName, PrintStream out, PrintStream err,
+      Map<ITypeBinding, SharedTypes> sharedTypes) {
+    this.fileName = fileName;
+    this.out = out;
+    this.err = err;
+    this.sharedTypes = sharedTypes;
+  }
+
+  /**
+   * Creates a context for an ASTParser session, which reports to the same
+   * streams as a parent context.  The units translated in contexts created
+   * from it share the type tables that don't depend on a unit, and those
+   * tables are kept until the session's context is discarded.
+   */
+  public static TranslationContext newSession(TranslationContext parent) {
+    return new TranslationContext(null, parent.out, parent.err,
+        Maps.<ITypeBinding, SharedTypes>newHashMap());
+  }
+
+  /**
+   * Returns the current thread's translation context.
+   */
+  public static TranslationContext current() {
+    return current.get();
+  }
+
+  /**
+   * Makes this the current thread's translation context.
+   *
+   * @return the previous context, which should be passed to
+   *     {@link #restore} when this translation is done
+   */
+  public TranslationContext install() {
+    TranslationContext previous = current.get();
+    current.set(this);
+    return previous;
+  }
+
+  /**
+   * Reinstalls a context replaced by {@link #install}.
+   */
+  public static void restore(TranslationContext previous) {
+    current.set(previous);
+  }
+
+  /**
+   * Discards the current thread's context.
+   */
+  public static void reset() {
+    current.remove();
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public CompilationUnit getUnit() {
+    return unit;
+  }
+
+  public void setUnit(CompilationUnit unit) {
+    this.unit = unit;
+  }
+
+  public Types getTypes() {
+    return types;
+  }
+
+  public void setTypes(Types types) {
+    this.types = types;
+  }
+
+  public NameTable getNameTable() {
+    return nameTable;
+  }
+
+  public void setNameTable(NameTable nameTable) {
+    this.nameTable = nameTable;
+  }
+
+  public Symbols getSymbols() {
+    return symbols;
+  }
+
+  public void setSymbols(Symbols symbols) {
+    this.symbols = symbols;
+  }
+
+  /**
+   * Returns the bindings created by the translator that still need to be
+   * added to this unit's symbol table.
+   */
+  public Set<IBinding> getPendingBindings() {
+    return pendingBindings;
+  }
+
+  /**
+   * Adds a collector to run when this unit's binding map is built.
+   */
+  public void addBindingCollector(BindingCollector collector) {
+    bindingCollectors.add(collector);
+  }
+
+  public List<BindingCollector> getBindingCollectors() {
+    return bindingCollectors;
+  }
+
+  /**
+   * Records a file generated from this unit.
+   */
+  public void addOutputFile(File file) {
+    outputFiles.add(file);
+  }
+
+  public List<File> getOutputFiles() {
+    return outputFiles;
+  }
+
+  /**
+   * Returns the shared type tables of this context's parser session, or
+   * null if it isn't part of one.
+   */
+  public Map<ITypeBinding, SharedTypes> getSharedTypes() {
+    return sharedTypes;
+  }
+
+  public PrintStream getOut() {
+    return out != null ? out : System.out;
+  }
+
+  public PrintStream getErr() {
+    return err != null ? err : System.err;
+  }
+
+  public int getErrorCount() {
+    return errorCount;
+  }
+
+  public int getWarningCount() {
+    return warningCount;
+  }
+
+  void addError() {
+    errorCount++;
+  }
+
+  void addWarning() {
+    warningCount++;
+  }
+}
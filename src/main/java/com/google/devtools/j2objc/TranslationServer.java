@@ -0,0 +1,266 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.util.PrivateDirectory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the translator as a long-lived process, so that JVM startup, class
+ * loading and JIT compilation, the method mapping files, plugins and the
+ * boot classpath's shared type tables are paid for once instead of on every
+ * invocation.  Requests are command-lines sent by {@link TranslationClient}
+ * over a loopback socket; each one is translated as if j2objc had been run
+ * with it, with its output and exit status returned to the client.
+ *
+ * <p>Requests are translated one at a time, since the translator's options
+ * are global.  A request may still use multiple threads (-j).
+ *
+ * <p>Any local user can connect to the port, so the server only accepts
+ * requests that include a random token, which it writes to a file in the
+ * user's private directory (see {@link #getTokenFile(int)}).
+ *
+ * <p>The protocol is: the client sends {@link #PROTOCOL}, the token, its
+ * working directory and its arguments as strings, then the server replies
+ * with {@link #OUT} and {@link #ERR} frames of output, followed by an
+ * {@link #EXIT} frame holding the exit status.
+ */
+class TranslationServer {
+  static final String PROTOCOL = "j2objc-server 2";
+
+  // Frame types sent to the client.
+  static final int OUT = 'O';
+  static final int ERR = 'E';
+  static final int EXIT = 'X';
+
+  // Limits on a request, so a bad one can't exhaust the server's memory.
+  private static final int MAX_STRING_LENGTH = 1 << 20;
+  private static final int MAX_ARGUMENTS = 1 << 16;
+
+  // How long to wait for a client to send its request.
+  private static final int REQUEST_TIMEOUT_MILLIS = 30 * 1000;
+
+  private static final Logger logger = Logger.getLogger(TranslationServer.class.getName());
+
+  private final int port;
+
+  TranslationServer(int port) {
+    this.port = port;
+  }
+
+  /**
+   * Accepts and translates requests until the process is killed.
+   */
+  void serve() throws IOException {
+    serve(new ServerSocket(port, 50, InetAddress.getByName(null)));
+  }
+
+  /**
+   * Accepts and translates requests until the socket is closed.
+   */
+  static void serve(ServerSocket serverSocket) throws IOException {
+    int port = serverSocket.getLocalPort();
+    File tokenFile = getTokenFile(port);
+    J2ObjC.setServer(true);
+    try {
+      String token = writeToken(tokenFile);
+      TranslationContext.current().getOut().println(
+          "j2objc server listening on port " + port);
+      while (true) {
+        Socket socket = serverSocket.accept();
+        try {
+          socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+          handle(socket, token);
+        } catch (IOException e) {
+          logger.log(Level.WARNING, "request failed", e);
+        } catch (RuntimeException e) {
+          logger.log(Level.WARNING, "request failed", e);
+        } finally {
+          socket.close();
+        }
+      }
+    } finally {
+      J2ObjC.setServer(false);
+      tokenFile.delete();
+      serverSocket.close();
+    }
+  }
+
+  /**
+   * Returns the file holding the token of the server on a port.
+   */
+  static File getTokenFile(int port) throws IOException {
+    return new File(PrivateDirectory.get(), "server-" + port + ".token");
+  }
+
+  /**
+   * Writes a new random token to a file that only the user can read.
+   */
+  private static String writeToken(File tokenFile) throws IOException {
+    byte[] bytes = new byte[16];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder token = new StringBuilder();
+    for (byte b : bytes) {
+      token.append(String.format("%02x", b & 0xff));
+    }
+    if (tokenFile.exists() && !tokenFile.delete()) {
+      throw new IOException("cannot replace server token: " + tokenFile);
+    }
+    if (!tokenFile.createNewFile()) {
+      throw new IOException("cannot create server token: " + tokenFile);
+    }
+    PrivateDirectory.restrictToOwner(tokenFile);
+    Files.write(token, tokenFile, Charsets.UTF_8);
+    return token.toString();
+  }
+
+  private static void handle(Socket socket, String token) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    if (!readString(in).equals(PROTOCOL)) {
+      throw new IOException("unsupported client protocol");
+    }
+    if (!MessageDigest.isEqual(readString(in).getBytes(Charsets.UTF_8),
+        token.getBytes(Charsets.UTF_8))) {
+      throw new IOException("invalid server token");
+    }
+    String workingDirectory = readString(in);
+    String[] args = new String[readLength(in, MAX_ARGUMENTS)];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = readString(in);
+    }
+
+    PrintStream requestOut = new PrintStream(new FrameOutputStream(out, OUT), true);
+    PrintStream requestErr = new PrintStream(new FrameOutputStream(out, ERR), true);
+    int status;
+    if (!workingDirectory.equals(System.getProperty("user.dir"))) {
+      // Relative paths are resolved against the server's directory.
+      requestErr.println("error: the j2objc server is running in " + System.getProperty("user.dir")
+          + ", not " + workingDirectory);
+      status = 1;
+    } else {
+      status = translate(args, requestOut, requestErr);
+    }
+    requestOut.flush();
+    requestErr.flush();
+    synchronized (out) {
+      out.writeByte(EXIT);
+      out.writeInt(status);
+      out.flush();
+    }
+  }
+
+  /**
+   * Translates a request's command-line, returning its exit status.
+   */
+  static int translate(String[] args, PrintStream out, PrintStream err) {
+    J2ObjC.reset();
+    TranslationContext previous = new TranslationContext(null, out, err).install();
+    try {
+      Options.reset();
+      return J2ObjC.run(args);
+    } catch (J2ObjC.ExitException e) {
+      return e.getStatus();
+    } catch (RuntimeException e) {
+      // Report translator failures without taking the server down.
+      e.printStackTrace(err);
+      return 1;
+    } catch (AssertionError e) {
+      e.printStackTrace(err);
+      return 1;
+    } finally {
+      Options.deleteTemporaryDirectory();
+      TranslationContext.restore(previous);
+    }
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[readLength(in, MAX_STRING_LENGTH)];
+    in.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private static int readLength(DataInputStream in, int max) throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > max) {
+      throw new IOException("invalid request length: " + length);
+    }
+    return length;
+  }
+
+  static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Sends everything written to it as frames of one type.  Frames are
+   * written atomically, since a request's threads share the connection.
+   */
+  private static class FrameOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final int type;
+
+    FrameOutputStream(DataOutputStream out, int type) {
+      this.out = out;
+      this.type = type;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      synchronized (out) {
+        out.writeByte(type);
+        out.writeInt(len);
+        out.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (out) {
+        out.flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.types.Types;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.NumberLiteral;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the array accesses in a for loop whose index is always in range, so
+ * they don't need bounds checks.  The loop must have the form
+ * <pre>
+ *   for (int i = 0; i &lt; a.length; i++) { ... a[i] ... }
+ * </pre>
+ * where a is a local variable or parameter, the index starts at a
+ * non-negative literal, and neither a nor i is assigned in the loop body.
+ * The bound may also be a local variable initialized to a.length, either
+ * in the loop's initializers or in an earlier statement of the enclosing
+ * block, that isn't assigned after it's declared.  The loops that replace
+ * enhanced for statements over arrays have this form.
+ * <p>
+ * Since the condition reads a's length, a is also known to be non-nil in
+ * the loop body.
+ * </p>
+ */
+class ArrayBoundsAnalyzer {
+
+  private ArrayBoundsAnalyzer() {
+    // Don't instantiate.
+  }
+
+  /**
+   * Returns the accesses in a loop's body whose index is in range, or an
+   * empty list if the loop doesn't have the required form.
+   */
+  static List<ArrayAccess> findInBoundsAccesses(ForStatement loop) {
+    @SuppressWarnings("unchecked")
+    List<Expression> initializers = loop.initializers(); // safe by definition
+    if (initializers.size() != 1
+        || !(initializers.get(0) instanceof VariableDeclarationExpression)) {
+      return Collections.emptyList();
+    }
+
+    // Find the index, and any bounds declared with it.
+    IVariableBinding index = null;
+    Map<IVariableBinding, IVariableBinding> bounds = Maps.newIdentityHashMap();
+    @SuppressWarnings("unchecked")
+    List<VariableDeclarationFragment> fragments =
+        ((VariableDeclarationExpression) initializers.get(0)).fragments();
+    for (VariableDeclarationFragment fragment : fragments) {
+      IBinding binding = Types.getBinding(fragment);
+      if (!(binding instanceof IVariableBinding)) {
+        return Collections.emptyList();
+      }
+      IVariableBinding var = (IVariableBinding) binding;
+      Expression init = fragment.getInitializer();
+      IVariableBinding array = getLengthArray(init);
+      if (array != null) {
+        bounds.put(var, array);
+      } else if (index == null && var.getType().getName().equals("int")
+          && isNonNegativeLiteral(init)) {
+        index = var;
+      }
+    }
+    if (index == null) {
+      return Collections.emptyList();
+    }
+
+    // The condition must be "index < a.length" or "index < bound".
+    if (!(loop.getExpression() instanceof InfixExpression)) {
+      return Collections.emptyList();
+    }
+    InfixExpression condition = (InfixExpression) loop.getExpression();
+    if (condition.getOperator() != InfixExpression.Operator.LESS
+        || condition.hasExtendedOperands()
+        || getLocalVariable(condition.getLeftOperand()) != index) {
+      return Collections.emptyList();
+    }
+    // Bindings are compared by identity, since generated variables with the
+    // same name and type are equal, such as those of nested loops.
+    Set<IVariableBinding> unassigned = Sets.newIdentityHashSet();
+    unassigned.add(index);
+    Expression limit = condition.getRightOperand();
+    IVariableBinding array = getLengthArray(limit);
+    if (array == null) {
+      IVariableBinding bound = getLocalVariable(limit);
+      if (bound == null) {
+        return Collections.emptyList();
+      }
+      array = bounds.get(bound);
+      if (array == null) {
+        array = getDeclaredLengthArray(loop, bound);
+        if (array == null) {
+          return Collections.emptyList();
+        }
+      }
+      unassigned.add(bound);
+    }
+    unassigned.add(array);
+
+    // The index must only be incremented by one, by the updater.
+    @SuppressWarnings("unchecked")
+    List<Expression> updaters = loop.updaters(); // safe by definition
+    if (updaters.size() != 1 || !isIncrement(updaters.get(0), index)) {
+      return Collections.emptyList();
+    }
+    if (assignsAny(loop.getBody(), unassigned)
+        || assignsAny(loop.getExpression(), unassigned)) {
+      return Collections.emptyList();
+    }
+
+    final IVariableBinding arrayVar = array;
+    final IVariableBinding indexVar = index;
+    final List<ArrayAccess> accesses = Lists.newArrayList();
+    loop.getBody().accept(new ASTVisitor() {
+      @Override
+      public void endVisit(ArrayAccess node) {
+        if (getLocalVariable(node.getArray()) == arrayVar
+            && getLocalVariable(node.getIndex()) == indexVar) {
+          accesses.add(node);
+        }
+      }
+    });
+    return accesses;
+  }
+
+  /**
+   * Returns the local variable a bound is declared as the length of, by an
+   * earlier statement in the loop's block.  Neither variable may be assigned
+   * between that declaration and the loop.
+   */
+  private static IVariableBinding getDeclaredLengthArray(ForStatement loop,
+      IVariableBinding bound) {
+    if (!(loop.getParent() instanceof Block)) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    List<Statement> stmts = ((Block) loop.getParent()).statements(); // safe by definition
+    int loopIndex = stmts.indexOf(loop);
+    for (int i = loopIndex - 1; i >= 0; i--) {
+      if (!(stmts.get(i) instanceof VariableDeclarationStatement)) {
+        continue;
+      }
+      @SuppressWarnings("unchecked")
+      List<VariableDeclarationFragment> fragments =
+          ((VariableDeclarationStatement) stmts.get(i)).fragments();
+      for (VariableDeclarationFragment fragment : fragments) {
+        if (Types.getBinding(fragment) == bound) {
+          IVariableBinding array = getLengthArray(fragment.getInitializer());
+          if (array == null) {
+            return null;
+          }
+          Set<IVariableBinding> vars = Sets.newIdentityHashSet();
+          vars.add(bound);
+          vars.add(array);
+          for (Statement stmt : stmts.subList(i, loopIndex)) {
+            if (assignsAny(stmt, vars)) {
+              return null;
+            }
+          }
+          return array;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * If an expression is a local array variable's length, returns the
+   * variable.
+   */
+  private static IVariableBinding getLengthArray(Expression e) {
+    Expression array;
+    String name;
+    if (e instanceof QualifiedName) {
+      array = ((QualifiedName) e).getQualifier();
+      name = ((QualifiedName) e).getName().getIdentifier();
+    } else if (e instanceof FieldAccess) {
+      array = ((FieldAccess) e).getExpression();
+      name = ((FieldAccess) e).getName().getIdentifier();
+    } else {
+      return null;
+    }
+    IVariableBinding var = getLocalVariable(array);
+    return var != null && var.getType().isArray() && name.equals("length") ? var : null;
+  }
+
+  /**
+   * If an expression is a local variable or parameter, returns its binding.
+   */
+  private static IVariableBinding getLocalVariable(Expression e) {
+    if (e instanceof SimpleName) {
+      IVariableBinding var = Types.getVariableBinding(e);
+      if (var != null && !var.isField()) {
+        return var;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isNonNegativeLiteral(Expression e) {
+    if (e instanceof NumberLiteral) {
+      try {
+        return Integer.parseInt(((NumberLiteral) e).getToken()) >= 0;
+      } catch (NumberFormatException ex) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isIncrement(Expression e, IVariableBinding var) {
+    if (e instanceof PostfixExpression) {
+      PostfixExpression postfix = (PostfixExpression) e;
+      return postfix.getOperator() == PostfixExpression.Operator.INCREMENT
+          && getLocalVariable(postfix.getOperand()) == var;
+    } else if (e instanceof PrefixExpression) {
+      PrefixExpression prefix = (PrefixExpression) e;
+      return prefix.getOperator() == PrefixExpression.Operator.INCREMENT
+          && getLocalVariable(prefix.getOperand()) == var;
+    } else if (e instanceof Assignment) {
+      Assignment assignment = (Assignment) e;
+      return assignment.getOperator() == Assignment.Operator.PLUS_ASSIGN
+          && getLocalVariable(assignment.getLeftHandSide()) == var
+          && assignment.getRightHandSide() instanceof NumberLiteral
+          && ((NumberLiteral) assignment.getRightHandSide()).getToken().equals("1");
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if a node assigns, increments or decrements any of a set of
+   * variables.
+   */
+  private static boolean assignsAny(ASTNode node, final Set<IVariableBinding> vars) {
+    final boolean[] result = { false };
+    node.accept(new ASTVisitor() {
+      @Override
+      public void endVisit(Assignment node) {
+        check(node.getLeftHandSide());
+      }
+
+      @Override
+      public void endVisit(PostfixExpression node) {
+        check(node.getOperand());
+      }
+
+      @Override
+      public void endVisit(PrefixExpression node) {
+        PrefixExpression.Operator op = node.getOperator();
+        if (op == PrefixExpression.Operator.INCREMENT
+            || op == PrefixExpression.Operator.DECREMENT) {
+          check(node.getOperand());
+        }
+      }
+
+      private void check(Expression e) {
+        IVariableBinding var = getLocalVariable(e);
+        if (var != null && vars.contains(var)) {
+          result[0] = true;
+        }
+      }
+    });
+    return result[0];
+  }
+}
@@ -70,7 +70,11 @@ public class ObjectiveCHeaderGenerator extends ObjectiveCSourceFileGenerator {
   public static void generate(String fileName, String source, CompilationUnit unit) {
     ObjectiveCHeaderGenerator headerGenerator =
         new ObjectiveCHeaderGenerator(fileName, source, unit);
-    headerGenerator.generate(unit);
+    try {
+      headerGenerator.generate(unit);
+    } finally {
+      headerGenerator.close();
+    }
   }
 
   private ObjectiveCHeaderGenerator(String fileName, String source, CompilationUnit unit) {
@@ -83,6 +87,7 @@ public class ObjectiveCHeaderGenerator extends ObjectiveCSourceFileGenerator {
   }
 
   public void generate(CompilationUnit unit) {
+    open(unit);
     println(J2ObjC.getFileHeader(getSourceFileName()));
 
     @SuppressWarnings("unchecked")
@@ -52,6 +52,7 @@ import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -73,7 +74,11 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
       String source) {
     ObjectiveCImplementationGenerator implementationGenerator =
         new ObjectiveCImplementationGenerator(fileName, language, unit, source);
-    implementationGenerator.generate(unit);
+    try {
+      implementationGenerator.generate(unit);
+    } finally {
+      implementationGenerator.close();
+    }
   }
 
   private ObjectiveCImplementationGenerator(String fileName, Language language,
@@ -89,6 +94,7 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
   }
 
   public void generate(CompilationUnit unit) {
+    open(unit);
     println(J2ObjC.getFileHeader(getSourceFileName()));
     if (needsPrinting(unit)) {
       findInvokedConstructors(unit);
@@ -231,6 +237,7 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
   }
 
   private void printMethods(TypeDeclaration node) {
+    printFunctionDeclarations(node);
     printMethods(Lists.newArrayList(node.getMethods()));
 
     // If node implements CharSequence, add forwarding method from the
@@ -470,9 +477,8 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
       if (args.isEmpty() && isSimpleEnum) {
         printf("WithNSString:@\"%s\" withInt:%d];\n", name, i);
       } else {
-        String argString = StatementGenerator.generateArguments(Types.getMethodBinding(constant),
-            args, fieldHiders, getBuilder().getSourcePosition());
-        print(argString);
+        StatementGenerator.generateArguments(Types.getMethodBinding(constant), args, fieldHiders,
+            getBuilder());
         if (args.isEmpty()) {
           print("With");
         } else {
@@ -491,8 +497,8 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
       @SuppressWarnings("unchecked")
       List<Statement> stmts = initializeMethod.getBody().statements(); // safe by definition
       for (Statement s : stmts) {
-        printf("    %s", StatementGenerator.generate(s, fieldHiders, false,
-            getBuilder().getSourcePosition()));
+        print("    ");
+        printStatement(s, false);
       }
     }
     println("  }\n}\n");
@@ -521,19 +527,107 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
   }
 
   @Override
-  protected String methodDeclaration(MethodDeclaration m) {
+  protected void printMethod(MethodDeclaration m) {
     int modifiers = m.getModifiers();
     if ((modifiers & Modifier.NATIVE) > 0) {
       if (hasNativeCode(m)) {
-        return super.methodDeclaration(m) + " " + extractNativeMethodBody(m) + "\n\n";
+        print(methodDeclaration(m) + " ");
+        indent();
+        printNativeCode(m);
+        unindent();
+        print("\n\n");
       } else if (Options.generateNativeStubs()) {
-        return super.methodDeclaration(m) + " " + generateNativeStub(m) + "\n\n";
-      } else {
-        return "";
+        print(methodDeclaration(m) + " " + generateNativeStub(m) + "\n\n");
+      }
+      return;
+    }
+    if (Types.isDirectMethod(Types.getMethodBinding(m))) {
+      printDirectMethod(m);
+      return;
+    }
+    print(methodDeclaration(m) + " ");
+    printMethodBody(m, false);
+    print("\n\n");
+  }
+
+  /**
+   * Declares the functions of a class's devirtualized methods, so they can
+   * be called before they're defined.
+   */
+  private void printFunctionDeclarations(TypeDeclaration node) {
+    boolean printed = false;
+    for (MethodDeclaration m : node.getMethods()) {
+      if (Types.isDirectMethod(Types.getMethodBinding(m))) {
+        println(functionDeclaration(m) + ';');
+        printed = true;
       }
     }
-    String methodBody = generateMethodBody(m);
-    return super.methodDeclaration(m) + " " + reindent(methodBody) + "\n\n";
+    if (printed) {
+      newline();
+    }
+  }
+
+  /**
+   * Prints a devirtualized method as a C function, followed by a method
+   * that calls it for other classes and reflection.
+   */
+  private void printDirectMethod(MethodDeclaration m) {
+    print(functionDeclaration(m) + " ");
+    printMethodBody(m, true);
+    print("\n\n");
+
+    IMethodBinding binding = Types.getMethodBinding(m);
+    StringBuilder call = new StringBuilder(NameTable.getFunctionName(binding)).append('(');
+    String separator = "";
+    if (!Modifier.isStatic(m.getModifiers())) {
+      call.append("self");
+      separator = ", ";
+    }
+    @SuppressWarnings("unchecked")
+    List<SingleVariableDeclaration> params = m.parameters(); // safe by definition
+    for (SingleVariableDeclaration param : params) {
+      call.append(separator).append(getParameterName(param));
+      separator = ", ";
+    }
+    call.append(')');
+    String returnPrefix = Types.isVoidType(m.getReturnType2()) ? "" : "return ";
+    print(methodDeclaration(m) + " {\n  " + returnPrefix + call + ";\n}\n\n");
+  }
+
+  /**
+   * Returns the declaration of a devirtualized method's function.  Instance
+   * methods have an explicit self parameter.
+   */
+  private String functionDeclaration(MethodDeclaration m) {
+    IMethodBinding binding = Types.getMethodBinding(m);
+    StringBuilder sb = new StringBuilder("static ");
+    appendDeclaration(sb, NameTable.javaRefToObjC(m.getReturnType2()),
+        NameTable.getFunctionName(binding));
+    sb.append('(');
+    String separator = "";
+    if (!Modifier.isStatic(m.getModifiers())) {
+      sb.append(NameTable.getFullName(binding.getDeclaringClass())).append(" *self");
+      separator = ", ";
+    }
+    @SuppressWarnings("unchecked")
+    List<SingleVariableDeclaration> params = m.parameters(); // safe by definition
+    for (SingleVariableDeclaration param : params) {
+      sb.append(separator);
+      appendDeclaration(sb, NameTable.javaRefToObjC(param.getType()), getParameterName(param));
+      separator = ", ";
+    }
+    if (separator.isEmpty()) {
+      sb.append("void");
+    }
+    return sb.append(')').toString();
+  }
+
+  private static void appendDeclaration(StringBuilder sb, String type, String name) {
+    sb.append(type);
+    if (!type.endsWith("*")) {
+      sb.append(' ');
+    }
+    sb.append(name);
   }
 
   private String generateNativeStub(MethodDeclaration m) {
@@ -543,44 +637,44 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
   }
 
   @Override
-  protected String mappedMethodDeclaration(MethodDeclaration method, IOSMethod mappedMethod) {
-    String methodBody;
+  protected void printMappedMethod(MethodDeclaration method, IOSMethod mappedMethod) {
     if ((method.getModifiers() & Modifier.NATIVE) > 0) {
       if (hasNativeCode(method)) {
-        methodBody = extractNativeMethodBody(method);
-      } else {
-        return "";
+        print(mappedMethodDeclaration(method, mappedMethod) + " ");
+        printNativeCode(method);
+        print("\n\n");
       }
     } else {
-      methodBody = generateMethodBody(method);
+      print(mappedMethodDeclaration(method, mappedMethod) + " ");
+      printMethodBody(method, false);
+      print("\n\n");
     }
-    return super.mappedMethodDeclaration(method, mappedMethod)
-        + " " + reindent(methodBody) + "\n\n";
   }
 
-  private String generateMethodBody(MethodDeclaration m) {
+  private void printMethodBody(MethodDeclaration m, boolean asFunction) {
+    beginReindent();
     if (Modifier.isAbstract(m.getModifiers())) {
       // Generate a body which throws a NSInvalidArgumentException.
-      String body =
-          "{\n // can't call an abstract method\n " +
-              "[self doesNotRecognizeSelector:_cmd];\n ";
+      print("{\n // can't call an abstract method\n [self doesNotRecognizeSelector:_cmd];\n ");
       if (!Types.isVoidType(m.getReturnType2())) {
-        body += "return 0;\n"; // Never executes, but avoids a gcc warning.
+        print("return 0;\n"); // Never executes, but avoids a gcc warning.
+      }
+      print("}");
+    } else {
+      // generate a normal method body
+      boolean isStatic = (m.getModifiers() & Modifier.STATIC) != 0;
+      boolean isSynchronized = (m.getModifiers() & Modifier.SYNCHRONIZED) != 0;
+      if (isStatic && isSynchronized) {
+        print("{\n@synchronized([self class]) {\n");
+      } else if (isSynchronized) {
+        print("{\n@synchronized(self) {\n");
+      }
+      printStatement(m.getBody(), asFunction);
+      if (isSynchronized) {
+        print("}\n}\n");
       }
-      return body + "}";
-    }
-    // generate a normal method body
-    String methodBody = generateStatement(m.getBody(), false);
-
-    boolean isStatic = (m.getModifiers() & Modifier.STATIC) != 0;
-    boolean isSynchronized = (m.getModifiers() & Modifier.SYNCHRONIZED) != 0;
-    if (isStatic && isSynchronized) {
-      methodBody = reindent("{\n@synchronized([self class]) {\n" + methodBody + "}\n}\n");
-    } else if (isSynchronized) {
-      methodBody = reindent("{\n@synchronized(self) {\n" + methodBody + "}\n}\n");
     }
-
-    return methodBody;
+    endReindent();
   }
 
   @Override
@@ -591,109 +685,73 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
   }
 
   @Override
-  protected String mappedConstructorDeclaration(MethodDeclaration m, IOSMethod mappedMethod) {
-    String methodBody;
+  protected void printMappedConstructor(MethodDeclaration m, IOSMethod mappedMethod) {
     IMethodBinding binding = Types.getMethodBinding(m);
-    boolean memDebug = Options.memoryDebug();
     @SuppressWarnings("unchecked")
     List<Statement> statements = m.getBody().statements();
     if (binding.getDeclaringClass().isEnum()) {
-      return enumConstructorDeclaration(m, statements, binding);
-    } else if (statements.isEmpty()) {
-      methodBody = memDebug ?
-          "{\nreturn (self = JreMemDebugAdd([super init]));\n}" :
-          "{\nreturn (self = [super init]);\n}";
-    } else if (statements.size() == 1 &&
-        (statements.get(0) instanceof ConstructorInvocation ||
-         statements.get(0) instanceof SuperConstructorInvocation)) {
-      if (memDebug) {
-        methodBody = "{\nreturn JreMemDebugAdd(" +
-            generateStatement(statements.get(0), false, true) + ");\n}";
-      } else {
-        methodBody = "{\nreturn " + generateStatement(statements.get(0), false, true) + ";\n}";
-      }
+      printEnumConstructor(m, statements, binding);
     } else {
-      StringBuffer sb = new StringBuffer();
-      Statement first = statements.get(0);
-      boolean firstPrinted = false;
-      sb.append("{\nif ((self = ");
-      if (first instanceof ConstructorInvocation ||
-          first instanceof SuperConstructorInvocation) {
-        sb.append(generateStatement(first, false, true));
-        firstPrinted = true;
-      } else {
-        sb.append("[super init]");
-      }
-      sb.append(")) {\n");
-      for (int i = firstPrinted ? 1 : 0; i < statements.size(); i++) {
-        sb.append(generateStatement(statements.get(i), false, true));
-      }
-      if (memDebug) {
-        sb.append("JreMemDebugAdd(self);\n");
-      }
-      sb.append("}\nreturn self;\n}");
-      methodBody = sb.toString();
+      print(mappedConstructorDeclaration(m, mappedMethod) + " ");
+      printConstructorBody(statements);
+      print("\n\n");
     }
-//    if (invokedConstructors.contains(constructorKey(binding))) {
-//      return super.constructorDeclaration(m, true) + " " + reindent(methodBody) + "\n\n"
-//          + super.constructorDeclaration(m, false) + " {\n  return "
-//          + generateStatement(createInnerConstructorInvocation(m), false) + ";\n}\n\n";
-//    } else {
-      return super.mappedConstructorDeclaration(m, mappedMethod) + " " + reindent(methodBody) + "\n\n";
-//    }
   }
 
   @Override
-  protected String constructorDeclaration(MethodDeclaration m) {
-    String methodBody;
+  protected void printConstructor(MethodDeclaration m) {
     IMethodBinding binding = Types.getMethodBinding(m);
-    boolean memDebug = Options.memoryDebug();
     @SuppressWarnings("unchecked")
     List<Statement> statements = m.getBody().statements();
     if (binding.getDeclaringClass().isEnum()) {
-      return enumConstructorDeclaration(m, statements, binding);
-    } else if (statements.isEmpty()) {
-      methodBody = memDebug ?
+      printEnumConstructor(m, statements, binding);
+    } else if (invokedConstructors.contains(constructorKey(binding))) {
+      print(constructorDeclaration(m, true) + " ");
+      printConstructorBody(statements);
+      print("\n\n" + constructorDeclaration(m, false) + " {\n  return ");
+      printStatement(createInnerConstructorInvocation(m), false);
+      print(";\n}\n\n");
+    } else {
+      print(constructorDeclaration(m, false) + " ");
+      printConstructorBody(statements);
+      print("\n\n");
+    }
+  }
+
+  private void printConstructorBody(List<Statement> statements) {
+    boolean memDebug = Options.memoryDebug();
+    beginReindent();
+    if (statements.isEmpty()) {
+      print(memDebug ?
           "{\nreturn (self = JreMemDebugAdd([super init]));\n}" :
-          "{\nreturn (self = [super init]);\n}";
+          "{\nreturn (self = [super init]);\n}");
     } else if (statements.size() == 1 &&
         (statements.get(0) instanceof ConstructorInvocation ||
          statements.get(0) instanceof SuperConstructorInvocation)) {
-      if (memDebug) {
-        methodBody = "{\nreturn JreMemDebugAdd(" +
-            generateStatement(statements.get(0), false, true) + ");\n}";
-      } else {
-        methodBody = "{\nreturn " + generateStatement(statements.get(0), false, true) + ";\n}";
-      }
+      print(memDebug ? "{\nreturn JreMemDebugAdd(" : "{\nreturn ");
+      printStatement(statements.get(0), false);
+      print(memDebug ? ");\n}" : ";\n}");
     } else {
-      StringBuffer sb = new StringBuffer();
       Statement first = statements.get(0);
       boolean firstPrinted = false;
-      sb.append("{\nif ((self = ");
+      print("{\nif ((self = ");
       if (first instanceof ConstructorInvocation ||
           first instanceof SuperConstructorInvocation) {
-        sb.append(generateStatement(first, false, true));
+        printStatement(first, false);
         firstPrinted = true;
       } else {
-        sb.append("[super init]");
+        print("[super init]");
       }
-      sb.append(")) {\n");
+      print(")) {\n");
       for (int i = firstPrinted ? 1 : 0; i < statements.size(); i++) {
-        sb.append(generateStatement(statements.get(i), false, true));
+        printStatement(statements.get(i), false);
       }
       if (memDebug) {
-        sb.append("JreMemDebugAdd(self);\n");
+        print("JreMemDebugAdd(self);\n");
       }
-      sb.append("}\nreturn self;\n}");
-      methodBody = sb.toString();
-    }
-    if (invokedConstructors.contains(constructorKey(binding))) {
-      return super.constructorDeclaration(m, true) + " " + reindent(methodBody) + "\n\n"
-          + super.constructorDeclaration(m, false) + " {\n  return "
-          + generateStatement(createInnerConstructorInvocation(m), false) + ";\n}\n\n";
-    } else {
-      return super.constructorDeclaration(m, false) + " " + reindent(methodBody) + "\n\n";
+      print("}\nreturn self;\n}");
     }
+    endReindent();
   }
 
   private Statement createInnerConstructorInvocation(MethodDeclaration m) {
@@ -713,7 +771,7 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
     return invocation;
   }
 
-  private String enumConstructorDeclaration(MethodDeclaration m, List<Statement> statements,
+  private void printEnumConstructor(MethodDeclaration m, List<Statement> statements,
       IMethodBinding binding) {
     assert !statements.isEmpty();
 
@@ -722,57 +780,59 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
     // first statement is a constructor or super invocation.
     Statement s = statements.get(0);
     assert s instanceof ConstructorInvocation || s instanceof SuperConstructorInvocation;
-    String invocation = generateStatement(statements.get(0), false, true) + ";\n";
+    String invocation = generateStatement(statements.get(0), false) + ";\n";
     List<?> args = s instanceof ConstructorInvocation
         ? ((ConstructorInvocation) s).arguments() : ((SuperConstructorInvocation) s).arguments();
     String impliedArgs = (args.isEmpty() ? "W" : " w") + "ithNSString:name withInt:ordinal";
     int index = invocation.lastIndexOf(']');
     invocation = invocation.substring(0, index) + impliedArgs + ']';
 
-    StringBuffer sb = new StringBuffer();
+    print(constructorDeclaration(m) + " ");
+    beginReindent();
     boolean memDebug = Options.memoryDebug();
     if (statements.size() == 1) {
-      sb.append("{\nreturn ");
+      print("{\nreturn ");
       if  (memDebug) {
-        sb.append("JreMemDebugAdd(" + invocation + ")");
+        print("JreMemDebugAdd(" + invocation + ")");
       } else {
-        sb.append(invocation);
+        print(invocation);
       }
-      sb.append(";\n}");
+      print(";\n}");
     } else {
-      sb.append("{\nif ((self = ");
-      sb.append(invocation);
-      sb.append(")) {\n");
+      print("{\nif ((self = ");
+      print(invocation);
+      print(")) {\n");
       for (int i = 1; i < statements.size(); i++) {
-        sb.append(generateStatement(statements.get(i), false, true));
+        printStatement(statements.get(i), false);
       }
       if (memDebug) {
-        sb.append("JreMemDebugAdd(self);\n");
+        print("JreMemDebugAdd(self);\n");
       }
-      sb.append("}\nreturn self;\n}");
+      print("}\nreturn self;\n}");
     }
-    String result = super.constructorDeclaration(m) + " " + reindent(sb.toString()) + "\n\n";
-    return result;
+    endReindent();
+    print("\n\n");
   }
 
   @Override
   protected void printStaticConstructorDeclaration(MethodDeclaration m) {
     String className =
         NameTable.javaTypeToObjC(Types.getMethodBinding(m).getDeclaringClass(), false);
-    StringBuffer sb = new StringBuffer();
-    sb.append("{\nif (self == [" + className + " class]) {\n");
+    print("+ (void)initialize ");
+    beginReindent();
+    print("{\nif (self == [" + className + " class]) {\n");
     @SuppressWarnings("unchecked")
     List<Statement> statements = m.getBody().statements();
     for (Statement statement : statements) {
-      sb.append(generateStatement(statement, false, true));
+      printStatement(statement, false);
     }
-    sb.append("}\n}");
-    print("+ (void)initialize " + reindent(sb.toString()) + "\n\n");
+    print("}\n}");
+    endReindent();
+    print("\n\n");
   }
 
-  private String generateStatement(Statement stmt, boolean asFunction, boolean inConstructor) {
-    return StatementGenerator.generate(stmt, fieldHiders, asFunction,
-        getBuilder().getSourcePosition());
+  private void printStatement(Statement stmt, boolean asFunction) {
+    StatementGenerator.generate(stmt, fieldHiders, asFunction, getBuilder());
   }
 
   private String generateStatement(Statement stmt, boolean asFunction) {
@@ -792,7 +852,10 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
     }
     println("int main( int argc, const char *argv[] ) {");
     if (m != null && (m.getModifiers() & Modifier.NATIVE) > 0 && hasNativeCode(m)) {
-      println(extractNativeMethodBody(m));
+      indent();
+      printNativeCode(m);
+      unindent();
+      newline();
       return;
     }
     indent();
@@ -815,7 +878,7 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
       printIndent();
       printf("IOSObjectArray *%s = JreEmulationMainArguments(argc, argv);\n\n",
           params.get(0).getName().getIdentifier());
-      printMethodBody(m, true);
+      printStatements(m, true);
     }
     if (testMethods != null) {
       printIndent();
@@ -840,39 +903,56 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
     println("}");
   }
 
-  private void printMethodBody(MethodDeclaration m, boolean isFunction) throws AssertionError {
+  private void printStatements(MethodDeclaration m, boolean isFunction) throws AssertionError {
     for (Object stmt : m.getBody().statements()) {
       if (stmt instanceof Statement) {
-        String objcStmt = reindent(generateStatement((Statement) stmt, isFunction));
-        println(objcStmt);
+        beginReindent();
+        printStatement((Statement) stmt, isFunction);
+        endReindent();
+        newline();
       } else {
         throw new AssertionError("unexpected AST type: " + stmt.getClass());
       }
     }
   }
 
-  private String extractNativeMethodBody(MethodDeclaration m) {
+  private void printNativeCode(MethodDeclaration m) {
     assert (m.getModifiers() & Modifier.NATIVE) > 0;
     String nativeCode = extractNativeCode(m.getStartPosition(), m.getLength());
     if (nativeCode == null) {
       J2ObjC.warning(m, "no native code found");
-      return "";
+      return;
     }
-    indent();
-    String code = reindent('{' + nativeCode + '}');
-    unindent();
-    return code;
+    beginReindent();
+    print('{' + nativeCode + '}');
+    endReindent();
   }
 
   private void printImports(CompilationUnit node) {
     ImplementationImportCollector collector = new ImplementationImportCollector();
     collector.collect(node, getSourceFileName());
     Set<ImportCollector.Import> imports = collector.getImports();
+    Set<ImportCollector.Import> forwards = Options.forwardDeclarations()
+        ? collector.getForwardDeclarations() : Collections.<ImportCollector.Import>emptySet();
+
+    if (!forwards.isEmpty()) {
+      Set<String> forwardStmts = Sets.newTreeSet();
+      for (ImportCollector.Import imp : forwards) {
+        forwardStmts.add(String.format("@%s %s;",
+            imp.isInterface() ? "protocol" : "class", imp.getTypeName()));
+      }
+      for (String stmt : forwardStmts) {
+        println(stmt);
+      }
+      newline();
+    }
 
     if (!imports.isEmpty()) {
       Set<String> importStmts = Sets.newTreeSet();
       for (ImportCollector.Import imp : imports) {
-        importStmts.add(String.format("#import \"%s.h\"", imp.getImportFileName()));
+        if (!forwards.contains(imp)) {
+          importStmts.add(String.format("#import \"%s.h\"", imp.getImportFileName()));
+        }
       }
       for (String stmt : importStmts) {
         println(stmt);
@@ -79,6 +79,10 @@ public abstract class ObjectiveCSourceFileGenerator extends SourceFileGenerator
 
   protected abstract void generate(AnnotationTypeDeclaration node);
 
+  public void open(CompilationUnit node) {
+    open(getOutputFileName(node));
+  }
+
   public void save(CompilationUnit node) {
     save(getOutputFileName(node));
   }
@@ -92,11 +96,11 @@ public abstract class ObjectiveCSourceFileGenerator extends SourceFileGenerator
       IMethodBinding binding = Types.getMethodBinding(m);
       IOSMethod iosMethod = Types.getMappedMethod(binding);
       if (iosMethod != null && iosMethod.resolveBinding().isConstructor()) {
-        print(mappedConstructorDeclaration(m, iosMethod));
+        printMappedConstructor(m, iosMethod);
       } else if (iosMethod != null) {
-        print(mappedMethodDeclaration(m, iosMethod));
+        printMappedMethod(m, iosMethod);
       } else if (m.isConstructor()) {
-        print(constructorDeclaration(m));
+        printConstructor(m);
       } else if (Modifier.isStatic(m.getModifiers()) &&
           NameTable.CLINIT_NAME.equals(m.getName().getIdentifier())) {
         printStaticConstructorDeclaration(m);
@@ -134,6 +138,18 @@ public abstract class ObjectiveCSourceFileGenerator extends SourceFileGenerator
     print(methodDeclaration(m));
   }
 
+  protected void printMappedMethod(MethodDeclaration m, IOSMethod mappedMethod) {
+    print(mappedMethodDeclaration(m, mappedMethod));
+  }
+
+  protected void printConstructor(MethodDeclaration m) {
+    print(constructorDeclaration(m));
+  }
+
+  protected void printMappedConstructor(MethodDeclaration m, IOSMethod mappedMethod) {
+    print(mappedConstructorDeclaration(m, mappedMethod));
+  }
+
   /**
    * Create an Objective-C method or constructor declaration string for an
    * inlined method.
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Generates a package's umbrella header, which imports JreEmulation.h and
+ * every header in the package's output directory.  A project can precompile
+ * it and use it as a prefix header, so the package's headers are only
+ * preprocessed once rather than once per implementation file.
+ * <p>
+ * The header is named package.h, which can't clash with a type's header
+ * since "package" isn't a valid Java identifier.  Headers from earlier
+ * translations into the same directory are included, so the umbrella
+ * header is complete when only some of a package's files are retranslated.
+ */
+public class PackageHeaderGenerator {
+  public static final String FILE_NAME = "package.h";
+
+  private PackageHeaderGenerator() {
+    // Don't instantiate.
+  }
+
+  /**
+   * Writes the umbrella header of a package.  The header isn't rewritten if
+   * it's unchanged, so build tools don't recompile its dependents.
+   *
+   * @param outputDirectory the translator's output directory
+   * @param packageName the package's name, or the empty string for the
+   *     default package
+   */
+  public static void generate(File outputDirectory, String packageName) throws IOException {
+    String packagePath = packageName.replace('.', '/');
+    File dir = packagePath.isEmpty() ? outputDirectory : new File(outputDirectory, packagePath);
+    String[] names = dir.list();
+    if (names == null) {
+      return;
+    }
+    Set<String> headers = Sets.newTreeSet();
+    for (String name : names) {
+      if (name.endsWith(".h") && !name.equals(FILE_NAME)) {
+        headers.add(packagePath.isEmpty() ? name : packagePath + '/' + name);
+      }
+    }
+    if (headers.isEmpty()) {
+      return;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("//\n");
+    sb.append("//  Generated by the J2ObjC translator.  DO NOT EDIT!\n");
+    sb.append("//  package: ").append(packageName.isEmpty() ? "(default)" : packageName);
+    sb.append("\n//\n\n");
+    sb.append("#import \"JreEmulation.h\"\n");
+    for (String header : headers) {
+      sb.append("#import \"").append(header).append("\"\n");
+    }
+    String content = sb.toString();
+
+    File file = new File(dir, FILE_NAME);
+    if (file.exists() && Files.toString(file, Charsets.UTF_8).equals(content)) {
+      return;
+    }
+    Files.write(content, file, Charsets.UTF_8);
+  }
+}
@@ -16,18 +16,24 @@
 
 package com.google.devtools.j2objc.gen;
 
-import com.google.common.io.LineReader;
-
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Writer;
 
 /**
  * Builds source text.  This is similar to a StringBuilder, but tracks line
  * numbers and outputs them as CPP line directives when directed.
  *
+ * <p>Text printed between {@link #beginReindent()} and {@link #endReindent()}
+ * is reindented as it is printed, one line at a time, so that generated code
+ * can be streamed into the builder without its indention being known.
+ *
+ * <p>If an output {@link Writer} is set, text is written to it as the
+ * builder's buffer fills, so only a small part of a large file is held in
+ * memory.
+ *
  * @author Tom Ball
  */
 public class SourceBuilder {
@@ -38,6 +44,20 @@ public class SourceBuilder {
   private String source = null;
   private int currentLine = -1;
 
+  // Where buffered text is written, or null if it is only buffered.
+  private Writer out = null;
+  private IOException writeError = null;
+  private char[] writeBuffer = null;
+  private char lastWrittenChar = 0;
+
+  // Reindention state; line is null when not reindenting.
+  private StringBuilder line = null;
+  private final StringBuilder lineBuffer = new StringBuilder();
+  private int lineIndent;
+  private boolean firstLine;
+  private boolean sawReturn;
+  private boolean pendingEmptyLine;
+
   /**
    * If true, generate CPP line directives.  It's necessary to store this
    * here rather than directly use Options.getLineDirectives(), so that the
@@ -48,6 +68,9 @@ public class SourceBuilder {
   public static final int DEFAULT_INDENTION = 2;
   public static final int BEGINNING_OF_FILE = -1;
 
+  // The buffer size at which text is written to the output.
+  private static final int WRITE_THRESHOLD = 8192;
+
   /**
    * Create a new SourceBuilder.
    *
@@ -90,24 +113,65 @@ public class SourceBuilder {
     this(original.unit, original.emitLineDirectives, original.getSourcePosition());
   }
 
+  /**
+   * Returns the buffered text.  If an output writer is set, this is only the
+   * text that hasn't been written to it yet.
+   */
   @Override
   public String toString() {
     return buffer.toString();
   }
 
+  /**
+   * Sets the writer that text is written to, writing any buffered text.
+   * Write errors are reported by {@link #flush()}.
+   */
+  public void setOutput(Writer out) {
+    this.out = out;
+    writeBuffer = new char[WRITE_THRESHOLD * 2];
+    writeBuffered();
+  }
+
+  /**
+   * Writes the buffered text to the output writer and flushes it.
+   *
+   * @throws IOException if any text couldn't be written
+   */
+  public void flush() throws IOException {
+    writeBuffered();
+    if (out != null && writeError == null) {
+      try {
+        out.flush();
+      } catch (IOException e) {
+        writeError = e;
+      }
+    }
+    if (writeError != null) {
+      throw writeError;
+    }
+  }
+
+  /**
+   * Returns true if the text printed so far ends with a newline.
+   */
+  public boolean endsWithNewline() {
+    int length = buffer.length();
+    return (length > 0 ? buffer.charAt(length - 1) : lastWrittenChar) == '\n';
+  }
+
   public void print(String s) {
-    buffer.append(s);
+    write(s);
   }
 
   public void print(char c) {
-    buffer.append(c);
+    write(c);
     if (c == '\n') {
       currentLine++;
     }
   }
 
   public void print(int i) {
-    buffer.append(i);
+    write(Integer.toString(i));
   }
 
   public void printf(String format, Object... args) {
@@ -121,7 +185,7 @@ public class SourceBuilder {
   }
 
   public void newline() {
-    buffer.append('\n');
+    write('\n');
     currentLine++;
   }
 
@@ -137,7 +201,7 @@ public class SourceBuilder {
   }
 
   public void printIndent() {
-    buffer.append(pad(indention * DEFAULT_INDENTION));
+    write(new String(pad(indention * DEFAULT_INDENTION)));
   }
 
   // StringBuilder compatibility.
@@ -156,14 +220,6 @@ public class SourceBuilder {
     return this;
   }
 
-  public char charAt(int i) {
-    return buffer.charAt(i);
-  }
-
-  public int length() {
-    return buffer.length();
-  }
-
   public char[] pad(int n) {
     if (n < 0) {
       n = 0;
@@ -177,6 +233,9 @@ public class SourceBuilder {
 
   public void reset() {
     buffer.setLength(0);
+    out = null;
+    writeError = null;
+    lastWrittenChar = 0;
   }
 
   public void syncLineNumbers(ASTNode node) {
@@ -185,7 +244,7 @@ public class SourceBuilder {
       if (position != -1) {
         int sourceLine = unit.getLineNumber(position);
         if (currentLine != sourceLine) {
-          buffer.append(String.format("#line %d\n", sourceLine));
+          write(String.format("#line %d\n", sourceLine));
           currentLine = sourceLine;
         }
       }
@@ -194,7 +253,7 @@ public class SourceBuilder {
 
   public void printStart(String path) {
     if (emitLineDirectives) {
-      buffer.append(String.format("#line 1 \"%s\"\n\n", path));
+      write(String.format("#line 1 \"%s\"\n\n", path));
     }
   }
 
@@ -211,49 +270,138 @@ public class SourceBuilder {
   }
 
   /**
-   * Fix line indention, based on brace count.
+   * Starts reindenting printed text, based on brace count.  Each line is
+   * stripped of its indention and indented again, starting from the current
+   * indention level.  Line numbers are tracked as they are when not
+   * reindenting.
    */
-  public String reindent(String code) {
-    try {
-      // Remove indention from each line.
-      StringBuffer sb = new StringBuffer();
-      LineReader lr = new LineReader(new StringReader(code));
-      String line = lr.readLine();
-      while (line != null) {
-        sb.append(line.trim());
-        line = lr.readLine();
-        if (line != null) {
-          sb.append('\n');
-        }
+  public void beginReindent() {
+    if (line != null) {
+      throw new AssertionError("nested reindent");
+    }
+    line = lineBuffer;
+    line.setLength(0);
+    lineIndent = indention * DEFAULT_INDENTION;
+    firstLine = true;
+    sawReturn = false;
+    pendingEmptyLine = false;
+  }
+
+  /**
+   * Stops reindenting printed text.  The last line isn't terminated, and a
+   * trailing empty line is dropped.
+   */
+  public void endReindent() {
+    if (line == null) {
+      throw new AssertionError("unbalanced reindent");
+    }
+    if (line.length() > 0) {
+      reindentLine();
+    }
+    line = null;
+  }
+
+  private void write(String s) {
+    if (line == null) {
+      buffer.append(s);
+      if (out != null && buffer.length() >= WRITE_THRESHOLD) {
+        writeBuffered();
       }
-      String strippedCode = sb.toString();
-
-      // Now indent it again.
-      int indent = indention * DEFAULT_INDENTION;
-      sb.setLength(0);  // reset buffer
-      lr = new LineReader(new StringReader(strippedCode));
-      line = lr.readLine();
-      while (line != null) {
-        if (line.startsWith("}")) {
-          indent -= DEFAULT_INDENTION;
-        }
-        if (!line.startsWith("#line")) {
-          sb.append(pad(indent));
-        }
-        sb.append(line);
-        if (line.endsWith("{")) {
-          indent += DEFAULT_INDENTION;
-        }
-        line = lr.readLine();
-        if (line != null) {
-          sb.append('\n');
+    } else {
+      for (int i = 0; i < s.length(); i++) {
+        write(s.charAt(i));
+      }
+    }
+  }
+
+  private void write(char c) {
+    if (line == null) {
+      buffer.append(c);
+      if (out != null && buffer.length() >= WRITE_THRESHOLD) {
+        writeBuffered();
+      }
+      return;
+    }
+    // Lines end with a newline, a return, or a return followed by a newline.
+    if (c == '\n' && sawReturn) {
+      sawReturn = false;
+      return;
+    }
+    sawReturn = c == '\r';
+    if (c == '\n' || c == '\r') {
+      reindentLine();
+      line.setLength(0);
+    } else {
+      line.append(c);
+    }
+  }
+
+  private void reindentLine() {
+    int start = 0;
+    int end = line.length();
+    while (start < end && line.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && line.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    // Empty lines are held back, so that a trailing one can be dropped.
+    if (pendingEmptyLine) {
+      appendLine(0, 0);
+    }
+    pendingEmptyLine = start == end;
+    if (!pendingEmptyLine) {
+      appendLine(start, end);
+    }
+  }
+
+  private void appendLine(int start, int end) {
+    if (!firstLine) {
+      buffer.append('\n');
+    }
+    firstLine = false;
+    if (start < end && line.charAt(start) == '}') {
+      lineIndent -= DEFAULT_INDENTION;
+    }
+    if (end - start < 5 || !line.substring(start, start + 5).equals("#line")) {
+      buffer.append(pad(lineIndent));
+    }
+    buffer.append(line, start, end);
+    if (start < end && line.charAt(end - 1) == '{') {
+      lineIndent += DEFAULT_INDENTION;
+    }
+    if (out != null && buffer.length() >= WRITE_THRESHOLD) {
+      writeBuffered();
+    }
+  }
+
+  private void writeBuffered() {
+    int length = buffer.length();
+    if (out == null || length == 0) {
+      return;
+    }
+    lastWrittenChar = buffer.charAt(length - 1);
+    if (writeError == null) {
+      try {
+        if (length > writeBuffer.length) {
+          out.write(buffer.toString());
+        } else {
+          buffer.getChars(0, length, writeBuffer, 0);
+          out.write(writeBuffer, 0, length);
         }
+      } catch (IOException e) {
+        writeError = e;
       }
-      return sb.toString();
-    } catch (IOException e) {
-      // Should never happen with string readers.
-      throw new AssertionError(e);
     }
+    buffer.setLength(0);
+  }
+
+  /**
+   * Restores the current line number, after printing text that shouldn't
+   * advance it.
+   */
+  void setLineNumber(int lineNumber) {
+    currentLine = lineNumber;
   }
 
   public int getLineNumber(ASTNode node) {
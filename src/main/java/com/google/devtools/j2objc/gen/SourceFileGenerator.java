@@ -16,9 +16,12 @@
 
 package com.google.devtools.j2objc.gen;
 
-import com.google.common.io.Files;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 import com.google.devtools.j2objc.J2ObjC;
 import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.TranslationContext;
 import com.google.devtools.j2objc.util.NameTable;
 
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -27,9 +30,19 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.PackageDeclaration;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This class handles common actions shared by the header, implementation, and
@@ -38,12 +51,19 @@ import java.nio.charset.Charset;
  * @author Tom Ball
  */
 public abstract class SourceFileGenerator {
+  private static final AtomicInteger unchangedFiles = new AtomicInteger();
+
   private final SourceBuilder builder;
   private final CompilationUnit unit;
   private final File outputDirectory;
   private final String sourceFileName;
   private final String source;
 
+  // The file being written, before it is saved.
+  private File outputFile = null;
+  private File tempFile = null;
+  private Writer writer = null;
+
   public SourceFileGenerator(String sourceFileName, String source, CompilationUnit unit, boolean emitLineDirectives) {
     builder = new SourceBuilder(unit, sourceFileName, source, emitLineDirectives);
     this.sourceFileName = sourceFileName;
@@ -114,30 +134,173 @@ public abstract class SourceFileGenerator {
     return text.substring(start + 4, end);
   }
 
+  /**
+   * Starts writing generated source to the file it will be saved as, so it
+   * isn't all held in memory.  The source is written to a temporary file,
+   * which replaces the output file when it is saved.  If the temporary file
+   * can't be created, the source is buffered until it is saved.
+   */
+  protected void open(String path) {
+    try {
+      openOutput(path);
+    } catch (IOException e) {
+      // Reported if saving fails.
+      closeOutput();
+    }
+  }
+
+  private void openOutput(String path) throws IOException {
+    File file = new File(outputDirectory, path);
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (!dir.exists()) {
+      if (!dir.mkdirs()) {
+        J2ObjC.warning("cannot create output directory: " + outputDirectory);
+      }
+    }
+    outputFile = file;
+    tempFile = File.createTempFile("." + file.getName(), ".tmp", dir);
+    writer = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(tempFile), Charsets.UTF_8));
+    builder.setOutput(writer);
+  }
+
   protected void save(String path) {
     try {
-      File outputFile = new File(outputDirectory, path);
-      File dir = outputFile.getParentFile();
-      if (dir != null && !dir.exists()) {
-        if (!dir.mkdirs()) {
-          J2ObjC.warning("cannot create output directory: " + outputDirectory);
-        }
+      if (writer == null) {
+        openOutput(path);
       }
-      String source = builder.toString();
 
       // Make sure file ends with a new-line.
-      if (!source.endsWith("\n")) {
-        source += '\n';
+      if (!builder.endsWithNewline()) {
+        builder.newline();
       }
+      builder.flush();
+      writer.close();
+      writer = null;
 
-      Files.write(source, outputFile, Charset.defaultCharset());
+      // Don't rewrite unchanged files, so build tools don't recompile them.
+      if (hasContent(outputFile, tempFile)) {
+        unchangedFiles.incrementAndGet();
+      } else if (!tempFile.renameTo(outputFile)
+          && !(outputFile.delete() && tempFile.renameTo(outputFile))) {
+        throw new IOException("cannot write " + outputFile);
+      }
+      TranslationContext.current().addOutputFile(outputFile);
     } catch (IOException e) {
       J2ObjC.error(e.getMessage());
     } finally {
-      reset();
+      closeOutput();
+    }
+  }
+
+  /**
+   * Discards the generated source if it wasn't saved.
+   */
+  protected void close() {
+    closeOutput();
+  }
+
+  private void closeOutput() {
+    if (writer != null) {
+      Closeables.closeQuietly(writer);
+      writer = null;
+    }
+    if (tempFile != null) {
+      tempFile.delete();
+      tempFile = null;
+    }
+    outputFile = null;
+    reset();
+  }
+
+  /**
+   * Returns true if a file has the same content as a newly generated one.
+   * The values in the file header, like the date the file was generated,
+   * are ignored if the rest of the file is unchanged.
+   */
+  private static boolean hasContent(File file, File newFile) throws IOException {
+    if (!file.exists()) {
+      return false;
+    }
+    InputStream oldIn = new BufferedInputStream(new FileInputStream(file));
+    try {
+      InputStream newIn = new BufferedInputStream(new FileInputStream(newFile));
+      try {
+        String header = Options.getFileHeader();
+        if (header != null) {
+          // Only the lines the header can span are compared as text.
+          int headerLines = 1;
+          for (int i = 0; i < header.length(); i++) {
+            if (header.charAt(i) == '\n') {
+              headerLines++;
+            }
+          }
+          String oldContent = readLines(oldIn, headerLines);
+          String content = readLines(newIn, headerLines);
+          if (!oldContent.equals(content)) {
+            Pattern headerPattern = Pattern.compile(
+                Pattern.quote(header).replace("%s", "\\E.*\\Q"));
+            Matcher oldHeader = headerPattern.matcher(oldContent);
+            Matcher newHeader = headerPattern.matcher(content);
+            if (!oldHeader.lookingAt() || !newHeader.lookingAt() || !oldContent.substring(
+                oldHeader.end()).equals(content.substring(newHeader.end()))) {
+              return false;
+            }
+          }
+        }
+        return contentEquals(oldIn, newIn);
+      } finally {
+        newIn.close();
+      }
+    } finally {
+      oldIn.close();
+    }
+  }
+
+  private static String readLines(InputStream in, int lines) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int c;
+    while (lines > 0 && (c = in.read()) != -1) {
+      bytes.write(c);
+      if (c == '\n') {
+        lines--;
+      }
+    }
+    return new String(bytes.toByteArray(), Charsets.UTF_8);
+  }
+
+  private static boolean contentEquals(InputStream in1, InputStream in2) throws IOException {
+    byte[] buffer1 = new byte[8192];
+    byte[] buffer2 = new byte[8192];
+    while (true) {
+      int n1 = ByteStreams.read(in1, buffer1, 0, buffer1.length);
+      int n2 = ByteStreams.read(in2, buffer2, 0, buffer2.length);
+      if (n1 != n2) {
+        return false;
+      }
+      for (int i = 0; i < n1; i++) {
+        if (buffer1[i] != buffer2[i]) {
+          return false;
+        }
+      }
+      if (n1 < buffer1.length) {
+        return true;
+      }
     }
   }
 
+  /**
+   * Returns the number of generated files that weren't saved, because they
+   * were unchanged.
+   */
+  public static int getUnchangedFileCount() {
+    return unchangedFiles.get();
+  }
+
+  public static void resetUnchangedFileCount() {
+    unchangedFiles.set(0);
+  }
+
   protected void print(String s) {
     builder.print(s);
   }
@@ -186,8 +349,12 @@ public abstract class SourceFileGenerator {
     builder.printStart(path);
   }
 
-  protected String reindent(String code) {
-    return builder.reindent(code);
+  protected void beginReindent() {
+    builder.beginReindent();
+  }
+
+  protected void endReindent() {
+    builder.endReindent();
   }
 
   protected CompilationUnit getUnit() {
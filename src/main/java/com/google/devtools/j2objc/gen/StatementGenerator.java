@@ -19,6 +19,7 @@ package com.google.devtools.j2objc.gen;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CharMatcher;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.devtools.j2objc.J2ObjC;
 import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.translate.DestructorGenerator;
@@ -126,6 +127,10 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
   private int nilCheckDepth = 0;
   private final boolean useReferenceCounting;
 
+  // The array accesses whose index is known to be in range, for inline
+  // array access.
+  private final Set<ArrayAccess> inBoundsAccesses = Sets.newHashSet();
+
   private static final String EXPONENTIAL_FLOATING_POINT_REGEX =
       "[+-]?\\d*\\.?\\d*[eE][+-]?\\d+";
   private static final String FLOATING_POINT_SUFFIX_REGEX = ".*[fFdD]";
@@ -133,16 +138,31 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
 
   public static String generate(ASTNode node, Set<IVariableBinding> fieldHiders,
       boolean asFunction, SourcePosition sourcePosition) throws ASTNodeException {
-    StatementGenerator generator = new StatementGenerator(node, fieldHiders, asFunction,
-        sourcePosition);
-    generator.run(node);
-    return generator.getResult();
+    CompilationUnit unit = null;
+    if (node != null && node.getRoot() instanceof CompilationUnit) {
+      unit = (CompilationUnit) node.getRoot();
+    }
+    SourceBuilder builder = new SourceBuilder(unit, Options.emitLineDirectives(), sourcePosition);
+    generate(node, fieldHiders, asFunction, builder);
+    return builder.toString();
+  }
+
+  /**
+   * Prints the Objective-C equivalent of a node to a builder.  The builder's
+   * line number isn't advanced, as line directives in the node's code are
+   * relative to where its caller last synced them.
+   */
+  public static void generate(ASTNode node, Set<IVariableBinding> fieldHiders,
+      boolean asFunction, SourceBuilder builder) throws ASTNodeException {
+    int lineNumber = builder.getSourcePosition().getLineNumber();
+    new StatementGenerator(fieldHiders, asFunction, builder).run(node);
+    builder.setLineNumber(lineNumber);
   }
 
-  public static String generateArguments(IMethodBinding method, List<Expression> args,
-      Set<IVariableBinding> fieldHiders, SourcePosition sourcePosition) {
-    StatementGenerator generator = new StatementGenerator(null, fieldHiders, false,
-        sourcePosition);
+  public static void generateArguments(IMethodBinding method, List<Expression> args,
+      Set<IVariableBinding> fieldHiders, SourceBuilder builder) {
+    int lineNumber = builder.getSourcePosition().getLineNumber();
+    StatementGenerator generator = new StatementGenerator(fieldHiders, false, builder);
     if (method.isVarargs()) {
       generator.printVarArgs(method, args);
     } else {
@@ -155,25 +175,17 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
         }
       }
     }
-    return generator.getResult();
+    builder.setLineNumber(lineNumber);
   }
 
-  private StatementGenerator(ASTNode node, Set<IVariableBinding> fieldHiders, boolean asFunction,
-                             SourcePosition sourcePosition) {
-    CompilationUnit unit = null;
-    if (node != null && node.getRoot() instanceof CompilationUnit) {
-      unit = (CompilationUnit) node.getRoot();
-    }
-    buffer = new SourceBuilder(unit, Options.emitLineDirectives(), sourcePosition);
+  private StatementGenerator(Set<IVariableBinding> fieldHiders, boolean asFunction,
+                             SourceBuilder buffer) {
+    this.buffer = buffer;
     this.fieldHiders = fieldHiders;
     this.asFunction = asFunction;
     useReferenceCounting = !Options.useARC();
   }
 
-  private String getResult() {
-    return buffer.toString();
-  }
-
   private String getSimpleTypeName(ITypeBinding binding) {
     if (binding == null) {
       // Parse error already reported.
@@ -335,7 +347,7 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
   private void printNilCheck(Expression e, boolean needsCast) {
     IVariableBinding sym = Types.getVariableBinding(e);
     // Outer class references should always be non-nil.
-    if (sym != null && !sym.getName().startsWith("this$") && !hasNilCheckParent(e, sym)) {
+    if (sym != null && !sym.getName().startsWith("this$") && !Types.isNonNullExpression(e)) {
       ITypeBinding symType = Types.mapType(sym.getType());
       if (needsCast && (Types.getNSObject().isEqualTo(symType) ||
           Types.getIOSClass().isEqualTo(symType) || Types.getNSString().isEqualTo(symType))) {
@@ -362,31 +374,6 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
     }
   }
 
-  private boolean hasNilCheckParent(Expression e, IVariableBinding sym) {
-    ASTNode parent = e.getParent();
-    while (parent != null) {
-      if (parent instanceof IfStatement) {
-        Expression condition = ((IfStatement) parent).getExpression();
-        if (condition instanceof InfixExpression) {
-          InfixExpression infix = (InfixExpression) condition;
-          IBinding lhs = Types.getBinding(infix.getLeftOperand());
-          if (lhs != null && infix.getRightOperand() instanceof NullLiteral) {
-            return sym.isEqualTo(lhs);
-          }
-          IBinding rhs = Types.getBinding(infix.getRightOperand());
-          if (rhs != null && infix.getLeftOperand() instanceof NullLiteral) {
-            return sym.isEqualTo(rhs);
-          }
-        }
-      }
-      parent = parent.getParent();
-      if (parent instanceof MethodDeclaration) {
-        break;
-      }
-    }
-    return false;
-  }
-
   @Override
   public boolean preVisit2(ASTNode node) {
     super.preVisit2(node);
@@ -413,6 +400,12 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
   @Override
   public boolean visit(ArrayAccess node) {
     ITypeBinding elementType = Types.getTypeBinding(node);
+    if (useInlineAccess(node)) {
+      buffer.append("(*");
+      printElementReference(node);
+      buffer.append(')');
+      return false;
+    }
     boolean castPrinted = false;
     if (!elementType.isPrimitive()) {
       castPrinted = printCast(elementType);
@@ -439,6 +432,30 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
     return false;
   }
 
+  /**
+   * Returns true if an array element is accessed with the array class's
+   * inline C functions rather than messages, which is only done for
+   * primitive arrays.
+   */
+  private boolean useInlineAccess(ArrayAccess node) {
+    return Options.inlineArrayAccess() && Types.getTypeBinding(node).isPrimitive();
+  }
+
+  /**
+   * Prints a pointer to a primitive array element, like
+   * "IOSIntArray_GetRef(arr, i)".  The function checks that the array isn't
+   * nil and the index is in range, unless the index is known to be in range.
+   */
+  private void printElementReference(ArrayAccess node) {
+    IOSTypeBinding arrayType = Types.resolveArrayType(Types.getTypeBinding(node));
+    buffer.append(arrayType.getName());
+    buffer.append(inBoundsAccesses.contains(node) ? "_GetRefUnchecked(" : "_GetRef(");
+    node.getArray().accept(this);
+    buffer.append(", ");
+    node.getIndex().accept(this);
+    buffer.append(')');
+  }
+
   @Override
   public boolean visit(ArrayCreation node) {
     @SuppressWarnings("unchecked")
@@ -699,6 +716,17 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
 
   private void printArrayElementAssignment(Expression lhs, Expression rhs, Assignment.Operator op) {
     ArrayAccess aa = (ArrayAccess) lhs;
+    if (useInlineAccess(aa) && op != Operator.RIGHT_SHIFT_UNSIGNED_ASSIGN) {
+      // C's compound assignments convert their result to the element type,
+      // like Java's.
+      buffer.append('*');
+      printElementReference(aa);
+      buffer.append(' ');
+      buffer.append(op.toString());
+      buffer.append(' ');
+      rhs.accept(this);
+      return;
+    }
     String kind = getArrayAccessKind(aa);
     buffer.append('[');
     printNilCheck(aa.getArray(), true);
@@ -792,6 +820,9 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
         if (isProperty((SimpleName) lhs)) {
           String name = NameTable.getName((SimpleName) lhs);
           nativeName = NameTable.javaFieldToObjC(name);
+          if (asFunction) {
+            nativeName = "self->" + nativeName;
+          }
         } else if (isStaticVariableAccess(lhs)) {
           nativeName = NameTable.getName((SimpleName) lhs);
         }
@@ -1052,8 +1083,14 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
 
   @Override
   public boolean visit(EnhancedForStatement node) {
-    // Enhanced for loops should be rewritten prior to code generation.
-    assert false;
+    // The Rewriter only keeps enhanced for loops over collections that
+    // support fast enumeration.
+    buffer.append("for (");
+    node.getParameter().accept(this);
+    buffer.append(" in (id<NSFastEnumeration>) ");
+    printNilCheck(node.getExpression(), false);
+    buffer.append(") ");
+    node.getBody().accept(this);
     return false;
   }
 
@@ -1093,6 +1130,9 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
   @SuppressWarnings("unchecked")
   @Override
   public boolean visit(ForStatement node) {
+    if (Options.inlineArrayAccess()) {
+      inBoundsAccesses.addAll(ArrayBoundsAnalyzer.findInBoundsAccesses(node));
+    }
     boolean emitAutoreleasePool = false;
     buffer.append("for (");
     for (Iterator<Expression> it = node.initializers().iterator(); it.hasNext(); ) {
@@ -1178,18 +1218,20 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
    * Converts a string concatenation expression into a NSString format string and a
    * list of arguments for it, containing all the non-literal expressions.  If the
    * expression is all literals, then a string concatenation is printed.  If not,
-   * then a NSString stringWithFormat: message is output.
+   * then a NSString stringWithFormat: message is output, or with fast string
+   * concatenation, a JreStrcat call.
    */
-  @SuppressWarnings("fallthrough")
   private void printStringConcatenation(Expression leftOperand, Expression rightOperand,
       List<Expression> extendedOperands) {
     // Copy all operands into a single list.
     List<Expression> operands = Lists.newArrayList(leftOperand, rightOperand);
     operands.addAll(extendedOperands);
-    String format = "@\"";
 
+    // Consecutive literals are merged into a format string segment, which
+    // is stored as a String, between the non-literal arguments.
     AST ast = leftOperand.getAST();
-    List<Expression> args = Lists.newArrayList();
+    List<Object> segments = Lists.newArrayList();
+    StringBuilder format = new StringBuilder();
     for (Expression operand : operands) {
       IBinding binding = Types.getBinding(operand);
       if (binding instanceof IVariableBinding) {
@@ -1203,7 +1245,7 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
           if (UnicodeUtils.hasValidCppCharacters(s)) {
             s = unquoteAndEscape(literal.getEscapedValue());
             s = UnicodeUtils.escapeNonLatinCharacters(s);
-            format += UnicodeUtils.escapeStringLiteral(s);
+            format.append(UnicodeUtils.escapeStringLiteral(s));
           } else {
             J2ObjC.error(operand,
                 "String constant has Unicode or octal escape sequences that are not valid in " +
@@ -1213,12 +1255,12 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
         } else if (value instanceof Character) {
           char c = (Character) value;
           if (c == '"') {
-            format += '\\';
+            format.append('\\');
           }
-          format += c;
+          format.append(c);
           continue;
         } else if (value != null) {
-          format += value.toString();
+          format.append(value.toString());
           continue;
         } // else fall through to next section.
       }
@@ -1226,63 +1268,47 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
         StringLiteral literal = (StringLiteral) operand;
         if (UnicodeUtils.hasValidCppCharacters(literal.getLiteralValue())) {
           String s = unquoteAndEscape(literal.getEscapedValue());
-          format += UnicodeUtils.escapeStringLiteral(s);
+          format.append(UnicodeUtils.escapeStringLiteral(s));
         } else {
           // Convert to NSString invocation when printing args.
-          format += "%@";
-          args.add(operand);
+          addConcatenationArgument(segments, format, operand);
         }
       } else if (operand instanceof BooleanLiteral) {
-        format += String.valueOf(((BooleanLiteral) operand).booleanValue());
+        format.append(String.valueOf(((BooleanLiteral) operand).booleanValue()));
       } else if (operand instanceof CharacterLiteral) {
-        format += unquoteAndEscape(((CharacterLiteral) operand).getEscapedValue());
+        format.append(unquoteAndEscape(((CharacterLiteral) operand).getEscapedValue()));
       } else if (operand instanceof NumberLiteral) {
-        format += ((NumberLiteral) operand).getToken();
+        format.append(((NumberLiteral) operand).getToken());
       } else {
-        args.add(operand);
-
-        // Append format specifier.
-        ITypeBinding operandType = Types.getTypeBinding(operand);
-        if (operandType.isPrimitive()) {
-          String type = operandType.getBinaryName();
-          assert type.length() == 1;
-          switch (type.charAt(0)) {
-            case 'B':  // byte
-            case 'I':  // int
-            case 'S':  // short
-              format += "%d";
-              break;
-            case 'J':  // long
-              format += "%qi";
-              break;
-            case 'D':  // double
-            case 'F':  // float
-              format += "%f";
-              break;
-            case 'C':  // char
-              format += "%c";
-              break;
-            case 'Z':  // boolean
-              format += "%@";
-              break;
-            default:
-              throw new AssertionError("unknown primitive type: " + type);
-          }
-        } else {
-          format += "%@";
-        }
+        addConcatenationArgument(segments, format, operand);
       }
     }
-    format += '"';
+    if (segments.isEmpty()) {
+      // All literals.
+      buffer.append("@\"" + format.toString().replace("%%", "%") + '"');
+      return;
+    }
+    if (format.length() > 0) {
+      segments.add(format.toString());
+    }
 
-    if (args.isEmpty()) {
-      buffer.append(format.replace("%%", "%")); // unescape % character
+    if (Options.fastStringConcatenation()) {
+      printStrcat(segments);
       return;
     }
 
-    buffer.append("[NSString stringWithFormat:");
-    buffer.append(format);
-    buffer.append(", ");
+    buffer.append("[NSString stringWithFormat:@\"");
+    List<Expression> args = Lists.newArrayList();
+    for (Object segment : segments) {
+      if (segment instanceof String) {
+        buffer.append((String) segment);
+      } else {
+        Expression arg = (Expression) segment;
+        buffer.append(formatSpecifier(arg));
+        args.add(arg);
+      }
+    }
+    buffer.append("\", ");
     for (Iterator<Expression> iter = args.iterator(); iter.hasNext(); ) {
       printStringConcatenationArg(iter.next());
       if (iter.hasNext()) {
@@ -1292,6 +1318,84 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
     buffer.append(']');
   }
 
+  /**
+   * Adds a non-literal argument to a concatenation's segments, after the
+   * pending literal format segment, if any.
+   */
+  private static void addConcatenationArgument(List<Object> segments, StringBuilder format,
+      Expression arg) {
+    if (format.length() > 0) {
+      segments.add(format.toString());
+      format.setLength(0);
+    }
+    segments.add(arg);
+  }
+
+  private static String formatSpecifier(Expression arg) {
+    ITypeBinding type = Types.getTypeBinding(arg);
+    if (!type.isPrimitive()) {
+      return "%@";
+    }
+    char code = type.getBinaryName().charAt(0);
+    switch (code) {
+      case 'B':  // byte
+      case 'I':  // int
+      case 'S':  // short
+        return "%d";
+      case 'J':  // long
+        return "%qi";
+      case 'D':  // double
+      case 'F':  // float
+        return "%f";
+      case 'C':  // char
+        return "%c";
+      case 'Z':  // boolean
+        return "%@";
+      default:
+        throw new AssertionError("unknown primitive type: " + code);
+    }
+  }
+
+  /**
+   * Prints a JreStrcat call, which is passed a C string with a type code for
+   * each argument, followed by the arguments.  Literal segments are passed as
+   * NSString literals.
+   */
+  private void printStrcat(List<Object> segments) {
+    buffer.append("JreStrcat(\"");
+    for (Object segment : segments) {
+      buffer.append(segment instanceof String ? '$' : strcatTypeCode((Expression) segment));
+    }
+    buffer.append('"');
+    for (Object segment : segments) {
+      buffer.append(", ");
+      if (segment instanceof String) {
+        buffer.append("@\"" + ((String) segment).replace("%%", "%") + '"');
+      } else {
+        Expression arg = (Expression) segment;
+        if (arg instanceof StringLiteral
+            || !Types.getTypeBinding(arg).isEqualTo(
+                arg.getAST().resolveWellKnownType("boolean"))) {
+          printStringConcatenationArg(arg);
+        } else {
+          arg.accept(this);
+        }
+      }
+    }
+    buffer.append(')');
+  }
+
+  private static char strcatTypeCode(Expression arg) {
+    if (arg instanceof StringLiteral) {
+      return '$';
+    }
+    ITypeBinding type = Types.getTypeBinding(arg);
+    if (type.isPrimitive()) {
+      return type.getBinaryName().charAt(0);
+    }
+    return Types.isJavaStringType(type) || Types.getNSString().isEqualTo(type) ? '$' : '@';
+  }
+
   // Remove surrounding single or double-quotes, and escape sequences.
   private String unquoteAndEscape(String s) {
     if (s == null || s.length() < 2) {
@@ -1437,6 +1541,14 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
           }
         }
       }
+      if (isDirectInvocation(node, binding)) {
+        printDirectInvocation(node, binding);
+        if (castReturnValue) {
+          buffer.append(')');
+        }
+        invocations.pop();
+        return false;
+      }
       ITypeBinding typeBinding = binding.getDeclaringClass();
       buffer.append('[');
 
@@ -1496,6 +1608,47 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
     return false;
   }
 
+  /**
+   * Returns true if an invocation calls a devirtualized method's function
+   * directly.  Only the method's class calls it, so the class is known to be
+   * initialized.  A static method's receiver must be its type, or missing,
+   * since other receivers are evaluated.
+   */
+  private boolean isDirectInvocation(MethodInvocation node, IMethodBinding binding) {
+    if (!Types.isDirectMethod(binding)) {
+      return false;
+    }
+    AbstractTypeDeclaration owner = getOwningType(node);
+    if (owner == null || Types.getTypeBinding(owner).getTypeDeclaration()
+        != binding.getDeclaringClass().getTypeDeclaration()) {
+      return false;
+    }
+    Expression receiver = node.getExpression();
+    return !Modifier.isStatic(binding.getModifiers()) || receiver == null
+        || Types.getBinding(receiver) instanceof ITypeBinding;
+  }
+
+  private void printDirectInvocation(MethodInvocation node, IMethodBinding binding) {
+    buffer.append(NameTable.getFunctionName(binding));
+    buffer.append('(');
+    String separator = "";
+    if (!Modifier.isStatic(binding.getModifiers())) {
+      Expression receiver = node.getExpression();
+      if (receiver != null) {
+        printNilCheck(receiver, false);
+      } else {
+        buffer.append("self");
+      }
+      separator = ", ";
+    }
+    for (Iterator<Expression> it = node.arguments().iterator(); it.hasNext(); ) {
+      buffer.append(separator);
+      it.next().accept(this);
+      separator = ", ";
+    }
+    buffer.append(')');
+  }
+
   private void printInterfaceGetClass(MethodInvocation node, Expression receiver) {
     buffer.append("[(id<JavaObject>) ");
     printNilCheck(receiver, true);
@@ -1624,8 +1777,16 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
       PostfixExpression.Operator op = node.getOperator();
       if (op == PostfixExpression.Operator.INCREMENT
           || op == PostfixExpression.Operator.DECREMENT) {
+        ArrayAccess access = (ArrayAccess) node.getOperand();
+        if (useInlineAccess(access)) {
+          buffer.append("(*");
+          printElementReference(access);
+          buffer.append(')');
+          buffer.append(op.toString());
+          return false;
+        }
         String methodName = op == PostfixExpression.Operator.INCREMENT ? "postIncr" : "postDecr";
-        printArrayIncrementOrDecrement((ArrayAccess) node.getOperand(), methodName);
+        printArrayIncrementOrDecrement(access, methodName);
         return false;
       }
     }
@@ -1639,8 +1800,15 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
     if (node.getOperand() instanceof ArrayAccess) {
       PrefixExpression.Operator op = node.getOperator();
       if (op == PrefixExpression.Operator.INCREMENT || op == PrefixExpression.Operator.DECREMENT) {
+        ArrayAccess access = (ArrayAccess) node.getOperand();
+        if (useInlineAccess(access)) {
+          buffer.append(op.toString());
+          buffer.append('*');
+          printElementReference(access);
+          return false;
+        }
         String methodName = op == PrefixExpression.Operator.INCREMENT ? "incr" : "decr";
-        printArrayIncrementOrDecrement((ArrayAccess) node.getOperand(), methodName);
+        printArrayIncrementOrDecrement(access, methodName);
         return false;
       }
     }
@@ -1877,6 +2045,10 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
       } else {
         String name = NameTable.getName(node);
         if (Options.inlineFieldAccess() && isProperty(node)) {
+          if (asFunction) {
+            // A function's instance variables are accessed through its self parameter.
+            buffer.append("self->");
+          }
           buffer.append(NameTable.javaFieldToObjC(name));
         } else {
           if (isProperty(node)) {
@@ -1929,11 +2101,12 @@ public class StatementGenerator extends ErrorReportingASTVisitor {
 
   @Override
   public boolean visit(SingleVariableDeclaration node) {
-    buffer.append(NameTable.javaRefToObjC(node.getType()));
+    String type = NameTable.javaRefToObjC(node.getType());
+    buffer.append(type);
     if (node.isVarargs()) {
       buffer.append("...");
     }
-    if (buffer.charAt(buffer.length() - 1) != '*') {
+    if (node.isVarargs() || !type.endsWith("*")) {
       buffer.append(" ");
     }
     node.getName().accept(this);
@@ -17,7 +17,7 @@
 package com.google.devtools.j2objc.sym;
 
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.TranslationContext;
 import com.google.devtools.j2objc.types.Types;
 
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -42,30 +42,35 @@ public class Symbols {
   private final Map<IBinding, Symbol> symbolTable = Maps.newHashMap();
   private final CompilationUnit currentUnit;
   private final Scope globalScope = new Scope();
-  private static Symbols instance;
   private Map<ASTNode, Scope> scopeTable;
-  private static Set<IBinding> resolutionSet = Sets.newLinkedHashSet();
 
   /**
    * Initialize this service using the AST returned by the parser.
    */
   public static void initialize(CompilationUnit unit) {
-    instance = new Symbols(unit);
-    for (IBinding binding : resolutionSet) {
+    TranslationContext context = TranslationContext.current();
+    context.setSymbols(new Symbols(unit));
+    Set<IBinding> pendingBindings = context.getPendingBindings();
+    for (IBinding binding : pendingBindings) {
       resolveQueuedBinding(binding);
     }
-    resolutionSet.clear();
-    instance.scopeTable = SymbolTableBuilder.build(unit, instance.symbolTable);
+    pendingBindings.clear();
+    instance().scopeTable = SymbolTableBuilder.build(unit, instance().symbolTable);
   }
 
   public static void cleanup() {
-    instance = null;
-    resolutionSet.clear();
+    TranslationContext context = TranslationContext.current();
+    context.setSymbols(null);
+    context.getPendingBindings().clear();
+  }
+
+  private static Symbols instance() {
+    return TranslationContext.current().getSymbols();
   }
 
   public static void scanAST(ASTNode node) {
-    Map<ASTNode, Scope> newScopes = SymbolTableBuilder.build(node, instance.symbolTable);
-    instance.scopeTable.putAll(newScopes);
+    Map<ASTNode, Scope> newScopes = SymbolTableBuilder.build(node, instance().symbolTable);
+    instance().scopeTable.putAll(newScopes);
   }
 
   private Symbols(CompilationUnit unit) {
@@ -73,13 +78,13 @@ public class Symbols {
   }
 
   public static Scope getGlobalScope() {
-    return instance.globalScope;
+    return instance().globalScope;
   }
 
   public static Scope getScope(ASTNode node) {
     ASTNode n = node;
     while (n != null) {
-      Scope scope = instance.scopeTable.get(n);
+      Scope scope = instance().scopeTable.get(n);
       if (scope != null) {
         return scope;
       }
@@ -89,11 +94,7 @@ public class Symbols {
   }
 
   public static void queueForResolution(IBinding binding) {
-    if (resolutionSet != null) {
-      resolutionSet.add(binding);
-    } else {
-      resolveQueuedBinding(binding);
-    }
+    TranslationContext.current().getPendingBindings().add(binding);
   }
 
   private static void resolveQueuedBinding(IBinding binding) {
@@ -111,7 +112,7 @@ public class Symbols {
       return null;
     }
     binding = binding.getTypeDeclaration();
-    TypeSymbol symbol = (TypeSymbol) instance.symbolTable.get(binding);
+    TypeSymbol symbol = (TypeSymbol) instance().symbolTable.get(binding);
     if (symbol == null) {
       // Update table with symbol references.
       if (binding.getSuperclass() != null) {
@@ -135,9 +136,9 @@ public class Symbols {
         MethodSymbol declaringMethod = resolve(binding.getDeclaringMethod());
         enclosingScope = declaringMethod.getScope();
       }
-      ASTNode declaration = instance.currentUnit.findDeclaringNode(binding);
+      ASTNode declaration = instance().currentUnit.findDeclaringNode(binding);
       symbol = new TypeSymbol(declaration, binding, enclosingScope);
-      instance.symbolTable.put(binding, symbol);
+      instance().symbolTable.put(binding, symbol);
       for (IVariableBinding field : binding.getDeclaredFields()) {
         resolve(field);
       }
@@ -157,13 +158,13 @@ public class Symbols {
       return null;
     }
     binding = binding.getMethodDeclaration();
-    MethodSymbol symbol = (MethodSymbol) instance.symbolTable.get(binding);
+    MethodSymbol symbol = (MethodSymbol) instance().symbolTable.get(binding);
     if (symbol == null) {
       TypeSymbol declaringType = resolve(binding.getDeclaringClass());
       if (declaringType != null) {  // Declaring type is null for functions.
         symbol = new MethodSymbol(method, binding, declaringType.getScope());
       }
-      instance.symbolTable.put(binding, symbol);
+      instance().symbolTable.put(binding, symbol);
     }
     if (method != null) {
       scanAST(method);
@@ -176,7 +177,7 @@ public class Symbols {
       return null;
     }
     binding = binding.getVariableDeclaration();
-    VariableSymbol symbol = (VariableSymbol) instance.symbolTable.get(binding);
+    VariableSymbol symbol = (VariableSymbol) instance().symbolTable.get(binding);
     if (symbol == null) {
       resolve(binding.getType());
       IMethodBinding declaringMethod = binding.getDeclaringMethod();
@@ -190,16 +191,16 @@ public class Symbols {
           symbol = new VariableSymbol(binding, type.getScope());
         }
       }
-      instance.symbolTable.put(binding, symbol);
+      instance().symbolTable.put(binding, symbol);
     }
     return symbol;
   }
 
   public static void substitute(ASTNode oldNode, ASTNode newNode) {
-    Scope scope = instance.scopeTable.get(oldNode);
+    Scope scope = instance().scopeTable.get(oldNode);
     if (scope != null) {
-      instance.scopeTable.remove(oldNode);
-      Scope previous = instance.scopeTable.put(newNode, scope);
+      instance().scopeTable.remove(oldNode);
+      Scope previous = instance().scopeTable.put(newNode, scope);
       assert previous == null;
     }
   }
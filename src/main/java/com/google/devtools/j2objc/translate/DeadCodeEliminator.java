@@ -53,6 +53,7 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.Modifier.ModifierKeyword;
 import org.eclipse.jdt.core.dom.NormalAnnotation;
+import org.eclipse.jdt.core.dom.NullLiteral;
 import org.eclipse.jdt.core.dom.ParameterizedType;
 import org.eclipse.jdt.core.dom.PrimitiveType;
 import org.eclipse.jdt.core.dom.SingleMemberAnnotation;
@@ -98,10 +99,45 @@ public class DeadCodeEliminator extends ErrorReportingASTVisitor {
 
   private final DeadCodeMap deadCodeMap;
 
+  // Set when declarations are added, rather than only deleted.
+  private boolean generatedCode = false;
+
+  // Final fields given default values, which resolveGeneratedInitializers()
+  // binds in place.
+  private final List<VariableDeclarationFragment> generatedInitializers = Lists.newArrayList();
+
   public DeadCodeEliminator(DeadCodeMap deadCodeMap) {
     this.deadCodeMap = deadCodeMap;
   }
 
+  /**
+   * Returns true if declarations were added to the unit: method stubs,
+   * constructors, or classes for stubs' return types.  These don't have
+   * bindings, and can't be given any without compiling them, so the unit
+   * must be rewritten and parsed again before it's translated.  Otherwise
+   * dead code was only deleted, or final fields were given default values,
+   * and the unit can be translated as is once
+   * {@link #resolveGeneratedInitializers} is called.
+   */
+  public boolean hasGeneratedCode() {
+    return generatedCode;
+  }
+
+  /**
+   * Adds bindings for the default values given to final fields to the
+   * unit's binding map.  The unit's Types must already be initialized.
+   */
+  public void resolveGeneratedInitializers() {
+    for (VariableDeclarationFragment var : generatedInitializers) {
+      Expression value = var.getInitializer();
+      if (value instanceof NullLiteral) {
+        var.setInitializer(Types.newNullLiteral());
+      } else {
+        Types.addBinding(value, var.resolveBinding().getType());
+      }
+    }
+  }
+
   // =========================================================================
   // Top-level elimination
 
@@ -526,6 +562,7 @@ public class DeadCodeEliminator extends ErrorReportingASTVisitor {
     // Add to type
     scopeBody.add(decl);
     generatedMethods.add(decl);
+    generatedCode = true;
   }
 
   /**
@@ -623,6 +660,7 @@ public class DeadCodeEliminator extends ErrorReportingASTVisitor {
     AST ast = var.getAST();
     ITypeBinding type = ((FieldDeclaration) var.getParent()).getType().resolveBinding();
     var.setInitializer(getDefaultValue(ast, type));
+    generatedInitializers.add(var);
   }
 
   /**
@@ -700,6 +738,7 @@ public class DeadCodeEliminator extends ErrorReportingASTVisitor {
     constructor.setName(ast.newSimpleName(node.getName().getIdentifier()));
     constructor.modifiers().add(ast.newModifier(ModifierKeyword.PROTECTED_KEYWORD));
     node.bodyDeclarations().add(constructor);
+    generatedCode = true;
 
     Block block = ast.newBlock();
     constructor.setBody(block);
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.types.IOSMethodBinding;
+import com.google.devtools.j2objc.types.Types;
+import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
+import com.google.devtools.j2objc.util.NameTable;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.SuperFieldAccess;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+/**
+ * Finds the methods that can't be overridden, so the generators can
+ * implement them as C functions that their class calls directly, instead
+ * of sending messages.  These are the private, static and final methods,
+ * and the methods of final classes.
+ * <p>
+ * Methods whose generated code depends on being a method aren't
+ * devirtualized: those that reference super, static synchronized methods
+ * (which synchronize on their class), and methods that are mapped to iOS
+ * methods or whose selectors are special, such as actions, varargs methods,
+ * initialize, main and the destructors.  Neither are the methods added by
+ * the translator, such as static variable accessors.
+ * </p>
+ */
+public class Devirtualizer extends ErrorReportingASTVisitor {
+
+  @Override
+  public boolean visit(TypeDeclaration node) {
+    if (node.isInterface()) {
+      return true;
+    }
+    ITypeBinding type = Types.getTypeBinding(node);
+    boolean finalClass = type != null && Modifier.isFinal(type.getModifiers());
+    for (MethodDeclaration method : node.getMethods()) {
+      IMethodBinding binding = Types.getMethodBinding(method);
+      if (binding != null && canDevirtualize(method, binding, finalClass)) {
+        Types.addDirectMethod(binding);
+      }
+    }
+    return true;
+  }
+
+  private boolean canDevirtualize(MethodDeclaration method, IMethodBinding binding,
+      boolean finalClass) {
+    int modifiers = method.getModifiers();
+    // Methods added by the translator, such as static variable accessors,
+    // aren't resolved.
+    if (method.resolveBinding() == null || method.isConstructor() || method.getBody() == null
+        || Modifier.isAbstract(modifiers) || Modifier.isNative(modifiers)) {
+      return false;
+    }
+    boolean isStatic = Modifier.isStatic(modifiers);
+    if (!finalClass && !isStatic && !Modifier.isPrivate(modifiers)
+        && !Modifier.isFinal(modifiers)) {
+      return false;
+    }
+    if (isStatic && Modifier.isSynchronized(modifiers)) {
+      return false;
+    }
+    if (binding instanceof IOSMethodBinding || binding.isVarargs() || Types.isFunction(binding)
+        || Types.isAction(binding) || Types.getMappedMethod(binding) != null) {
+      return false;
+    }
+    String name = method.getName().getIdentifier();
+    if (isStatic && (name.equals(NameTable.CLINIT_NAME) || name.equals("main"))) {
+      return false;
+    }
+    if (!isStatic && method.parameters().isEmpty()
+        && (name.equals(DestructorGenerator.FINALIZE_METHOD)
+            || name.equals(DestructorGenerator.DEALLOC_METHOD))) {
+      return false;
+    }
+    return !referencesSuper(method);
+  }
+
+  private static boolean referencesSuper(MethodDeclaration method) {
+    final boolean[] result = { false };
+    method.getBody().accept(new ASTVisitor() {
+      @Override
+      public boolean visit(SuperMethodInvocation node) {
+        result[0] = true;
+        return false;
+      }
+
+      @Override
+      public boolean visit(SuperFieldAccess node) {
+        result[0] = true;
+        return false;
+      }
+    });
+    return result[0];
+  }
+}
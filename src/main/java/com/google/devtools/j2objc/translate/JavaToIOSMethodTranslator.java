@@ -18,16 +18,18 @@ package com.google.devtools.j2objc.translate;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.devtools.j2objc.J2ObjC;
 import com.google.devtools.j2objc.types.GeneratedMethodBinding;
 import com.google.devtools.j2objc.types.GeneratedVariableBinding;
 import com.google.devtools.j2objc.types.IOSMethod;
+import com.google.devtools.j2objc.types.IOSMethodSignature;
 import com.google.devtools.j2objc.types.IOSParameter;
 import com.google.devtools.j2objc.types.IOSTypeBinding;
 import com.google.devtools.j2objc.types.JavaMethod;
 import com.google.devtools.j2objc.types.NodeCopier;
 import com.google.devtools.j2objc.types.Types;
 import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
+import com.google.devtools.j2objc.util.MethodMappings;
+import com.google.devtools.j2objc.util.MethodMappings.MappedMethod;
 import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.wrapper.MethodMapBuilder;
 import com.google.devtools.j2objc.wrapper.WrapperListBuilder;
@@ -69,18 +71,22 @@ import java.util.Map;
 public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
   private CompilationUnit unit;
   private AST ast;
-  private Map<IMethodBinding, JavaMethod> descriptions = Maps.newLinkedHashMap();
+  private Map<IMethodBinding, MappedMethod> descriptions = Maps.newLinkedHashMap();
   private List<IMethodBinding> overridableMethods = Lists.newArrayList();
   private List<IMethodBinding> mappedMethods = Lists.newArrayList();
   private final ITypeBinding javaLangCloneable;
 
-  private final Map<String, String> methodMappings = Maps.newHashMap();
+  private final MethodMappings methodMappings;
 
-  public JavaToIOSMethodTranslator(CompilationUnit unit, Map<String, String> methodMappings) {
+  // The mappings of this unit's wrapper methods, which the mapping files
+  // take precedence over.
+  private final Map<String, IOSMethodSignature> wrapperMappings = Maps.newHashMap();
+
+  public JavaToIOSMethodTranslator(CompilationUnit unit, MethodMappings methodMappings) {
     this.unit = unit;
     this.ast = unit.getAST();
+    this.methodMappings = methodMappings;
     initializeWrapperMethodBindings();
-    this.methodMappings.putAll(methodMappings);
     initializeWrapperTypeBindings();
     loadTargetMethods(ast.resolveWellKnownType("java.lang.Object"));
     loadTargetMethods(ast.resolveWellKnownType("java.lang.Class"));
@@ -91,7 +97,9 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
   }
 
   private void initializeWrapperMethodBindings() {
-    methodMappings.putAll(MethodMapBuilder.buildMap(unit));
+    for (Map.Entry<String, String> entry : MethodMapBuilder.buildMap(unit).entrySet()) {
+      wrapperMappings.put(entry.getKey(), IOSMethodSignature.parse(entry.getValue()));
+    }
   }
 
   private void initializeWrapperTypeBindings() {
@@ -149,9 +157,9 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
   public boolean visit(MethodDeclaration node) {
     // See if method has been directly mapped.
     IMethodBinding binding = Types.getMethodBinding(node);
-    JavaMethod desc = getDescription(binding);
+    MappedMethod desc = getDescription(binding);
     if (desc != null) {
-      mapMethod(node, binding, methodMappings.get(desc.getKey()));
+      mapMethod(node, binding, desc.getSignature());
       return true;
     }
 
@@ -159,23 +167,20 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
     for (IMethodBinding overridable : overridableMethods) {
       if (/*!binding.isConstructor() &&*/
           (binding.isEqualTo(overridable) || binding.overrides(overridable))) {
-        JavaMethod md = getDescription(overridable);
+        MappedMethod md = getDescription(overridable);
         if (md == null) {
           continue;
         }
-        String key = md.getKey();
-        String value = methodMappings.get(key);
-        if (value != null) {
-          mapMethod(node, binding, value);
-        }
+        mapMethod(node, binding, md.getSignature());
         return true;
       }
     }
     return true;
   }
 
-  private void mapMethod(MethodDeclaration node, IMethodBinding binding, String value) {
-    IOSMethod iosMethod = new IOSMethod(value, binding, ast);
+  private void mapMethod(MethodDeclaration node, IMethodBinding binding,
+      IOSMethodSignature value) {
+    IOSMethod iosMethod = new IOSMethod(value, binding);
     node.setName(ast.newSimpleName(iosMethod.getName()));
     Types.addBinding(node.getName(), iosMethod.resolveBinding());
     Types.addMappedIOSMethod(binding, iosMethod);
@@ -225,29 +230,23 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
     }
 
     IMethodBinding binding = Types.getMethodBinding(node);
-    JavaMethod md = descriptions.get(binding);
+    MappedMethod md = descriptions.get(binding);
     // FIXME: mapped ClassInstanceCreation
     if (md != null && !Types.isWrapper(binding.getDeclaringClass())) {
-      String key = md.getKey();
-      String value = methodMappings.get(key);
-      if (value != null) {
-        IOSMethod iosMethod = new IOSMethod(value, binding, binding.getDeclaringClass(), ast);
-        IMethodBinding methodBinding = iosMethod.resolveBinding();
-        MethodInvocation newInvocation = createMappedInvocation(iosMethod, binding, methodBinding);
-
-        // Set parameters.
-        @SuppressWarnings("unchecked")
-        List<Expression> oldArgs = node.arguments(); // safe by definition
-        @SuppressWarnings("unchecked")
-        List<Expression> newArgs = newInvocation.arguments(); // safe by definition
-        copyInvocationArguments(null, oldArgs, newArgs);
-
-        Types.substitute(node, newInvocation);
-        Types.addMappedIOSMethod(binding, iosMethod);
-        Types.addMappedInvocation(node, iosMethod.resolveBinding());
-      } else {
-        J2ObjC.error(node, createMissingMethodMessage(binding));
-      }
+      IOSMethod iosMethod = new IOSMethod(md.getSignature(), binding, binding.getDeclaringClass());
+      IMethodBinding methodBinding = iosMethod.resolveBinding();
+      MethodInvocation newInvocation = createMappedInvocation(iosMethod, binding, methodBinding);
+
+      // Set parameters.
+      @SuppressWarnings("unchecked")
+      List<Expression> oldArgs = node.arguments(); // safe by definition
+      @SuppressWarnings("unchecked")
+      List<Expression> newArgs = newInvocation.arguments(); // safe by definition
+      copyInvocationArguments(null, oldArgs, newArgs);
+
+      Types.substitute(node, newInvocation);
+      Types.addMappedIOSMethod(binding, iosMethod);
+      Types.addMappedInvocation(node, iosMethod.resolveBinding());
     }
     return true;
   }
@@ -278,7 +277,7 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
     }
 
     IMethodBinding binding = Types.getMethodBinding(node);
-    JavaMethod md = getDescription(binding);
+    MappedMethod md = getDescription(binding);
     if (md == null && !binding.getName().equals("clone")) { // never map clone()
       IVariableBinding receiver =
           node.getExpression() != null ? Types.getVariableBinding(node.getExpression()) : null;
@@ -295,13 +294,7 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
       }
     }
     if (md != null) {
-      String key = md.getKey();
-      String value = methodMappings.get(key);
-      if (value == null) {
-        J2ObjC.error(node, createMissingMethodMessage(binding));
-        return true;
-      }
-      IOSMethod iosMethod = new IOSMethod(value, binding, ast);
+      IOSMethod iosMethod = new IOSMethod(md.getSignature(), binding);
       NameTable.rename(binding, iosMethod.getName());
       if (node.getExpression() instanceof SimpleName) {
         SimpleName expr = (SimpleName) node.getExpression();
@@ -316,16 +309,13 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
       // Not mapped, check if it overrides a mapped method.
       for (IMethodBinding methodBinding : mappedMethods) {
         if (binding.overrides(methodBinding)) {
-          JavaMethod desc = getDescription(methodBinding);
+          MappedMethod desc = getDescription(methodBinding);
           if (desc != null) {
-            String value = methodMappings.get(desc.getKey());
-            if (value != null) {
-              IOSMethod iosMethod = new IOSMethod(value, binding, ast);
-              NameTable.rename(methodBinding, iosMethod.getName());
-              Types.addMappedIOSMethod(binding, iosMethod);
-              Types.addMappedInvocation(node, iosMethod.resolveBinding());
-              break;
-            }
+            IOSMethod iosMethod = new IOSMethod(desc.getSignature(), binding);
+            NameTable.rename(methodBinding, iosMethod.getName());
+            Types.addMappedIOSMethod(binding, iosMethod);
+            Types.addMappedInvocation(node, iosMethod.resolveBinding());
+            break;
           }
         }
       }
@@ -373,16 +363,9 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
     }
 
     IMethodBinding binding = Types.getMethodBinding(node);
-    JavaMethod md = getDescription(binding);
+    MappedMethod md = getDescription(binding);
     if (md != null) {
-      String key = md.getKey();
-      String value = methodMappings.get(key);
-      if (value == null) {
-        // Method has same name as a mapped method's, but it's ignored since
-        // it doesn't override it.
-        return super.visit(node);
-      }
-      IOSMethod iosMethod = new IOSMethod(value, binding, ast);
+      IOSMethod iosMethod = new IOSMethod(md.getSignature(), binding);
       node.setName(NameTable.unsafeSimpleName(iosMethod.getName(), ast));
       SimpleName name = node.getName();
       if (name.getIdentifier().equals(binding.getDeclaringClass().getName())
@@ -398,17 +381,14 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
       // Not mapped, check if it overrides a mapped method.
       for (IMethodBinding methodBinding : mappedMethods) {
         if (binding.overrides(methodBinding)) {
-          JavaMethod desc = getDescription(methodBinding);
+          MappedMethod desc = getDescription(methodBinding);
           if (desc != null) {
-            String value = methodMappings.get(desc.getKey());
-            if (value != null) {
-              IOSMethod iosMethod = new IOSMethod(value, binding, ast);
-              node.setName(NameTable.unsafeSimpleName(iosMethod.getName(), ast));
-              Types.addMappedIOSMethod(binding, iosMethod);
-              IMethodBinding newBinding = iosMethod.resolveBinding();
-              Types.addBinding(node, newBinding);
-              Types.addBinding(node.getName(), newBinding);
-            }
+            IOSMethod iosMethod = new IOSMethod(desc.getSignature(), binding);
+            node.setName(NameTable.unsafeSimpleName(iosMethod.getName(), ast));
+            Types.addMappedIOSMethod(binding, iosMethod);
+            IMethodBinding newBinding = iosMethod.resolveBinding();
+            Types.addBinding(node, newBinding);
+            Types.addBinding(node.getName(), newBinding);
           }
         }
       }
@@ -426,16 +406,9 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
     }
 
     IMethodBinding binding = Types.getMethodBinding(node);
-    JavaMethod md = getDescription(binding);
+    MappedMethod md = getDescription(binding);
     if (md != null) {
-      String key = md.getKey();
-      String value = methodMappings.get(key);
-      if (value == null) {
-        // Method has same name as a mapped method's, but it's ignored since
-        // it doesn't override it.
-        return super.visit(node);
-      }
-      IOSMethod iosMethod = new IOSMethod(value, binding, ast);
+      IOSMethod iosMethod = new IOSMethod(md.getSignature(), binding);
 //      node.setName(NameTable.unsafeSimpleName(iosMethod.getName(), ast));
 //      SimpleName name = node.getName();
 //      if (name.getIdentifier().equals(binding.getDeclaringClass().getName())
@@ -451,17 +424,14 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
       // Not mapped, check if it overrides a mapped method.
       for (IMethodBinding methodBinding : mappedMethods) {
         if (binding.overrides(methodBinding)) {
-          JavaMethod desc = getDescription(methodBinding);
+          MappedMethod desc = getDescription(methodBinding);
           if (desc != null) {
-            String value = methodMappings.get(desc.getKey());
-            if (value != null) {
-              IOSMethod iosMethod = new IOSMethod(value, binding, ast);
-              //node.setName(NameTable.unsafeSimpleName(iosMethod.getName(), ast));
-              Types.addMappedIOSMethod(binding, iosMethod);
-              IMethodBinding newBinding = iosMethod.resolveBinding();
-              Types.addBinding(node, newBinding);
-              //Types.addBinding(node.getName(), newBinding);
-            }
+            IOSMethod iosMethod = new IOSMethod(desc.getSignature(), binding);
+            //node.setName(NameTable.unsafeSimpleName(iosMethod.getName(), ast));
+            Types.addMappedIOSMethod(binding, iosMethod);
+            IMethodBinding newBinding = iosMethod.resolveBinding();
+            Types.addBinding(node, newBinding);
+            //Types.addBinding(node.getName(), newBinding);
           }
         }
       }
@@ -469,20 +439,27 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
     return true;
   }
 
-  private JavaMethod getDescription(IMethodBinding binding) {
-    if (descriptions.containsKey(binding)) {
-      return descriptions.get(binding);
-    }
-    return addDescription(binding);
+  private MappedMethod getDescription(IMethodBinding binding) {
+    MappedMethod desc = descriptions.get(binding);
+    return desc != null ? desc : addDescription(binding);
   }
 
-  private JavaMethod addDescription(IMethodBinding binding) {
-    JavaMethod desc = JavaMethod.getJavaMethod(binding);
-    if (desc != null && methodMappings.containsKey(desc.getKey())) {
+  private MappedMethod addDescription(IMethodBinding binding) {
+    // The mapping files take precedence over wrapper methods.
+    MappedMethod desc = methodMappings.getMappedMethod(binding);
+    if (desc == null && !wrapperMappings.isEmpty()) {
+      JavaMethod javaMethod = JavaMethod.getJavaMethod(binding);
+      if (javaMethod != null) {
+        IOSMethodSignature signature = wrapperMappings.get(javaMethod.getKey());
+        if (signature != null) {
+          desc = new MappedMethod(javaMethod.getKey(), signature);
+        }
+      }
+    }
+    if (desc != null) {
       descriptions.put(binding, desc);
-      return desc;
     }
-    return null;  // binding isn't mapped.
+    return desc;  // null if binding isn't mapped.
   }
 
   /**
@@ -499,26 +476,6 @@ public class JavaToIOSMethodTranslator extends ErrorReportingASTVisitor {
     return false;
   }
 
-  private String createMissingMethodMessage(IMethodBinding binding) {
-    StringBuilder sb = new StringBuilder("Internal error: ");
-    sb.append(binding.getDeclaringClass().getName());
-    if (!binding.isConstructor()) {
-      sb.append('.');
-      sb.append(binding.getName());
-    }
-    sb.append('(');
-    ITypeBinding[] args = binding.getParameterTypes();
-    int nargs = args.length;
-    for (int i = 0; i < nargs; i++) {
-      sb.append(args[i].getName());
-      if (i + 1 < nargs) {
-        sb.append(',');
-      }
-    }
-    sb.append(") not mapped");
-    return sb.toString();
-  }
-
   private SingleVariableDeclaration makeZoneParameter(GeneratedVariableBinding zoneBinding) {
     SimpleName zoneName = ast.newSimpleName("zone");
     Types.addBinding(zoneName, zoneBinding);
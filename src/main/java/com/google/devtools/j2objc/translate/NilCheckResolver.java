@@ -0,0 +1,967 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.types.Types;
+import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.ArrayCreation;
+import org.eclipse.jdt.core.dom.ArrayInitializer;
+import org.eclipse.jdt.core.dom.AssertStatement;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.BreakStatement;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.CatchClause;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.ContinueStatement;
+import org.eclipse.jdt.core.dom.DoStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.InstanceofExpression;
+import org.eclipse.jdt.core.dom.LabeledStatement;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NullLiteral;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.SwitchCase;
+import org.eclipse.jdt.core.dom.SwitchStatement;
+import org.eclipse.jdt.core.dom.SynchronizedStatement;
+import org.eclipse.jdt.core.dom.ThisExpression;
+import org.eclipse.jdt.core.dom.ThrowStatement;
+import org.eclipse.jdt.core.dom.TryStatement;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
+import org.eclipse.jdt.core.dom.TypeLiteral;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the dereferenced variables that can't be null, so the generators
+ * don't print nil checks for them.  Each method body is analyzed forward,
+ * tracking which local variables and parameters are known to be non-null.
+ * A variable is non-null after it's assigned a new object, array, string
+ * or class literal, after it's dereferenced, and where a test that it isn't
+ * null or is an instance of a type succeeded.  A final instance field is
+ * non-null in its class's methods if it's only ever assigned such values,
+ * and in its class's constructors once it's assigned one.  That isn't known
+ * in methods that may run before the constructors assign it: methods that
+ * override an inherited method, which a superclass constructor may call,
+ * and methods the constructors call.  Nor is it known for the fields of a
+ * class whose constructors let the new object escape.
+ * <p>
+ * Objective-C, like C, doesn't specify the order an expression's operands
+ * are evaluated in, so a dereference only makes its variable non-null at
+ * the next sequence point: the end of the full expression, or the first
+ * operand of a conditional operator.
+ * </p>
+ */
+public class NilCheckResolver extends ErrorReportingASTVisitor {
+
+  // The final instance fields that are only assigned non-null values.
+  private final Set<IVariableBinding> nonNullFields = Sets.newIdentityHashSet();
+
+  // The methods that may run while their object is being constructed.
+  private final Set<IMethodBinding> constructionMethods = Sets.newHashSet();
+
+  // The class of the constructor being analyzed, or null if the method
+  // isn't a constructor.
+  private ITypeBinding constructedType;
+
+  // True while analyzing one of the construction methods.
+  private boolean inConstructionMethod = false;
+
+  @Override
+  public boolean visit(CompilationUnit node) {
+    findNonNullFields(node);
+    findConstructionMethods(node);
+    return true;
+  }
+
+  @Override
+  public boolean visit(MethodDeclaration node) {
+    String name = node.getName().getIdentifier();
+    if (node.getBody() == null || name.equals(DestructorGenerator.FINALIZE_METHOD)
+        || name.equals(DestructorGenerator.DEALLOC_METHOD)) {
+      // Destructors release fields by assigning them nil.
+      return true;
+    }
+    IMethodBinding binding = Types.getMethodBinding(node);
+    constructedType = binding.isConstructor() ? binding.getDeclaringClass() : null;
+    inConstructionMethod = constructionMethods.contains(binding.getMethodDeclaration());
+    analyze(node.getBody(), newSet());
+    constructedType = null;
+    inConstructionMethod = false;
+    return true;
+  }
+
+  /**
+   * Analyzes a statement.
+   *
+   * @param in the variables that are non-null before the statement
+   * @return the variables that are non-null if the statement completes
+   *     normally, or null if it can't
+   */
+  @SuppressWarnings("unchecked")
+  private Set<IVariableBinding> analyze(Statement stmt, Set<IVariableBinding> in) {
+    if (stmt instanceof Block) {
+      Set<IVariableBinding> s = in;
+      for (Statement child : (List<Statement>) ((Block) stmt).statements()) {
+        s = analyze(child, s != null ? s : newSet());
+      }
+      return s;
+    } else if (stmt instanceof ExpressionStatement) {
+      return analyze(((ExpressionStatement) stmt).getExpression(), in);
+    } else if (stmt instanceof VariableDeclarationStatement) {
+      return analyzeDeclarations(((VariableDeclarationStatement) stmt).fragments(), in);
+    } else if (stmt instanceof IfStatement) {
+      IfStatement ifStmt = (IfStatement) stmt;
+      Branches branches = analyzeCondition(ifStmt.getExpression(), in);
+      Set<IVariableBinding> thenOut = analyze(ifStmt.getThenStatement(), branches.whenTrue);
+      Statement elseStmt = ifStmt.getElseStatement();
+      Set<IVariableBinding> elseOut =
+          elseStmt != null ? analyze(elseStmt, branches.whenFalse) : branches.whenFalse;
+      return merge(thenOut, elseOut);
+    } else if (stmt instanceof WhileStatement) {
+      // A loop starts each iteration knowing what it knew before the loop,
+      // less the variables the loop assigns.  The loop's exits are merged
+      // the same way, since they include breaks.
+      WhileStatement loop = (WhileStatement) stmt;
+      Set<IVariableBinding> entry = subtract(in, assignedVariables(loop));
+      analyze(loop.getBody(), analyzeCondition(loop.getExpression(), entry).whenTrue);
+      return entry;
+    } else if (stmt instanceof DoStatement) {
+      DoStatement loop = (DoStatement) stmt;
+      Set<IVariableBinding> entry = subtract(in, assignedVariables(loop));
+      analyze(loop.getBody(), entry);
+      analyzeCondition(loop.getExpression(), entry);
+      return entry;
+    } else if (stmt instanceof ForStatement) {
+      ForStatement loop = (ForStatement) stmt;
+      Set<IVariableBinding> s = in;
+      for (Expression init : (List<Expression>) loop.initializers()) {
+        s = init instanceof VariableDeclarationExpression
+            ? analyzeDeclarations(((VariableDeclarationExpression) init).fragments(), s)
+            : analyze(init, s);
+      }
+      Set<IVariableBinding> assigned = assignedVariables(loop.getBody());
+      if (loop.getExpression() != null) {
+        assigned.addAll(assignedVariables(loop.getExpression()));
+      }
+      for (Expression updater : (List<Expression>) loop.updaters()) {
+        assigned.addAll(assignedVariables(updater));
+      }
+      Set<IVariableBinding> entry = subtract(s, assigned);
+      Set<IVariableBinding> bodyIn = loop.getExpression() != null
+          ? analyzeCondition(loop.getExpression(), entry).whenTrue : entry;
+      analyze(loop.getBody(), bodyIn);
+      for (Expression updater : (List<Expression>) loop.updaters()) {
+        analyze(updater, entry);
+      }
+      return entry;
+    } else if (stmt instanceof EnhancedForStatement) {
+      EnhancedForStatement loop = (EnhancedForStatement) stmt;
+      // Loops over collections are translated into fast enumerations of
+      // their expression, which is dereferenced.
+      Set<IVariableBinding> entry =
+          subtract(analyzeDereference(loop.getExpression(), in), assignedVariables(loop));
+      analyze(loop.getBody(), entry);
+      return entry;
+    } else if (stmt instanceof LabeledStatement) {
+      // The labeled statement may be exited by a break.
+      analyze(((LabeledStatement) stmt).getBody(), in);
+      return subtract(in, assignedVariables(stmt));
+    } else if (stmt instanceof SwitchStatement) {
+      SwitchStatement switchStmt = (SwitchStatement) stmt;
+      Set<IVariableBinding> entry = subtract(analyze(switchStmt.getExpression(), in),
+          assignedVariables(switchStmt));
+      Set<IVariableBinding> s = entry;
+      for (Statement child : (List<Statement>) switchStmt.statements()) {
+        s = child instanceof SwitchCase ? entry : analyze(child, s != null ? s : entry);
+      }
+      return entry;
+    } else if (stmt instanceof TryStatement) {
+      return analyzeTry((TryStatement) stmt, in);
+    } else if (stmt instanceof SynchronizedStatement) {
+      SynchronizedStatement syncStmt = (SynchronizedStatement) stmt;
+      return analyze(syncStmt.getBody(), analyze(syncStmt.getExpression(), in));
+    } else if (stmt instanceof ReturnStatement) {
+      Expression e = ((ReturnStatement) stmt).getExpression();
+      if (e != null) {
+        analyze(e, in);
+      }
+      return null;
+    } else if (stmt instanceof ThrowStatement) {
+      analyze(((ThrowStatement) stmt).getExpression(), in);
+      return null;
+    } else if (stmt instanceof BreakStatement || stmt instanceof ContinueStatement) {
+      return null;
+    } else if (stmt instanceof ConstructorInvocation) {
+      return analyze(((ConstructorInvocation) stmt).arguments(), in);
+    } else if (stmt instanceof SuperConstructorInvocation) {
+      SuperConstructorInvocation superCall = (SuperConstructorInvocation) stmt;
+      Set<IVariableBinding> s = in;
+      if (superCall.getExpression() != null) {
+        s = analyze(superCall.getExpression(), s);
+      }
+      return analyze(superCall.arguments(), s);
+    } else if (stmt instanceof AssertStatement) {
+      // Assertions may be disabled, so their dereferences may not happen.
+      AssertStatement assertStmt = (AssertStatement) stmt;
+      analyze(assertStmt.getExpression(), in);
+      return subtract(in, assignedVariables(assertStmt));
+    } else if (stmt instanceof TypeDeclarationStatement) {
+      return in;
+    }
+    return subtract(in, assignedVariables(stmt));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Set<IVariableBinding> analyzeTry(TryStatement stmt, Set<IVariableBinding> in) {
+    Set<IVariableBinding> out = analyze(stmt.getBody(), in);
+
+    // An exception may be thrown anywhere in the body.
+    Set<IVariableBinding> assigned = assignedVariables(stmt.getBody());
+    for (CatchClause clause : (List<CatchClause>) stmt.catchClauses()) {
+      Set<IVariableBinding> catchIn = subtract(in, assigned);
+      catchIn.add(Types.getVariableBinding(clause.getException()).getVariableDeclaration());
+      out = merge(out, analyze(clause.getBody(), catchIn));
+    }
+
+    Block finallyBlock = stmt.getFinally();
+    if (finallyBlock == null) {
+      return out;
+    }
+    Set<IVariableBinding> finallyOut =
+        analyze(finallyBlock, subtract(in, assignedVariables(stmt)));
+    if (out == null || finallyOut == null) {
+      return null;
+    }
+    // The finally block completes normally after the body or a catch clause
+    // did, so what they knew is still known unless the finally block assigns it.
+    Set<IVariableBinding> result = subtract(out, assignedVariables(finallyBlock));
+    result.addAll(finallyOut);
+    return result;
+  }
+
+  private Set<IVariableBinding> analyzeDeclarations(List<VariableDeclarationFragment> fragments,
+      Set<IVariableBinding> in) {
+    Set<IVariableBinding> facts = copy(in);
+    for (VariableDeclarationFragment fragment : fragments) {
+      IVariableBinding var = Types.getVariableBinding(fragment).getVariableDeclaration();
+      Expression init = fragment.getInitializer();
+      boolean nonNull = false;
+      if (init != null) {
+        facts.addAll(scan(init, facts));
+        nonNull = isNonNullValue(init, facts);
+      }
+      facts.remove(var);
+      if (nonNull) {
+        facts.add(var);
+      }
+    }
+    return facts;
+  }
+
+  /**
+   * Analyzes a full expression.
+   */
+  private Set<IVariableBinding> analyze(Expression e, Set<IVariableBinding> in) {
+    Set<IVariableBinding> facts = copy(in);
+    facts.addAll(scan(e, facts));
+    return facts;
+  }
+
+  /**
+   * Analyzes a full expression whose value is dereferenced.
+   */
+  private Set<IVariableBinding> analyzeDereference(Expression e, Set<IVariableBinding> in) {
+    Set<IVariableBinding> facts = copy(in);
+    ExpressionScanner scanner = new ExpressionScanner(facts);
+    scanner.dereference(e);
+    facts.addAll(scanner.pending);
+    return facts;
+  }
+
+  /**
+   * Analyzes a list of expressions that aren't separated by sequence points,
+   * such as a constructor invocation's arguments.
+   */
+  private Set<IVariableBinding> analyze(List<Expression> expressions, Set<IVariableBinding> in) {
+    Set<IVariableBinding> facts = copy(in);
+    Set<IVariableBinding> pending = newSet();
+    for (Expression e : expressions) {
+      pending.addAll(scan(e, facts));
+    }
+    facts.addAll(pending);
+    return facts;
+  }
+
+  /**
+   * Analyzes an expression that's tested, returning what's known when it's
+   * true and when it's false.
+   */
+  private Branches analyzeCondition(Expression e, Set<IVariableBinding> in) {
+    if (e instanceof ParenthesizedExpression) {
+      return analyzeCondition(((ParenthesizedExpression) e).getExpression(), in);
+    }
+    if (e instanceof PrefixExpression
+        && ((PrefixExpression) e).getOperator() == PrefixExpression.Operator.NOT) {
+      Branches operand = analyzeCondition(((PrefixExpression) e).getOperand(), in);
+      return new Branches(operand.whenFalse, operand.whenTrue);
+    }
+    if (e instanceof InfixExpression) {
+      InfixExpression infix = (InfixExpression) e;
+      InfixExpression.Operator op = infix.getOperator();
+      if (op == InfixExpression.Operator.CONDITIONAL_AND
+          || op == InfixExpression.Operator.CONDITIONAL_OR) {
+        boolean isAnd = op == InfixExpression.Operator.CONDITIONAL_AND;
+        Branches result = analyzeCondition(infix.getLeftOperand(), in);
+        for (Expression operand : getRemainingOperands(infix)) {
+          // The next operand is evaluated if the previous ones didn't decide
+          // the result.
+          if (isAnd) {
+            Branches next = analyzeCondition(operand, result.whenTrue);
+            result = new Branches(next.whenTrue, intersect(result.whenFalse, next.whenFalse));
+          } else {
+            Branches next = analyzeCondition(operand, result.whenFalse);
+            result = new Branches(intersect(result.whenTrue, next.whenTrue), next.whenFalse);
+          }
+        }
+        return result;
+      }
+      if ((op == InfixExpression.Operator.NOT_EQUALS || op == InfixExpression.Operator.EQUALS)
+          && !infix.hasExtendedOperands()) {
+        IVariableBinding var = null;
+        if (infix.getRightOperand() instanceof NullLiteral) {
+          var = getTrackedVariable(infix.getLeftOperand());
+        } else if (infix.getLeftOperand() instanceof NullLiteral) {
+          var = getTrackedVariable(infix.getRightOperand());
+        }
+        if (var != null) {
+          Set<IVariableBinding> unknown = analyze(e, in);
+          Set<IVariableBinding> nonNull = copy(unknown);
+          nonNull.add(var);
+          return op == InfixExpression.Operator.NOT_EQUALS
+              ? new Branches(nonNull, unknown) : new Branches(unknown, nonNull);
+        }
+      }
+    }
+    if (e instanceof InstanceofExpression) {
+      IVariableBinding var = getTrackedVariable(((InstanceofExpression) e).getLeftOperand());
+      if (var != null) {
+        Set<IVariableBinding> unknown = analyze(e, in);
+        Set<IVariableBinding> nonNull = copy(unknown);
+        nonNull.add(var);
+        return new Branches(nonNull, unknown);
+      }
+    }
+    Set<IVariableBinding> out = analyze(e, in);
+    return new Branches(out, copy(out));
+  }
+
+  /**
+   * Scans an expression, marking its non-null dereferences and removing the
+   * variables it assigns from the known facts.
+   *
+   * @return the variables that are known to be non-null after the
+   *     expression's next sequence point
+   */
+  private Set<IVariableBinding> scan(Expression e, Set<IVariableBinding> facts) {
+    ExpressionScanner scanner = new ExpressionScanner(facts);
+    e.accept(scanner);
+    return scanner.pending;
+  }
+
+  /**
+   * Scans an expression, tracking which variables are dereferenced before
+   * its end.
+   */
+  private class ExpressionScanner extends ASTVisitor {
+    private final Set<IVariableBinding> facts;
+    private final Set<IVariableBinding> pending = newSet();
+
+    ExpressionScanner(Set<IVariableBinding> facts) {
+      this.facts = facts;
+    }
+
+    private void dereference(Expression target) {
+      if (isKnownNonNull(target, facts)) {
+        Types.addNonNullExpression(target);
+      }
+      target.accept(this);
+      IVariableBinding var = getTrackedVariable(target);
+      if (var != null) {
+        pending.add(var);
+      }
+    }
+
+    private void kill(IVariableBinding var) {
+      if (var != null) {
+        facts.remove(var);
+        pending.remove(var);
+      }
+    }
+
+    @Override
+    public boolean visit(AnonymousClassDeclaration node) {
+      return false;
+    }
+
+    @Override
+    public boolean visit(ArrayAccess node) {
+      dereference(node.getArray());
+      node.getIndex().accept(this);
+      return false;
+    }
+
+    @Override
+    public boolean visit(Assignment node) {
+      Expression lhs = node.getLeftHandSide();
+      Expression rhs = node.getRightHandSide();
+      IVariableBinding var = getTrackedVariable(lhs);
+      if (var == null) {
+        if (lhs instanceof ArrayAccess) {
+          lhs.accept(this);
+        } else if (lhs instanceof QualifiedName || lhs instanceof FieldAccess) {
+          // A retained field may be assigned without a nil check of its
+          // object, so the left side's dereferences aren't counted.
+          lhs.accept(new ExpressionScanner(facts));
+        }
+      }
+      rhs.accept(this);
+      if (var != null) {
+        Assignment.Operator op = node.getOperator();
+        boolean nonNull = op == Assignment.Operator.ASSIGN
+            ? isNonNullValue(rhs, facts)
+            : op == Assignment.Operator.PLUS_ASSIGN && isString(Types.getTypeBinding(lhs));
+        kill(var);
+        if (nonNull) {
+          pending.add(var);
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean visit(ConditionalExpression node) {
+      Branches branches = analyzeCondition(node.getExpression(), facts);
+      scanBranches(node, intersect(analyze(node.getThenExpression(), branches.whenTrue),
+          analyze(node.getElseExpression(), branches.whenFalse)));
+      return false;
+    }
+
+    @Override
+    public boolean visit(FieldAccess node) {
+      IVariableBinding field = Types.getVariableBinding(node);
+      if (field != null && !Modifier.isStatic(field.getModifiers())) {
+        dereference(node.getExpression());
+      } else {
+        node.getExpression().accept(this);
+      }
+      return false;
+    }
+
+    @Override
+    public boolean visit(InfixExpression node) {
+      InfixExpression.Operator op = node.getOperator();
+      if (op == InfixExpression.Operator.CONDITIONAL_AND
+          || op == InfixExpression.Operator.CONDITIONAL_OR) {
+        Branches branches = analyzeCondition(node, facts);
+        scanBranches(node, intersect(branches.whenTrue, branches.whenFalse));
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean visit(MethodInvocation node) {
+      Expression receiver = node.getExpression();
+      if (receiver != null) {
+        if (isMessageToInstance(Types.getMethodBinding(node))) {
+          dereference(receiver);
+        } else {
+          receiver.accept(this);
+        }
+      }
+      for (Object arg : node.arguments()) {
+        ((Expression) arg).accept(this);
+      }
+      return false;
+    }
+
+    @Override
+    public void endVisit(PostfixExpression node) {
+      kill(getTrackedVariable(node.getOperand()));
+    }
+
+    @Override
+    public void endVisit(PrefixExpression node) {
+      PrefixExpression.Operator op = node.getOperator();
+      if (op == PrefixExpression.Operator.INCREMENT
+          || op == PrefixExpression.Operator.DECREMENT) {
+        kill(getTrackedVariable(node.getOperand()));
+      }
+    }
+
+    @Override
+    public boolean visit(QualifiedName node) {
+      IVariableBinding var = Types.getVariableBinding(node);
+      if (var != null && !Modifier.isStatic(var.getModifiers())) {
+        dereference(node.getQualifier());
+      }
+      return false;
+    }
+
+    @Override
+    public boolean visit(SimpleName node) {
+      return false;
+    }
+
+    /**
+     * Updates the facts after a conditional operator, which has a sequence
+     * point after its first operand.
+     *
+     * @param known the variables known to be non-null after the operator
+     */
+    private void scanBranches(Expression node, Set<IVariableBinding> known) {
+      Set<IVariableBinding> assigned = assignedVariables(node);
+      facts.removeAll(assigned);
+      pending.removeAll(assigned);
+      for (IVariableBinding var : known) {
+        if (!facts.contains(var)) {
+          pending.add(var);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns true if a method invocation is printed as a message to its
+   * receiver, which is nil checked.
+   */
+  private static boolean isMessageToInstance(IMethodBinding method) {
+    return method != null && !Types.isFunction(method)
+        && !Modifier.isStatic(method.getModifiers())
+        && !(method.getName().equals("isAssignableFrom")
+             && method.getDeclaringClass().equals(Types.getIOSClass()));
+  }
+
+  /**
+   * Returns the variable an expression refers to if its nullness is
+   * tracked: a local variable or parameter, or in a constructor, one of the
+   * constructed class's final fields.
+   */
+  private IVariableBinding getTrackedVariable(Expression e) {
+    IVariableBinding var = null;
+    if (e instanceof SimpleName) {
+      var = Types.getVariableBinding(e);
+    } else if (e instanceof FieldAccess) {
+      Expression receiver = ((FieldAccess) e).getExpression();
+      if (receiver instanceof ThisExpression
+          && ((ThisExpression) receiver).getQualifier() == null) {
+        var = Types.getVariableBinding(e);
+      }
+    }
+    if (var == null || var.getType().isPrimitive()) {
+      return null;
+    }
+    var = var.getVariableDeclaration();
+    if (!var.isField()) {
+      return var;
+    }
+    int modifiers = var.getModifiers();
+    return Modifier.isFinal(modifiers) && !Modifier.isStatic(modifiers) && isConstructing(var)
+        ? var : null;
+  }
+
+  /**
+   * Returns true if a field belongs to the class whose constructor is being
+   * analyzed.
+   */
+  private boolean isConstructing(IVariableBinding field) {
+    ITypeBinding declaringClass = field.getDeclaringClass();
+    return constructedType != null && declaringClass != null
+        && declaringClass.getTypeDeclaration().isEqualTo(constructedType.getTypeDeclaration());
+  }
+
+  private boolean isKnownNonNull(Expression e, Set<IVariableBinding> facts) {
+    if (!(e instanceof Name || e instanceof FieldAccess)) {
+      return false;
+    }
+    IVariableBinding tracked = getTrackedVariable(e);
+    if (tracked != null) {
+      return facts.contains(tracked);
+    }
+    IVariableBinding var = Types.getVariableBinding(e);
+    return var != null && !inConstructionMethod
+        && nonNullFields.contains(var.getVariableDeclaration()) && !isConstructing(var);
+  }
+
+  /**
+   * Returns true if an expression's value can't be null.
+   */
+  private boolean isNonNullValue(Expression e, Set<IVariableBinding> facts) {
+    if (e instanceof ClassInstanceCreation || e instanceof ArrayCreation
+        || e instanceof ArrayInitializer || e instanceof StringLiteral
+        || e instanceof TypeLiteral || e instanceof ThisExpression) {
+      return true;
+    } else if (e instanceof ParenthesizedExpression) {
+      return isNonNullValue(((ParenthesizedExpression) e).getExpression(), facts);
+    } else if (e instanceof CastExpression) {
+      return isNonNullValue(((CastExpression) e).getExpression(), facts);
+    } else if (e instanceof Assignment) {
+      Assignment assignment = (Assignment) e;
+      return assignment.getOperator() == Assignment.Operator.ASSIGN
+          && isNonNullValue(assignment.getRightHandSide(), facts);
+    } else if (e instanceof ConditionalExpression) {
+      ConditionalExpression conditional = (ConditionalExpression) e;
+      return isNonNullValue(conditional.getThenExpression(), facts)
+          && isNonNullValue(conditional.getElseExpression(), facts);
+    } else if (e instanceof InfixExpression) {
+      return ((InfixExpression) e).getOperator() == InfixExpression.Operator.PLUS
+          && isString(Types.getTypeBinding(e));
+    }
+    return isKnownNonNull(e, facts);
+  }
+
+  private static boolean isString(ITypeBinding type) {
+    return type != null && (Types.isJavaStringType(type) || Types.getNSString().isEqualTo(type));
+  }
+
+  /**
+   * Finds the final instance fields of the unit's classes whose every
+   * assignment is a non-null value.
+   */
+  private void findNonNullFields(CompilationUnit unit) {
+    final Set<IVariableBinding> candidates = newSet();
+    unit.accept(new ASTVisitor() {
+      @Override
+      public boolean visit(FieldDeclaration node) {
+        int modifiers = node.getModifiers();
+        if (Modifier.isFinal(modifiers) && !Modifier.isStatic(modifiers)) {
+          for (Object fragment : node.fragments()) {
+            IVariableBinding var = Types.getVariableBinding(fragment);
+            if (var != null && !var.getType().isPrimitive()) {
+              candidates.add(var.getVariableDeclaration());
+            }
+          }
+        }
+        return false;
+      }
+    });
+    if (candidates.isEmpty()) {
+      return;
+    }
+
+    final Set<IVariableBinding> assigned = newSet();
+    final Set<IVariableBinding> invalid = newSet();
+    unit.accept(new ASTVisitor() {
+      @Override
+      public boolean visit(MethodDeclaration node) {
+        String name = node.getName().getIdentifier();
+        return !name.equals(DestructorGenerator.FINALIZE_METHOD)
+            && !name.equals(DestructorGenerator.DEALLOC_METHOD);
+      }
+
+      @Override
+      public void endVisit(VariableDeclarationFragment node) {
+        if (node.getInitializer() != null) {
+          record(Types.getVariableBinding(node), node.getInitializer());
+        }
+      }
+
+      @Override
+      public void endVisit(Assignment node) {
+        Expression lhs = node.getLeftHandSide();
+        if (lhs instanceof Name || lhs instanceof FieldAccess) {
+          record(Types.getVariableBinding(lhs),
+              node.getOperator() == Assignment.Operator.ASSIGN ? node.getRightHandSide() : null);
+        }
+      }
+
+      private void record(IVariableBinding var, Expression value) {
+        if (var != null && candidates.contains(var.getVariableDeclaration())) {
+          var = var.getVariableDeclaration();
+          if (value != null && isNonNullValue(value, Collections.<IVariableBinding>emptySet())) {
+            assigned.add(var);
+          } else {
+            invalid.add(var);
+          }
+        }
+      }
+    });
+    assigned.removeAll(invalid);
+    nonNullFields.addAll(assigned);
+  }
+
+  /**
+   * Finds the methods of the unit's classes that may run while an object is
+   * being constructed, and drops the non-null fields of classes whose
+   * constructors let the new object escape.
+   */
+  private void findConstructionMethods(CompilationUnit unit) {
+    unit.accept(new ASTVisitor() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public boolean visit(TypeDeclaration node) {
+        findConstructionMethods(Types.getTypeBinding(node), node.bodyDeclarations());
+        return true;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public boolean visit(EnumDeclaration node) {
+        findConstructionMethods(Types.getTypeBinding(node), node.bodyDeclarations());
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Finds a class's methods that may run while an object is being
+   * constructed: the methods that override an inherited method, and the
+   * methods its constructors call on the new object, directly or through
+   * each other.
+   */
+  private void findConstructionMethods(ITypeBinding type, List<BodyDeclaration> body) {
+    final Map<IMethodBinding, MethodDeclaration> methods = Maps.newHashMap();
+    final List<MethodDeclaration> worklist = Lists.newArrayList();
+    for (BodyDeclaration decl : body) {
+      if (decl instanceof MethodDeclaration) {
+        MethodDeclaration method = (MethodDeclaration) decl;
+        IMethodBinding binding = Types.getMethodBinding(method);
+        if (binding == null || Modifier.isStatic(binding.getModifiers())) {
+          continue;
+        }
+        methods.put(binding.getMethodDeclaration(), method);
+        if (binding.isConstructor()) {
+          worklist.add(method);
+        } else if (overridesInheritedMethod(binding)) {
+          constructionMethods.add(binding.getMethodDeclaration());
+        }
+      }
+    }
+    final Set<MethodDeclaration> reached = Sets.newHashSet(worklist);
+    final boolean[] escapes = { false };
+    while (!worklist.isEmpty()) {
+      worklist.remove(worklist.size() - 1).accept(new ASTVisitor() {
+        @Override
+        public void endVisit(MethodInvocation node) {
+          Expression receiver = node.getExpression();
+          IMethodBinding binding = Types.getMethodBinding(node);
+          if (binding != null && (receiver == null || isThis(receiver))) {
+            MethodDeclaration callee = methods.get(binding.getMethodDeclaration());
+            if (callee != null && reached.add(callee)) {
+              constructionMethods.add(binding.getMethodDeclaration());
+              worklist.add(callee);
+            }
+          }
+        }
+
+        @Override
+        public void endVisit(ThisExpression node) {
+          // The new object escapes unless it's only used to access its own
+          // fields and methods.
+          ASTNode parent = node.getParent();
+          if (!(parent instanceof FieldAccess && ((FieldAccess) parent).getExpression() == node
+              || parent instanceof MethodInvocation
+                 && ((MethodInvocation) parent).getExpression() == node)) {
+            escapes[0] = true;
+          }
+        }
+      });
+    }
+    if (escapes[0] && type != null) {
+      ITypeBinding declaration = type.getTypeDeclaration();
+      for (IVariableBinding field : Lists.newArrayList(nonNullFields)) {
+        ITypeBinding declaringClass = field.getDeclaringClass();
+        if (declaringClass != null && declaringClass.getTypeDeclaration().isEqualTo(declaration)) {
+          nonNullFields.remove(field);
+        }
+      }
+    }
+  }
+
+  private static boolean isThis(Expression e) {
+    return e instanceof ThisExpression && ((ThisExpression) e).getQualifier() == null;
+  }
+
+  /**
+   * Returns true if a method overrides a method of one of its class's
+   * supertypes, so a superclass constructor may call it.
+   */
+  private static boolean overridesInheritedMethod(IMethodBinding method) {
+    ITypeBinding type = method.getDeclaringClass();
+    List<ITypeBinding> supertypes = Lists.newArrayList(type.getInterfaces());
+    if (type.getSuperclass() != null) {
+      supertypes.add(type.getSuperclass());
+    }
+    while (!supertypes.isEmpty()) {
+      ITypeBinding supertype = supertypes.remove(supertypes.size() - 1);
+      for (IMethodBinding inherited : supertype.getDeclaredMethods()) {
+        if (method.overrides(inherited)) {
+          return true;
+        }
+      }
+      supertypes.addAll(Arrays.asList(supertype.getInterfaces()));
+      if (supertype.getSuperclass() != null) {
+        supertypes.add(supertype.getSuperclass());
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the tracked variables a node declares or assigns.
+   */
+  private Set<IVariableBinding> assignedVariables(ASTNode node) {
+    final Set<IVariableBinding> result = newSet();
+    node.accept(new ASTVisitor() {
+      @Override
+      public void endVisit(Assignment node) {
+        add(getTrackedVariable(node.getLeftHandSide()));
+      }
+
+      @Override
+      public void endVisit(PostfixExpression node) {
+        add(getTrackedVariable(node.getOperand()));
+      }
+
+      @Override
+      public void endVisit(PrefixExpression node) {
+        add(getTrackedVariable(node.getOperand()));
+      }
+
+      @Override
+      public void endVisit(SingleVariableDeclaration node) {
+        add(Types.getVariableBinding(node));
+      }
+
+      @Override
+      public void endVisit(VariableDeclarationFragment node) {
+        add(Types.getVariableBinding(node));
+      }
+
+      private void add(IVariableBinding var) {
+        if (var != null) {
+          result.add(var.getVariableDeclaration());
+        }
+      }
+    });
+    return result;
+  }
+
+  private static List<Expression> getRemainingOperands(InfixExpression node) {
+    List<Expression> operands = Lists.newArrayList();
+    operands.add(node.getRightOperand());
+    for (Object operand : node.extendedOperands()) {
+      operands.add((Expression) operand);
+    }
+    return operands;
+  }
+
+  private static Set<IVariableBinding> newSet() {
+    return Sets.newIdentityHashSet();
+  }
+
+  private static Set<IVariableBinding> copy(Set<IVariableBinding> s) {
+    Set<IVariableBinding> result = newSet();
+    result.addAll(s);
+    return result;
+  }
+
+  private static Set<IVariableBinding> subtract(Set<IVariableBinding> s,
+      Set<IVariableBinding> removed) {
+    Set<IVariableBinding> result = copy(s);
+    result.removeAll(removed);
+    return result;
+  }
+
+  private static Set<IVariableBinding> intersect(Set<IVariableBinding> a,
+      Set<IVariableBinding> b) {
+    Set<IVariableBinding> result = copy(a);
+    result.retainAll(b);
+    return result;
+  }
+
+  /**
+   * Merges what's known after two paths, either of which may be null if it
+   * can't complete normally.
+   */
+  private static Set<IVariableBinding> merge(Set<IVariableBinding> a, Set<IVariableBinding> b) {
+    if (a == null) {
+      return b;
+    } else if (b == null) {
+      return a;
+    }
+    return intersect(a, b);
+  }
+
+  /**
+   * What's known after a condition is true, and after it's false.
+   */
+  private static class Branches {
+    final Set<IVariableBinding> whenTrue;
+    final Set<IVariableBinding> whenFalse;
+
+    Branches(Set<IVariableBinding> whenTrue, Set<IVariableBinding> whenFalse) {
+      this.whenTrue = whenTrue;
+      this.whenFalse = whenFalse;
+    }
+  }
+}
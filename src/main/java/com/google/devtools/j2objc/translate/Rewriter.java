@@ -16,8 +16,10 @@
 
 package com.google.devtools.j2objc.translate;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.sym.Symbols;
 import com.google.devtools.j2objc.types.GeneratedMethodBinding;
 import com.google.devtools.j2objc.types.GeneratedVariableBinding;
@@ -66,6 +68,7 @@ import org.eclipse.jdt.core.dom.Modifier.ModifierKeyword;
 import org.eclipse.jdt.core.dom.Name;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
 import org.eclipse.jdt.core.dom.PrimitiveType;
 import org.eclipse.jdt.core.dom.QualifiedName;
 import org.eclipse.jdt.core.dom.ReturnStatement;
@@ -108,6 +111,17 @@ public class Rewriter extends ErrorReportingASTVisitor {
   private static final List<String> typeQualifierKeywords = Lists.newArrayList("in", "out",
       "inout", "oneway", "bycopy", "byref");
 
+  /**
+   * The collections and maps whose enumerations read their elements
+   * directly, and the map methods that return views of a map.
+   */
+  private static final Set<String> fastEnumerationCollections =
+      ImmutableSet.of("java.util.ArrayList", "java.util.HashSet");
+  private static final Set<String> fastEnumerationMaps =
+      ImmutableSet.of("java.util.HashMap", "java.util.LinkedHashMap");
+  private static final Set<String> mapViewMethods =
+      ImmutableSet.of("keySet", "values", "entrySet");
+
   @SuppressWarnings("unchecked")
   @Override
   public boolean visit(TypeDeclaration node) {
@@ -556,12 +570,91 @@ public class Rewriter extends ErrorReportingASTVisitor {
       Types.addAutoreleasePool(loopBody);
     }
 
+    if (canUseFastEnumeration(node, expressionType, loopVariable)) {
+      // Translated as a for...in loop.
+      node.setBody(loopBody);
+      return;
+    }
+
     Block newBlock = expressionType.isArray() ?
         makeArrayIterationBlock(ast, expression, expressionType, loopVariable, loopBody) :
         makeIterableBlock(ast, expression, expressionType, loopVariable, loopBody);
     ClassConverter.setProperty(node, newBlock);
   }
 
+  /**
+   * Returns true if fast enumeration is enabled and an enhanced for statement
+   * can be translated into a for...in loop, because it iterates over a
+   * java.util collection whose emulation reads its elements directly: an
+   * ArrayList, a HashSet, or the key set, values or entry set of a HashMap or
+   * a LinkedHashMap.  The loop variable must be an object that isn't
+   * assigned, since for...in loop variables are const with ARC.
+   */
+  private static boolean canUseFastEnumeration(EnhancedForStatement node,
+      ITypeBinding expressionType, IVariableBinding loopVariable) {
+    if (!Options.fastEnumeration() || expressionType.isArray()
+        || loopVariable.getType().isPrimitive()) {
+      return false;
+    }
+    if (!hasSuperclass(expressionType, fastEnumerationCollections)
+        && !isMapView(node.getExpression())) {
+      return false;
+    }
+    return !isAssigned(loopVariable, node.getBody());
+  }
+
+  private static boolean hasSuperclass(ITypeBinding type, Set<String> names) {
+    while (type != null) {
+      if (names.contains(type.getErasure().getQualifiedName())) {
+        return true;
+      }
+      type = type.getSuperclass();
+    }
+    return false;
+  }
+
+  private static boolean isMapView(Expression expression) {
+    if (!(expression instanceof MethodInvocation)) {
+      return false;
+    }
+    MethodInvocation invocation = (MethodInvocation) expression;
+    IMethodBinding method = Types.getMethodBinding(invocation);
+    return method != null && invocation.arguments().isEmpty()
+        && mapViewMethods.contains(method.getName())
+        && fastEnumerationMaps.contains(
+            method.getDeclaringClass().getErasure().getQualifiedName());
+  }
+
+  private static boolean isAssigned(final IVariableBinding var, Statement body) {
+    final boolean[] result = { false };
+    body.accept(new ASTVisitor() {
+      @Override
+      public void endVisit(Assignment node) {
+        check(node.getLeftHandSide());
+      }
+
+      @Override
+      public void endVisit(PrefixExpression node) {
+        if (node.getOperator() == PrefixExpression.Operator.INCREMENT
+            || node.getOperator() == PrefixExpression.Operator.DECREMENT) {
+          check(node.getOperand());
+        }
+      }
+
+      @Override
+      public void endVisit(PostfixExpression node) {
+        check(node.getOperand());
+      }
+
+      private void check(Expression target) {
+        if (var.isEqualTo(Types.getVariableBinding(target))) {
+          result[0] = true;
+        }
+      }
+    });
+    return result[0];
+  }
+
   private Block makeArrayIterationBlock(
       AST ast, Expression expression, ITypeBinding expressionType, IVariableBinding loopVariable,
       Block loopBody) {
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.types.GeneratedVariableBinding;
+import com.google.devtools.j2objc.types.NodeCopier;
+import com.google.devtools.j2objc.types.Types;
+import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.BreakStatement;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.ContinueStatement;
+import org.eclipse.jdt.core.dom.DoStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.LabeledStatement;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.TryStatement;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.WhileStatement;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites the local string variables that loops only append to, so that
+ * each is built with a single StringBuilder instead of a new string being
+ * concatenated for each append.  For example:
+ * <pre>
+ *   String s = "";
+ *   for (String t : list) { s += t; }
+ * </pre>
+ * becomes:
+ * <pre>
+ *   String s = "";
+ *   {
+ *     StringBuilder sBuilder__ = new StringBuilder(s);
+ *     for (String t : list) { sBuilder__.append(t); }
+ *     s = sBuilder__.toString();
+ *   }
+ * </pre>
+ * <p>
+ * A variable is only rewritten if it can't be null when the loop starts,
+ * because it's initialized and assigned only string literals,
+ * concatenations and StringBuilder strings, and if it's only referenced
+ * in the loop by statements that append to it.  The loop can't return,
+ * break or continue to a statement outside it, or be in a try statement,
+ * so that the variable can't be read before it's assigned the builder's
+ * string.
+ * </p>
+ */
+public class StringBuilderRewriter extends ErrorReportingASTVisitor {
+
+  @Override
+  public boolean visit(DoStatement node) {
+    return !rewriteLoop(node);
+  }
+
+  @Override
+  public boolean visit(EnhancedForStatement node) {
+    return !rewriteLoop(node);
+  }
+
+  @Override
+  public boolean visit(ForStatement node) {
+    return !rewriteLoop(node);
+  }
+
+  @Override
+  public boolean visit(WhileStatement node) {
+    return !rewriteLoop(node);
+  }
+
+  /**
+   * Rewrites the variables that a loop appends to, returning true if any
+   * were rewritten.  Nested loops are rewritten with their outermost loop.
+   */
+  private boolean rewriteLoop(Statement loop) {
+    Statement stmt = loop.getParent() instanceof LabeledStatement
+        ? (Statement) loop.getParent() : loop;
+    if (!(stmt.getParent() instanceof Block) || isInTryStatement(stmt)
+        || exitsLoop(stmt)) {
+      return false;
+    }
+    ASTNode body = getEnclosingBody(stmt);
+    if (body == null) {
+      return false;
+    }
+    AST ast = loop.getAST();
+    ITypeBinding builderType = resolveStringBuilderType(ast);
+    if (builderType == null) {
+      return false;
+    }
+    Map<IVariableBinding, List<ExpressionStatement>> appends = findAppends(stmt, body);
+    if (appends.isEmpty()) {
+      return false;
+    }
+    // The builders are declared in a new block around the loop, so that the
+    // loops that later append to the same variables can declare theirs.
+    List<Statement> stmts = getStatements((Block) stmt.getParent());
+    Block block = ast.newBlock();
+    stmts.set(stmts.indexOf(stmt), block);
+    stmts = getStatements(block);
+    stmts.add(stmt);
+    int index = 0;
+    for (Map.Entry<IVariableBinding, List<ExpressionStatement>> entry : appends.entrySet()) {
+      IVariableBinding var = entry.getKey();
+      IVariableBinding builder = new GeneratedVariableBinding(
+          var.getName() + "Builder__", 0, builderType, false, false, null, null);
+      for (ExpressionStatement append : entry.getValue()) {
+        Expression rhs = ((Assignment) append.getExpression()).getRightHandSide();
+        Expression receiver = ASTFactory.newSimpleName(ast, builder);
+        for (Expression operand : getAppendedOperands(rhs)) {
+          receiver = newAppendInvocation(ast, builderType, receiver, operand);
+        }
+        append.setExpression(receiver);
+      }
+      stmts.add(index++, ASTFactory.newVariableDeclarationStatement(
+          ast, builder, newBuilderCreation(ast, builderType, var)));
+      stmts.add(index + 1, newToStringAssignment(ast, builderType, var, builder));
+    }
+    return true;
+  }
+
+  /**
+   * Returns the statements in a loop that append to each of the variables
+   * that can be rewritten.
+   */
+  private Map<IVariableBinding, List<ExpressionStatement>> findAppends(
+      Statement loop, ASTNode body) {
+    final Map<IVariableBinding, List<ExpressionStatement>> appends = Maps.newLinkedHashMap();
+    final Set<IVariableBinding> excluded = Sets.newHashSet();
+    final Set<SimpleName> appendTargets = Sets.newHashSet();
+    loop.accept(new ASTVisitor() {
+      @Override
+      public boolean visit(ExpressionStatement node) {
+        IVariableBinding var = getAppendedVariable(node);
+        if (var != null) {
+          List<ExpressionStatement> list = appends.get(var);
+          if (list == null) {
+            list = Lists.newArrayList();
+            appends.put(var, list);
+          }
+          list.add(node);
+          appendTargets.add(
+              (SimpleName) ((Assignment) node.getExpression()).getLeftHandSide());
+        }
+        return true;
+      }
+
+      @Override
+      public boolean visit(VariableDeclarationFragment node) {
+        // Variables declared in the loop are new for each iteration.
+        excluded.add(Types.getVariableBinding(node));
+        return true;
+      }
+
+      @Override
+      public boolean visit(SimpleName node) {
+        if (!appendTargets.contains(node)) {
+          excluded.add(Types.getVariableBinding(node));
+        }
+        return true;
+      }
+    });
+    appends.keySet().removeAll(excluded);
+    for (IVariableBinding var : Lists.newArrayList(appends.keySet())) {
+      if (!isNeverNull(var, body)) {
+        appends.remove(var);
+      }
+    }
+    return appends;
+  }
+
+  /**
+   * Returns the variable that a statement appends to, if it's a local string
+   * variable that's appended to with +=.
+   */
+  private static IVariableBinding getAppendedVariable(ExpressionStatement stmt) {
+    if (!(stmt.getExpression() instanceof Assignment)) {
+      return null;
+    }
+    Assignment assign = (Assignment) stmt.getExpression();
+    if (assign.getOperator() != Assignment.Operator.PLUS_ASSIGN
+        || !(assign.getLeftHandSide() instanceof SimpleName)) {
+      return null;
+    }
+    IVariableBinding var = Types.getVariableBinding(assign.getLeftHandSide());
+    if (var == null || var.isField() || var.isParameter()
+        || !Types.isJavaStringType(var.getType())) {
+      return null;
+    }
+    return var;
+  }
+
+  /**
+   * Returns true if a local string variable can't be null, because its
+   * initializer and every value assigned to it are string literals,
+   * concatenations or StringBuilder strings.
+   */
+  private static boolean isNeverNull(final IVariableBinding var, ASTNode body) {
+    final boolean[] result = { false, true };
+    body.accept(new ASTVisitor() {
+      @Override
+      public boolean visit(VariableDeclarationFragment node) {
+        if (var.isEqualTo(Types.getVariableBinding(node))) {
+          result[0] = isNonNullString(node.getInitializer());
+        }
+        return true;
+      }
+
+      @Override
+      public boolean visit(Assignment node) {
+        if (var.isEqualTo(Types.getVariableBinding(node.getLeftHandSide()))
+            && node.getOperator() == Assignment.Operator.ASSIGN
+            && !isNonNullString(node.getRightHandSide())) {
+          result[1] = false;
+        }
+        return true;
+      }
+    });
+    return result[0] && result[1];
+  }
+
+  private static boolean isNonNullString(Expression e) {
+    while (e instanceof ParenthesizedExpression) {
+      e = ((ParenthesizedExpression) e).getExpression();
+    }
+    if (e instanceof MethodInvocation) {
+      // A builder's string, such as the one assigned after a rewritten loop.
+      IMethodBinding method = Types.getMethodBinding(e);
+      return method != null && method.getName().equals("toString")
+          && method.getParameterTypes().length == 0
+          && method.getDeclaringClass().getErasure().getQualifiedName().equals(
+              "java.lang.StringBuilder");
+    }
+    return e instanceof StringLiteral || (e instanceof InfixExpression
+        && ((InfixExpression) e).getOperator() == InfixExpression.Operator.PLUS
+        && Types.isJavaStringType(Types.getTypeBinding(e)));
+  }
+
+  /**
+   * Returns the operands that an append appends in order.  A concatenation
+   * that starts with a string is split into its operands, since each of its
+   * operators appends to a string.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<Expression> getAppendedOperands(Expression rhs) {
+    List<Expression> operands = Lists.newArrayList();
+    if (rhs instanceof InfixExpression) {
+      InfixExpression infix = (InfixExpression) rhs;
+      if (infix.getOperator() == InfixExpression.Operator.PLUS
+          && Types.isJavaStringType(Types.getTypeBinding(infix.getLeftOperand()))) {
+        operands.add(infix.getLeftOperand());
+        operands.add(infix.getRightOperand());
+        operands.addAll(infix.extendedOperands());
+        return operands;
+      }
+    }
+    operands.add(rhs);
+    return operands;
+  }
+
+  /**
+   * Returns a StringBuilder append invocation, calling the append method
+   * that matches how the string concatenation operator converts a value.
+   */
+  private static MethodInvocation newAppendInvocation(AST ast, ITypeBinding builderType,
+      Expression receiver, Expression operand) {
+    ITypeBinding type = Types.getTypeBinding(operand);
+    String paramType;
+    if (type != null && type.isPrimitive()) {
+      String name = type.getName();
+      paramType = name.equals("byte") || name.equals("short") ? "int" : name;
+    } else if (type != null && Types.isJavaStringType(type)) {
+      paramType = "java.lang.String";
+    } else {
+      paramType = "java.lang.Object";
+    }
+    IMethodBinding append = findMethod(builderType, "append", paramType);
+    assert append != null : "StringBuilder.append(" + paramType + ") not found";
+    MethodInvocation invocation = ASTFactory.newMethodInvocation(ast, append, receiver);
+    getArguments(invocation).add(NodeCopier.copySubtree(ast, operand));
+    return invocation;
+  }
+
+  private static ClassInstanceCreation newBuilderCreation(AST ast, ITypeBinding builderType,
+      IVariableBinding var) {
+    ClassInstanceCreation creation = ast.newClassInstanceCreation();
+    creation.setType(Types.makeType(builderType));
+    Types.addBinding(creation, findMethod(builderType, "StringBuilder", "java.lang.String"));
+    getArguments(creation).add(ASTFactory.newSimpleName(ast, var));
+    return creation;
+  }
+
+  private static ExpressionStatement newToStringAssignment(AST ast, ITypeBinding builderType,
+      IVariableBinding var, IVariableBinding builder) {
+    IMethodBinding toString = findMethod(builderType, "toString", null);
+    Assignment assign = ast.newAssignment();
+    assign.setLeftHandSide(ASTFactory.newSimpleName(ast, var));
+    assign.setRightHandSide(ASTFactory.newMethodInvocation(
+        ast, toString, ASTFactory.newSimpleName(ast, builder)));
+    Types.addBinding(assign, var.getType());
+    return ast.newExpressionStatement(assign);
+  }
+
+  /**
+   * Returns a declared method or constructor with a specified name, and
+   * either one parameter of a specified type, or no parameters if the type
+   * is null.
+   */
+  private static IMethodBinding findMethod(ITypeBinding type, String name, String paramType) {
+    for (IMethodBinding method : type.getDeclaredMethods()) {
+      if (!method.getName().equals(name)) {
+        continue;
+      }
+      ITypeBinding[] params = method.getParameterTypes();
+      if (paramType == null ? params.length == 0
+          : params.length == 1 && params[0].getQualifiedName().equals(paramType)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the StringBuilder type, which isn't one of the AST's well-known
+   * types, from the parameter of String's String(StringBuilder) constructor.
+   */
+  private static ITypeBinding resolveStringBuilderType(AST ast) {
+    ITypeBinding stringType = ast.resolveWellKnownType("java.lang.String");
+    for (IMethodBinding method : stringType.getDeclaredMethods()) {
+      ITypeBinding[] params = method.getParameterTypes();
+      if (method.isConstructor() && params.length == 1
+          && params[0].getQualifiedName().equals("java.lang.StringBuilder")) {
+        return params[0];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if a loop contains a return statement, or a break or
+   * continue statement that leaves it, after which its variables wouldn't
+   * be assigned their builders' strings.
+   */
+  private static boolean exitsLoop(Statement loop) {
+    final Set<String> labels = Sets.newHashSet();
+    final Set<String> targets = Sets.newHashSet();
+    final boolean[] hasReturn = { false };
+    loop.accept(new ASTVisitor() {
+      @Override
+      public boolean visit(LabeledStatement node) {
+        labels.add(node.getLabel().getIdentifier());
+        return true;
+      }
+
+      @Override
+      public boolean visit(ReturnStatement node) {
+        hasReturn[0] = true;
+        return false;
+      }
+
+      @Override
+      public void endVisit(BreakStatement node) {
+        addTarget(node.getLabel());
+      }
+
+      @Override
+      public void endVisit(ContinueStatement node) {
+        addTarget(node.getLabel());
+      }
+
+      private void addTarget(SimpleName label) {
+        if (label != null) {
+          targets.add(label.getIdentifier());
+        }
+      }
+    });
+    return hasReturn[0] || !labels.containsAll(targets);
+  }
+
+  private static boolean isInTryStatement(ASTNode node) {
+    for (ASTNode n = node.getParent(); n != null && !(n instanceof BodyDeclaration);
+        n = n.getParent()) {
+      if (n instanceof TryStatement) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the block of the method or initializer that a statement is in.
+   */
+  private static ASTNode getEnclosingBody(ASTNode node) {
+    ASTNode n = node;
+    while (n != null && !(n instanceof BodyDeclaration)) {
+      if (n.getParent() instanceof BodyDeclaration) {
+        return n;
+      }
+      n = n.getParent();
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Statement> getStatements(Block block) {
+    return block.statements();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Expression> getArguments(MethodInvocation invocation) {
+    return invocation.arguments();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Expression> getArguments(ClassInstanceCreation creation) {
+    return creation.arguments();
+  }
+}
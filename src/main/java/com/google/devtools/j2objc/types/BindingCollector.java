@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.types;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.IBinding;
+
+/**
+ * Gathers information about a compilation unit during the pass that builds
+ * its binding map.  Collectors don't walk the unit or resolve bindings
+ * themselves: each one is called in source order for every node that the
+ * binding map records, with the binding resolved for that node.
+ *
+ * @see BindingMapBuilder
+ * @see com.google.devtools.j2objc.Plugin#getBindingCollector
+ */
+public interface BindingCollector {
+
+  /**
+   * Called for a node whose binding was added to the binding map.  The
+   * binding's kind depends on the node type, as documented by the binding
+   * map: constructors for class instance creations, fields for field
+   * accesses, the expression's type for other expressions, etc.
+   */
+  void collect(ASTNode node, IBinding binding);
+}
@@ -16,6 +16,7 @@
 
 package com.google.devtools.j2objc.types;
 
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -69,7 +70,9 @@ import org.eclipse.jdt.core.dom.TypeParameter;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
 
 /**
@@ -78,6 +81,12 @@ import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
  * way of adding types or resolving added or modified code.  With a
  * separate map, both ASTNodes and IOS synthetic nodes can be
  * resolved.
+ * <p>
+ * This is the only walk of a unit that resolves its bindings.  Anything
+ * else that needs to be gathered from the original unit is collected by
+ * {@link BindingCollector}s, which are passed each node's binding as it is
+ * added to the map.
+ * </p>
  *
  * @author Tom Ball
  */
@@ -85,17 +94,34 @@ class BindingMapBuilder extends ErrorReportingASTVisitor {
 
   // keys may be ASTNodes or IOS nodes
   private final Map<Object, IBinding> bindingMap = Maps.newHashMap();
-
-  public static Map<Object, IBinding> buildBindingMap(CompilationUnit unit) {
-    BindingMapBuilder builder = new BindingMapBuilder();
+  private final List<BindingCollector> collectors;
+
+  private BindingMapBuilder(List<BindingCollector> collectors) {
+    this.collectors = collectors;
+  }
+
+  /**
+   * Builds a unit's binding map, calling the specified collectors with each
+   * binding in the same pass.  If binding verification is enabled, each
+   * binding is also verified.
+   */
+  public static Map<Object, IBinding> buildBindingMap(
+      CompilationUnit unit, List<BindingCollector> collectors) {
+    ImmutableList.Builder<BindingCollector> allCollectors = ImmutableList.builder();
+    if (Options.verifyBindings()) {
+      allCollectors.add(BindingMapVerifier.COLLECTOR);
+    }
+    BindingMapBuilder builder = new BindingMapBuilder(allCollectors.addAll(collectors).build());
     builder.run(unit);
-    BindingMapVerifier.verify(unit, builder.bindingMap);
     return builder.bindingMap;
   }
 
   private void put(ASTNode node, IBinding binding) {
     assert binding != null;
     bindingMap.put(node, binding);
+    for (BindingCollector collector : collectors) {
+      collector.collect(node, binding);
+    }
   }
 
   // There is a lot of seemingly duplicate code here, but each
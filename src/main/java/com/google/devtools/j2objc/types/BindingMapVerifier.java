@@ -64,6 +64,7 @@ import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Walks an AST and asserts there is a resolved binding for every ASTNode type
@@ -74,20 +75,69 @@ import java.util.Map;
 class BindingMapVerifier extends ErrorReportingASTVisitor {
   private final Map<Object, IBinding> bindingMap;
 
+  // Total time spent verifying bindings, in nanoseconds.
+  private static final AtomicLong verificationTime = new AtomicLong();
+
   public static void verify(ASTNode node, Map<Object, IBinding> bindingMap) {
+    long startTime = System.nanoTime();
     BindingMapVerifier builder = new BindingMapVerifier(bindingMap);
     builder.run(node);
+    verificationTime.addAndGet(System.nanoTime() - startTime);
+  }
+
+  static long getVerificationTime() {
+    return verificationTime.get();
   }
 
   private BindingMapVerifier(Map<Object, IBinding> bindingMap) {
     this.bindingMap = bindingMap;
   }
 
+  /**
+   * Verifies each binding as it is added to a new binding map, so a unit's
+   * map is checked in the same pass that builds it.
+   */
+  static final BindingCollector COLLECTOR = new BindingCollector() {
+    public void collect(ASTNode node, IBinding binding) {
+      long startTime = System.nanoTime();
+      verifyBinding(node, binding);
+      verificationTime.addAndGet(System.nanoTime() - startTime);
+    }
+  };
+
   private boolean verify(ASTNode node) {
-    assert bindingMap.get(node) != null;
+    verifyBinding(node, bindingMap.get(node));
     return true;
   }
 
+  private static void verifyBinding(ASTNode node, IBinding binding) {
+    assert binding != null;
+    switch (node.getNodeType()) {
+      case ASTNode.CLASS_INSTANCE_CREATION:
+        assert binding instanceof IMethodBinding;
+        assert ((IMethodBinding) binding).isVarargs() ||
+            ((ClassInstanceCreation) node).arguments().size() ==
+            ((IMethodBinding) binding).getParameterTypes().length;
+        break;
+      case ASTNode.CONSTRUCTOR_INVOCATION:
+        assert binding instanceof IMethodBinding;
+        break;
+      case ASTNode.METHOD_DECLARATION:
+        assert ((MethodDeclaration) node).parameters().size() ==
+            ((IMethodBinding) binding).getParameterTypes().length;
+        break;
+      case ASTNode.METHOD_INVOCATION:
+        assert binding instanceof IMethodBinding;
+        IMethodBinding method = (IMethodBinding) binding;
+        assert method.isVarargs()
+            || ((MethodInvocation) node).arguments().size() == method.getParameterTypes().length
+            || binding instanceof IOSMethodBinding;
+        break;
+      default:
+        break;
+    }
+  }
+
   // There is a lot of seemingly duplicate code here, but each
   // resolve*Binding() method is specific to the node type.
 
@@ -151,10 +201,6 @@ class BindingMapVerifier extends ErrorReportingASTVisitor {
 
   @Override
   public boolean visit(ClassInstanceCreation node) {
-    IBinding binding = bindingMap.get(node);
-    assert binding instanceof IMethodBinding;
-    assert ((IMethodBinding) binding).isVarargs() ||
-        node.arguments().size() == ((IMethodBinding) binding).getParameterTypes().length;
     return verify(node);
   }
 
@@ -166,9 +212,7 @@ class BindingMapVerifier extends ErrorReportingASTVisitor {
 
   @Override
   public boolean visit(ConstructorInvocation node) {
-    IBinding binding = bindingMap.get(node);
-    assert binding instanceof IMethodBinding;
-    return true;
+    return verify(node);
   }
 
   @Override
@@ -203,19 +247,12 @@ class BindingMapVerifier extends ErrorReportingASTVisitor {
 
   @Override
   public boolean visit(MethodDeclaration node) {
-    IMethodBinding binding = (IMethodBinding) bindingMap.get(node);
-    assert node.parameters().size() == binding.getParameterTypes().length;
     return verify(node);
   }
 
   @Override
   public boolean visit(MethodInvocation node) {
-    IBinding binding = bindingMap.get(node);
-    assert binding instanceof IMethodBinding;
-    IMethodBinding method = (IMethodBinding) binding;
-    assert method.isVarargs() || node.arguments().size() == method.getParameterTypes().length
-        || binding instanceof IOSMethodBinding;
-    return true;
+    return verify(node);
   }
 
   @Override
@@ -16,8 +16,6 @@
 
 package com.google.devtools.j2objc.types;
 
-import com.google.common.collect.Lists;
-
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
@@ -37,41 +35,31 @@ public class IOSMethod {
   private final String declaringClass;
   private final IOSMethodBinding binding;
   private final List<IOSParameter> parameters;
-  private boolean varArgs = false;
+  private final boolean varArgs;
 
   public IOSMethod(String s, IMethodBinding binding, AST ast) {
     this(s, binding, binding.getReturnType(), ast);
   }
 
   public IOSMethod(String s, IMethodBinding binding, ITypeBinding returnType, AST ast) {
-    if (s.endsWith(";")) {
-      s = s.substring(0, s.length() -1 );
-    }
-    int i = s.indexOf(' ');
-    String className = s.substring(0, i);
+    this(IOSMethodSignature.parse(s), binding, returnType);
+  }
+
+  public IOSMethod(IOSMethodSignature signature, IMethodBinding binding) {
+    this(signature, binding, binding.getReturnType());
+  }
+
+  public IOSMethod(IOSMethodSignature signature, IMethodBinding binding,
+      ITypeBinding returnType) {
+    String className = signature.getDeclaringClass();
     IOSTypeBinding clazz = Types.resolveIOSType(className);
     if (clazz == null) {
       clazz = new IOSTypeBinding(className, false);
     }
     declaringClass = clazz.getName();
-    s = s.substring(i + 1);
-
-    parameters = Lists.newArrayList();
-    i = s.indexOf(':');
-    if (i > 0) {  // if there are parameters
-      name = s.substring(0, i);
-      String[] argDefs = splitParameterString(s);
-      for (i = 0; i < argDefs.length; i++) {
-        IOSParameter param = new IOSParameter(argDefs[i], i, ast);
-        parameters.add(param);
-        if (param.isVarArgs()) {
-          varArgs = true;
-          break;
-        }
-      }
-    } else {
-      name = s;
-    }
+    name = signature.getName();
+    parameters = signature.getParameters();
+    varArgs = signature.isVarArgs();
     this.binding = new IOSMethodBinding(name, binding, clazz, returnType, varArgs);
   }
 
@@ -94,21 +82,4 @@ public class IOSMethod {
   public boolean isVarArgs() {
     return varArgs;
   }
-
-  private String[] splitParameterString(String s) {
-    List<String> result = Lists.newArrayList();
-    String[] parts = s.split(" ");
-    for (int i = 0; i < parts.length; i++) {
-      String part = parts[i];
-      // If a type has spaces in it (ie, foo *), combine the parts.
-      if (part.contains("(")) {
-        while (!part.contains(")")) {
-          assert i + 1 < parts.length;
-          part += ' ' + parts[++i];
-        }
-      }
-      result.add(part);
-    }
-    return result.toArray(new String[0]);
-  }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.types;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The parsed form of an iOS method description from a method mapping,
+ * such as "NSString substringFromIndex:(int)beginIndex".  It doesn't depend
+ * on any compilation unit, so a mapping is only parsed once, and an
+ * {@link IOSMethod} is created from it for each method it's mapped to.
+ */
+public class IOSMethodSignature {
+  private final String declaringClass;
+  private final String name;
+  private final List<IOSParameter> parameters;
+  private final boolean varArgs;
+
+  private IOSMethodSignature(String declaringClass, String name, List<IOSParameter> parameters,
+      boolean varArgs) {
+    this.declaringClass = declaringClass;
+    this.name = name;
+    this.parameters = parameters;
+    this.varArgs = varArgs;
+  }
+
+  /**
+   * Parses an iOS method description: its declaring class's name, followed
+   * by the method's name or its selector parts and parameters.
+   *
+   * @throws IllegalArgumentException if the description is malformed
+   */
+  public static IOSMethodSignature parse(String s) {
+    if (s.endsWith(";")) {
+      s = s.substring(0, s.length() - 1);
+    }
+    int i = s.indexOf(' ');
+    if (i == -1) {
+      throw new IllegalArgumentException("bad iOS method description: " + s);
+    }
+    String className = s.substring(0, i);
+    s = s.substring(i + 1);
+
+    String name;
+    List<IOSParameter> parameters = Lists.newArrayList();
+    boolean varArgs = false;
+    i = s.indexOf(':');
+    if (i > 0) {  // if there are parameters
+      name = s.substring(0, i);
+      String[] argDefs = splitParameterString(s);
+      for (i = 0; i < argDefs.length; i++) {
+        IOSParameter param = new IOSParameter(argDefs[i], i, null);
+        parameters.add(param);
+        if (param.isVarArgs()) {
+          varArgs = true;
+          break;
+        }
+      }
+    } else {
+      name = s;
+    }
+    return new IOSMethodSignature(className, name, ImmutableList.copyOf(parameters), varArgs);
+  }
+
+  private static String[] splitParameterString(String s) {
+    List<String> result = Lists.newArrayList();
+    String[] parts = s.split(" ");
+    for (int i = 0; i < parts.length; i++) {
+      String part = parts[i];
+      // If a type has spaces in it (ie, foo *), combine the parts.
+      if (part.contains("(")) {
+        while (!part.contains(")")) {
+          if (i + 1 >= parts.length) {
+            throw new IllegalArgumentException("bad iOS method description: " + s);
+          }
+          part += ' ' + parts[++i];
+        }
+      }
+      result.add(part);
+    }
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Returns the declaring class's name, as written in the mapping.
+   */
+  public String getDeclaringClass() {
+    return declaringClass;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<IOSParameter> getParameters() {
+    return parameters;
+  }
+
+  public boolean isVarArgs() {
+    return varArgs;
+  }
+
+  /**
+   * Writes this signature in the compiled mapping format.
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeUTF(declaringClass);
+    out.writeUTF(name);
+    out.writeBoolean(varArgs);
+    out.writeInt(parameters.size());
+    for (IOSParameter param : parameters) {
+      out.writeUTF(param.getParameterName());
+      out.writeBoolean(param.getType() != null);
+      if (param.getType() != null) {
+        out.writeUTF(param.getType());
+      }
+      out.writeInt(param.getIndex());
+      out.writeBoolean(param.isVarArgs());
+    }
+  }
+
+  /**
+   * Reads a signature written by {@link #write}.
+   */
+  public static IOSMethodSignature read(DataInput in) throws IOException {
+    String declaringClass = in.readUTF();
+    String name = in.readUTF();
+    boolean varArgs = in.readBoolean();
+    int n = in.readInt();
+    ImmutableList.Builder<IOSParameter> parameters = ImmutableList.builder();
+    for (int i = 0; i < n; i++) {
+      String paramName = in.readUTF();
+      String type = in.readBoolean() ? in.readUTF() : null;
+      int index = in.readInt();
+      parameters.add(new IOSParameter(paramName, type, index, in.readBoolean()));
+    }
+    return new IOSMethodSignature(declaringClass, name, parameters.build(), varArgs);
+  }
+}
@@ -58,6 +58,17 @@ public class IOSParameter {
       }
     }
 
+    /**
+     * Creates a parameter from its parts, as read from compiled method
+     * mappings (see {@link IOSMethodSignature#read}).
+     */
+    IOSParameter(String name, String type, int index, boolean isVarArgs) {
+      this.name = name;
+      this.type = type;
+      this.index = index;
+      this.isVarArgs = isVarArgs;
+    }
+
     public String getParameterName() {
       return name;
     }
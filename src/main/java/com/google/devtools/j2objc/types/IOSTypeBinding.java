@@ -267,6 +267,14 @@ public class IOSTypeBinding implements ITypeBinding {
     methods.add(method);
   }
 
+  /**
+   * Removes the methods added while translating an earlier unit, for
+   * bindings that are shared between units.
+   */
+  void clearMethods() {
+    methods.clear();
+  }
+
   @Override
   public int getDeclaredModifiers() {
     return Modifier.PUBLIC;
@@ -17,6 +17,7 @@
 package com.google.devtools.j2objc.types;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.devtools.j2objc.util.NameTable;
 
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -30,6 +31,7 @@ import org.eclipse.jdt.core.dom.CastExpression;
 import org.eclipse.jdt.core.dom.CatchClause;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.EnumDeclaration;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.FieldAccess;
@@ -44,17 +46,23 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NullLiteral;
 import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
 import org.eclipse.jdt.core.dom.Type;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.TypeLiteral;
+import org.eclipse.jdt.core.dom.VariableDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Collects the set of imports needed to resolve type references in an
@@ -65,6 +73,13 @@ import java.util.List;
 public class ImplementationImportCollector extends HeaderImportCollector {
   private final List<Import> declaredTypes = Lists.newArrayList();
 
+  // The imports of types that only local variables and parameters are
+  // declared as, and of types whose definitions are needed.  A type that's
+  // only declared can be forward-declared instead of imported.
+  private final Set<Import> declarationImports = Sets.newLinkedHashSet();
+  private final Set<Import> definitionImports = Sets.newLinkedHashSet();
+  private boolean collectingDeclarations = false;
+
   public ImplementationImportCollector() {
     super(true);
   }
@@ -82,6 +97,54 @@ public class ImplementationImportCollector extends HeaderImportCollector {
     }
   }
 
+  /**
+   * Returns the collected imports of types that are only used to declare
+   * local variables and parameters, which can be forward-declared.  Every
+   * other use of such a variable, such as sending it a message, accessing
+   * its fields or converting it to another type, requires its type's
+   * definition.
+   */
+  public Set<Import> getForwardDeclarations() {
+    Set<Import> result = Sets.newLinkedHashSet();
+    for (Import imp : declarationImports) {
+      if (getImports().contains(imp) && !definitionImports.contains(imp)) {
+        IOSTypeBinding type = Types.resolveIOSType(imp.getTypeName());
+        if (!Types.isWrapper(Types.resolveOriginalTypeBinding(type))) {
+          result.add(imp);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  protected void addImport(Import imp) {
+    super.addImport(imp);
+    if (imp != NULL_IMPORT && imp.needsImport()) {
+      (collectingDeclarations ? declarationImports : definitionImports).add(imp);
+    }
+  }
+
+  private void addDeclarationReference(Type type) {
+    collectingDeclarations = true;
+    try {
+      addReference(type);
+    } finally {
+      collectingDeclarations = false;
+    }
+  }
+
+  /**
+   * Records that a type's definition is needed, without adding a reference
+   * to it.
+   */
+  private void addDefinition(ITypeBinding type) {
+    Import imp = getReference(type);
+    if (imp != NULL_IMPORT && imp.needsImport()) {
+      definitionImports.add(imp);
+    }
+  }
+
   // Keep track of any declared types to avoid invalid imports.  The
   // exception is the main type, as it's needed to import the matching
   // header file.
@@ -241,12 +304,18 @@ public class ImplementationImportCollector extends HeaderImportCollector {
     for (Iterator<?> iterator = node.parameters().iterator(); iterator.hasNext(); ) {
       Object o = iterator.next();
       if (o instanceof SingleVariableDeclaration) {
-        addReference(((SingleVariableDeclaration) o).getType());
+        addDeclarationReference(((SingleVariableDeclaration) o).getType());
       } else {
         throw new AssertionError("unknown AST type: " + o.getClass());
       }
     }
-    return super.visit(node);
+    // The header collector adds the same references.
+    collectingDeclarations = true;
+    try {
+      return super.visit(node);
+    } finally {
+      collectingDeclarations = false;
+    }
   }
 
   @Override
@@ -335,9 +404,78 @@ public class ImplementationImportCollector extends HeaderImportCollector {
       ITypeBinding declaringClass = var.getDeclaringClass();
       addReference(declaringClass);
     }
+    if (var != null && !var.isField() && !isDeclarationUse(node, var.getType())) {
+      addDefinition(var.getType());
+    }
     return true;
   }
 
+  /**
+   * Returns true if a use of a local variable or parameter doesn't need its
+   * type's definition: the variable is being declared or assigned, compared
+   * with null, or passed, assigned or returned as the same type or as an
+   * Object.
+   */
+  private boolean isDeclarationUse(SimpleName node, ITypeBinding type) {
+    ASTNode parent = node.getParent();
+    if (parent instanceof VariableDeclaration) {
+      VariableDeclaration decl = (VariableDeclaration) parent;
+      return node == decl.getName()
+          || isSameTypeOrObject(Types.getTypeBinding(decl.getName()), type);
+    }
+    if (parent instanceof Assignment) {
+      Assignment assignment = (Assignment) parent;
+      return assignment.getOperator() == Operator.ASSIGN
+          && (node == assignment.getLeftHandSide()
+              || isSameTypeOrObject(Types.getTypeBinding(assignment.getLeftHandSide()), type));
+    }
+    if (parent instanceof ReturnStatement) {
+      ASTNode method = parent;
+      while (method != null && !(method instanceof MethodDeclaration)) {
+        method = method.getParent();
+      }
+      IMethodBinding binding =
+          method != null ? Types.getMethodBinding((MethodDeclaration) method) : null;
+      return binding != null && isSameTypeOrObject(binding.getReturnType(), type);
+    }
+    if (parent instanceof InfixExpression) {
+      InfixExpression infix = (InfixExpression) parent;
+      InfixExpression.Operator op = infix.getOperator();
+      return (op == InfixExpression.Operator.EQUALS || op == InfixExpression.Operator.NOT_EQUALS)
+          && !infix.hasExtendedOperands()
+          && (infix.getLeftOperand() instanceof NullLiteral
+              || infix.getRightOperand() instanceof NullLiteral);
+    }
+    List<?> arguments = null;
+    if (parent instanceof MethodInvocation) {
+      arguments = ((MethodInvocation) parent).arguments();
+    } else if (parent instanceof SuperMethodInvocation) {
+      arguments = ((SuperMethodInvocation) parent).arguments();
+    } else if (parent instanceof ClassInstanceCreation) {
+      arguments = ((ClassInstanceCreation) parent).arguments();
+    } else if (parent instanceof ConstructorInvocation) {
+      arguments = ((ConstructorInvocation) parent).arguments();
+    } else if (parent instanceof SuperConstructorInvocation) {
+      arguments = ((SuperConstructorInvocation) parent).arguments();
+    }
+    int index = arguments != null ? arguments.indexOf(node) : -1;
+    if (index >= 0) {
+      IMethodBinding method = Types.getMethodBinding(parent);
+      if (method == null) {
+        return false;
+      }
+      ITypeBinding[] parameterTypes = method.getParameterTypes();
+      int fixedParameters = method.isVarargs() ? parameterTypes.length - 1 : parameterTypes.length;
+      return index < fixedParameters && isSameTypeOrObject(parameterTypes[index], type);
+    }
+    return false;
+  }
+
+  private boolean isSameTypeOrObject(ITypeBinding target, ITypeBinding type) {
+    return target != null && (Types.isJavaObjectType(target)
+        || target.getErasure().isEqualTo(type.getErasure()));
+  }
+
   @Override
   public boolean visit(TypeDeclaration node) {
     ITypeBinding type = Types.getTypeBinding(node);
@@ -351,13 +489,13 @@ public class ImplementationImportCollector extends HeaderImportCollector {
   @Override
   public boolean visit(VariableDeclarationExpression node) {
     Type type = node.getType();
-    addReference(type);
+    addDeclarationReference(type);
     return super.visit(node);
   }
 
   @Override
   public boolean visit(VariableDeclarationStatement node) {
-    addReference(node.getType());
+    addDeclarationReference(node.getType());
     return super.visit(node);
   }
 
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.types;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.j2objc.TranslationContext;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The type tables that don't depend on a compilation unit: the well-known
+ * JDT types, the iOS base class and array bindings, and the maps between
+ * them.  All units parsed in the same ASTParser session share their
+ * bindings, so these are built once per environment and shared read-only by
+ * the {@link Types} instances for those units.  The session's
+ * {@link TranslationContext} holds them until the session ends; units parsed
+ * outside of a session get their own tables.
+ * <p>
+ * An environment's bindings are only used by the thread that parsed it, so
+ * the shared iOS bindings are never used concurrently.
+ * </p>
+ */
+public final class SharedTypes {
+
+  final ITypeBinding javaObjectType;
+  final ITypeBinding javaClassType;
+  final ITypeBinding javaCloneableType;
+  final ITypeBinding javaNumberType;
+  final ITypeBinding javaStringType;
+  final ITypeBinding javaVoidType;
+  final ITypeBinding voidType;
+  final ITypeBinding booleanType;
+
+  // Non-standard naming pattern is used, since in this case it's more readable.
+  final IOSTypeBinding NSCopying = new IOSTypeBinding("NSCopying", true);
+  final IOSTypeBinding NSObject = new IOSTypeBinding("NSObject", false);
+  final IOSTypeBinding NSNumber = new IOSTypeBinding("NSNumber", NSObject);
+  final IOSTypeBinding NSString = new IOSTypeBinding("NSString", NSObject);
+  final IOSTypeBinding JavaLangCharSequence = new IOSTypeBinding("JavaLangCharSequence", true);
+  final IOSTypeBinding NS_ANY = new IOSTypeBinding("id", false);
+  final IOSTypeBinding IOSClass = new IOSTypeBinding("IOSClass", false);
+
+  final IOSArrayTypeBinding IOSBooleanArray;
+  final IOSArrayTypeBinding IOSByteArray;
+  final IOSArrayTypeBinding IOSCharArray;
+  final IOSArrayTypeBinding IOSDoubleArray;
+  final IOSArrayTypeBinding IOSFloatArray;
+  final IOSArrayTypeBinding IOSIntArray;
+  final IOSArrayTypeBinding IOSLongArray;
+  final IOSArrayTypeBinding IOSObjectArray;
+  final IOSArrayTypeBinding IOSShortArray;
+
+  // All iOS bindings created above, in creation order.
+  final List<IOSTypeBinding> iosBindings;
+
+  // The initial contents of each unit's type and iOS binding maps.
+  final Map<ITypeBinding, ITypeBinding> typeMap;
+  final Map<String, IOSTypeBinding> iosBindingMap;
+
+  final Map<String, String> simpleTypeMap;
+  final Map<String, IOSArrayTypeBinding> arrayTypeMap;
+  final Map<ITypeBinding, IOSArrayTypeBinding> arrayBindingMap;
+  final Map<IOSArrayTypeBinding, ITypeBinding> componentTypeMap;
+  final Map<ITypeBinding, String> primitiveTypeNameMap;
+  final Map<ITypeBinding, ITypeBinding> primitiveToWrapperTypes;
+  final Map<ITypeBinding, ITypeBinding> wrapperToPrimitiveTypes;
+
+  // The wrapper class longValue() methods, which each unit renames.
+  final List<IMethodBinding> longValueMethods;
+
+  /**
+   * Returns the shared tables for the environment an AST was parsed in.
+   */
+  static SharedTypes get(AST ast) {
+    Map<ITypeBinding, SharedTypes> session = TranslationContext.current().getSharedTypes();
+    if (session == null) {
+      return new SharedTypes(ast);
+    }
+    // Each environment's java.lang.Object binding is unique to it.
+    ITypeBinding key = ast.resolveWellKnownType("java.lang.Object");
+    SharedTypes shared = session.get(key);
+    if (shared == null) {
+      shared = new SharedTypes(ast);
+      session.put(key, shared);
+    }
+    return shared;
+  }
+
+  private SharedTypes(AST ast) {
+    javaObjectType = ast.resolveWellKnownType("java.lang.Object");
+    javaClassType = ast.resolveWellKnownType("java.lang.Class");
+    javaCloneableType = ast.resolveWellKnownType("java.lang.Cloneable");
+    javaStringType = ast.resolveWellKnownType("java.lang.String");
+    javaVoidType = ast.resolveWellKnownType("java.lang.Void");
+    voidType = ast.resolveWellKnownType("void");
+    booleanType = ast.resolveWellKnownType("boolean");
+    NSObject.setMappedType(javaObjectType);
+    NSString.setMappedType(javaStringType);
+    javaNumberType = ast.resolveWellKnownType("java.lang.Integer").getSuperclass();
+
+    IOSBooleanArray = new IOSArrayTypeBinding(
+        "IOSBooleanArray", "arrayWithBooleans", "booleanAtIndex", "getBooleans",
+        ast.resolveWellKnownType("java.lang.Boolean"), ast.resolveWellKnownType("boolean"));
+    IOSByteArray =
+        new IOSArrayTypeBinding("IOSByteArray", "arrayWithBytes", "byteAtIndex", "getBytes",
+            ast.resolveWellKnownType("java.lang.Byte"), ast.resolveWellKnownType("byte"));
+    IOSCharArray =
+        new IOSArrayTypeBinding("IOSCharArray", "arrayWithCharacters", "charAtIndex", "getChars",
+            ast.resolveWellKnownType("java.lang.Character"), ast.resolveWellKnownType("char"));
+    IOSDoubleArray =
+        new IOSArrayTypeBinding("IOSDoubleArray", "arrayWithDoubles", "doubleAtIndex", "getDoubles",
+            ast.resolveWellKnownType("java.lang.Double"), ast.resolveWellKnownType("double"));
+    IOSFloatArray =
+        new IOSArrayTypeBinding("IOSFloatArray", "arrayWithFloats", "floatAtIndex", "getFloats",
+            ast.resolveWellKnownType("java.lang.Float"), ast.resolveWellKnownType("float"));
+    IOSIntArray =
+        new IOSArrayTypeBinding("IOSIntArray", "arrayWithInts", "intAtIndex", "getInts",
+            ast.resolveWellKnownType("java.lang.Integer"), ast.resolveWellKnownType("int"));
+    IOSLongArray =
+        new IOSArrayTypeBinding("IOSLongArray", "arrayWithLongs", "longAtIndex", "getLongs",
+            ast.resolveWellKnownType("java.lang.Long"), ast.resolveWellKnownType("long"));
+    IOSObjectArray =
+        new IOSArrayTypeBinding("IOSObjectArray", "arrayWithObjects", "objectAtIndex", "getObjects",
+            ast.resolveWellKnownType("java.lang.Object"), null);
+    IOSShortArray =
+        new IOSArrayTypeBinding("IOSShortArray", "arrayWithShorts", "shortAtIndex", "getShorts",
+            ast.resolveWellKnownType("java.lang.Short"), ast.resolveWellKnownType("short"));
+
+    iosBindings = ImmutableList.of(NSCopying, NSObject, NSNumber, NSString, JavaLangCharSequence,
+        NS_ANY, IOSClass, IOSBooleanArray, IOSByteArray, IOSCharArray, IOSDoubleArray,
+        IOSFloatArray, IOSIntArray, IOSLongArray, IOSObjectArray, IOSShortArray);
+
+    iosBindingMap = ImmutableMap.<String, IOSTypeBinding>builder()
+        .put("NSObject", NSObject)
+        .put("IOSClass", IOSClass)
+        .put("NSString", NSString)
+        .put("NSNumber", NSNumber)
+        .put("NSCopying", NSCopying)
+        .put("id", NS_ANY)
+        .put("IOSBooleanArray", IOSBooleanArray)
+        .put("IOSByteArray", IOSByteArray)
+        .put("IOSCharArray", IOSCharArray)
+        .put("IOSDoubleArray", IOSDoubleArray)
+        .put("IOSFloatArray", IOSFloatArray)
+        .put("IOSIntArray", IOSIntArray)
+        .put("IOSLongArray", IOSLongArray)
+        .put("IOSObjectArray", IOSObjectArray)
+        .put("IOSShortArray", IOSShortArray)
+        .put("JavaLangCharSequence", JavaLangCharSequence)
+        .build();
+
+    // NOTE: if this list is changed, IOSClass.forName() needs to be
+    // similarly updated.
+    typeMap = ImmutableMap.<ITypeBinding, ITypeBinding>builder()
+        .put(javaObjectType, NSObject)
+        .put(javaClassType, IOSClass)
+        .put(javaCloneableType, NSCopying)
+        .put(javaStringType, NSString)
+        // Number isn't a well-known type, but its subclasses are.
+        .put(javaNumberType, NSNumber)
+        .build();
+    NSNumber.setMappedType(javaNumberType.getSuperclass());
+
+    simpleTypeMap = ImmutableMap.of(
+        "JavaLangObject", "NSObject",
+        "JavaLangString", "NSString",
+        "JavaLangNumber", "NSNumber",
+        "JavaLangCloneable", "NSCopying");
+
+    arrayTypeMap = ImmutableMap.<String, IOSArrayTypeBinding>builder()
+        .put("boolean", IOSBooleanArray)
+        .put("byte", IOSByteArray)
+        .put("char", IOSCharArray)
+        .put("double", IOSDoubleArray)
+        .put("float", IOSFloatArray)
+        .put("int", IOSIntArray)
+        .put("long", IOSLongArray)
+        .put("short", IOSShortArray)
+        .build();
+
+    ImmutableMap.Builder<ITypeBinding, IOSArrayTypeBinding> arrayBindings =
+        ImmutableMap.builder();
+    ImmutableMap.Builder<IOSArrayTypeBinding, ITypeBinding> componentTypes =
+        ImmutableMap.builder();
+    for (Map.Entry<String, IOSArrayTypeBinding> entry : arrayTypeMap.entrySet()) {
+      ITypeBinding primitiveType = ast.resolveWellKnownType(entry.getKey());
+      arrayBindings.put(primitiveType, entry.getValue());
+      componentTypes.put(entry.getValue(), primitiveType);
+    }
+    arrayBindingMap = arrayBindings.build();
+    componentTypeMap = componentTypes.build();
+
+    primitiveTypeNameMap = ImmutableMap.<ITypeBinding, String>builder()
+        .put(ast.resolveWellKnownType("boolean"), "BOOL")
+        .put(ast.resolveWellKnownType("byte"), "char")
+        .put(ast.resolveWellKnownType("char"), "unichar")
+        .put(ast.resolveWellKnownType("double"), "double")
+        .put(ast.resolveWellKnownType("float"), "float")
+        .put(ast.resolveWellKnownType("int"), "int")
+        .put(ast.resolveWellKnownType("long"), "long long")
+        .put(ast.resolveWellKnownType("short"), "short")
+        .build();
+
+    ImmutableMap.Builder<ITypeBinding, ITypeBinding> toWrapper = ImmutableMap.builder();
+    ImmutableMap.Builder<ITypeBinding, ITypeBinding> toPrimitive = ImmutableMap.builder();
+    String[][] primitivesAndWrappers = {
+      { "boolean", "java.lang.Boolean" },
+      { "byte", "java.lang.Byte" },
+      { "char", "java.lang.Character" },
+      { "short", "java.lang.Short" },
+      { "int", "java.lang.Integer" },
+      { "long", "java.lang.Long" },
+      { "float", "java.lang.Float" },
+      { "double", "java.lang.Double" },
+    };
+    for (String[] pair : primitivesAndWrappers) {
+      ITypeBinding primitive = ast.resolveWellKnownType(pair[0]);
+      ITypeBinding wrapper = ast.resolveWellKnownType(pair[1]);
+      toWrapper.put(primitive, wrapper);
+      toPrimitive.put(wrapper, primitive);
+    }
+    primitiveToWrapperTypes = toWrapper.build();
+    wrapperToPrimitiveTypes = toPrimitive.build();
+
+    // longValue => longLongValue, because of return value
+    // difference with NSNumber.longValue.
+    ImmutableList.Builder<IMethodBinding> longValues = ImmutableList.builder();
+    String[] numberTypes = { "java.lang.Byte", "java.lang.Double", "java.lang.Float",
+        "java.lang.Integer", "java.lang.Long", "java.lang.Short" };
+    for (String typeName : numberTypes) {
+      for (IMethodBinding method : ast.resolveWellKnownType(typeName).getDeclaredMethods()) {
+        if (method.getName().equals("longValue")) {
+          longValues.add(method);
+          break;
+        }
+      }
+    }
+    longValueMethods = longValues.build();
+  }
+}
@@ -19,7 +19,6 @@ package com.google.devtools.j2objc.types;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -52,6 +51,9 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.devtools.j2objc.J2ObjC;
 import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.Plugin;
+import com.google.devtools.j2objc.TranslationContext;
+import com.google.devtools.j2objc.sym.Symbols;
 import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.wrapper.FunctionListBuilder;
 import com.google.devtools.j2objc.wrapper.HeaderMapBuilder;
@@ -76,19 +78,18 @@ public class Types {
   private final CompilationUnit unit;
   private final AST ast;
   private final Map<Object, IBinding> bindingMap;
-  private final Map<ITypeBinding, ITypeBinding> typeMap = Maps.newHashMap();
+  private final Map<ITypeBinding, ITypeBinding> typeMap;
   private final Map<ITypeBinding, ITypeBinding> renamedTypeMap = Maps.newHashMap();
-  private final Map<String, String> simpleTypeMap = Maps.newHashMap();
+  private final Map<String, String> simpleTypeMap;
   private final Map<IMethodBinding, IOSMethod> mappedMethods = Maps.newHashMap();
   private final Map<Expression, IMethodBinding> mappedInvocations = Maps.newHashMap();
   private final Map<IVariableBinding, IVariableBinding> mappedVariables = Maps.newHashMap();
   private final Map<ASTNode, ASTNode> substitutionMap = Maps.newHashMap();
   private final Map<IVariableBinding, ITypeBinding> variablesNeedingCasts = Maps.newHashMap();
   private final List<IMethodBinding> functions = Lists.newArrayList();
-  private final Map<ITypeBinding, ITypeBinding> primitiveToWrapperTypes =
-      new HashMap<ITypeBinding, ITypeBinding>();
-  private final Map<ITypeBinding, ITypeBinding> wrapperToPrimitiveTypes =
-      new HashMap<ITypeBinding, ITypeBinding>();
+  private final Set<IMethodBinding> directMethods = Sets.newHashSet();
+  private final Map<ITypeBinding, ITypeBinding> primitiveToWrapperTypes;
+  private final Map<ITypeBinding, ITypeBinding> wrapperToPrimitiveTypes;
   private final List<IVariableBinding> releaseableFields = Lists.newArrayList();
   private final ITypeBinding javaObjectType;
   private final ITypeBinding javaClassType;
@@ -99,41 +100,42 @@ public class Types {
   private final ITypeBinding voidType;
   private final ITypeBinding booleanType;
 
-  private static Types instance;
 
   // Non-standard naming pattern is used, since in this case it's more readable.
-  public final IOSTypeBinding NSCopying = new IOSTypeBinding("NSCopying", true);
-  public final IOSTypeBinding NSObject = new IOSTypeBinding("NSObject", false);
-  public final IOSTypeBinding NSNumber = new IOSTypeBinding("NSNumber", NSObject);
-  public final IOSTypeBinding NSString = new IOSTypeBinding("NSString", NSObject);
-  public final IOSTypeBinding JavaLangCharSequence =
-      new IOSTypeBinding("JavaLangCharSequence", true);
-  public final IOSTypeBinding NS_ANY = new IOSTypeBinding("id", false);
-  public final IOSTypeBinding IOSClass = new IOSTypeBinding("IOSClass", false);
-
-  public IOSArrayTypeBinding IOSBooleanArray;
-  public IOSArrayTypeBinding IOSByteArray;
-  public IOSArrayTypeBinding IOSCharArray;
-  public IOSArrayTypeBinding IOSDoubleArray;
-  public IOSArrayTypeBinding IOSFloatArray;
-  public IOSArrayTypeBinding IOSIntArray;
-  public IOSArrayTypeBinding IOSLongArray;
-  public IOSArrayTypeBinding IOSObjectArray;
-  public IOSArrayTypeBinding IOSShortArray;
-
-  private final Map<String, IOSTypeBinding> iosBindingMap = Maps.newHashMap();
+  public final IOSTypeBinding NSCopying;
+  public final IOSTypeBinding NSObject;
+  public final IOSTypeBinding NSNumber;
+  public final IOSTypeBinding NSString;
+  public final IOSTypeBinding JavaLangCharSequence;
+  public final IOSTypeBinding NS_ANY;
+  public final IOSTypeBinding IOSClass;
+
+  public final IOSArrayTypeBinding IOSBooleanArray;
+  public final IOSArrayTypeBinding IOSByteArray;
+  public final IOSArrayTypeBinding IOSCharArray;
+  public final IOSArrayTypeBinding IOSDoubleArray;
+  public final IOSArrayTypeBinding IOSFloatArray;
+  public final IOSArrayTypeBinding IOSIntArray;
+  public final IOSArrayTypeBinding IOSLongArray;
+  public final IOSArrayTypeBinding IOSObjectArray;
+  public final IOSArrayTypeBinding IOSShortArray;
+
+  private final Map<String, IOSTypeBinding> iosBindingMap;
   private final Map<String, String> iosHeaderMap = Maps.newHashMap();
   private final Map<IOSTypeBinding, ITypeBinding> reverseBindingMap = Maps.newHashMap();
 
-  private final Map<ITypeBinding, String> primitiveTypeNameMap = Maps.newHashMap();
+  private final Map<ITypeBinding, String> primitiveTypeNameMap;
 
   // Map a primitive type to its emulation array type.
-  private final Map<String, IOSArrayTypeBinding> arrayTypeMap = Maps.newHashMap();
-  private final Map<ITypeBinding, IOSArrayTypeBinding> arrayBindingMap = Maps.newHashMap();
-  private final Map<IOSArrayTypeBinding, ITypeBinding> componentTypeMap = Maps.newHashMap();
+  private final Map<String, IOSArrayTypeBinding> arrayTypeMap;
+  private final Map<ITypeBinding, IOSArrayTypeBinding> arrayBindingMap;
+  private final Map<IOSArrayTypeBinding, ITypeBinding> componentTypeMap;
 
   private final Set<Block> autoreleasePoolBlocks = Sets.newHashSet();
 
+  // Dereferenced expressions that are known to be non-null.
+  private final Set<Expression> nonNullExpressions = Sets.newHashSet();
+
   // The first argument of a iOS method isn't named, but Java requires some sort of valid parameter
   // name.  The method mapper therefore uses this string, which the generators ignore.
   public static final String EMPTY_PARAMETER_NAME = "__empty_parameter__";
@@ -144,34 +146,80 @@ public class Types {
   private Types(CompilationUnit compilationUnit) {
     unit = compilationUnit;
     ast = compilationUnit.getAST();
-    initializeBaseClasses();
-    javaObjectType = ast.resolveWellKnownType("java.lang.Object");
-    javaClassType = ast.resolveWellKnownType("java.lang.Class");
-    javaCloneableType = ast.resolveWellKnownType("java.lang.Cloneable");
-    javaStringType = ast.resolveWellKnownType("java.lang.String");
-    javaVoidType = ast.resolveWellKnownType("java.lang.Void");
-    voidType = ast.resolveWellKnownType("void");
-    booleanType = ast.resolveWellKnownType("boolean");
-    NSObject.setMappedType(javaObjectType);
-    NSString.setMappedType(javaStringType);
-    ITypeBinding binding = ast.resolveWellKnownType("java.lang.Integer");
-    javaNumberType = binding.getSuperclass();
-    initializeArrayTypes();
-    initializeTypeMap();
-    populateSimpleTypeMap();
-    populateArrayTypeMaps();
-    populatePrimitiveTypeNameMap();
-    populatePrimitiveAndWrapperTypeMaps();
-    bindingMap = BindingMapBuilder.buildBindingMap(compilationUnit);
-    setGlobalRenamings();
-
-    initializeWrapperMappings();
-  }
-
-  private void initializeWrapperMappings() {
-    functions.addAll(FunctionListBuilder.buildList(unit));
-
-    Map<ITypeBinding, IOSTypeBinding> map = TypeMapBuilder.buildMap(unit);
+
+    // The unit-independent tables are only built once per environment.
+    SharedTypes shared = SharedTypes.get(ast);
+    javaObjectType = shared.javaObjectType;
+    javaClassType = shared.javaClassType;
+    javaCloneableType = shared.javaCloneableType;
+    javaNumberType = shared.javaNumberType;
+    javaStringType = shared.javaStringType;
+    javaVoidType = shared.javaVoidType;
+    voidType = shared.voidType;
+    booleanType = shared.booleanType;
+    NSCopying = shared.NSCopying;
+    NSObject = shared.NSObject;
+    NSNumber = shared.NSNumber;
+    NSString = shared.NSString;
+    JavaLangCharSequence = shared.JavaLangCharSequence;
+    NS_ANY = shared.NS_ANY;
+    IOSClass = shared.IOSClass;
+    IOSBooleanArray = shared.IOSBooleanArray;
+    IOSByteArray = shared.IOSByteArray;
+    IOSCharArray = shared.IOSCharArray;
+    IOSDoubleArray = shared.IOSDoubleArray;
+    IOSFloatArray = shared.IOSFloatArray;
+    IOSIntArray = shared.IOSIntArray;
+    IOSLongArray = shared.IOSLongArray;
+    IOSObjectArray = shared.IOSObjectArray;
+    IOSShortArray = shared.IOSShortArray;
+    simpleTypeMap = shared.simpleTypeMap;
+    arrayTypeMap = shared.arrayTypeMap;
+    arrayBindingMap = shared.arrayBindingMap;
+    componentTypeMap = shared.componentTypeMap;
+    primitiveTypeNameMap = shared.primitiveTypeNameMap;
+    primitiveToWrapperTypes = shared.primitiveToWrapperTypes;
+    wrapperToPrimitiveTypes = shared.wrapperToPrimitiveTypes;
+
+    // Wrapper mappings are added to these maps for each unit.
+    typeMap = Maps.newHashMap(shared.typeMap);
+    iosBindingMap = Maps.newHashMap(shared.iosBindingMap);
+
+    // Add the shared iOS types to this unit's symbol table, without the
+    // methods mapped by earlier units.
+    for (IOSTypeBinding binding : shared.iosBindings) {
+      binding.clearMethods();
+      Symbols.queueForResolution(binding);
+    }
+
+    FunctionListBuilder functionListBuilder = new FunctionListBuilder();
+    TypeMapBuilder typeMapBuilder = new TypeMapBuilder();
+    HeaderMapBuilder headerMapBuilder = new HeaderMapBuilder();
+    List<BindingCollector> collectors =
+        Lists.<BindingCollector>newArrayList(functionListBuilder, typeMapBuilder, headerMapBuilder);
+    collectors.addAll(TranslationContext.current().getBindingCollectors());
+    for (Plugin plugin : Options.getPlugins()) {
+      BindingCollector collector;
+      synchronized (plugin) {
+        collector = plugin.getBindingCollector(compilationUnit);
+      }
+      if (collector != null) {
+        collectors.add(collector);
+      }
+    }
+    bindingMap = BindingMapBuilder.buildBindingMap(compilationUnit, collectors);
+    for (IMethodBinding method : shared.longValueMethods) {
+      NameTable.rename(method, "longLongValue");
+    }
+
+    initializeWrapperMappings(functionListBuilder, typeMapBuilder, headerMapBuilder);
+  }
+
+  private void initializeWrapperMappings(FunctionListBuilder functionListBuilder,
+      TypeMapBuilder typeMapBuilder, HeaderMapBuilder headerMapBuilder) {
+    functions.addAll(functionListBuilder.getList());
+
+    Map<ITypeBinding, IOSTypeBinding> map = typeMapBuilder.getMap();
     for (Entry<ITypeBinding, IOSTypeBinding> entry : map.entrySet()) {
       ITypeBinding typeBinding = entry.getKey();
       IOSTypeBinding iosType = entry.getValue();
@@ -187,162 +235,7 @@ public class Types {
       }
     }
 
-    iosHeaderMap.putAll(HeaderMapBuilder.buildMap(unit));
-  }
-
-  private void initializeBaseClasses() {
-    iosBindingMap.put("NSObject", NSObject);
-    iosBindingMap.put("IOSClass", IOSClass);
-    iosBindingMap.put("NSString", NSString);
-    iosBindingMap.put("NSNumber", NSNumber);
-    iosBindingMap.put("NSCopying", NSCopying);
-    iosBindingMap.put("id", NS_ANY);
-  }
-
-  private void initializeArrayTypes() {
-    IOSBooleanArray = new IOSArrayTypeBinding(
-        "IOSBooleanArray", "arrayWithBooleans", "booleanAtIndex", "getBooleans",
-        ast.resolveWellKnownType("java.lang.Boolean"), ast.resolveWellKnownType("boolean"));
-    IOSByteArray =
-        new IOSArrayTypeBinding("IOSByteArray", "arrayWithBytes", "byteAtIndex", "getBytes",
-            ast.resolveWellKnownType("java.lang.Byte"), ast.resolveWellKnownType("byte"));
-    IOSCharArray =
-        new IOSArrayTypeBinding("IOSCharArray", "arrayWithCharacters", "charAtIndex", "getChars",
-            ast.resolveWellKnownType("java.lang.Character"), ast.resolveWellKnownType("char"));
-    IOSDoubleArray =
-        new IOSArrayTypeBinding("IOSDoubleArray", "arrayWithDoubles", "doubleAtIndex", "getDoubles",
-            ast.resolveWellKnownType("java.lang.Double"), ast.resolveWellKnownType("double"));
-    IOSFloatArray =
-        new IOSArrayTypeBinding("IOSFloatArray", "arrayWithFloats", "floatAtIndex", "getFloats",
-            ast.resolveWellKnownType("java.lang.Float"), ast.resolveWellKnownType("float"));
-    IOSIntArray =
-        new IOSArrayTypeBinding("IOSIntArray", "arrayWithInts", "intAtIndex", "getInts",
-            ast.resolveWellKnownType("java.lang.Integer"), ast.resolveWellKnownType("int"));
-    IOSLongArray =
-        new IOSArrayTypeBinding("IOSLongArray", "arrayWithLongs", "longAtIndex", "getLongs",
-            ast.resolveWellKnownType("java.lang.Long"), ast.resolveWellKnownType("long"));
-    IOSObjectArray =
-        new IOSArrayTypeBinding("IOSObjectArray", "arrayWithObjects", "objectAtIndex", "getObjects",
-            ast.resolveWellKnownType("java.lang.Object"), null);
-    IOSShortArray =
-        new IOSArrayTypeBinding("IOSShortArray", "arrayWithShorts", "shortAtIndex", "getShorts",
-            ast.resolveWellKnownType("java.lang.Short"), ast.resolveWellKnownType("short"));
-
-    iosBindingMap.put("IOSBooleanArray", IOSBooleanArray);
-    iosBindingMap.put("IOSByteArray", IOSByteArray);
-    iosBindingMap.put("IOSCharArray", IOSCharArray);
-    iosBindingMap.put("IOSDoubleArray", IOSDoubleArray);
-    iosBindingMap.put("IOSFloatArray", IOSFloatArray);
-    iosBindingMap.put("IOSIntArray", IOSIntArray);
-    iosBindingMap.put("IOSLongArray", IOSLongArray);
-    iosBindingMap.put("IOSObjectArray", IOSObjectArray);
-    iosBindingMap.put("IOSShortArray", IOSShortArray);
-    iosBindingMap.put("JavaLangCharSequence", JavaLangCharSequence);
-  }
-
-  /**
-   * Initialize type map with classes that are explicitly mapped to an iOS
-   * type.
-   *
-   * NOTE: if this method's list is changed, IOSClass.forName() needs to be
-   * similarly updated.
-   */
-  private void initializeTypeMap() {
-    typeMap.put(javaObjectType, NSObject);
-    typeMap.put(javaClassType, IOSClass);
-    typeMap.put(javaCloneableType, NSCopying);
-    typeMap.put(javaStringType, NSString);
-
-    // Number isn't a well-known type, but its subclasses are.
-    typeMap.put(javaNumberType, NSNumber);
-    NSNumber.setMappedType(javaNumberType.getSuperclass());
-  }
-
-  private void populateSimpleTypeMap() {
-    simpleTypeMap.put("JavaLangObject", "NSObject");
-    simpleTypeMap.put("JavaLangString", "NSString");
-    simpleTypeMap.put("JavaLangNumber", "NSNumber");
-    simpleTypeMap.put("JavaLangCloneable", "NSCopying");
-  }
-
-  private void populateArrayTypeMaps() {
-    arrayTypeMap.put("boolean", IOSBooleanArray);
-    arrayTypeMap.put("byte", IOSByteArray);
-    arrayTypeMap.put("char", IOSCharArray);
-    arrayTypeMap.put("double", IOSDoubleArray);
-    arrayTypeMap.put("float", IOSFloatArray);
-    arrayTypeMap.put("int", IOSIntArray);
-    arrayTypeMap.put("long", IOSLongArray);
-    arrayTypeMap.put("short", IOSShortArray);
-    addPrimitiveMappings("boolean", IOSBooleanArray);
-    addPrimitiveMappings("byte", IOSByteArray);
-    addPrimitiveMappings("char", IOSCharArray);
-    addPrimitiveMappings("double", IOSDoubleArray);
-    addPrimitiveMappings("float", IOSFloatArray);
-    addPrimitiveMappings("int", IOSIntArray);
-    addPrimitiveMappings("long", IOSLongArray);
-    addPrimitiveMappings("short", IOSShortArray);
-  }
-
-  private void addPrimitiveMappings(String typeName, IOSArrayTypeBinding arrayType) {
-    ITypeBinding primitiveType = ast.resolveWellKnownType(typeName);
-    arrayBindingMap.put(primitiveType, arrayType);
-    componentTypeMap.put(arrayType, primitiveType);
-  }
-
-  private void populatePrimitiveTypeNameMap() {
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("boolean"), "BOOL");
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("byte"), "char");
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("char"), "unichar");
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("double"), "double");
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("float"), "float");
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("int"), "int");
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("long"), "long long");
-    primitiveTypeNameMap.put(ast.resolveWellKnownType("short"), "short");
-  }
-
-  private void populatePrimitiveAndWrapperTypeMaps() {
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("boolean"), ast.resolveWellKnownType("java.lang.Boolean"));
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("byte"), ast.resolveWellKnownType("java.lang.Byte"));
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("char"), ast.resolveWellKnownType("java.lang.Character"));
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("short"), ast.resolveWellKnownType("java.lang.Short"));
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("int"), ast.resolveWellKnownType("java.lang.Integer"));
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("long"), ast.resolveWellKnownType("java.lang.Long"));
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("float"), ast.resolveWellKnownType("java.lang.Float"));
-    loadPrimitiveAndWrapperTypes(
-        ast.resolveWellKnownType("double"), ast.resolveWellKnownType("java.lang.Double"));
-  }
-
-  private void loadPrimitiveAndWrapperTypes(ITypeBinding primitive, ITypeBinding wrapper) {
-    primitiveToWrapperTypes.put(primitive, wrapper);
-    wrapperToPrimitiveTypes.put(wrapper, primitive);
-  }
-
-  private void setGlobalRenamings() {
-    // longValue => longLongValue, because of return value
-    // difference with NSNumber.longValue.
-    renameLongValue(ast.resolveWellKnownType("java.lang.Byte"));
-    renameLongValue(ast.resolveWellKnownType("java.lang.Double"));
-    renameLongValue(ast.resolveWellKnownType("java.lang.Float"));
-    renameLongValue(ast.resolveWellKnownType("java.lang.Integer"));
-    renameLongValue(ast.resolveWellKnownType("java.lang.Long"));
-    renameLongValue(ast.resolveWellKnownType("java.lang.Short"));
-  }
-
-  void renameLongValue(ITypeBinding type) {
-    for (IMethodBinding method : type.getDeclaredMethods()) {
-      if (method.getName().equals("longValue")) {
-        NameTable.rename(method, "longLongValue");
-        break;
-      }
-    }
+    iosHeaderMap.putAll(headerMapBuilder.getMap());
   }
 
   /**
@@ -455,11 +348,15 @@ public class Types {
    * Initialize this service using the AST returned by the parser.
    */
   public static void initialize(CompilationUnit unit) {
-    instance = new Types(unit);
+    TranslationContext.current().setTypes(new Types(unit));
   }
 
   public static void cleanup() {
-    instance = null;
+    TranslationContext.current().setTypes(null);
+  }
+
+  private static Types instance() {
+    return TranslationContext.current().getTypes();
   }
 
   /**
@@ -473,9 +370,9 @@ public class Types {
     if (binding.isArray()) {
       return resolveArrayType(binding.getComponentType());
     }
-    ITypeBinding newBinding = instance.typeMap.get(binding);
-    if (newBinding == null && binding.isAssignmentCompatible(instance.javaClassType)) {
-      newBinding = instance.typeMap.get(instance.javaClassType);
+    ITypeBinding newBinding = instance().typeMap.get(binding);
+    if (newBinding == null && binding.isAssignmentCompatible(instance().javaClassType)) {
+      newBinding = instance().typeMap.get(instance().javaClassType);
     }
     return newBinding != null ? newBinding : binding;
   }
@@ -484,7 +381,7 @@ public class Types {
    * Given a fully-qualified type name, return its binding.
    */
   public static ITypeBinding mapTypeName(String typeName) {
-    ITypeBinding binding = instance.ast.resolveWellKnownType(typeName);
+    ITypeBinding binding = instance().ast.resolveWellKnownType(typeName);
     return mapType(binding);
   }
 
@@ -492,7 +389,7 @@ public class Types {
    * Returns whether a given type has an iOS equivalent.
    */
   public static boolean hasIOSEquivalent(ITypeBinding binding) {
-    return binding.isArray() || instance.typeMap.containsKey(binding.getTypeDeclaration());
+    return binding.isArray() || instance().typeMap.containsKey(binding.getTypeDeclaration());
   }
 
   /**
@@ -506,15 +403,15 @@ public class Types {
    * Returns true if a type name refers to an iOS type.
    */
   public static boolean isIOSType(String name) {
-    return instance.simpleTypeMap.get(name) != null
-        || instance.simpleTypeMap.containsValue(name);
+    return instance().simpleTypeMap.get(name) != null
+        || instance().simpleTypeMap.containsValue(name);
   }
 
   /**
    * Returns a simple (no package) name for a given one.
    */
   public static String mapSimpleTypeName(String typeName) {
-    String newName = instance.simpleTypeMap.get(typeName);
+    String newName = instance().simpleTypeMap.get(typeName);
     return newName != null ? newName : typeName;
   }
 
@@ -525,19 +422,19 @@ public class Types {
     Type type;
     if (binding.isPrimitive()) {
       PrimitiveType.Code typeCode = PrimitiveType.toCode(binding.getName());
-      type = instance.ast.newPrimitiveType(typeCode);
+      type = instance().ast.newPrimitiveType(typeCode);
     } else if (binding.isArray() && !(binding instanceof IOSArrayTypeBinding)) {
       Type componentType = makeType(binding.getComponentType());
-      type = instance.ast.newArrayType(componentType);
+      type = instance().ast.newArrayType(componentType);
     } else {
       String typeName = binding.getErasure().getName();
       if (typeName == "") {
         // Debugging aid for anonymous (no-name) classes.
         typeName = "$Local$";
       }
-      SimpleName name = instance.ast.newSimpleName(typeName);
+      SimpleName name = instance().ast.newSimpleName(typeName);
       addBinding(name, binding);
-      type = instance.ast.newSimpleType(name);
+      type = instance().ast.newSimpleType(name);
     }
     addBinding(type, binding);
     return type;
@@ -565,85 +462,86 @@ public class Types {
    * type.
    */
   public static boolean isMappedMethod(IMethodBinding method) {
-    return method instanceof IOSMethodBinding ? true : instance.mappedMethods.containsKey(method);
+    return method instanceof IOSMethodBinding
+        ? true : instance().mappedMethods.containsKey(method);
   }
 
   public static void addMappedIOSMethod(IMethodBinding binding, IOSMethod method) {
-    instance.mappedMethods.put(binding, method);
+    instance().mappedMethods.put(binding, method);
     Types.addBinding(method, binding);
   }
 
   public static IOSMethod getMappedMethod(IMethodBinding binding) {
-    return instance.mappedMethods.get(binding);
+    return instance().mappedMethods.get(binding);
   }
 
   /**
    * Returns true if a specified variable binding refers has a replacement.
    */
   public static boolean isMappedVariable(IVariableBinding var) {
-    return instance.mappedVariables.containsKey(var);
+    return instance().mappedVariables.containsKey(var);
   }
 
   public static void addMappedVariable(ASTNode node, IVariableBinding newBinding) {
     IVariableBinding oldBinding = getVariableBinding(node);
     assert oldBinding != null;
-    instance.mappedVariables.put(oldBinding, newBinding);
+    instance().mappedVariables.put(oldBinding, newBinding);
   }
 
   public static IVariableBinding getMappedVariable(IVariableBinding binding) {
-    IVariableBinding var = instance.mappedVariables.get(binding);
+    IVariableBinding var = instance().mappedVariables.get(binding);
     return var != null ? var : binding;
   }
 
   public static void addMappedInvocation(Expression method, IMethodBinding binding) {
-    instance.mappedInvocations.put(method, binding);
+    instance().mappedInvocations.put(method, binding);
     Types.addBinding(method, binding);
   }
 
   public static IMethodBinding resolveInvocationBinding(Expression invocation) {
-    if (instance.mappedInvocations.containsKey(invocation)) {
-      return instance.mappedInvocations.get(invocation);
+    if (instance().mappedInvocations.containsKey(invocation)) {
+      return instance().mappedInvocations.get(invocation);
     }
     return null;
   }
 
   public static IOSTypeBinding resolveIOSType(String name) {
-    return instance.iosBindingMap.get(name);
+    return instance().iosBindingMap.get(name);
   }
 
   public static String resolveIOSHeader(String name) {
-    return instance.iosHeaderMap.get(name);
+    return instance().iosHeaderMap.get(name);
   }
 
   public static ITypeBinding resolveOriginalTypeBinding(IOSTypeBinding iosTypeBinding) {
-    return instance.reverseBindingMap.get(iosTypeBinding);
+    return instance().reverseBindingMap.get(iosTypeBinding);
   }
 
   public static boolean hasIOSHeader(String name) {
-    return instance.iosHeaderMap.containsKey(name);
+    return instance().iosHeaderMap.containsKey(name);
   }
 
   public static boolean isJavaObjectType(ITypeBinding type) {
-    return instance.javaObjectType.equals(type);
+    return instance().javaObjectType.equals(type);
   }
 
   public static boolean isJavaStringType(ITypeBinding type) {
-    return instance.javaStringType.equals(type);
+    return instance().javaStringType.equals(type);
   }
 
   public static boolean isJavaNumberType(ITypeBinding type) {
-    return type.isAssignmentCompatible(instance.javaNumberType);
+    return type.isAssignmentCompatible(instance().javaNumberType);
   }
 
   public static boolean isFloatingPointType(ITypeBinding type) {
-    return type.isEqualTo(instance.ast.resolveWellKnownType("double")) ||
-        type.isEqualTo(instance.ast.resolveWellKnownType("float")) ||
-        type == instance.ast.resolveWellKnownType("java.lang.Double") ||
-        type == instance.ast.resolveWellKnownType("java.lang.Float");
+    return type.isEqualTo(instance().ast.resolveWellKnownType("double")) ||
+        type.isEqualTo(instance().ast.resolveWellKnownType("float")) ||
+        type == instance().ast.resolveWellKnownType("java.lang.Double") ||
+        type == instance().ast.resolveWellKnownType("java.lang.Float");
   }
 
   public static boolean isBooleanType(ITypeBinding type) {
-    return instance.booleanType.equals(type);
+    return instance().booleanType.equals(type);
   }
 
   public static ITypeBinding resolveIOSType(Type type) {
@@ -655,27 +553,27 @@ public class Types {
   }
 
   public static IOSTypeBinding resolveArrayType(String name) {
-    return instance.arrayTypeMap.get(name);
+    return instance().arrayTypeMap.get(name);
   }
 
   public static IOSArrayTypeBinding resolveArrayType(ITypeBinding binding) {
-    IOSArrayTypeBinding arrayBinding = instance.arrayBindingMap.get(binding);
-    return arrayBinding != null ? arrayBinding : instance.IOSObjectArray;
+    IOSArrayTypeBinding arrayBinding = instance().arrayBindingMap.get(binding);
+    return arrayBinding != null ? arrayBinding : instance().IOSObjectArray;
   }
 
   public static String getPrimitiveTypeName(ITypeBinding binding) {
-    return instance.primitiveTypeNameMap.get(binding);
+    return instance().primitiveTypeNameMap.get(binding);
   }
 
   public static IBinding getBinding(Object node) {
-    IBinding binding = instance.bindingMap.get(node);
+    IBinding binding = instance().bindingMap.get(node);
     assert binding != null;
     return binding;
   }
 
   public static void addBinding(Object node, IBinding binding) {
     assert binding != null;
-    instance.bindingMap.put(node, binding);
+    instance().bindingMap.put(node, binding);
   }
 
   /**
@@ -719,54 +617,82 @@ public class Types {
 
   /**
    * Walks an AST and asserts there is a resolved binding for every
-   * ASTNode type that is supposed to have one.
+   * ASTNode type that is supposed to have one.  Does nothing unless
+   * binding verification is enabled.
    */
   public static void verifyNode(ASTNode node) {
-    BindingMapVerifier.verify(node, instance.bindingMap);
+    if (Options.verifyBindings()) {
+      BindingMapVerifier.verify(node, instance().bindingMap);
+    }
   }
 
   public static void verifyNodes(List<? extends ASTNode> nodes) {
-    for (ASTNode node : nodes) {
-      BindingMapVerifier.verify(node, instance.bindingMap);
+    if (Options.verifyBindings()) {
+      for (ASTNode node : nodes) {
+        BindingMapVerifier.verify(node, instance().bindingMap);
+      }
     }
   }
 
+  /**
+   * Returns the total time spent verifying bindings, in nanoseconds.
+   */
+  public static long getBindingVerificationTime() {
+    return BindingMapVerifier.getVerificationTime();
+  }
+
   public static void substitute(ASTNode oldNode, ASTNode replacement) {
-    instance.substitutionMap.put(oldNode, replacement);
+    instance().substitutionMap.put(oldNode, replacement);
   }
 
   public static ASTNode getNode(ASTNode currentNode) {
-    return instance.substitutionMap.get(currentNode);
+    return instance().substitutionMap.get(currentNode);
   }
 
   static ITypeBinding getIOSArrayComponentType(IOSArrayTypeBinding arrayType) {
-    ITypeBinding type = instance.componentTypeMap.get(arrayType);
-    return type != null ? type : instance.NSObject;
+    ITypeBinding type = instance().componentTypeMap.get(arrayType);
+    return type != null ? type : instance().NSObject;
   }
 
   public static ITypeBinding renameTypeBinding(String newName, ITypeBinding newDeclaringClass,
       ITypeBinding originalBinding) {
     ITypeBinding renamedBinding =
         RenamedTypeBinding.rename(newName, newDeclaringClass, originalBinding);
-    instance.renamedTypeMap.put(originalBinding, renamedBinding);
+    instance().renamedTypeMap.put(originalBinding, renamedBinding);
     return renamedBinding;
   }
 
   public static ITypeBinding getRenamedBinding(ITypeBinding original) {
-    return original != null && instance.renamedTypeMap.containsKey(original)
-        ? instance.renamedTypeMap.get(original) : original;
+    return original != null && instance().renamedTypeMap.containsKey(original)
+        ? instance().renamedTypeMap.get(original) : original;
   }
 
   public static void addFunction(IMethodBinding binding) {
-    instance.functions.add(binding);
+    instance().functions.add(binding);
   }
 
   public static boolean isFunction(IMethodBinding binding) {
-    if (instance.functions.contains(binding)) {
+    if (instance().functions.contains(binding)) {
+      return true;
+    }
+    IMethodBinding decl = binding.getMethodDeclaration();
+    return decl != null ? instance().functions.contains(decl) : false;
+  }
+
+  /**
+   * Marks a method that can't be overridden, whose implementation is
+   * generated as a C function that its class calls directly.
+   */
+  public static void addDirectMethod(IMethodBinding binding) {
+    instance().directMethods.add(binding);
+  }
+
+  public static boolean isDirectMethod(IMethodBinding binding) {
+    if (instance().directMethods.contains(binding)) {
       return true;
     }
     IMethodBinding decl = binding.getMethodDeclaration();
-    return decl != null ? instance.functions.contains(decl) : false;
+    return decl != null ? instance().directMethods.contains(decl) : false;
   }
 
   public static boolean isVoidType(Type type) {
@@ -774,11 +700,11 @@ public class Types {
   }
 
   public static boolean isVoidType(ITypeBinding type) {
-    return type.isEqualTo(instance.voidType);
+    return type.isEqualTo(instance().voidType);
   }
 
   public static boolean isJavaVoidType(ITypeBinding type) {
-    return type.isEqualTo(instance.javaVoidType);
+    return type.isEqualTo(instance().javaVoidType);
   }
 
   /**
@@ -801,35 +727,36 @@ public class Types {
    * for gcc to verify parameters of generic interface's methods
    */
   public static void addVariableCast(IVariableBinding var, ITypeBinding castType) {
-    instance.variablesNeedingCasts.put(var.getVariableDeclaration(), castType);
+    instance().variablesNeedingCasts.put(var.getVariableDeclaration(), castType);
   }
 
   public static boolean variableHasCast(IVariableBinding var) {
-    return instance.variablesNeedingCasts.containsKey(var.getVariableDeclaration());
+    return instance().variablesNeedingCasts.containsKey(var.getVariableDeclaration());
   }
 
   public static ITypeBinding getCastForVariable(IVariableBinding var) {
-    return instance.variablesNeedingCasts.get(var.getVariableDeclaration());
+    return instance().variablesNeedingCasts.get(var.getVariableDeclaration());
   }
 
   public static void addReleaseableFields(Collection<IVariableBinding> fields) {
     for (IVariableBinding field : fields) {
-      instance.releaseableFields.add(field.getVariableDeclaration());
+      instance().releaseableFields.add(field.getVariableDeclaration());
     }
   }
 
   public static boolean isReleaseableField(IVariableBinding var) {
-    return var != null ? instance.releaseableFields.contains(var.getVariableDeclaration()) : false;
+    return var != null
+        ? instance().releaseableFields.contains(var.getVariableDeclaration()) : false;
   }
 
   public static NullLiteral newNullLiteral() {
-    NullLiteral nullLiteral = instance.ast.newNullLiteral();
+    NullLiteral nullLiteral = instance().ast.newNullLiteral();
     addBinding(nullLiteral, NullType.SINGLETON);
     return nullLiteral;
   }
 
   public static SimpleName newLabel(String identifier) {
-    SimpleName node = instance.ast.newSimpleName(identifier);
+    SimpleName node = instance().ast.newSimpleName(identifier);
     addBinding(node, new IOSTypeBinding(identifier, false));
     return node;
   }
@@ -857,27 +784,27 @@ public class Types {
   }
 
   public static ITypeBinding getWrapperType(ITypeBinding primitiveType) {
-    return instance.primitiveToWrapperTypes.get(primitiveType);
+    return instance().primitiveToWrapperTypes.get(primitiveType);
   }
 
   public static ITypeBinding getPrimitiveType(ITypeBinding wrapperType) {
-    return instance.wrapperToPrimitiveTypes.get(wrapperType);
+    return instance().wrapperToPrimitiveTypes.get(wrapperType);
   }
 
   public static ITypeBinding getNSNumber() {
-    return instance.NSNumber;
+    return instance().NSNumber;
   }
 
   public static ITypeBinding getNSObject() {
-    return instance.NSObject;
+    return instance().NSObject;
   }
 
   public static ITypeBinding getNSString() {
-    return instance.NSString;
+    return instance().NSString;
   }
 
   public static ITypeBinding getIOSClass() {
-    return instance.IOSClass;
+    return instance().IOSClass;
   }
 
   public static boolean isWeakReference(IVariableBinding var) {
@@ -926,11 +853,22 @@ public class Types {
     if (Options.useGC()) {
       J2ObjC.warning(block, "@AutoreleasePool ignored in GC mode");
     }
-    instance.autoreleasePoolBlocks.add(block);
+    instance().autoreleasePoolBlocks.add(block);
   }
 
   public static boolean hasAutoreleasePool(Block block) {
-    return instance.autoreleasePoolBlocks.contains(block);
+    return instance().autoreleasePoolBlocks.contains(block);
+  }
+
+  /**
+   * Marks a dereferenced expression as non-null, so it isn't nil checked.
+   */
+  public static void addNonNullExpression(Expression expr) {
+    instance().nonNullExpressions.add(expr);
+  }
+
+  public static boolean isNonNullExpression(Expression expr) {
+    return instance().nonNullExpressions.contains(expr);
   }
 
   public static boolean isWrapper(ITypeBinding binding) {
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+
+import org.eclipse.jdt.core.dom.IAnnotationBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Records what each source file was translated from, so that files which
+ * haven't changed since an earlier run can be skipped.
+ * <p>
+ * A file's entry holds a hash of its source, the files generated from it,
+ * and a fingerprint of the API of each source type it referenced.  A file
+ * is retranslated if its source changed, if any of its generated files are
+ * missing, or if the API of a type it references changed.  A referenced
+ * type's API is checked against the fingerprint computed when that type's
+ * file was retranslated in this run, or failing that, by checking its
+ * source file is unchanged.  The whole cache is discarded if the options
+ * that affect the generated code, the class paths or the translator change.
+ * </p>
+ */
+public class BuildCache {
+  private static final String VERSION = "j2objc-build-cache 1";
+  private static final Splitter TAB_SPLITTER = Splitter.on('\t');
+  private static final Joiner TAB_JOINER = Joiner.on('\t');
+
+  private final File file;
+  private final String optionsFingerprint;
+  private final Map<String, Entry> entries;
+  private final SourcePath sourcePath;
+
+  // State for the current run.
+  private final Map<String, String> sourceHashes = Maps.newHashMap();
+  private final List<String> unchangedFiles = Lists.newArrayList();
+  private final Set<String> translatedFiles = Sets.newHashSet();
+  private final Map<String, String> translatedTypes = Maps.newHashMap();
+  private final Map<String, String> dependencyHashes = Maps.newHashMap();
+
+  private static class Entry {
+    private final String sourceHash;
+    private final List<String> outputFiles = Lists.newArrayList();
+    private final List<Dependency> dependencies = Lists.newArrayList();
+
+    private Entry(String sourceHash) {
+      this.sourceHash = sourceHash;
+    }
+  }
+
+  private static class Dependency {
+    private final String typeName;
+    private final String fingerprint;
+    private final String path;
+    private final String sourceHash;
+
+    private Dependency(String typeName, String fingerprint, String path, String sourceHash) {
+      this.typeName = typeName;
+      this.fingerprint = fingerprint;
+      this.path = path;
+      this.sourceHash = sourceHash;
+    }
+  }
+
+  private BuildCache(File file, String optionsFingerprint, Map<String, Entry> entries,
+      SourcePath sourcePath) {
+    this.file = file;
+    this.optionsFingerprint = optionsFingerprint;
+    this.entries = entries;
+    this.sourcePath = sourcePath;
+  }
+
+  /**
+   * Loads a build cache.  If the file doesn't exist, or it was written by a
+   * run with different options, the returned cache is empty.
+   *
+   * @param sourcePath the source path, where referenced types' sources are
+   *     found
+   */
+  public static BuildCache load(File file, SourcePath sourcePath) throws IOException {
+    String optionsFingerprint = getOptionsFingerprint();
+    Map<String, Entry> entries = new TreeMap<String, Entry>();
+    if (file.exists()) {
+      List<String> lines = Files.readLines(file, Charsets.UTF_8);
+      if (lines.size() >= 2 && lines.get(0).equals(VERSION)
+          && lines.get(1).equals("options\t" + optionsFingerprint)) {
+        Entry entry = null;
+        for (String line : lines.subList(2, lines.size())) {
+          List<String> fields = Lists.newArrayList(TAB_SPLITTER.split(line));
+          String kind = fields.get(0);
+          if (kind.equals("file") && fields.size() == 3) {
+            entry = new Entry(fields.get(2));
+            entries.put(fields.get(1), entry);
+          } else if (kind.equals("output") && fields.size() == 2 && entry != null) {
+            entry.outputFiles.add(fields.get(1));
+          } else if (kind.equals("dep") && fields.size() == 5 && entry != null) {
+            entry.dependencies.add(
+                new Dependency(fields.get(1), fields.get(2), fields.get(3), fields.get(4)));
+          } else {
+            J2ObjC.warning("ignoring invalid build cache: " + file);
+            entries.clear();
+            break;
+          }
+        }
+      }
+    }
+    return new BuildCache(file, optionsFingerprint, entries, sourcePath);
+  }
+
+  /**
+   * Writes the cache, including the entries of files translated by earlier
+   * runs that weren't part of this one.
+   */
+  public synchronized void save() throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.exists()) {
+      dir.mkdirs();
+    }
+    BufferedWriter out = Files.newWriter(file, Charsets.UTF_8);
+    try {
+      out.write(VERSION);
+      out.newLine();
+      out.write("options\t" + optionsFingerprint);
+      out.newLine();
+      for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+        Entry entry = mapEntry.getValue();
+        writeLine(out, "file", mapEntry.getKey(), entry.sourceHash);
+        for (String outputFile : entry.outputFiles) {
+          writeLine(out, "output", outputFile);
+        }
+        for (Dependency dep : entry.dependencies) {
+          writeLine(out, "dep", dep.typeName, dep.fingerprint, dep.path, dep.sourceHash);
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void writeLine(BufferedWriter out, Object... fields) throws IOException {
+    out.write(TAB_JOINER.join(fields));
+    out.newLine();
+  }
+
+  /**
+   * Returns true if a source file and its generated files are unchanged
+   * since it was last translated.  Its referenced types are checked later,
+   * by {@link #getStaleFiles}, after the changed files are translated.
+   */
+  public synchronized boolean isUnchanged(String filename, String source) {
+    String hash = Hashing.md5().hashString(source).toString();
+    sourceHashes.put(filename, hash);
+    Entry entry = entries.get(filename);
+    if (entry == null || !entry.sourceHash.equals(hash)) {
+      return false;
+    }
+    for (String outputFile : entry.outputFiles) {
+      if (!new File(outputFile).exists()) {
+        return false;
+      }
+    }
+    unchangedFiles.add(filename);
+    return true;
+  }
+
+  /**
+   * Returns the unchanged files that haven't been translated in this run,
+   * but reference a type whose API has changed.  Each file is only returned
+   * once, even if its translation fails.
+   */
+  public synchronized List<String> getStaleFiles() throws IOException {
+    List<String> staleFiles = Lists.newArrayList();
+    for (String filename : unchangedFiles) {
+      if (!translatedFiles.contains(filename) && hasChangedDependency(entries.get(filename))) {
+        staleFiles.add(filename);
+      }
+    }
+    translatedFiles.addAll(staleFiles);
+    return staleFiles;
+  }
+
+  private boolean hasChangedDependency(Entry entry) throws IOException {
+    for (Dependency dep : entry.dependencies) {
+      String fingerprint = translatedTypes.get(dep.typeName);
+      if (fingerprint != null) {
+        if (!fingerprint.equals(dep.fingerprint)) {
+          return true;
+        }
+      } else if (!dep.sourceHash.equals(getDependencyHash(dep.path))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of unchanged files that weren't translated.
+   */
+  public synchronized int getSkippedFileCount() {
+    int count = 0;
+    for (String filename : unchangedFiles) {
+      if (!translatedFiles.contains(filename)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Records a successful translation of a file.
+   */
+  public void update(String filename, DependencyRecorder recorder, List<File> outputFiles)
+      throws IOException {
+    synchronized (this) {
+      translatedFiles.add(filename);
+      if (!sourceHashes.containsKey(filename)) {
+        return;  // Not a file checked by this cache, like a source jar entry.
+      }
+    }
+
+    // Fingerprints are computed outside the lock, since finding the
+    // referenced types' source files may read them.
+    Map<String, String> declaredTypes = Maps.newHashMap();
+    for (ITypeBinding type : recorder.getDeclaredTypes()) {
+      declaredTypes.put(type.getQualifiedName(), getApiFingerprint(type));
+    }
+    List<Dependency> dependencies = Lists.newArrayList();
+    for (ITypeBinding type : getSourceDependencies(recorder.getReferencedTypes())) {
+      String typeName = type.getQualifiedName();
+      if (!declaredTypes.containsKey(typeName)) {
+        String path = getSourcePath(type);
+        dependencies.add(new Dependency(
+            typeName, getApiFingerprint(type), path, getDependencyHash(path)));
+      }
+    }
+
+    synchronized (this) {
+      Entry entry = new Entry(sourceHashes.get(filename));
+      for (File outputFile : outputFiles) {
+        entry.outputFiles.add(outputFile.getAbsolutePath());
+      }
+      entry.dependencies.addAll(dependencies);
+      entries.put(filename, entry);
+      translatedTypes.putAll(declaredTypes);
+    }
+  }
+
+  /**
+   * Records a failed translation of a file, so it is retranslated by the
+   * next run.
+   */
+  public synchronized void remove(String filename) {
+    translatedFiles.add(filename);
+    entries.remove(filename);
+  }
+
+  /**
+   * Returns the top-level source types that a unit references, and their
+   * top-level source supertypes, since a supertype's API can change how a
+   * subtype's members are translated.
+   */
+  private static Set<ITypeBinding> getSourceDependencies(Set<ITypeBinding> referencedTypes) {
+    Set<ITypeBinding> dependencies = Sets.newLinkedHashSet();
+    for (ITypeBinding type : referencedTypes) {
+      addSourceDependency(type, dependencies);
+    }
+    return dependencies;
+  }
+
+  private static void addSourceDependency(ITypeBinding type, Set<ITypeBinding> dependencies) {
+    type = DependencyRecorder.getTopLevelType(type);
+    if (type != null && type.isFromSource() && dependencies.add(type)) {
+      addSourceDependency(type.getSuperclass(), dependencies);
+      for (ITypeBinding interfaceType : type.getInterfaces()) {
+        addSourceDependency(interfaceType, dependencies);
+      }
+    }
+  }
+
+  /**
+   * Returns a hash of the parts of a type that can affect the translation
+   * of the code that uses it: its name, modifiers, supertypes, annotations,
+   * and the signatures of its members, but not its method bodies.
+   */
+  static String getApiFingerprint(ITypeBinding type) {
+    Hasher hasher = Hashing.md5().newHasher();
+    addApi(type, hasher);
+    return hasher.hash().toString();
+  }
+
+  private static void addApi(ITypeBinding type, Hasher hasher) {
+    addString(type.getKey(), hasher);
+    hasher.putInt(type.getModifiers());
+    ITypeBinding superclass = type.getSuperclass();
+    addString(superclass != null ? superclass.getKey() : "", hasher);
+    for (ITypeBinding interfaceType : type.getInterfaces()) {
+      addString(interfaceType.getKey(), hasher);
+    }
+    addAnnotations(type.getAnnotations(), hasher);
+    for (IVariableBinding field : type.getDeclaredFields()) {
+      addString(field.getKey(), hasher);
+      hasher.putInt(field.getModifiers());
+      addAnnotations(field.getAnnotations(), hasher);
+      addString(String.valueOf(field.getConstantValue()), hasher);
+    }
+    for (IMethodBinding method : type.getDeclaredMethods()) {
+      addString(method.getKey(), hasher);
+      hasher.putInt(method.getModifiers());
+      hasher.putBoolean(method.isVarargs());
+      addAnnotations(method.getAnnotations(), hasher);
+    }
+    for (ITypeBinding memberType : type.getDeclaredTypes()) {
+      addApi(memberType, hasher);
+    }
+  }
+
+  private static void addAnnotations(IAnnotationBinding[] annotations, Hasher hasher) {
+    for (IAnnotationBinding annotation : annotations) {
+      addString(annotation.toString(), hasher);
+    }
+  }
+
+  private static void addString(String s, Hasher hasher) {
+    hasher.putString(s);
+    hasher.putChar('\0');
+  }
+
+  private static String getSourcePath(ITypeBinding type) {
+    String path = type.getName() + ".java";
+    String pkg = type.getPackage().getName();
+    return pkg.isEmpty() ? path : pkg.replace('.', '/') + '/' + path;
+  }
+
+  /**
+   * Returns a hash of a referenced type's source file, found on the source
+   * path.  Source archives are covered by the options fingerprint, so files
+   * found in them all have the same hash.
+   */
+  private synchronized String getDependencyHash(String path) throws IOException {
+    String hash = dependencyHashes.get(path);
+    if (hash == null) {
+      hash = findDependencyHash(path);
+      dependencyHashes.put(path, hash);
+    }
+    return hash;
+  }
+
+  private String findDependencyHash(String path) throws IOException {
+    SourcePath.Source source = sourcePath.find(path);
+    if (source == null) {
+      return "missing";
+    }
+    if (source.isArchived()) {
+      return "archive";
+    }
+    return Hashing.md5().hashBytes(Files.toByteArray(source.getFile())).toString();
+  }
+
+  /**
+   * Returns a hash of everything besides a file's source and referenced
+   * source types that affects its translation.
+   */
+  private static String getOptionsFingerprint() {
+    Hasher hasher = Hashing.md5().newHasher();
+    addString(System.getProperty("java.version"), hasher);
+    addTranslatorVersion(hasher);
+    addString(Options.getLanguage().toString(), hasher);
+    addString(String.valueOf(Options.getMemoryManagementOption()), hasher);
+    hasher.putBoolean(Options.memoryDebug());
+    hasher.putBoolean(Options.inlineFieldAccess());
+    hasher.putBoolean(Options.inlineArrayAccess());
+    hasher.putBoolean(Options.devirtualize());
+    hasher.putBoolean(Options.fastStringConcatenation());
+    hasher.putBoolean(Options.fastEnumeration());
+    hasher.putBoolean(Options.forwardDeclarations());
+    hasher.putBoolean(Options.generateTestMain());
+    hasher.putBoolean(Options.emitLineDirectives());
+    hasher.putBoolean(Options.generateNativeStubs());
+    hasher.putBoolean(Options.usePackageDirectories());
+    hasher.putBoolean(Options.acceptJsniDelimiters());
+    hasher.putBoolean(Options.ignoreMissingImports());
+    addString(Options.getOutputDirectory().getAbsolutePath(), hasher);
+    addString(String.valueOf(Options.getFileHeader()), hasher);
+    addString(new TreeMap<String, String>(Options.getPackagePrefixes()).toString(), hasher);
+    addString(new TreeMap<String, String>(Options.getCompilerOptions()).toString(), hasher);
+    for (String mappingFile : Options.getMappingFiles()) {
+      addFile(mappingFile, hasher);
+    }
+    File proGuardUsageFile = Options.getProGuardUsageFile();
+    addFile(proGuardUsageFile != null ? proGuardUsageFile.getPath() : "", hasher);
+    String bootClasspath = Options.getBootClasspath();
+    if (bootClasspath != null) {
+      for (String pathEntry : bootClasspath.split(File.pathSeparator)) {
+        addClassPathEntry(pathEntry, hasher);
+      }
+    }
+    for (String pathEntry : Options.getClassPathEntries()) {
+      addClassPathEntry(pathEntry, hasher);
+    }
+    for (String pathEntry : Options.getSourcePathEntries()) {
+      addFile(pathEntry, hasher);
+    }
+    for (String pathEntry : Options.getPluginPathEntries()) {
+      addClassPathEntry(pathEntry, hasher);
+    }
+    addString(Options.getPluginOptionString(), hasher);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Adds a file's path, and if it's a regular file, its size and
+   * modification time.  Source path directories are only identified by their
+   * path, as the source files in them are checked separately.
+   */
+  private static void addFile(String path, Hasher hasher) {
+    addString(path, hasher);
+    File f = new File(path);
+    if (f.isFile()) {
+      hasher.putLong(f.length());
+      hasher.putLong(f.lastModified());
+    }
+  }
+
+  /**
+   * Adds a class path entry.  Since a directory's class files aren't
+   * checked like source files, each is added with its size and modification
+   * time, so that a changed class invalidates the cache.
+   */
+  private static void addClassPathEntry(String path, Hasher hasher) {
+    addFile(path, hasher);
+    File dir = new File(path);
+    if (dir.isDirectory()) {
+      addDirectoryFiles(dir, "", true, hasher);
+    }
+  }
+
+  private static void addDirectoryFiles(File dir, String prefix, boolean classFilesOnly,
+      Hasher hasher) {
+    String[] names = dir.list();
+    if (names == null) {
+      return;
+    }
+    Arrays.sort(names);
+    for (String name : names) {
+      File f = new File(dir, name);
+      if (f.isDirectory()) {
+        addDirectoryFiles(f, prefix + name + '/', classFilesOnly, hasher);
+      } else if (f.isFile() && (!classFilesOnly || name.endsWith(".class"))) {
+        addString(prefix + name, hasher);
+        hasher.putLong(f.length());
+        hasher.putLong(f.lastModified());
+      }
+    }
+  }
+
+  /**
+   * Adds the translator's jar file or classes directory, so a cache isn't
+   * used by a different version of the translator.  All of a directory's
+   * files are added, since its resources include the method mappings.
+   */
+  private static void addTranslatorVersion(Hasher hasher) {
+    CodeSource codeSource = J2ObjC.class.getProtectionDomain().getCodeSource();
+    URL location = codeSource != null ? codeSource.getLocation() : null;
+    if (location != null && location.getProtocol().equals("file")) {
+      String path = location.getPath();
+      addFile(path, hasher);
+      if (new File(path).isDirectory()) {
+        addDirectoryFiles(new File(path), "", false, hasher);
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.types.BindingCollector;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Collects the top-level types declared by a compilation unit, and the
+ * top-level types that it references, for the build cache and the
+ * translation manifest.  Member types are recorded as their top-level
+ * types, and array types as their element types.
+ */
+public class DependencyRecorder implements BindingCollector {
+  private final Set<ITypeBinding> declaredTypes = Sets.newLinkedHashSet();
+  private final Set<ITypeBinding> referencedTypes = Sets.newLinkedHashSet();
+
+  public void collect(ASTNode node, IBinding binding) {
+    switch (node.getNodeType()) {
+      case ASTNode.TYPE_DECLARATION:
+      case ASTNode.ENUM_DECLARATION:
+      case ASTNode.ANNOTATION_TYPE_DECLARATION:
+        ITypeBinding type = (ITypeBinding) binding;
+        if (type != null && type.isTopLevel()) {
+          declaredTypes.add(type.getTypeDeclaration());
+        }
+        break;
+      default:
+        break;
+    }
+    if (binding instanceof ITypeBinding) {
+      addType((ITypeBinding) binding);
+    } else if (binding instanceof IMethodBinding) {
+      IMethodBinding method = (IMethodBinding) binding;
+      addType(method.getDeclaringClass());
+      addType(method.getReturnType());
+      for (ITypeBinding paramType : method.getParameterTypes()) {
+        addType(paramType);
+      }
+    } else if (binding instanceof IVariableBinding) {
+      IVariableBinding var = (IVariableBinding) binding;
+      addType(var.getDeclaringClass());
+      addType(var.getType());
+    }
+  }
+
+  private void addType(ITypeBinding type) {
+    type = getTopLevelType(type);
+    if (type != null) {
+      referencedTypes.add(type);
+    }
+  }
+
+  /**
+   * Returns the top-level type declaration of a type, or of an array type's
+   * element type, or null if it's a primitive, null, variable, wildcard or
+   * capture type.
+   */
+  public static ITypeBinding getTopLevelType(ITypeBinding type) {
+    if (type == null) {
+      return null;
+    }
+    if (type.isArray()) {
+      type = type.getElementType();
+    }
+    if (type.isPrimitive() || type.isNullType() || type.isTypeVariable()
+        || type.isWildcardType() || type.isCapture()) {
+      return null;
+    }
+    type = type.getTypeDeclaration();
+    while (type.getDeclaringClass() != null) {
+      type = type.getDeclaringClass();
+    }
+    return type;
+  }
+
+  /**
+   * Returns the unit's top-level types, in the order they were declared.
+   */
+  public Set<ITypeBinding> getDeclaredTypes() {
+    return Collections.unmodifiableSet(declaredTypes);
+  }
+
+  /**
+   * Returns the top-level types the unit references, including its own, in
+   * the order they were first referenced.
+   */
+  public Set<ITypeBinding> getReferencedTypes() {
+    return Collections.unmodifiableSet(referencedTypes);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+/**
+ * Writes and reads the JSON string literals of the translator's reports,
+ * such as the profile and the translation manifest.
+ */
+public class JsonStrings {
+
+  /**
+   * Returns a string as a quoted JSON string literal.
+   */
+  public static String quote(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < ' ') {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  /**
+   * Reads a string literal written by {@link #quote} that starts at an
+   * index, returning null if there isn't one.
+   */
+  public static String unquote(String s, int start) {
+    if (start >= s.length() || s.charAt(start) != '"') {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = start + 1; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"') {
+        return sb.toString();
+      } else if (c != '\\') {
+        sb.append(c);
+      } else if (i + 1 < s.length() && s.charAt(i + 1) != 'u') {
+        sb.append(s.charAt(++i));
+      } else if (i + 5 < s.length()) {
+        try {
+          sb.append((char) Integer.parseInt(s.substring(i + 2, i + 6), 16));
+        } catch (NumberFormatException e) {
+          return null;
+        }
+        i += 5;
+      } else {
+        return null;
+      }
+    }
+    return null;
+  }
+}
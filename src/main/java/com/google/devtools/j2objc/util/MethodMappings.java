@@ -0,0 +1,430 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.types.GeneratedMethodBinding;
+import com.google.devtools.j2objc.types.IOSMethodBinding;
+import com.google.devtools.j2objc.types.IOSMethodSignature;
+import com.google.devtools.j2objc.types.JavaMethod;
+
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The method mappings read from the mapping files (JRE.mappings and any
+ * --mapping files), which map Java method keys (see
+ * {@link com.google.devtools.j2objc.types.JavaMethod#getKey}) to iOS method
+ * signatures.
+ * <p>
+ * Each signature is only parsed once per process.  The parsed mappings are
+ * also compiled into an indexed binary file in a cache directory, keyed by
+ * the mapping files' names and modification times, so later runs read the
+ * index of keys and only decode the signatures that units actually use.
+ * The cache directory is only accessible by its owner, and a compiled file
+ * is only used if its checksum matches its contents; otherwise the mapping
+ * files are parsed again.
+ * </p>
+ * <p>
+ * The mappings of methods declared by binary types, such as String, Class
+ * and Object, are also remembered by method binding key, as those methods
+ * are referenced by nearly every compilation unit.
+ * </p>
+ */
+public class MethodMappings {
+  private static final String VERSION = "j2objc-mappings 2";
+  private static final Logger logger = Logger.getLogger(MethodMappings.class.getName());
+
+  // The compiled mappings, and each key's record offset in them.  They're
+  // null if the mappings were parsed instead.
+  private final byte[] data;
+  private final Map<String, Integer> offsets;
+
+  // The signatures decoded so far, or all of them if the mappings were parsed.
+  private final ConcurrentMap<String, IOSMethodSignature> signatures = Maps.newConcurrentMap();
+
+  // The mappings of binary types' methods, by binding key, including
+  // NOT_MAPPED for methods that aren't mapped.  A binary method's binding
+  // key names the same method in every compilation unit, unlike its binding.
+  private final ConcurrentMap<String, MappedMethod> binaryMethods = Maps.newConcurrentMap();
+  private static final MappedMethod NOT_MAPPED = new MappedMethod(null, null);
+
+  private MethodMappings(byte[] data, Map<String, Integer> offsets) {
+    this.data = data;
+    this.offsets = offsets;
+  }
+
+  private MethodMappings(Map<String, IOSMethodSignature> signatures) {
+    this(null, null);
+    this.signatures.putAll(signatures);
+  }
+
+  /**
+   * Returns the iOS method a Java method is mapped to, or null if it isn't.
+   */
+  public IOSMethodSignature get(String key) {
+    IOSMethodSignature signature = signatures.get(key);
+    if (signature == null && offsets != null) {
+      Integer offset = offsets.get(key);
+      if (offset != null) {
+        try {
+          signature = IOSMethodSignature.read(new DataInputStream(
+              new ByteArrayInputStream(data, offset, data.length - offset)));
+        } catch (IOException e) {
+          // The index was checked when the file was read.
+          throw new AssertionError(e);
+        }
+        signatures.putIfAbsent(key, signature);
+      }
+    }
+    return signature;
+  }
+
+  /**
+   * Returns the mapping of a method, or null if it isn't mapped.
+   */
+  public MappedMethod getMappedMethod(IMethodBinding binding) {
+    // Only the compiler's bindings have keys; the translator's don't.
+    ITypeBinding declaringClass = binding.getDeclaringClass();
+    String bindingKey = declaringClass != null && !declaringClass.isFromSource()
+        && !(binding instanceof GeneratedMethodBinding) && !(binding instanceof IOSMethodBinding)
+        ? binding.getKey() : null;
+    if (bindingKey != null) {
+      MappedMethod mapped = binaryMethods.get(bindingKey);
+      if (mapped != null) {
+        return mapped != NOT_MAPPED ? mapped : null;
+      }
+    }
+
+    MappedMethod mapped = null;
+    JavaMethod desc = JavaMethod.getJavaMethod(binding);
+    if (desc != null) {
+      String key = desc.getKey();
+      IOSMethodSignature signature = get(key);
+      if (signature != null) {
+        mapped = new MappedMethod(key, signature);
+      }
+    }
+    if (bindingKey != null) {
+      binaryMethods.putIfAbsent(bindingKey, mapped != null ? mapped : NOT_MAPPED);
+    }
+    return mapped;
+  }
+
+  public boolean containsKey(String key) {
+    return offsets != null ? offsets.containsKey(key) : signatures.containsKey(key);
+  }
+
+  public int size() {
+    return offsets != null ? offsets.size() : signatures.size();
+  }
+
+  /**
+   * Loads the mappings from a list of mapping files, each of which is a
+   * file path or the name of a translator resource.  Compiled mappings are
+   * read from, and written to, a cache directory, which is created if
+   * necessary and restricted to its owner.  Missing files and malformed
+   * mappings are reported as errors.
+   *
+   * @param cacheDirectory the directory of compiled mappings, or null to
+   *     always parse the mapping files
+   */
+  public static MethodMappings load(List<String> mappingFiles, File cacheDirectory)
+      throws IOException {
+    String fingerprint = getFingerprint(mappingFiles);
+    File cacheFile = null;
+    if (fingerprint != null && cacheDirectory != null && isPrivateDirectory(cacheDirectory)) {
+      cacheFile = new File(cacheDirectory,
+          "mappings-" + Hashing.md5().hashString(fingerprint).toString() + ".bin");
+      if (cacheFile.exists()) {
+        MethodMappings mappings = readCompiled(cacheFile, fingerprint);
+        if (mappings != null) {
+          return mappings;
+        }
+      }
+    }
+
+    Map<String, IOSMethodSignature> signatures = Maps.newLinkedHashMap();
+    boolean valid = true;
+    for (String mappingFile : mappingFiles) {
+      valid &= parse(mappingFile, signatures);
+    }
+    if (cacheFile != null && valid) {
+      try {
+        writeCompiled(cacheFile, fingerprint, signatures);
+      } catch (IOException e) {
+        // The mappings were parsed, so it's only the next run that's slower.
+        logger.log(Level.FINE, "cannot write " + cacheFile, e);
+      }
+    }
+    return new MethodMappings(signatures);
+  }
+
+  /**
+   * Returns true if a directory exists or was created, and only its owner,
+   * which must be the user, can access it.
+   */
+  private static boolean isPrivateDirectory(File dir) {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      logger.fine("cannot create " + dir);
+      return false;
+    }
+    try {
+      PrivateDirectory.restrictToOwner(dir);
+      return true;
+    } catch (IOException e) {
+      logger.log(Level.FINE, "not using mapping cache", e);
+      return false;
+    }
+  }
+
+  /**
+   * Returns a string that changes when a mapping file changes, or null if
+   * a mapping file doesn't exist.
+   */
+  private static String getFingerprint(List<String> mappingFiles) throws IOException {
+    StringBuilder sb = new StringBuilder(VERSION);
+    for (String name : mappingFiles) {
+      sb.append('\0').append(name);
+      File f = new File(name);
+      if (f.exists()) {
+        addFile(f, sb);
+        continue;
+      }
+      URL url = J2ObjC.class.getResource(name);
+      if (url == null) {
+        return null;
+      }
+      URLConnection connection = url.openConnection();
+      if (connection instanceof JarURLConnection) {
+        // A resource in the translator's jar changes with the jar.
+        URL jarUrl = ((JarURLConnection) connection).getJarFileURL();
+        sb.append('\0').append(jarUrl);
+        if (jarUrl.getProtocol().equals("file")) {
+          addFile(new File(jarUrl.getPath()), sb);
+        }
+      } else if (url.getProtocol().equals("file")) {
+        addFile(new File(url.getPath()), sb);
+      } else {
+        sb.append('\0').append(url).append('\0').append(connection.getLastModified());
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void addFile(File f, StringBuilder sb) {
+    sb.append('\0').append(f.getAbsolutePath()).append('\0').append(f.length())
+        .append('\0').append(f.lastModified());
+  }
+
+  /**
+   * Parses a mapping file, adding its mappings to a map.
+   *
+   * @return true if the file was read and all its mappings were valid
+   */
+  private static boolean parse(String name, Map<String, IOSMethodSignature> signatures)
+      throws IOException {
+    Properties mappings = new Properties();
+    File f = new File(name);
+    if (f.exists()) {
+      FileReader reader = new FileReader(f);
+      try {
+        mappings.load(reader);
+      } finally {
+        reader.close();
+      }
+    } else {
+      InputStream stream = J2ObjC.class.getResourceAsStream(name);
+      if (stream == null) {
+        J2ObjC.error(name + " not found");
+        return false;
+      }
+      try {
+        mappings.load(stream);
+      } finally {
+        stream.close();
+      }
+    }
+
+    boolean valid = true;
+    Enumeration<?> keyIterator = mappings.propertyNames();
+    while (keyIterator.hasMoreElements()) {
+      String javaMethod = (String) keyIterator.nextElement();
+      String iosMethod = mappings.getProperty(javaMethod);
+      try {
+        signatures.put(javaMethod, IOSMethodSignature.parse(iosMethod));
+      } catch (RuntimeException e) {
+        J2ObjC.error(String.format("%s: invalid mapping for %s: %s", name, javaMethod, iosMethod));
+        valid = false;
+      } catch (AssertionError e) {
+        J2ObjC.error(String.format("%s: invalid mapping for %s: %s", name, javaMethod, iosMethod));
+        valid = false;
+      }
+    }
+    return valid;
+  }
+
+  /**
+   * Writes compiled mappings: a header with the MD5 checksum of the rest of
+   * the file, an index of keys and the offsets of their signatures, then the
+   * signatures.
+   */
+  private static void writeCompiled(File file, String fingerprint,
+      Map<String, IOSMethodSignature> signatures) throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream recordsOut = new DataOutputStream(records);
+    Map<String, Integer> offsets = Maps.newLinkedHashMap();
+    for (Map.Entry<String, IOSMethodSignature> entry : signatures.entrySet()) {
+      offsets.put(entry.getKey(), recordsOut.size());
+      entry.getValue().write(recordsOut);
+    }
+    recordsOut.flush();
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream bodyOut = new DataOutputStream(body);
+    bodyOut.writeInt(offsets.size());
+    for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+      bodyOut.writeUTF(entry.getKey());
+      bodyOut.writeInt(entry.getValue());
+    }
+    bodyOut.writeInt(records.size());
+    records.writeTo(bodyOut);
+    bodyOut.flush();
+    byte[] bodyBytes = body.toByteArray();
+
+    File tempFile = File.createTempFile("." + file.getName(), ".tmp", file.getParentFile());
+    try {
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      try {
+        out.writeUTF(VERSION);
+        out.writeUTF(fingerprint);
+        out.writeUTF(Hashing.md5().hashBytes(bodyBytes).toString());
+        out.write(bodyBytes);
+      } finally {
+        out.close();
+      }
+      // Replace the file atomically, as other translators may be reading it.
+      if (!tempFile.renameTo(file)) {
+        file.delete();
+        if (!tempFile.renameTo(file)) {
+          throw new IOException("cannot write " + file);
+        }
+      }
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * Reads the index of compiled mappings.
+   *
+   * @return the mappings, or null if the file is invalid or out of date
+   */
+  private static MethodMappings readCompiled(File file, String fingerprint) {
+    try {
+      byte[] bytes = Files.toByteArray(file);
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      if (!in.readUTF().equals(VERSION) || !in.readUTF().equals(fingerprint)) {
+        return null;
+      }
+      String checksum = in.readUTF();
+      int bodyStart = bytes.length - in.available();
+      if (!Hashing.md5().hashBytes(bytes, bodyStart, bytes.length - bodyStart).toString()
+          .equals(checksum)) {
+        logger.fine("ignoring corrupt " + file);
+        return null;
+      }
+      int n = in.readInt();
+      if (n < 0 || n > bytes.length) {
+        return null;
+      }
+      Map<String, Integer> offsets = Maps.newHashMapWithExpectedSize(n);
+      for (int i = 0; i < n; i++) {
+        String key = in.readUTF();
+        offsets.put(key, in.readInt());
+      }
+      int length = in.readInt();
+      int start = bytes.length - in.available();
+      if (length != in.available()) {
+        return null;
+      }
+      for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+        int offset = entry.getValue();
+        if (offset < 0 || offset >= length) {
+          return null;
+        }
+        entry.setValue(start + offset);
+      }
+      return new MethodMappings(bytes, offsets);
+    } catch (IOException e) {
+      logger.log(Level.FINE, "cannot read " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * A Java method's key, and the iOS method it's mapped to.  It doesn't
+   * depend on any compilation unit's bindings; an {@link
+   * com.google.devtools.j2objc.types.IOSMethod} is created from it for each
+   * method binding that's mapped.
+   */
+  public static class MappedMethod {
+    private final String key;
+    private final IOSMethodSignature signature;
+
+    public MappedMethod(String key, IOSMethodSignature signature) {
+      this.key = key;
+      this.signature = signature;
+    }
+
+    /**
+     * Returns the Java method's key, as returned by {@link JavaMethod#getKey}.
+     */
+    public String getKey() {
+      return key;
+    }
+
+    public IOSMethodSignature getSignature() {
+      return signature;
+    }
+  }
+}
@@ -19,6 +19,7 @@ package com.google.devtools.j2objc.util;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.TranslationContext;
 import com.google.devtools.j2objc.types.IOSTypeBinding;
 import com.google.devtools.j2objc.types.Types;
 
@@ -59,7 +60,6 @@ import java.util.logging.Logger;
  */
 public class NameTable {
 
-  private static NameTable instance;
   private final Map<IBinding, String> renamings = Maps.newHashMap();
 
   public static final String CLINIT_NAME = "initialize";
@@ -172,11 +172,15 @@ public class NameTable {
    * Initialize this service using the AST returned by the parser.
    */
   public static void initialize(CompilationUnit unit) {
-    instance = new NameTable(Options.getPackagePrefixes());
+    TranslationContext.current().setNameTable(new NameTable(Options.getPackagePrefixes()));
   }
 
   public static void cleanup() {
-    instance = null;
+    TranslationContext.current().setNameTable(null);
+  }
+
+  private static NameTable instance() {
+    return TranslationContext.current().getNameTable();
   }
 
   /**
@@ -187,7 +191,7 @@ public class NameTable {
   public static String getName(IBinding binding) {
     assert binding != null;
     binding = getBindingDeclaration(binding);
-    String newName = instance.renamings.get(binding);
+    String newName = instance().renamings.get(binding);
     if (newName != null) {
       return newName;
     }
@@ -235,7 +239,7 @@ public class NameTable {
   }
 
   public static boolean isRenamed(IBinding binding) {
-    return instance.renamings.containsKey(binding);
+    return instance().renamings.containsKey(binding);
   }
 
   public static boolean isRenamed(SimpleName node) {
@@ -247,7 +251,7 @@ public class NameTable {
    */
   public static void rename(IBinding oldName, String newName) {
     oldName = getBindingDeclaration(oldName);
-    String previousName = instance.renamings.get(oldName);
+    String previousName = instance().renamings.get(oldName);
     if (previousName != null && !previousName.equals(newName)) {
       logger.fine(String.format("Changing previous rename: %s => %s, now: %s => %s",
           oldName.toString(), previousName, oldName, newName));
@@ -256,7 +260,7 @@ public class NameTable {
   }
 
   public static void rename(IBinding oldName, String newName, boolean allowPreviousRenames) {
-    instance.renamings.put(getBindingDeclaration(oldName), newName);
+    instance().renamings.put(getBindingDeclaration(oldName), newName);
   }
 
   /**
@@ -464,6 +468,26 @@ public class NameTable {
     return getFullName(cls) + '_' + method.getName().getIdentifier();
   }
 
+  /**
+   * Returns the name of the C function that implements a method which can't
+   * be overridden, such as "Type_fooWithInt_withId_" for foo(int, Object).
+   * The parameter types are included so overloaded methods have different
+   * function names.
+   */
+  public static String getFunctionName(IMethodBinding method) {
+    method = method.getMethodDeclaration();
+    StringBuilder sb = new StringBuilder(getFullName(method.getDeclaringClass()));
+    sb.append('_').append(getName(method));
+    boolean first = true;
+    for (ITypeBinding paramType : method.getParameterTypes()) {
+      String typeName =
+          capitalize(getParameterTypeName(javaTypeToObjC(paramType, true), paramType));
+      sb.append(first ? "With" : "with").append(typeName).append('_');
+      first = false;
+    }
+    return sb.toString();
+  }
+
   /**
    * Returns a SimpleName for an identifier that may not be a legal
    * Java identifier but is for iOS.  For example, JDT doesn't allow
@@ -572,7 +596,7 @@ public class NameTable {
   }
 
   public static void mapPackageToPrefix(String packageName, String prefix) {
-    instance.prefixMap.put(packageName, prefix);
+    instance().prefixMap.put(packageName, prefix);
   }
 
   /**
@@ -582,7 +606,7 @@ public class NameTable {
    */
   public static String getPrefix(String packageName) {
     if (hasPrefix(packageName)) {
-      return instance.prefixMap.get(packageName);
+      return instance().prefixMap.get(packageName);
     }
     StringBuilder sb = new StringBuilder();
     for (String part : packageName.split("\\.")) {
@@ -592,6 +616,6 @@ public class NameTable {
   }
 
   public static boolean hasPrefix(String packageName) {
-    return instance.prefixMap.containsKey(packageName);
+    return instance().prefixMap.containsKey(packageName);
   }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The user's private j2objc directory, ~/.j2objc by default, for files that
+ * other users must not be able to read, create or replace: the translation
+ * server's tokens and the compiled method mappings.  It only uses JRE classes, so the
+ * translation client can use it.
+ */
+public class PrivateDirectory {
+  private static File directory = defaultDirectory();
+
+  private static File defaultDirectory() {
+    return new File(System.getProperty("user.home"), ".j2objc");
+  }
+
+  /**
+   * Returns the directory, creating it if necessary.
+   *
+   * @throws IOException if it can't be created, or it isn't owned by the
+   *     user, so its access can't be restricted
+   */
+  public static synchronized File get() throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("cannot create directory: " + directory);
+    }
+    restrictToOwner(directory);
+    return directory;
+  }
+
+  /**
+   * Sets the directory, such as to use a temporary one in tests.
+   */
+  public static synchronized void set(File dir) {
+    directory = dir;
+  }
+
+  public static synchronized void reset() {
+    directory = defaultDirectory();
+  }
+
+  /**
+   * Makes a file or directory only readable and writable by its owner.
+   * Only a file's owner can change its permissions, so this fails for
+   * files owned by other users.
+   *
+   * @throws IOException if the permissions can't be changed
+   */
+  public static void restrictToOwner(File file) throws IOException {
+    boolean isDirectory = file.isDirectory();
+    boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+        && file.setWritable(false, false) && file.setWritable(true, true)
+        && file.setExecutable(false, false) && (!isDirectory || file.setExecutable(true, true));
+    if (!restricted) {
+      throw new IOException("cannot restrict access to its owner: " + file);
+    }
+  }
+}
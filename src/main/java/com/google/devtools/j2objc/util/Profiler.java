@@ -0,0 +1,203 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.TranslationContext;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+
+/**
+ * Records the time spent and the memory allocated in each translation
+ * phase, for each source file, and writes them as a report (see the
+ * --profile flag).  Phases are timed with {@link System#nanoTime}, and
+ * allocations are counted by the thread's {@link ThreadMXBean}, where the
+ * JVM supports it.  Phases may run on several threads at once.
+ * <p>
+ * Profiling is only on between calls to {@link #start} and {@link #stop}.
+ * While it's off, {@link #begin} returns null and {@link #end} does nothing.
+ */
+public class Profiler {
+  private static volatile Profiler profiler = null;
+
+  private final com.sun.management.ThreadMXBean allocationBean;
+
+  // Phase statistics, by source file and then by phase, in the order
+  // they were first recorded.
+  private final Map<String, Map<String, Stats>> files = Maps.newLinkedHashMap();
+
+  private Profiler() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      allocationBean = (com.sun.management.ThreadMXBean) bean;
+      allocationBean.setThreadAllocatedMemoryEnabled(true);
+    } else {
+      allocationBean = null;
+    }
+  }
+
+  /**
+   * Starts profiling, discarding any earlier measurements.
+   */
+  public static void start() {
+    profiler = new Profiler();
+  }
+
+  /**
+   * Stops profiling.
+   *
+   * @return the profiler that was running, or null if profiling was off
+   */
+  public static Profiler stop() {
+    Profiler result = profiler;
+    profiler = null;
+    return result;
+  }
+
+  /**
+   * Starts timing a phase for the current thread's source file.
+   *
+   * @return the phase to pass to {@link #end}, or null if profiling is off
+   */
+  public static Phase begin(String name) {
+    Profiler p = profiler;
+    return p != null ? new Phase(p, name, p.allocatedBytes(), System.nanoTime()) : null;
+  }
+
+  /**
+   * Records the time spent and memory allocated since a phase began.
+   */
+  public static void end(Phase phase) {
+    if (phase != null) {
+      long time = System.nanoTime() - phase.startTime;
+      Profiler p = phase.profiler;
+      long allocated = p.allocationBean != null ? p.allocatedBytes() - phase.startBytes : -1;
+      String fileName = TranslationContext.current().getFileName();
+      p.record(fileName != null ? fileName : "", phase.name, time, allocated);
+    }
+  }
+
+  private long allocatedBytes() {
+    return allocationBean != null
+        ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+  }
+
+  private synchronized void record(String fileName, String phase, long time, long allocated) {
+    Map<String, Stats> phases = files.get(fileName);
+    if (phases == null) {
+      phases = Maps.newLinkedHashMap();
+      files.put(fileName, phases);
+    }
+    Stats stats = phases.get(phase);
+    if (stats == null) {
+      stats = new Stats();
+      phases.put(phase, stats);
+    }
+    stats.count++;
+    stats.nanoseconds += time;
+    stats.allocatedBytes = allocated < 0 ? -1 : stats.allocatedBytes + allocated;
+  }
+
+  /**
+   * Writes the report to a file: as comma-separated values if its name
+   * ends with ".csv", otherwise as JSON.  Allocated bytes are -1 if the
+   * JVM can't count them.
+   */
+  public synchronized void write(File file) throws IOException {
+    BufferedWriter out = Files.newWriter(file, Charsets.UTF_8);
+    try {
+      if (file.getName().endsWith(".csv")) {
+        writeCsv(out);
+      } else {
+        writeJson(out);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeCsv(BufferedWriter out) throws IOException {
+    out.write("file,phase,count,nanoseconds,allocatedBytes\n");
+    for (Map.Entry<String, Map<String, Stats>> file : files.entrySet()) {
+      for (Map.Entry<String, Stats> phase : file.getValue().entrySet()) {
+        Stats stats = phase.getValue();
+        out.write(String.format("%s,%s,%d,%d,%d\n", csvField(file.getKey()),
+            csvField(phase.getKey()), stats.count, stats.nanoseconds, stats.allocatedBytes));
+      }
+    }
+  }
+
+  private void writeJson(BufferedWriter out) throws IOException {
+    out.write("{\n  \"files\": [");
+    String fileSeparator = "\n";
+    for (Map.Entry<String, Map<String, Stats>> file : files.entrySet()) {
+      out.write(fileSeparator);
+      out.write(String.format("    {\n      \"file\": %s,\n      \"phases\": [",
+          JsonStrings.quote(file.getKey())));
+      String phaseSeparator = "\n";
+      for (Map.Entry<String, Stats> phase : file.getValue().entrySet()) {
+        Stats stats = phase.getValue();
+        out.write(phaseSeparator);
+        out.write(String.format("        { \"phase\": %s, \"count\": %d, \"nanoseconds\": %d,"
+            + " \"allocatedBytes\": %d }", JsonStrings.quote(phase.getKey()), stats.count,
+            stats.nanoseconds, stats.allocatedBytes));
+        phaseSeparator = ",\n";
+      }
+      out.write("\n      ]\n    }");
+      fileSeparator = ",\n";
+    }
+    out.write("\n  ]\n}\n");
+  }
+
+  private static String csvField(String s) {
+    if (s.indexOf(',') == -1 && s.indexOf('"') == -1 && s.indexOf('\n') == -1) {
+      return s;
+    }
+    return '"' + s.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * A phase being timed.
+   */
+  public static class Phase {
+    private final Profiler profiler;
+    private final String name;
+    private final long startBytes;
+    private final long startTime;
+
+    private Phase(Profiler profiler, String name, long startBytes, long startTime) {
+      this.profiler = profiler;
+      this.name = name;
+      this.startBytes = startBytes;
+      this.startTime = startTime;
+    }
+  }
+
+  private static class Stats {
+    int count = 0;
+    long nanoseconds = 0;
+    long allocatedBytes = 0;
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds source files on the source path.  The path's archives are opened
+ * once, when the source path is created, and stay open until it's closed;
+ * each directory is listed the first time a file in it is looked up, and
+ * each lookup's result is remembered.  That way finding a file costs a few
+ * map lookups rather than a file system probe per path entry, and an
+ * archive is never reopened to read another of its entries.
+ * <p>
+ * The source path is a snapshot: files added to its directories after
+ * they are listed aren't found.  It is safe for use by multiple threads.
+ */
+public class SourcePath {
+  // The directories and archives on the path, in search order.
+  private final List<Root> roots = Lists.newArrayList();
+
+  // Open archives, by absolute path, including archives that were listed
+  // but aren't on the path.
+  private final Map<File, ZipFile> archives = Maps.newHashMap();
+
+  // The file names in each directory that has been searched.
+  private final Map<File, Set<String>> listings = Maps.newHashMap();
+
+  // Lookup results by relative path, including misses.
+  private final Map<String, Source> sources = Maps.newHashMap();
+
+  /**
+   * Indexes a source path's entries.  Entries that don't exist, and files
+   * that aren't archives, are skipped, as the compiler skips them.
+   */
+  public SourcePath(String[] pathEntries) throws IOException {
+    for (String pathEntry : pathEntries) {
+      File f = new File(pathEntry);
+      if (f.isDirectory()) {
+        roots.add(new DirectoryRoot(f));
+      } else if (f.isFile()) {
+        ZipFile archive = openArchive(f);
+        if (archive != null) {
+          roots.add(new ArchiveRoot(archive));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the first source file on the path with a relative path, or null
+   * if there isn't one.
+   */
+  public synchronized Source find(String path) {
+    if (sources.containsKey(path)) {
+      return sources.get(path);
+    }
+    Source source = null;
+    for (Root root : roots) {
+      source = root.find(path);
+      if (source != null) {
+        break;
+      }
+    }
+    sources.put(path, source);
+    return source;
+  }
+
+  /**
+   * Returns the .java entries in a source archive, in archive order.  The
+   * archive is kept open, so its entries can be read without reopening it.
+   *
+   * @return the entries, or an empty list if the file doesn't exist or
+   *     isn't an archive
+   */
+  public synchronized List<Source> getArchiveSources(String archivePath) throws IOException {
+    List<Source> result = Lists.newArrayList();
+    File f = new File(archivePath);
+    if (f.isFile()) {
+      ZipFile archive = openArchive(f);
+      if (archive != null) {
+        Enumeration<? extends ZipEntry> enumerator = archive.entries();
+        while (enumerator.hasMoreElements()) {
+          ZipEntry entry = enumerator.nextElement();
+          if (entry.getName().endsWith(".java")) {
+            result.add(new Source(null, archive, entry));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private ZipFile openArchive(File f) throws IOException {
+    File key = f.getAbsoluteFile();
+    ZipFile archive = archives.get(key);
+    if (archive == null) {
+      try {
+        archive = new ZipFile(f);
+      } catch (ZipException e) {
+        return null;  // Not a zip or jar file.
+      }
+      archives.put(key, archive);
+    }
+    return archive;
+  }
+
+  private Set<String> getListing(File dir) {
+    Set<String> listing = listings.get(dir);
+    if (listing == null) {
+      String[] names = dir.list();
+      listing = names != null ? ImmutableSet.copyOf(names) : ImmutableSet.<String>of();
+      listings.put(dir, listing);
+    }
+    return listing;
+  }
+
+  /**
+   * Closes the path's archives.  Sources found in them can't be read
+   * afterwards.
+   */
+  public synchronized void close() throws IOException {
+    IOException exception = null;
+    for (ZipFile archive : archives.values()) {
+      try {
+        archive.close();
+      } catch (IOException e) {
+        exception = e;
+      }
+    }
+    archives.clear();
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  /**
+   * A source file, either a regular file or an archive entry.
+   */
+  public static class Source {
+    private final File file;
+    private final ZipFile archive;
+    private final ZipEntry entry;
+
+    private Source(File file, ZipFile archive, ZipEntry entry) {
+      this.file = file;
+      this.archive = archive;
+      this.entry = entry;
+    }
+
+    /**
+     * Returns the source's file, or null if it's an archive entry.
+     */
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * Returns the source's path: the file's path, or the entry's path in
+     * its archive.
+     */
+    public String getPath() {
+      return file != null ? file.getPath() : entry.getName();
+    }
+
+    public boolean isArchived() {
+      return archive != null;
+    }
+
+    /**
+     * Reads the source's text, in the platform's default charset.
+     */
+    public String read() throws IOException {
+      if (file != null) {
+        return Files.toString(file, Charset.defaultCharset());
+      }
+      InputStream in = archive.getInputStream(entry);
+      try {
+        long size = entry.getSize();
+        byte[] bytes;
+        if (size >= 0 && size <= Integer.MAX_VALUE) {
+          // Read the entry straight into a buffer of its size.
+          bytes = new byte[(int) size];
+          ByteStreams.readFully(in, bytes);
+        } else {
+          bytes = ByteStreams.toByteArray(in);
+        }
+        return new String(bytes, Charset.defaultCharset());
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  private abstract static class Root {
+    abstract Source find(String path);
+  }
+
+  private class DirectoryRoot extends Root {
+    private final File dir;
+
+    DirectoryRoot(File dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    Source find(String path) {
+      File f = new File(dir, path);
+      File parent = f.getParentFile();
+      if (getListing(parent).contains(f.getName()) && f.isFile()) {
+        return new Source(f, null, null);
+      }
+      return null;
+    }
+  }
+
+  private static class ArchiveRoot extends Root {
+    private final ZipFile archive;
+
+    ArchiveRoot(ZipFile archive) {
+      this.archive = archive;
+    }
+
+    @Override
+    Source find(String path) {
+      ZipEntry entry = archive.getEntry(path);
+      return entry != null && !entry.isDirectory() ? new Source(null, archive, entry) : null;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records what was generated from each translated source file, as JSON, so
+ * a build system can compile the generated files incrementally.
+ * <p>
+ * The manifest has an entry for each source file, listing the top-level
+ * types it declares, the top-level Java types it references, and its
+ * generated files.  Each generated file is listed with its path relative
+ * to the output directory, an MD5 hash of its contents, and the headers it
+ * imports.  Entries of files translated by earlier runs that weren't part
+ * of this one, such as files skipped by the build cache, are kept, and the
+ * entry of a file whose translation failed is removed.
+ * </p>
+ * <p>
+ * Each entry is written on a single line, which is how earlier entries are
+ * read back; the manifest isn't meant to be edited.
+ * </p>
+ */
+public class TranslationManifest {
+  private static final int VERSION = 1;
+  private static final String HEADER = "{\n  \"version\": " + VERSION + ",\n  \"units\": [";
+  private static final String ENTRY_PREFIX = "    { \"source\": ";
+  private static final Pattern IMPORT_PATTERN =
+      Pattern.compile("^#(?:import|include) [\"<]([^\">]+)[\">]", Pattern.MULTILINE);
+
+  private final File file;
+
+  // The JSON text of each source file's entry, keyed by its file name.
+  private final Map<String, String> entries;
+
+  private TranslationManifest(File file, Map<String, String> entries) {
+    this.file = file;
+    this.entries = entries;
+  }
+
+  /**
+   * Loads a manifest, keeping the entries written by an earlier run.  If
+   * the file doesn't exist, or wasn't written by this version of the
+   * translator, the returned manifest is empty.
+   */
+  public static TranslationManifest load(File file) throws IOException {
+    Map<String, String> entries = new TreeMap<String, String>();
+    if (file.exists()) {
+      List<String> lines = Files.readLines(file, Charsets.UTF_8);
+      if (lines.size() >= 3 && HEADER.equals(lines.get(0) + '\n' + lines.get(1) + '\n'
+          + lines.get(2))) {
+        for (String line : lines.subList(3, lines.size())) {
+          if (line.startsWith(ENTRY_PREFIX)) {
+            String entry = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
+            String source = JsonStrings.unquote(entry, ENTRY_PREFIX.length());
+            if (source == null) {
+              J2ObjC.warning("ignoring invalid translation manifest: " + file);
+              entries.clear();
+              break;
+            }
+            entries.put(source, entry.trim());
+          }
+        }
+      }
+    }
+    return new TranslationManifest(file, entries);
+  }
+
+  /**
+   * Writes the manifest, with its entries sorted by source file name.
+   */
+  public synchronized void save() throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.exists()) {
+      dir.mkdirs();
+    }
+    BufferedWriter out = Files.newWriter(file, Charsets.UTF_8);
+    try {
+      out.write(HEADER);
+      String separator = "\n";
+      for (String entry : entries.values()) {
+        out.write(separator);
+        out.write("    ");
+        out.write(entry);
+        separator = ",\n";
+      }
+      out.write("\n  ]\n}\n");
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Records a successful translation of a file.  The generated files are
+   * read to find their hashes and imports.
+   */
+  public void update(String filename, DependencyRecorder recorder, List<File> outputFiles)
+      throws IOException {
+    Set<String> declaredTypes = Sets.newTreeSet();
+    for (ITypeBinding type : recorder.getDeclaredTypes()) {
+      declaredTypes.add(type.getQualifiedName());
+    }
+    Set<String> referencedTypes = Sets.newTreeSet();
+    for (ITypeBinding type : recorder.getReferencedTypes()) {
+      String typeName = type.getQualifiedName();
+      if (!typeName.isEmpty() && !declaredTypes.contains(typeName)) {
+        referencedTypes.add(typeName);
+      }
+    }
+
+    StringBuilder sb = new StringBuilder("{ \"source\": ").append(JsonStrings.quote(filename));
+    sb.append(", \"types\": ");
+    appendJsonArray(sb, declaredTypes);
+    sb.append(", \"outputs\": [");
+    String separator = "";
+    for (File outputFile : outputFiles) {
+      byte[] content = Files.toByteArray(outputFile);
+      Set<String> imports = Sets.newLinkedHashSet();
+      Matcher m = IMPORT_PATTERN.matcher(new String(content, Charsets.UTF_8));
+      while (m.find()) {
+        imports.add(m.group(1));
+      }
+      sb.append(separator);
+      sb.append("{ \"file\": ").append(JsonStrings.quote(getOutputPath(outputFile)));
+      sb.append(", \"hash\": ")
+          .append(JsonStrings.quote(Hashing.md5().hashBytes(content).toString()));
+      sb.append(", \"imports\": ");
+      appendJsonArray(sb, imports);
+      sb.append(" }");
+      separator = ", ";
+    }
+    sb.append("], \"references\": ");
+    appendJsonArray(sb, referencedTypes);
+    sb.append(" }");
+
+    synchronized (this) {
+      entries.put(filename, sb.toString());
+    }
+  }
+
+  /**
+   * Records a failed translation of a file, whose earlier outputs are no
+   * longer current.
+   */
+  public synchronized void remove(String filename) {
+    entries.remove(filename);
+  }
+
+  /**
+   * Returns a generated file's path relative to the output directory, which
+   * is how it's imported by other generated files.
+   */
+  private static String getOutputPath(File outputFile) {
+    String path = outputFile.getAbsolutePath();
+    String outputDir = Options.getOutputDirectory().getAbsolutePath() + File.separatorChar;
+    if (path.startsWith(outputDir)) {
+      path = path.substring(outputDir.length());
+    }
+    return path.replace(File.separatorChar, '/');
+  }
+
+  private static void appendJsonArray(StringBuilder sb, Collection<String> values) {
+    sb.append('[');
+    String separator = "";
+    for (String value : values) {
+      sb.append(separator).append(JsonStrings.quote(value));
+      separator = ", ";
+    }
+    sb.append(']');
+  }
+}
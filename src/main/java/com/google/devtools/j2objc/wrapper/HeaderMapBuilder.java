@@ -3,27 +3,20 @@ package com.google.devtools.j2objc.wrapper;
 import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.jdt.core.dom.ClassInstanceCreation;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.IAnnotationBinding;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.IMemberValuePairBinding;
 import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.MethodInvocation;
-import org.eclipse.jdt.core.dom.QualifiedName;
-import org.eclipse.jdt.core.dom.QualifiedType;
-import org.eclipse.jdt.core.dom.SimpleType;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.types.BindingCollector;
 import com.google.devtools.j2objc.types.Types;
-import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
 import com.google.j2objc.annotations.Register;
 
-public class HeaderMapBuilder extends ErrorReportingASTVisitor {
+public class HeaderMapBuilder implements BindingCollector {
 
   private static final Map<String, String> prefixMap = Maps.newHashMap();
 
@@ -37,10 +30,8 @@ public class HeaderMapBuilder extends ErrorReportingASTVisitor {
 
   private final Set<ITypeBinding> mappedBindings = Sets.newHashSet();
 
-  public static Map<String, String> buildMap(final CompilationUnit unit) {
-    final HeaderMapBuilder builder = new HeaderMapBuilder();
-    builder.run(unit);
-    return builder.bindingMap;
+  public Map<String, String> getMap() {
+    return bindingMap;
   }
 
   private void put(ITypeBinding typeBinding) {
@@ -69,58 +60,32 @@ public class HeaderMapBuilder extends ErrorReportingASTVisitor {
     }
   }
 
-  @Override
-  public boolean visit(TypeDeclaration node) {
-    final ITypeBinding typeBinding = node.resolveBinding();
-    put(typeBinding);
-    put(typeBinding.getSuperclass());
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(ClassInstanceCreation node) {
-    put(node.resolveTypeBinding());
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(MethodDeclaration node) {
-    for (ITypeBinding param : node.resolveBinding().getParameterTypes()) {
-      put(param);
-    }
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(MethodInvocation node) {
-    IMethodBinding methodBinding = node.resolveMethodBinding();
-    if (methodBinding != null) {
-      put(methodBinding.getDeclaringClass());
+  public void collect(ASTNode node, IBinding binding) {
+    switch (node.getNodeType()) {
+      case ASTNode.TYPE_DECLARATION:
+        ITypeBinding typeBinding = (ITypeBinding) binding;
+        put(typeBinding);
+        put(typeBinding.getSuperclass());
+        break;
+      case ASTNode.CLASS_INSTANCE_CREATION:
+      case ASTNode.QUALIFIED_NAME:
+      case ASTNode.FIELD_ACCESS:
+      case ASTNode.QUALIFIED_TYPE:
+      case ASTNode.SIMPLE_TYPE:
+        put(Types.getTypeBinding(binding));
+        break;
+      case ASTNode.METHOD_DECLARATION:
+        for (ITypeBinding param : ((IMethodBinding) binding).getParameterTypes()) {
+          put(param);
+        }
+        break;
+      case ASTNode.METHOD_INVOCATION:
+        if (binding != null) {
+          put(((IMethodBinding) binding).getDeclaringClass());
+        }
+        break;
+      default:
+        break;
     }
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(QualifiedName node) {
-    put(node.resolveTypeBinding());
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(FieldAccess node) {
-    put(Types.getTypeBinding(node.getName().resolveBinding()));
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(QualifiedType node) {
-    put(Types.getTypeBinding(node.resolveBinding()));
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(SimpleType node) {
-    put(Types.getTypeBinding(node.resolveBinding()));
-    return super.visit(node);
   }
 }
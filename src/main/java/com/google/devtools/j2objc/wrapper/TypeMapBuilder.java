@@ -3,26 +3,22 @@ package com.google.devtools.j2objc.wrapper;
 import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.jdt.core.dom.ClassInstanceCreation;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.IAnnotationBinding;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.IMemberValuePairBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.MethodInvocation;
-import org.eclipse.jdt.core.dom.QualifiedName;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.devtools.j2objc.types.BindingCollector;
 import com.google.devtools.j2objc.types.IOSTypeBinding;
 import com.google.devtools.j2objc.types.Types;
-import com.google.devtools.j2objc.util.ErrorReportingASTVisitor;
 import com.google.j2objc.annotations.BaseType;
 import com.google.j2objc.annotations.Register;
 
-public class TypeMapBuilder extends ErrorReportingASTVisitor {
+public class TypeMapBuilder implements BindingCollector {
 
   private static final IOSTypeBinding NSObject = new IOSTypeBinding("NSObject",
       false);
@@ -32,11 +28,8 @@ public class TypeMapBuilder extends ErrorReportingASTVisitor {
 
   private final Set<ITypeBinding> mappedBindings = Sets.newHashSet();
 
-  public static Map<ITypeBinding, IOSTypeBinding> buildMap(
-      final CompilationUnit unit) {
-    final TypeMapBuilder builder = new TypeMapBuilder();
-    builder.run(unit);
-    return builder.bindingMap;
+  public Map<ITypeBinding, IOSTypeBinding> getMap() {
+    return bindingMap;
   }
 
   private void put(ITypeBinding typeBinding) {
@@ -65,43 +58,25 @@ public class TypeMapBuilder extends ErrorReportingASTVisitor {
     put(typeBinding.getSuperclass());
   }
 
-  @Override
-  public boolean visit(TypeDeclaration node) {
-    final ITypeBinding typeBinding = node.resolveBinding();
-    put(typeBinding);
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(ClassInstanceCreation node) {
-    put(node.resolveTypeBinding());
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(QualifiedName node) {
-    put(node.resolveTypeBinding());
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(FieldAccess node) {
-    put(Types.getTypeBinding(node.getName().resolveBinding()));
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(MethodDeclaration node) {
-    for (ITypeBinding param : node.resolveBinding().getParameterTypes()) {
-      put(param);
+  public void collect(ASTNode node, IBinding binding) {
+    switch (node.getNodeType()) {
+      case ASTNode.TYPE_DECLARATION:
+      case ASTNode.CLASS_INSTANCE_CREATION:
+      case ASTNode.QUALIFIED_NAME:
+      case ASTNode.FIELD_ACCESS:
+        put(Types.getTypeBinding(binding));
+        break;
+      case ASTNode.METHOD_DECLARATION:
+        for (ITypeBinding param : ((IMethodBinding) binding).getParameterTypes()) {
+          put(param);
+        }
+        break;
+      case ASTNode.METHOD_INVOCATION:
+        put(((IMethodBinding) binding).getDeclaringClass());
+        break;
+      default:
+        break;
     }
-    return super.visit(node);
-  }
-
-  @Override
-  public boolean visit(MethodInvocation node) {
-    put(node.resolveMethodBinding().getDeclaringClass());
-    return super.visit(node);
   }
 
   private static ITypeBinding getSuperClass(ITypeBinding typeBinding) {
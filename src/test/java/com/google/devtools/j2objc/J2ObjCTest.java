@@ -0,0 +1,474 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.gen.SourceFileGenerator;
+import com.google.devtools.j2objc.util.PrivateDirectory;
+import com.google.devtools.j2objc.util.Profiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for {@link J2ObjC}.
+ */
+public class J2ObjCTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    Options.appendSourcePath(tempDir.getAbsolutePath());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Options.setBuildCacheFile(null);
+    Options.setManifestFile(null);
+    Options.setProGuardUsageFile(null);
+    Options.setDeadCodeMap(null);
+    PrivateDirectory.reset();
+    super.tearDown();
+  }
+
+  public void testBatchTranslation() throws IOException {
+    addSourceFile("public class Foo { Bar bar; int test() { return bar.value(); } }",
+        "Foo.java");
+    addSourceFile("public class Bar { int value() { return 42; } }", "Bar.java");
+    new J2ObjC().translateBatch(Lists.newArrayList("Foo.java", "Bar.java"));
+    assertErrorCount(0);
+    assertTranslation(getTranslatedFile("Foo.h"), "@interface Foo : NSObject");
+    assertTranslation(getTranslatedFile("Foo.m"), "return [((Bar *) NIL_CHK(bar_)) value];");
+    assertTranslation(getTranslatedFile("Bar.h"), "@interface Bar : NSObject");
+    assertTranslation(getTranslatedFile("Bar.m"), "return 42;");
+  }
+
+  public void testBatchTranslationReportsErrors() throws IOException {
+    addSourceFile("public class Foo { Unknown bar; }", "Foo.java");
+    addSourceFile("public class Bar { }", "Bar.java");
+    new J2ObjC().translateBatch(Lists.newArrayList("Foo.java", "Bar.java"));
+    assertErrorCount(1);
+    assertTranslation(getTranslatedFile("Bar.h"), "@interface Bar : NSObject");
+  }
+
+  public void testParallelTranslationMatchesSequential() throws IOException {
+    List<List<String>> fileLists = Lists.newArrayList();
+    for (int i = 0; i < 8; i++) {
+      addSourceFile(String.format(
+          "public class Test%d { String s = \"%d\"; Test%d next; int test() { return %d; } }",
+          i, i, (i + 1) % 8, i), "Test" + i + ".java");
+      fileLists.add(Lists.newArrayList("Test" + i + ".java"));
+    }
+    J2ObjC compiler = new J2ObjC();
+    for (List<String> fileList : fileLists) {
+      compiler.translateFiles(fileList);
+    }
+    List<String> sequential = Lists.newArrayList();
+    for (int i = 0; i < 8; i++) {
+      sequential.add(getTranslatedFile("Test" + i + ".h"));
+      sequential.add(getTranslatedFile("Test" + i + ".m"));
+    }
+
+    compiler.translateInParallel(fileLists, 4);
+    assertErrorCount(0);
+    for (int i = 0; i < 8; i++) {
+      assertEquals(sequential.get(i * 2), getTranslatedFile("Test" + i + ".h"));
+      assertEquals(sequential.get(i * 2 + 1), getTranslatedFile("Test" + i + ".m"));
+    }
+  }
+
+  public void testParallelTranslationErrorOrder() throws IOException {
+    List<List<String>> fileLists = Lists.newArrayList();
+    for (int i = 0; i < 8; i++) {
+      addSourceFile("public class Test" + i + " { Unknown" + i + " field; }",
+          "Test" + i + ".java");
+      fileLists.add(Lists.newArrayList("Test" + i + ".java"));
+    }
+    PrintStream errStream = System.err;
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    try {
+      System.setErr(new PrintStream(errors, true));
+      new J2ObjC().translateInParallel(fileLists, 4);
+    } finally {
+      System.setErr(errStream);
+    }
+    assertErrorCount(8);
+    String log = errors.toString();
+    int lastIndex = -1;
+    for (int i = 0; i < 8; i++) {
+      int index = log.indexOf("Test" + i + ".java:1: Unknown" + i + " cannot be resolved");
+      assertTrue(log, index > lastIndex);
+      lastIndex = index;
+    }
+  }
+
+  private File addSourceJar(String name, String... pathsAndSources) throws IOException {
+    File jar = new File(tempDir, name);
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+    try {
+      for (int i = 0; i < pathsAndSources.length; i += 2) {
+        out.putNextEntry(new ZipEntry(pathsAndSources[i]));
+        out.write(pathsAndSources[i + 1].getBytes(Charsets.UTF_8));
+      }
+    } finally {
+      out.close();
+    }
+    Options.appendSourcePath(jar.getAbsolutePath());
+    return jar;
+  }
+
+  public void testSourceJarTranslation() throws IOException {
+    File jar = addSourceJar("sources.jar",
+        "foo/Foo.java",
+        "package foo; public class Foo { Bar bar; int test() { return bar.value(); } }",
+        "foo/Bar.java", "package foo; public class Bar { int value() { return 42; } }",
+        "foo/README", "not a source");
+    assertTrue(new J2ObjC().translateAll(new String[] { jar.getAbsolutePath() }));
+    assertErrorCount(0);
+    assertTranslation(getTranslatedFile("foo/Foo.m"), "return [((FooBar *) NIL_CHK(bar_)) value];");
+    assertTranslation(getTranslatedFile("foo/Bar.m"), "return 42;");
+  }
+
+  public void testSourceJarEntriesAreTranslatedInParallel() throws IOException {
+    String[] entries = new String[16];
+    for (int i = 0; i < 8; i++) {
+      entries[2 * i] = "foo/Test" + i + ".java";
+      entries[2 * i + 1] = String.format(
+          "package foo; public class Test%d { Test%d next; int test() { return %d; } }",
+          i, (i + 1) % 8, i);
+    }
+    File jar = addSourceJar("sources.jar", entries);
+    // The jar's entry is translated, not a file on the source path with its path.
+    new File(tempDir, "foo").mkdir();
+    addSourceFile("package foo; public class Test0 { int test() { return -1; } }",
+        "foo/Test0.java");
+    Options.setThreads(4);
+    try {
+      assertTrue(new J2ObjC().translateAll(new String[] { jar.getAbsolutePath() }));
+    } finally {
+      Options.setThreads(1);
+    }
+    assertErrorCount(0);
+    for (int i = 0; i < 8; i++) {
+      assertTranslation(getTranslatedFile("foo/Test" + i + ".m"), "return " + i + ";");
+    }
+  }
+
+  public void testBuildCacheSkipsUnchangedFiles() throws IOException {
+    Options.setBuildCacheFile(new File(tempDir, "j2objc.cache"));
+    String[] files = { "Foo.java", "Bar.java", "Baz.java" };
+    addSourceFile("public class Foo { Bar bar; int test() { return bar.value(); } }",
+        "Foo.java");
+    addSourceFile("public class Bar { int value() { return 42; } }", "Bar.java");
+    addSourceFile("public class Baz { }", "Baz.java");
+    assertTrue(new J2ObjC().translateAll(files));
+    assertErrorCount(0);
+    assertTranslation(getTranslatedFile("Foo.m"), "return [((Bar *) NIL_CHK(bar_)) value];");
+    markStale("Foo.m");
+    markStale("Bar.m");
+    markStale("Baz.m");
+
+    // Nothing changed, so nothing is translated.
+    assertTrue(new J2ObjC().translateAll(files));
+    assertEquals("stale\n", getTranslatedFile("Foo.m"));
+    assertEquals("stale\n", getTranslatedFile("Bar.m"));
+    assertEquals("stale\n", getTranslatedFile("Baz.m"));
+
+    // A change to a method body doesn't affect Bar's users.
+    addSourceFile("public class Bar { int value() { return 43; } }", "Bar.java");
+    assertTrue(new J2ObjC().translateAll(files));
+    assertTranslation(getTranslatedFile("Bar.m"), "return 43;");
+    assertEquals("stale\n", getTranslatedFile("Foo.m"));
+    assertEquals("stale\n", getTranslatedFile("Baz.m"));
+
+    // A change to Bar's API retranslates Foo, but not Baz.
+    addSourceFile("public class Bar { int value() { return 43; } void reset() { } }",
+        "Bar.java");
+    assertTrue(new J2ObjC().translateAll(files));
+    assertTranslation(getTranslatedFile("Foo.m"), "return [((Bar *) NIL_CHK(bar_)) value];");
+    assertEquals("stale\n", getTranslatedFile("Baz.m"));
+
+    // A missing output file is regenerated.
+    new File(tempDir, "Baz.m").delete();
+    assertTrue(new J2ObjC().translateAll(files));
+    assertTranslation(getTranslatedFile("Baz.m"), "@implementation Baz");
+    assertErrorCount(0);
+  }
+
+  public void testBuildCacheChecksClassPathDirectories() throws IOException {
+    File lib = new File(tempDir, "lib");
+    File classFile = new File(lib, "foo/Lib.class");
+    classFile.getParentFile().mkdirs();
+    Files.write("v1", classFile, Charsets.UTF_8);
+    Options.load(new String[] { "-d", tempDir.getAbsolutePath(),
+        "-sourcepath", tempDir.getAbsolutePath(), "-classpath", lib.getPath() });
+    Options.setBuildCacheFile(new File(tempDir, "j2objc.cache"));
+    try {
+      addSourceFile("public class Foo { }", "Foo.java");
+      String[] files = { "Foo.java" };
+      assertTrue(new J2ObjC().translateAll(files));
+      markStale("Foo.m");
+      assertTrue(new J2ObjC().translateAll(files));
+      assertEquals("stale\n", getTranslatedFile("Foo.m"));
+
+      // A changed class in a class path directory invalidates the cache.
+      Files.write("version 2", classFile, Charsets.UTF_8);
+      assertTrue(new J2ObjC().translateAll(files));
+      assertTranslation(getTranslatedFile("Foo.m"), "@implementation Foo");
+    } finally {
+      Options.load(new String[] { "-classpath", "." });
+    }
+  }
+
+  public void testManifestListsGeneratedFiles() throws IOException {
+    File manifestFile = new File(tempDir, "manifest.json");
+    Options.setManifestFile(manifestFile);
+    addSourceFile("public class Foo { Bar bar; java.util.List<Bar> list; }", "Foo.java");
+    addSourceFile("public class Bar { }", "Bar.java");
+    assertTrue(new J2ObjC().translateAll(new String[] { "Foo.java", "Bar.java" }));
+    assertErrorCount(0);
+    String manifest = Files.toString(manifestFile, Charsets.UTF_8);
+    String fooHash = Hashing.md5().hashBytes(
+        Files.toByteArray(new File(tempDir, "Foo.m"))).toString();
+    assertTranslation(manifest, "{ \"source\": \"Bar.java\", \"types\": [\"Bar\"], ");
+    assertTranslation(manifest, "{ \"source\": \"Foo.java\", \"types\": [\"Foo\"], "
+        + "\"outputs\": [{ \"file\": \"Foo.h\", ");
+    assertTranslation(manifest, "{ \"file\": \"Foo.m\", \"hash\": \"" + fooHash
+        + "\", \"imports\": [\"Bar.h\", \"Foo.h\", \"java/util/List.h\"] }");
+    assertTranslation(manifest, "\"references\": [\"Bar\", \"java.util.List\"] }");
+
+    // Entries of files that aren't retranslated are kept.
+    addSourceFile("public class Bar { int n; }", "Bar.java");
+    assertTrue(new J2ObjC().translateAll(new String[] { "Bar.java" }));
+    String updated = Files.toString(manifestFile, Charsets.UTF_8);
+    assertFalse(updated.equals(manifest));
+    assertTranslation(updated, "{ \"source\": \"Foo.java\", \"types\": [\"Foo\"], ");
+    assertTranslation(updated, "{ \"source\": \"Bar.java\", \"types\": [\"Bar\"], ");
+  }
+
+  public void testUnchangedOutputIsNotRewritten() throws IOException {
+    addSourceFile("public class Foo { int test() { return 42; } }", "Foo.java");
+    J2ObjC compiler = new J2ObjC();
+    compiler.translateFiles(Lists.newArrayList("Foo.java"));
+    File header = new File(tempDir, "Foo.h");
+    File implementation = new File(tempDir, "Foo.m");
+    assertTrue(header.setLastModified(1000));
+
+    // Only the file header's generation date differs.
+    String translation = getTranslatedFile("Foo.m");
+    Files.write(translation.replaceFirst("on .*\\.", "on 1/1/01."), implementation,
+        Charsets.UTF_8);
+    assertTrue(implementation.setLastModified(1000));
+
+    compiler.translateFiles(Lists.newArrayList("Foo.java"));
+    assertEquals(2, SourceFileGenerator.getUnchangedFileCount());
+    assertEquals(1000, header.lastModified());
+    assertEquals(1000, implementation.lastModified());
+
+    addSourceFile("public class Foo { int test() { return 43; } }", "Foo.java");
+    compiler.translateFiles(Lists.newArrayList("Foo.java"));
+    assertEquals(3, SourceFileGenerator.getUnchangedFileCount());
+    assertEquals(1000, header.lastModified());
+    assertTrue(implementation.lastModified() != 1000);
+    assertTranslation(getTranslatedFile("Foo.m"), "return 43;");
+  }
+
+  public void testPackageHeaders() throws IOException {
+    addSourceFile("package foo; public class Foo { }", "Foo.java");
+    addSourceFile("package foo; public class Bar { }", "Bar.java");
+    Options.setPackageHeaders(true);
+    try {
+      assertTrue(new J2ObjC().translateAll(new String[] { "Foo.java", "Bar.java" }));
+    } finally {
+      Options.setPackageHeaders(false);
+    }
+    String header = getTranslatedFile("foo/package.h");
+    assertTranslation(header, "#import \"JreEmulation.h\"\n"
+        + "#import \"foo/Bar.h\"\n#import \"foo/Foo.h\"\n");
+  }
+
+  public void testDeadCodeIsRemovedFromParsedUnits() throws IOException {
+    addSourceFile("public class Foo { void dead() { } int live() { return 42; } }", "Foo.java");
+    addSourceFile("public class Bar implements Runnable { public void run() { } }", "Bar.java");
+    addSourceFile("Foo:\n    void dead()\nBar:\n    public void run()\n", "usage.txt");
+    Options.setProGuardUsageFile(new File(tempDir, "usage.txt"));
+    List<String> sourcePath = Lists.newArrayList(Options.getSourcePathEntries());
+    assertTrue(new J2ObjC().translateAll(new String[] { "Foo.java", "Bar.java" }));
+    assertErrorCount(0);
+
+    // Foo's dead method is deleted.
+    String translation = getTranslatedFile("Foo.m");
+    assertTranslation(translation, "return 42;");
+    assertFalse(translation.contains("dead"));
+
+    // Bar's dead method is replaced by a generated stub.
+    assertTranslation(getTranslatedFile("Bar.m"), "Cannot invoke dead method");
+
+    // No rewritten sources are added to the sourcepath.
+    assertEquals(sourcePath, Lists.newArrayList(Options.getSourcePathEntries()));
+  }
+
+  public void testFinalFieldsOfDeadConstructorsAreInitializedInPlace() throws IOException {
+    addSourceFile("public class Foo { final String s; final int i; Foo() { s = \"foo\"; i = 1; } "
+        + "int get() { return i; } }", "Foo.java");
+    addSourceFile("Foo:\n    Foo()\n", "usage.txt");
+    Options.setProGuardUsageFile(new File(tempDir, "usage.txt"));
+    Options.setVerifyBindings(true);
+    try {
+      assertTrue(new J2ObjC().translateAll(new String[] { "Foo.java" }));
+    } finally {
+      Options.setVerifyBindings(false);
+    }
+    assertErrorCount(0);
+    String translation = getTranslatedFile("Foo.m");
+    assertFalse(translation.contains("\"foo\""));
+    assertTranslation(translation, "JreOperatorRetainedAssign(&s_, nil);\n    i_ = 0;");
+  }
+
+  public void testProfileReportsPhasesPerFile() throws IOException {
+    addSourceFile("public class Foo { int test() { return 42; } }", "Foo.java");
+    addSourceFile("public class Bar { Runnable r = new Runnable() { public void run() { } }; }",
+        "Bar.java");
+    Profiler.start();
+    new J2ObjC().translateFiles(Lists.newArrayList("Foo.java", "Bar.java"));
+    File report = new File(tempDir, "profile.csv");
+    Profiler.stop().write(report);
+    assertErrorCount(0);
+
+    List<String> lines = Files.readLines(report, Charsets.UTF_8);
+    assertEquals("file,phase,count,nanoseconds,allocatedBytes", lines.get(0));
+    for (String file : new String[] { "Foo.java", "Bar.java" }) {
+      for (String phase : new String[] { "parse", "Rewriter", "AnonymousClassConverter",
+          "DestructorGenerator", "ObjectiveCHeaderGenerator",
+          "ObjectiveCImplementationGenerator" }) {
+        boolean found = false;
+        for (String line : lines) {
+          found |= line.matches(file + "," + phase + ",1,\\d+,-?\\d+");
+        }
+        assertTrue(file + " " + phase, found);
+      }
+    }
+
+    // Profiling is off once stopped.
+    assertNull(Profiler.begin("parse"));
+  }
+
+  public void testServerTranslatesRequests() throws Exception {
+    addSourceFile("public class Foo { int test() { return 42; } }", "Foo.java");
+    addSourceFile("public class Bar { Unknown bar; }", "Bar.java");
+    PrivateDirectory.set(new File(tempDir, "private"));
+    final ServerSocket socket = new ServerSocket(0, 50, InetAddress.getByName(null));
+    Thread server = new Thread() {
+      @Override
+      public void run() {
+        try {
+          TranslationServer.serve(socket);
+        } catch (IOException e) {
+          // Expected when the socket is closed.
+        }
+      }
+    };
+    server.start();
+    File tokenFile = TranslationServer.getTokenFile(socket.getLocalPort());
+    for (int i = 0; i < 100 && tokenFile.length() == 0; i++) {
+      Thread.sleep(50);
+    }
+    try {
+      String dir = tempDir.getAbsolutePath();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      String[] args = { "-d", dir, "-sourcepath", dir, dir + "/Foo.java" };
+      assertEquals(0, TranslationClient.translate(socket.getLocalPort(), args,
+          new PrintStream(out, true), new PrintStream(err, true)));
+      assertTrue(out.toString(), out.toString().contains("Translated 1 file: 0 errors"));
+      assertTranslation(getTranslatedFile("Foo.m"), "return 42;");
+
+      // Each request starts from the default options and counts.
+      err.reset();
+      args = new String[] { "-d", dir, "-sourcepath", dir, dir + "/Bar.java" };
+      assertEquals(1, TranslationClient.translate(socket.getLocalPort(), args,
+          new PrintStream(out, true), new PrintStream(err, true)));
+      assertTrue(err.toString(), err.toString().contains("Unknown cannot be resolved"));
+
+      // Exiting for a usage error only ends the request.
+      err.reset();
+      args = new String[] { "--no-such-flag" };
+      assertEquals(1, TranslationClient.translate(socket.getLocalPort(), args,
+          new PrintStream(out, true), new PrintStream(err, true)));
+      assertTrue(err.toString(), err.toString().contains("invalid flag: --no-such-flag"));
+      assertTrue(server.isAlive());
+
+      // Requests without the server's token, or with invalid lengths, are
+      // rejected without taking the server down.
+      sendRawRequest(socket.getLocalPort(), "not the token", 1);
+      sendRawRequest(socket.getLocalPort(), null, -1);
+      out.reset();
+      args = new String[] { "-d", dir, "-sourcepath", dir, dir + "/Foo.java" };
+      assertEquals(0, TranslationClient.translate(socket.getLocalPort(), args,
+          new PrintStream(out, true), new PrintStream(err, true)));
+      assertTrue(out.toString(), out.toString().contains("Translated 1 file: 0 errors"));
+      assertTrue(server.isAlive());
+    } finally {
+      socket.close();
+      server.join();
+    }
+  }
+
+  /**
+   * Sends a request with a token and an argument count, and waits for the
+   * server to close the connection.  If the token is null, the length is
+   * sent in its place.
+   */
+  private void sendRawRequest(int port, String token, int length) throws IOException {
+    Socket client = new Socket(InetAddress.getByName(null), port);
+    try {
+      DataOutputStream out = new DataOutputStream(client.getOutputStream());
+      TranslationServer.writeString(out, TranslationServer.PROTOCOL);
+      if (token != null) {
+        TranslationServer.writeString(out, token);
+        TranslationServer.writeString(out, System.getProperty("user.dir"));
+      }
+      out.writeInt(length);
+      out.flush();
+      try {
+        assertEquals(-1, client.getInputStream().read());
+      } catch (SocketException e) {
+        // The server closed the connection without reading the whole request.
+      }
+    } finally {
+      client.close();
+    }
+  }
+
+  private void markStale(String fileName) throws IOException {
+    Files.write("stale\n", new File(tempDir, fileName), Charsets.UTF_8);
+  }
+}
@@ -24,16 +24,20 @@ import com.google.devtools.j2objc.gen.ObjectiveCHeaderGeneratorTest;
 import com.google.devtools.j2objc.gen.ObjectiveCImplementationGeneratorTest;
 import com.google.devtools.j2objc.gen.ObjectiveCSourceFileGeneratorTest;
 import com.google.devtools.j2objc.gen.PrimitiveArrayTest;
+import com.google.devtools.j2objc.gen.SourceBuilderTest;
 import com.google.devtools.j2objc.gen.StatementGeneratorTest;
 import com.google.devtools.j2objc.sym.ScopeTest;
 import com.google.devtools.j2objc.translate.AnonymousClassConverterTest;
 import com.google.devtools.j2objc.translate.AutoboxerTest;
 import com.google.devtools.j2objc.translate.DeadCodeEliminatorTest;
 import com.google.devtools.j2objc.translate.DestructorGeneratorTest;
+import com.google.devtools.j2objc.translate.DevirtualizerTest;
 import com.google.devtools.j2objc.translate.InitializationNormalizerTest;
 import com.google.devtools.j2objc.translate.InnerClassExtractorTest;
 import com.google.devtools.j2objc.translate.JavaToIOSMethodTranslatorTest;
+import com.google.devtools.j2objc.translate.NilCheckResolverTest;
 import com.google.devtools.j2objc.translate.RewriterTest;
+import com.google.devtools.j2objc.translate.StringBuilderRewriterTest;
 import com.google.devtools.j2objc.types.BindingMapBuilderTest;
 import com.google.devtools.j2objc.types.ImplementationImportCollectorTest;
 import com.google.devtools.j2objc.types.ModifiedTypeBindingTest;
@@ -41,8 +45,10 @@ import com.google.devtools.j2objc.types.RenamedTypeBindingTest;
 import com.google.devtools.j2objc.types.TypesTest;
 import com.google.devtools.j2objc.util.DeadCodeMapTest;
 import com.google.devtools.j2objc.util.ErrorReportingASTVisitorTest;
+import com.google.devtools.j2objc.util.MethodMappingsTest;
 import com.google.devtools.j2objc.util.NameTableTest;
 import com.google.devtools.j2objc.util.ProGuardUsageParserTest;
+import com.google.devtools.j2objc.util.SourcePathTest;
 import com.google.devtools.j2objc.util.UnicodeUtilsTest;
 
 import junit.framework.Test;
@@ -64,15 +70,19 @@ public class SmallTests {
     DeadCodeEliminatorTest.class,
     DeadCodeMapTest.class,
     DestructorGeneratorTest.class,
+    DevirtualizerTest.class,
     ErrorReportingASTVisitorTest.class,
     HiddenFieldDetectorTest.class,
     ImplementationImportCollectorTest.class,
     InitializationNormalizerTest.class,
     InnerClassExtractorTest.class,
+    J2ObjCTest.class,
     JavaToIOSMethodTranslatorTest.class,
     LineDirectivesTest.class,
+    MethodMappingsTest.class,
     ModifiedTypeBindingTest.class,
     NameTableTest.class,
+    NilCheckResolverTest.class,
     ObjectiveCHeaderGeneratorTest.class,
     ObjectiveCImplementationGeneratorTest.class,
     ObjectiveCSourceFileGeneratorTest.class,
@@ -82,7 +92,11 @@ public class SmallTests {
     RenamedTypeBindingTest.class,
     RewriterTest.class,
     ScopeTest.class,
+    SourceBuilderTest.class,
+    SourcePathTest.class,
     StatementGeneratorTest.class,
+    StringBuilderRewriterTest.class,
+    TranslationContextTest.class,
     TypesTest.class,
     UnicodeUtilsTest.class
   };
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc;
+
+import com.google.devtools.j2objc.types.Types;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Tests for {@link TranslationContext}.
+ */
+public class TranslationContextTest extends GenerationTest {
+
+  public void testContextsAreIndependent() {
+    CompilationUnit unit = compileType("Test", "public class Test { }");
+    J2ObjC.initializeTranslation(unit);
+    TranslationContext outer = TranslationContext.current();
+    assertSame(unit, outer.getUnit());
+    Types types = outer.getTypes();
+    assertNotNull(types);
+
+    TranslationContext inner = new TranslationContext("Other.java", outer);
+    TranslationContext previous = inner.install();
+    assertSame(outer, previous);
+    try {
+      assertNull(inner.getTypes());
+      CompilationUnit otherUnit = compileType("Other", "public class Other { }");
+      J2ObjC.initializeTranslation(otherUnit);
+      assertNotSame(types, inner.getTypes());
+    } finally {
+      TranslationContext.restore(previous);
+    }
+
+    // The outer unit's tables are unchanged.
+    assertSame(outer, TranslationContext.current());
+    assertSame(types, outer.getTypes());
+    assertEquals("Test", Types.getTypeBinding(unit.types().get(0)).getName());
+  }
+
+  public void testDiagnosticsAreCountedPerContext() {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    TranslationContext context =
+        new TranslationContext("Test.java", null, new PrintStream(err, true));
+    TranslationContext previous = context.install();
+    try {
+      J2ObjC.error("first");
+      J2ObjC.warning("second");
+    } finally {
+      TranslationContext.restore(previous);
+    }
+    assertEquals(1, context.getErrorCount());
+    assertEquals(1, context.getWarningCount());
+    assertEquals("error: first\nwarning: second\n",
+        err.toString().replace(System.getProperty("line.separator"), "\n"));
+
+    // Totals include all contexts' diagnostics.
+    assertErrorCount(1);
+    assertWarningCount(1);
+    assertEquals(0, TranslationContext.current().getErrorCount());
+  }
+}
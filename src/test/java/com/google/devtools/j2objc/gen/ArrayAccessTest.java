@@ -17,9 +17,11 @@
 package com.google.devtools.j2objc.gen;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.Options;
 
 import org.eclipse.jdt.core.dom.Statement;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -29,6 +31,12 @@ import java.util.List;
  */
 public class ArrayAccessTest extends GenerationTest {
 
+  @Override
+  protected void tearDown() throws Exception {
+    Options.setInlineArrayAccess(false);
+    super.tearDown();
+  }
+
   public void testGetElement() {
     List<Statement> stmts = translateStatements("int[] arr = { 1, 2 }; " +
         "int one = arr[0]; int two = arr[1];");
@@ -38,7 +46,7 @@ public class ArrayAccessTest extends GenerationTest {
     result = generateStatement(stmts.get(1));
     assertEquals("int one = [((IOSIntArray *) NIL_CHK(arr)) intAtIndex:0];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("int two = [((IOSIntArray *) NIL_CHK(arr)) intAtIndex:1];", result);
+    assertEquals("int two = [arr intAtIndex:1];", result);
   }
 
   public void testSetElementWithLiteral() {
@@ -47,7 +55,7 @@ public class ArrayAccessTest extends GenerationTest {
     String result = generateStatement(stmts.get(1));
     assertEquals("[((IOSIntArray *) NIL_CHK(arr)) replaceIntAtIndex:0 withInt:-1];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("[((IOSIntArray *) NIL_CHK(arr)) replaceIntAtIndex:1 withInt:-2];", result);
+    assertEquals("[arr replaceIntAtIndex:1 withInt:-2];", result);
   }
 
   public void testSetElementWithExpression() {
@@ -57,7 +65,7 @@ public class ArrayAccessTest extends GenerationTest {
     String result = generateStatement(stmts.get(1));
     assertEquals("[((IOSIntArray *) NIL_CHK(arr)) replaceIntAtIndex:0 withInt:2 * 5];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("[((IOSIntArray *) NIL_CHK(arr)) replaceIntAtIndex:1 withInt:6 / 3];", result);
+    assertEquals("[arr replaceIntAtIndex:1 withInt:6 / 3];", result);
   }
 
   public void testPrefixOperator() {
@@ -66,7 +74,7 @@ public class ArrayAccessTest extends GenerationTest {
     String result = generateStatement(stmts.get(1));
     assertEquals("[((IOSIntArray *) NIL_CHK(arr)) incr:0];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("[((IOSIntArray *) NIL_CHK(arr)) decr:1];", result);
+    assertEquals("[arr decr:1];", result);
   }
 
   public void testPostfixOperator() {
@@ -75,6 +83,40 @@ public class ArrayAccessTest extends GenerationTest {
     String result = generateStatement(stmts.get(1));
     assertEquals("[((IOSIntArray *) NIL_CHK(arr)) postIncr:0];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("[((IOSIntArray *) NIL_CHK(arr)) postDecr:1];", result);
+    assertEquals("[arr postDecr:1];", result);
+  }
+
+  public void testInlineElementAccess() {
+    Options.setInlineArrayAccess(true);
+    List<Statement> stmts = translateStatements("int[] arr = { 1, 2 }; int one = arr[0]; "
+        + "arr[1] = one; arr[0] += 3; ++arr[1]; arr[0]--; String[] s = { \"\" }; s[0] = null;");
+    assertEquals(8, stmts.size());
+    assertEquals("int one = (*IOSIntArray_GetRef(arr, 0));", generateStatement(stmts.get(1)));
+    assertEquals("*IOSIntArray_GetRef(arr, 1) = one;", generateStatement(stmts.get(2)));
+    assertEquals("*IOSIntArray_GetRef(arr, 0) += 3;", generateStatement(stmts.get(3)));
+    assertEquals("++*IOSIntArray_GetRef(arr, 1);", generateStatement(stmts.get(4)));
+    assertEquals("(*IOSIntArray_GetRef(arr, 0))--;", generateStatement(stmts.get(5)));
+
+    // Object arrays still use messages.
+    assertEquals("[((IOSObjectArray *) NIL_CHK(s)) replaceObjectAtIndex:0 withObject:nil];",
+        generateStatement(stmts.get(7)));
+  }
+
+  public void testInBoundsLoopAccessIsUnchecked() throws IOException {
+    Options.setInlineArrayAccess(true);
+    String translation = translateSourceFile(
+        "class Test { int sum(double[] d, int[] a, int[] b) { int sum = 0; "
+        + "for (int i = 0; i < a.length; i++) { sum += a[i] * b[i]; } "
+        + "for (int i = 0, n = a.length; i < n; ++i) { a[i] = i; } "
+        + "for (double x : d) { sum += x; } "
+        + "for (int i = 0; i < a.length; i++) { a = b; sum += a[i]; } "
+        + "return sum; } }", "Test", "Test.m");
+    assertTranslation(translation,
+        "sum += (*IOSIntArray_GetRefUnchecked(a, i)) * (*IOSIntArray_GetRef(b, i));");
+    assertTranslation(translation, "*IOSIntArray_GetRefUnchecked(a, i) = i;");
+    assertTranslation(translation, "double x = (*IOSDoubleArray_GetRefUnchecked(a__, i__));");
+
+    // The array is reassigned in the last loop.
+    assertTranslation(translation, "sum += (*IOSIntArray_GetRef(a, i));");
   }
 }
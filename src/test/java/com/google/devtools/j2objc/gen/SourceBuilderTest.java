@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Unit tests for {@link SourceBuilder}.
+ */
+public class SourceBuilderTest extends TestCase {
+
+  private String reindent(int indention, String... chunks) {
+    SourceBuilder builder = new SourceBuilder();
+    for (int i = 0; i < indention; i++) {
+      builder.indent();
+    }
+    builder.print("x");
+    builder.beginReindent();
+    for (String chunk : chunks) {
+      builder.print(chunk);
+    }
+    builder.endReindent();
+    builder.print("y");
+    return builder.toString();
+  }
+
+  public void testReindentBraces() {
+    assertEquals("x{\n  if (a) {\n    b();\n  }\n}y",
+        reindent(0, "{\n      if (a) {\n b();\n }\n   }\n"));
+  }
+
+  public void testReindentFromCurrentIndention() {
+    assertEquals("x  {\n    b();\n  }y", reindent(1, "{\nb();\n}"));
+  }
+
+  public void testReindentLinesSplitAcrossPrints() {
+    assertEquals("x{\n  foo(bar);\n}y", reindent(0, "{", "\n  fo", "o(", "bar);\r", "\n}\r\n"));
+  }
+
+  public void testReindentSkipsLineDirectives() {
+    assertEquals("x{\n#line 12\n  b();\n}y", reindent(0, "{\n  #line 12\nb();\n}"));
+  }
+
+  public void testReindentEmptyLines() {
+    // Empty lines are indented; a trailing one is dropped.
+    assertEquals("x{\n  a();\n  \n  b();\n}\ny", reindent(0, "{\na();\n\nb();\n}\n\n\n"));
+    assertEquals("xy", reindent(0, "\n"));
+  }
+
+  public void testOutputIsWrittenAsBufferFills() throws IOException {
+    SourceBuilder builder = new SourceBuilder();
+    builder.print("header\n");
+    StringWriter out = new StringWriter();
+    builder.setOutput(out);
+    assertEquals("header\n", out.toString());
+    assertTrue(builder.endsWithNewline());
+
+    StringBuilder expected = new StringBuilder("header\n");
+    for (int i = 0; i < 10000; i++) {
+      builder.printf("line %d\n", i);
+      expected.append("line ").append(i).append('\n');
+    }
+    builder.print("last");
+    assertTrue(builder.toString().length() < 10000);
+    assertFalse(builder.endsWithNewline());
+    builder.flush();
+    assertEquals(expected.append("last").toString(), out.toString());
+    assertEquals("", builder.toString());
+    assertFalse(builder.endsWithNewline());
+  }
+}
@@ -37,6 +37,7 @@ public class StatementGeneratorTest extends GenerationTest {
   @Override
   protected void tearDown() throws Exception {
     Options.resetMemoryManagementOption();
+    Options.setFastStringConcatenation(false);
     super.tearDown();
   }
 
@@ -186,7 +187,7 @@ public class StatementGeneratorTest extends GenerationTest {
     List<Statement> stmts = translateStatements(source);
     assertEquals(3, stmts.size());
     String result = generateStatement(stmts.get(1));
-    assertEquals("[NIL_CHK(o) description];", result);
+    assertEquals("[o description];", result);
     result = generateStatement(stmts.get(2));
     assertEquals("[self description];", result);
   }
@@ -313,6 +314,19 @@ public class StatementGeneratorTest extends GenerationTest {
         "obj_, [JavaLangBoolean toStringWithBOOL:b_], c_, d_, f_, i_, l_, s_];");
   }
 
+  public void testFastStringConcatenation() throws IOException {
+    Options.setFastStringConcatenation(true);
+    String translation = translateSourceFile(
+      "public class Example { Object obj; boolean b; char c; double d; int i; long l; " +
+      "String str; public String toString() { " +
+      "return \"obj=\" + obj + \" b=\" + b + \" c=\" + c + \" d=\" + d + \" i=\" + i" +
+      " + \"%\" + 'x' + l + str + str.hashCode(); }}",
+      "Example", "Example.m");
+    assertTranslation(translation,
+        "return JreStrcat(\"$@$Z$C$D$I$J$I\", @\"obj=\", obj_, @\" b=\", b_, @\" c=\", c_, " +
+        "@\" d=\", d_, @\" i=\", i_, @\"%x\", l_, str_, (int) [NIL_CHK(str_) hash]);");
+  }
+
   public void testStringConcatenationWithLiterals() throws IOException {
     String translation = translateSourceFile(
       "public class Example<K,V> { public String toString() { " +
@@ -350,7 +364,7 @@ public class StatementGeneratorTest extends GenerationTest {
         "  String b = \"foo\" + a.hashCode() + \"bar\"; } }",
         "Test", "Test.m");
     assertTranslation(translation,
-        "[NSString stringWithFormat:@\"foo%dbar\", (int) [NIL_CHK(a) hash]]");
+        "[NSString stringWithFormat:@\"foo%dbar\", (int) [a hash]]");
   }
 
   public void testVarargsMethodInvocation() throws IOException {
@@ -1066,7 +1080,7 @@ public class StatementGeneratorTest extends GenerationTest {
       "  public static class BarD extends Foo.Bar { } " +
       "  public void bar() { Foo<BarD> f = new Foo<BarD>(); BarD b = f.foo(); } }",
       "Test", "Test.m");
-    assertTranslation(translation, "(Test_BarD *) [((Test_Foo *) NIL_CHK(f)) foo]");
+    assertTranslation(translation, "(Test_BarD *) [f foo]");
   }
 
   // b/5934474: verify that static variables are always referenced by
@@ -150,14 +150,14 @@ public class AutoboxerTest extends GenerationTest {
     String source = "Integer test = new Integer(5); int result = test + 3;";
     List<Statement> stmts = translateStatements(source);
     String result = generateStatement(stmts.get(1));
-    assertEquals("int result = [((JavaLangInteger *) NIL_CHK(test)) intValue] + 3;", result);
+    assertEquals("int result = [test intValue] + 3;", result);
   }
 
   public void testInfixRightOperand() throws IOException {
     String source = "Integer test = new Integer(5); int result = 3 + test;";
     List<Statement> stmts = translateStatements(source);
     String result = generateStatement(stmts.get(1));
-    assertEquals("int result = 3 + [((JavaLangInteger *) NIL_CHK(test)) intValue];", result);
+    assertEquals("int result = 3 + [test intValue];", result);
   }
 
   public void testInfixBothOperands() throws IOException {
@@ -165,8 +165,8 @@ public class AutoboxerTest extends GenerationTest {
         "int result = foo + bar;";
     List<Statement> stmts = translateStatements(source);
     String result = generateStatement(stmts.get(2));
-    assertEquals("int result = [((JavaLangInteger *) NIL_CHK(foo)) intValue] + " +
-    	"[((JavaLangInteger *) NIL_CHK(bar)) intValue];", result);
+    assertEquals("int result = [foo intValue] + " +
+    	"[bar intValue];", result);
   }
 
   public void testInfixNeitherOperand() throws IOException {
@@ -206,7 +206,7 @@ public class AutoboxerTest extends GenerationTest {
         "boolean test() { Boolean b = null; return b != null ? b : false; } }",
         "Test", "Test.m");
     assertTranslation(translation,
-        "b != nil ? [((JavaLangBoolean *) NIL_CHK(b)) booleanValue] : NO");
+        "b != nil ? [b booleanValue] : NO");
   }
 
   public void testArrayInitializerNotBoxed() throws IOException {
@@ -385,9 +385,9 @@ public class AutoboxerTest extends GenerationTest {
     String translation = translateSourceFile(source, "Test", "Test.m");
     assertTranslation(translation,
         "iMinutes = [JavaLangInteger valueOfWithInt:" +
-        "-[((JavaLangInteger *) NIL_CHK(iMinutes)) intValue]];");
+        "-[iMinutes intValue]];");
     assertTranslation(translation,
         "iSeconds = [JavaLangDouble valueOfWithDouble:" +
-        "-[((JavaLangDouble *) NIL_CHK(iSeconds)) doubleValue]];");
+        "-[iSeconds doubleValue]];");
   }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.Options;
+
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link Devirtualizer}.
+ */
+public class DevirtualizerTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    Options.setDevirtualize(true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Options.setDevirtualize(false);
+    super.tearDown();
+  }
+
+  public void testPrivateMethod() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { int count; "
+        + "private int add(int n, String s) { count += n; return count; } "
+        + "public int test() { return add(1, \"a\"); } }",
+        "Test", "Test.m");
+    assertTranslation(translation,
+        "static int Test_addWithInt_withNSString_(Test *self, int n, NSString *s);");
+    assertTranslation(translation,
+        "static int Test_addWithInt_withNSString_(Test *self, int n, NSString *s) {\n"
+        + "  self->count_ += n;\n  return self->count_;\n}");
+    assertTranslation(translation, "- (int)addWithInt:(int)n\n     withNSString:(NSString *)s {\n"
+        + "  return Test_addWithInt_withNSString_(self, n, s);\n}");
+    assertTranslation(translation, "return Test_addWithInt_withNSString_(self, 1, @\"a\");");
+  }
+
+  public void testStaticAndFinalMethods() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { static String twice(String s) { return s + s; } "
+        + "final void run(Test other) { other.run(null); twice(\"a\"); Test.twice(\"b\"); } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "static NSString *Test_twiceWithNSString_(NSString *s) {");
+    assertTranslation(translation, "+ (NSString *)twiceWithNSString:(NSString *)s {\n"
+        + "  return Test_twiceWithNSString_(s);\n}");
+    assertTranslation(translation, "- (void)runWithTest:(Test *)other {\n"
+        + "  Test_runWithTest_(self, other);\n}");
+    assertTranslation(translation, "Test_runWithTest_(NIL_CHK(other), nil);");
+    assertTranslation(translation, "Test_twiceWithNSString_(@\"a\");");
+    assertTranslation(translation, "Test_twiceWithNSString_(@\"b\");");
+  }
+
+  public void testOtherClassesSendMessages() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { private static int foo() { return 1; } "
+        + "static class Inner { int test() { return foo(); } } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "static int Test_foo(void) {");
+    assertTranslation(translation, "return [Test foo];");
+  }
+
+  public void testOverridableMethodsNotDevirtualized() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { int foo() { return 1; } "
+        + "private int bar() { return super.hashCode(); } "
+        + "int test() { return foo() + bar(); } }",
+        "Test", "Test.m");
+    assertFalse(translation.contains("static int Test_"));
+    assertTranslation(translation, "return [self foo] + [self bar];");
+  }
+}
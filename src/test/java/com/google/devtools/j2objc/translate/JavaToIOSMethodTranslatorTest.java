@@ -16,8 +16,14 @@
 
 package com.google.devtools.j2objc.translate;
 
+import com.google.common.collect.ImmutableList;
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.util.MethodMappings;
+import com.google.devtools.j2objc.util.MethodMappings.MappedMethod;
 
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.Statement;
 
@@ -122,9 +128,9 @@ public class JavaToIOSMethodTranslatorTest extends GenerationTest {
     String result = generateStatement(stmts.get(1));
     assertEquals("NSString *s1 = [NIL_CHK(cls) getName];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("NSString *s2 = [NIL_CHK(cls) getSimpleName];", result);
+    assertEquals("NSString *s2 = [cls getSimpleName];", result);
     result = generateStatement(stmts.get(3));
-    assertEquals("NSString *s3 = [NIL_CHK(cls) getCanonicalName];", result);
+    assertEquals("NSString *s3 = [cls getCanonicalName];", result);
   }
 
   public void testStringSubstring() throws IOException {
@@ -133,9 +139,9 @@ public class JavaToIOSMethodTranslatorTest extends GenerationTest {
     List<Statement> stmts = translateStatements(source);
     assertEquals(3, stmts.size());
     String result = generateStatement(stmts.get(1));
-    assertEquals("NSString *s2 = [NIL_CHK(s1) substring:2];", result);
+    assertEquals("NSString *s2 = [s1 substring:2];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("NSString *s3 = [NIL_CHK(s1) substring:2 endIndex:4];", result);
+    assertEquals("NSString *s3 = [s1 substring:2 endIndex:4];", result);
   }
 
   public void testStringIndexOf() throws IOException {
@@ -147,21 +153,21 @@ public class JavaToIOSMethodTranslatorTest extends GenerationTest {
     List<Statement> stmts = translateStatements(source);
     assertEquals(9, stmts.size());
     String result = generateStatement(stmts.get(1));
-    assertEquals("int idx = [NIL_CHK(s) indexOf:'g'];", result);
+    assertEquals("int idx = [s indexOf:'g'];", result);
     result = generateStatement(stmts.get(2));
-    assertEquals("idx = [NIL_CHK(s) indexOfString:@\"brillig\"];", result);
+    assertEquals("idx = [s indexOfString:@\"brillig\"];", result);
     result = generateStatement(stmts.get(3));
-    assertEquals("idx = [NIL_CHK(s) lastIndexOf:'v'];", result);
+    assertEquals("idx = [s lastIndexOf:'v'];", result);
     result = generateStatement(stmts.get(4));
-    assertEquals("idx = [NIL_CHK(s) lastIndexOfString:@\"the\"];", result);
+    assertEquals("idx = [s lastIndexOfString:@\"the\"];", result);
     result = generateStatement(stmts.get(5));
-    assertEquals("idx = [NIL_CHK(s) indexOf:'g' fromIndex:1];", result);
+    assertEquals("idx = [s indexOf:'g' fromIndex:1];", result);
     result = generateStatement(stmts.get(6));
-    assertEquals("idx = [NIL_CHK(s) indexOfString:@\"brillig\" fromIndex:2];", result);
+    assertEquals("idx = [s indexOfString:@\"brillig\" fromIndex:2];", result);
     result = generateStatement(stmts.get(7));
-    assertEquals("idx = [NIL_CHK(s) lastIndexOf:'v' fromIndex:3];", result);
+    assertEquals("idx = [s lastIndexOf:'v' fromIndex:3];", result);
     result = generateStatement(stmts.get(8));
-    assertEquals("idx = [NIL_CHK(s) lastIndexOfString:@\"the\" fromIndex:4];", result);
+    assertEquals("idx = [s lastIndexOfString:@\"the\" fromIndex:4];", result);
   }
 
   public void testStringToCharArray() throws IOException {
@@ -169,7 +175,7 @@ public class JavaToIOSMethodTranslatorTest extends GenerationTest {
     List<Statement> stmts = translateStatements(source);
     assertEquals(2, stmts.size());
     String result = generateStatement(stmts.get(1));
-    assertEquals("IOSCharArray *array = [NIL_CHK(s) toCharArray];", result);
+    assertEquals("IOSCharArray *array = [s toCharArray];", result);
   }
 
   public void testNewInstanceMapping() throws IOException {
@@ -178,7 +184,7 @@ public class JavaToIOSMethodTranslatorTest extends GenerationTest {
     List<Statement> stmts = translateStatements(source);
     assertEquals(1, stmts.size());
     String result = generateStatement(stmts.get(0));
-    assertTranslation(result, "[NIL_CHK(clazz) newInstance]");
+    assertTranslation(result, "[clazz newInstance]");
   }
 
   // Verify that a method named cloned in a class that doesn't
@@ -228,4 +234,35 @@ public class JavaToIOSMethodTranslatorTest extends GenerationTest {
         "Example_Inner *inner = (Example_Inner *) [super clone];");
     assertTranslation(translation, "((Example_Inner *) NIL_CHK(inner)).i = i_;");
   }
+
+  private IMethodBinding findMethod(ITypeBinding type, String name) {
+    for (IMethodBinding method : type.getDeclaredMethods()) {
+      if (method.getName().equals(name) && method.getParameterTypes().length == 0) {
+        return method;
+      }
+    }
+    fail("no method " + type.getName() + "." + name + "()");
+    return null;
+  }
+
+  public void testBinaryMethodMappingsAreSharedByUnits() throws IOException {
+    MethodMappings mappings = MethodMappings.load(ImmutableList.of("JRE.mappings"), null);
+    CompilationUnit unit1 = compileType("Test1", "public class Test1 { int n = \"a\".length(); }");
+    CompilationUnit unit2 = compileType("Test2", "public class Test2 { int n = \"b\".length(); }");
+    IMethodBinding length1 =
+        findMethod(unit1.getAST().resolveWellKnownType("java.lang.String"), "length");
+    IMethodBinding length2 =
+        findMethod(unit2.getAST().resolveWellKnownType("java.lang.String"), "length");
+    assertNotSame(length1, length2);
+
+    MappedMethod mapped = mappings.getMappedMethod(length1);
+    assertEquals("java.lang.String.length()I", mapped.getKey());
+    assertEquals("length", mapped.getSignature().getName());
+    assertSame(mapped, mappings.getMappedMethod(length2));
+
+    IMethodBinding wait = findMethod(unit1.getAST().resolveWellKnownType("java.lang.Object"),
+        "wait");
+    assertNull(mappings.getMappedMethod(wait));
+    assertNull(mappings.getMappedMethod(wait));
+  }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link NilCheckResolver}.
+ */
+public class NilCheckResolverTest extends GenerationTest {
+
+  public void testDereferencedVariableIsNotChecked() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { int test(Object o) { o.hashCode(); return o.hashCode(); } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "[NIL_CHK(o) hash];");
+    assertTranslation(translation, "return [o hash];");
+  }
+
+  public void testNewObjectIsNotChecked() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { int test() { Object o = new Object(); String s = \"a\" + o; "
+        + "return o.hashCode() + s.length(); } }",
+        "Test", "Test.m");
+    assertFalse(translation.contains("NIL_CHK"));
+  }
+
+  public void testUnsequencedDereferencesAreChecked() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { int test(Object o) { return o.hashCode() + o.hashCode(); } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "return [NIL_CHK(o) hash] + [NIL_CHK(o) hash];");
+  }
+
+  public void testNullTests() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { void test(Object a, Object b, Object c) { "
+        + "if (a != null && a.hashCode() == 0) { a.toString(); } else { a.toString(); } "
+        + "if (b == null) { return; } b.toString(); "
+        + "if (c instanceof String) { c.toString(); } } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "if (a != nil && [a hash] == 0) {\n    [a description];");
+    assertTranslation(translation, "else {\n    [NIL_CHK(a) description];");
+    assertTranslation(translation, "[b description];");
+    assertTranslation(translation, "[c description];");
+  }
+
+  public void testAssignedVariableIsChecked() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { Object next() { return null; } "
+        + "void test(Object o) { o.hashCode(); while (o != this) { o.toString(); o = next(); } "
+        + "o.toString(); } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "while (o != self) {\n    [NIL_CHK(o) description];");
+    assertTranslation(translation, "}\n  [NIL_CHK(o) description];");
+  }
+
+  public void testFinalFieldsAssignedNewObjects() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.*; public class Test { "
+        + "private final List<String> list = new ArrayList<String>(); private final Object o; "
+        + "Test(Object o) { this.o = o; list.add(\"a\"); o.hashCode(); } "
+        + "int test() { return list.size() + o.hashCode(); } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "[list_ addWithId:@\"a\"];");
+    assertTranslation(translation, "return [list_ size] + [NIL_CHK(o_) hash];");
+  }
+
+  public void testFinalFieldsInMethodsRunDuringConstruction() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { static class Base { Base() { init(); } void init() { } } "
+        + "static class A extends Base { private final Object o = new Object(); "
+        + "A() { helper(); } void init() { o.hashCode(); } "
+        + "private void helper() { o.toString(); } int test() { return o.hashCode(); } } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "[NIL_CHK(o_) hash];");
+    assertTranslation(translation, "[NIL_CHK(o_) description];");
+    assertTranslation(translation, "return [o_ hash];");
+  }
+
+  public void testFinalFieldsOfEscapingObjectsAreChecked() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.*; public class Test { private final Object o = new Object(); "
+        + "Test(List<Object> list) { list.add(this); } int test() { return o.hashCode(); } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "return [NIL_CHK(o_) hash];");
+  }
+}
@@ -18,6 +18,7 @@ package com.google.devtools.j2objc.translate;
 
 import com.google.devtools.j2objc.GenerationTest;
 import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.translate.DestructorGenerator;
 import com.google.devtools.j2objc.types.Types;
 
@@ -560,7 +561,7 @@ public class RewriterTest extends GenerationTest {
         "String group() { return \"foo\"; } " +
         "void test() { A a = new A(); System.out.println(a.group()); }}";
     String translation = translateSourceFile(source, "A", "A.m");
-    assertTranslation(translation, "NSLog(@\"%@\", [((A *) NIL_CHK(a)) group]);");
+    assertTranslation(translation, "NSLog(@\"%@\", [a group]);");
   }
 
   // Regression test: Must call "charValue" on boxed type returned from iterator.
@@ -571,7 +572,77 @@ public class RewriterTest extends GenerationTest {
         "void test() { for (char c : chars) {} } }";
     String translation = translateSourceFile(source, "A", "A.m");
     assertTranslation(translation,
-        "unichar c = [((JavaLangCharacter *) [((id<JavaUtilIterator>) NIL_CHK(iter__)) next]) " +
+        "unichar c = [((JavaLangCharacter *) [iter__ next]) " +
         "charValue];");
   }
+
+  public void testEnhancedForOverCollectionUsesFastEnumeration() throws IOException {
+    String source = "import java.util.*; public class A { "
+        + "int test(ArrayList<String> list, LinkedHashSet<String> set) { int n = 0; "
+        + "for (String s : list) { n += s.length(); } "
+        + "for (String s : set) { n += s.length(); } return n; } }";
+    Options.setFastEnumeration(true);
+    String translation;
+    try {
+      translation = translateSourceFile(source, "A", "A.m");
+    } finally {
+      Options.setFastEnumeration(false);
+    }
+    assertTranslation(translation,
+        "for (NSString *s in (id<NSFastEnumeration>) NIL_CHK(list)) {");
+    assertTranslation(translation,
+        "for (NSString *s in (id<NSFastEnumeration>) NIL_CHK(set)) {");
+    assertFalse(translation.contains("iter__"));
+  }
+
+  public void testEnhancedForOverMapViewsUsesFastEnumeration() throws IOException {
+    String source = "import java.util.*; public class A { "
+        + "void test(HashMap<String, Integer> map, LinkedHashMap<String, Integer> linked) { "
+        + "for (String key : map.keySet()) {} "
+        + "for (Integer value : linked.values()) {} "
+        + "for (Map.Entry<String, Integer> e : map.entrySet()) {} } }";
+    Options.setFastEnumeration(true);
+    String translation;
+    try {
+      translation = translateSourceFile(source, "A", "A.m");
+    } finally {
+      Options.setFastEnumeration(false);
+    }
+    assertTranslation(translation, "for (NSString *key in (id<NSFastEnumeration>) "
+        + "[((JavaUtilHashMap *) NIL_CHK(map)) keySet]) {");
+    assertTranslation(translation, "for (JavaLangInteger *value in (id<NSFastEnumeration>) "
+        + "[((JavaUtilLinkedHashMap *) NIL_CHK(linked)) values]) {");
+    assertTranslation(translation,
+        "for (id<JavaUtilMap_Entry> e in (id<NSFastEnumeration>) [map entrySet]) {");
+  }
+
+  public void testEnhancedForWithoutFastEnumeration() throws IOException {
+    String source = "import java.util.*; public class A { "
+        + "int test(List<String> list, Map<String, String> map, ArrayList<Integer> ints) { "
+        + "int n = 0; "
+        + "for (String s : list) {} "
+        + "for (String s : map.keySet()) {} "
+        + "for (int i : ints) { n += i; } "
+        + "for (Integer i : ints) { i = 0; } return n; } }";
+    Options.setFastEnumeration(true);
+    String translation;
+    try {
+      translation = translateSourceFile(source, "A", "A.m");
+    } finally {
+      Options.setFastEnumeration(false);
+    }
+    assertFalse(translation.contains("NSFastEnumeration"));
+    assertTranslation(translation, "[((id<JavaUtilList>) NIL_CHK(list)) iterator]");
+    assertTranslation(translation, "[((id<JavaUtilMap>) NIL_CHK(map)) keySet]");
+    assertTranslation(translation, "int i = [((JavaLangInteger *) [iter__ next]) intValue];");
+    assertTranslation(translation, "JavaLangInteger *i = ((JavaLangInteger *) [iter__ next]);");
+  }
+
+  public void testFastEnumerationIsOffByDefault() throws IOException {
+    String source = "import java.util.*; public class A { "
+        + "void test(ArrayList<String> list) { for (String s : list) { list.remove(s); } } }";
+    String translation = translateSourceFile(source, "A", "A.m");
+    assertFalse(translation.contains("NSFastEnumeration"));
+    assertTranslation(translation, "[((JavaUtilArrayList *) NIL_CHK(list)) iterator]");
+  }
 }
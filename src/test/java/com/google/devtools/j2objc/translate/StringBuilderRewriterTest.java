@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.Options;
+
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link StringBuilderRewriter}.
+ */
+public class StringBuilderRewriterTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    Options.setFastStringConcatenation(true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Options.setFastStringConcatenation(false);
+    super.tearDown();
+  }
+
+  public void testLoopAppendsUseBuilder() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { String test(int[] ns) { String s = \"\"; "
+        + "for (int i = 0; i < ns.length; i++) { s += ns[i]; s += \", \" + i + 'c'; } "
+        + "return s; } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "JavaLangStringBuilder *sBuilder__ = "
+        + "[[[JavaLangStringBuilder alloc] initWithNSString:s] autorelease];\n"
+        + "    for (int i = 0;");
+    assertTranslation(translation, "[sBuilder__ appendWithInt:");
+    assertTranslation(translation,
+        "[[[sBuilder__ appendWithNSString:@\", \"] appendWithInt:i] appendWithUnichar:'c'];");
+    assertTranslation(translation, "}\n    s = [sBuilder__ description];\n  }\n  return s;");
+  }
+
+  public void testNestedLoopsUseOneBuilder() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { String test(int n) { String s = \"<\"; "
+        + "while (n > 0) { for (int i = 0; i < n; i++) { s += i; } n--; } return s; } }",
+        "Test", "Test.m");
+    assertOccurrences(translation, "JavaLangStringBuilder *sBuilder__", 1);
+    assertTranslation(translation, "[sBuilder__ appendWithInt:i];");
+  }
+
+  public void testConsecutiveLoopsUseBuilders() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { String test(int n) { String s = \"\"; "
+        + "for (int i = 0; i < n; i++) { s += i; } "
+        + "for (int i = 0; i < n; i++) { s += -i; } "
+        + "StringBuilder sb = new StringBuilder(s); String t = sb.toString(); "
+        + "while (n-- > 0) { t += n; } return s + t; } }",
+        "Test", "Test.m");
+    assertOccurrences(translation, "JavaLangStringBuilder *sBuilder__", 2);
+    assertOccurrences(translation, "s = [sBuilder__ description];\n  }", 2);
+    assertTranslation(translation, "[sBuilder__ appendWithInt:-i];");
+    assertTranslation(translation, "[tBuilder__ appendWithInt:n];");
+  }
+
+  public void testLoopAppendsNotRewritten() throws IOException {
+    String translation = translateSourceFile(
+        "public class Test { String field = \"\"; "
+        + "String read(int n) { String s = \"\"; while (n-- > 0) { s += n; n -= s.length(); } "
+        + "return s; } "
+        + "String param(String s, int n) { while (n-- > 0) { s += n; } return s; } "
+        + "String nullable(String t, int n) { String s = t; while (n-- > 0) { s += n; } "
+        + "return s; } "
+        + "String exits(int n) { String s = \"\"; while (n-- > 0) { s += n; "
+        + "if (n == 3) return s; } return s; } "
+        + "void field(int n) { while (n-- > 0) { field += n; } } }",
+        "Test", "Test.m");
+    assertFalse(translation.contains("JavaLangStringBuilder"));
+  }
+
+  private void assertOccurrences(String s, String substring, int count) {
+    int n = 0;
+    for (int i = s.indexOf(substring); i >= 0; i = s.indexOf(substring, i + 1)) {
+      n++;
+    }
+    assertEquals(count, n);
+  }
+}
@@ -16,7 +16,20 @@
 
 package com.google.devtools.j2objc.types;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.Plugin;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+
+import java.io.File;
+import java.util.Map;
 
 /**
  * Unit tests for the {@link BindingMapBuilder} class.
@@ -36,4 +49,67 @@ public class BindingMapBuilderTest extends GenerationTest {
         "}";
     translateType("Test", source);
   }
+
+  public void testCollectorsSeeEveryBinding() {
+    CompilationUnit unit = compileType("Test",
+        "class Test { int foo(String s) { label: while (true) { break label; } " +
+        "return s.length(); } }");
+    final Map<Object, IBinding> collected = Maps.newHashMap();
+    BindingCollector collector = new BindingCollector() {
+      public void collect(ASTNode node, IBinding binding) {
+        assertNull(collected.put(node, binding));
+      }
+    };
+    Map<Object, IBinding> bindingMap =
+        BindingMapBuilder.buildBindingMap(unit, ImmutableList.of(collector));
+    assertFalse(bindingMap.isEmpty());
+    assertEquals(bindingMap, collected);
+  }
+
+  public void testPluginCollector() {
+    final Map<Object, IBinding> invocations = Maps.newHashMap();
+    Plugin plugin = new Plugin() {
+      @Override
+      public BindingCollector getBindingCollector(CompilationUnit unit) {
+        return new BindingCollector() {
+          public void collect(ASTNode node, IBinding binding) {
+            if (node instanceof MethodInvocation) {
+              invocations.put(node, binding);
+            }
+          }
+        };
+      }
+
+      @Override
+      public void processUnit(CompilationUnit unit) {}
+
+      @Override
+      public void endProcessing(File outputDirectory) {}
+    };
+    Options.getPlugins().add(plugin);
+    try {
+      CompilationUnit unit = compileType("Test",
+          "class Test { int foo(String s) { return s.length(); } }");
+      J2ObjC.initializeTranslation(unit);
+      assertEquals(1, invocations.size());
+      assertEquals("length", invocations.values().iterator().next().getName());
+    } finally {
+      Options.getPlugins().remove(plugin);
+    }
+  }
+
+  public void testVerificationIsOptional() {
+    CompilationUnit unit = compileType("Test",
+        "class Test { int foo(String s) { return s.length(); } }");
+    long startTime = Types.getBindingVerificationTime();
+    Options.setVerifyBindings(false);
+    try {
+      BindingMapBuilder.buildBindingMap(unit, ImmutableList.<BindingCollector>of());
+      assertEquals(startTime, Types.getBindingVerificationTime());
+    } finally {
+      Options.setVerifyBindings(true);
+    }
+    BindingMapBuilder.buildBindingMap(unit, ImmutableList.<BindingCollector>of());
+    assertTrue(Types.getBindingVerificationTime() > startTime);
+  }
 }
@@ -17,6 +17,7 @@
 package com.google.devtools.j2objc.types;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.Options;
 
 import java.io.IOException;
 
@@ -93,4 +94,24 @@ public class ImplementationImportCollectorTest extends GenerationTest {
         "class C extends B { void test() { I i = getAnA(); } }", "C", "C.m");
     assertTranslation(translation, "#import \"A.h\"");
   }
+
+  public void testForwardDeclarationsForPassedTypes() throws IOException {
+    addSourceFile("class Foo { int value() { return 42; } }", "Foo.java");
+    addSourceFile("class Bar { }", "Bar.java");
+    addSourceFile("class Holder { static void keep(Bar bar) { } }", "Holder.java");
+    Options.setForwardDeclarations(true);
+    String translation;
+    try {
+      translation = translateSourceFile(
+          "class A { int test(Foo foo, Bar bar) { Holder.keep(bar); "
+          + "return bar != null ? foo.value() : 0; } }", "A", "A.m");
+    } finally {
+      Options.setForwardDeclarations(false);
+    }
+    assertTranslation(translation, "@class Bar;");
+    assertFalse(translation.contains("#import \"Bar.h\""));
+    assertTranslation(translation, "#import \"Foo.h\"");
+    assertFalse(translation.contains("@class Foo;"));
+    assertTranslation(translation, "#import \"Holder.h\"");
+  }
 }
@@ -17,6 +17,8 @@
 package com.google.devtools.j2objc.types;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.TranslationContext;
+import com.google.devtools.j2objc.util.NameTable;
 
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.CompilationUnit;
@@ -59,4 +61,60 @@ public class TypesTest extends GenerationTest {
     PrimitiveType primitiveType = (PrimitiveType) type;
     assertEquals(PrimitiveType.INT, primitiveType.getPrimitiveTypeCode());
   }
+
+  public void testSharedTypesReusedInSameEnvironment() throws IOException {
+    CompilationUnit newUnit = compileType("Test", "public class Test {}");
+    AST newAst = newUnit.getAST();
+    TranslationContext previous =
+        TranslationContext.newSession(TranslationContext.current()).install();
+    try {
+      assertSame(SharedTypes.get(newAst), SharedTypes.get(newAst));
+
+      // Each Types instance for a unit in the same environment reuses the
+      // shared tables.
+      NameTable.initialize(newUnit);
+      Types.initialize(newUnit);
+      ITypeBinding nsObject = Types.getNSObject();
+      assertSame(SharedTypes.get(newAst).NSObject, nsObject);
+      Types.initialize(newUnit);
+      assertSame(nsObject, Types.getNSObject());
+      assertSame(SharedTypes.get(newAst).IOSIntArray,
+          Types.resolveArrayType(newAst.resolveWellKnownType("int")));
+    } finally {
+      TranslationContext.restore(previous);
+    }
+  }
+
+  public void testSharedTypesKeptForSession() throws IOException {
+    CompilationUnit newUnit = compileType("Test", "public class Test {}");
+    TranslationContext session = TranslationContext.newSession(TranslationContext.current());
+    TranslationContext previous = session.install();
+    try {
+      ITypeBinding nsObject = initializeInNewContext(session, newUnit);
+      // Nothing but the session refers to the shared tables now.
+      System.gc();
+      assertSame(nsObject, initializeInNewContext(session, newUnit));
+    } finally {
+      TranslationContext.restore(previous);
+    }
+  }
+
+  private static ITypeBinding initializeInNewContext(
+      TranslationContext session, CompilationUnit unit) {
+    TranslationContext previous = new TranslationContext("Test.java", session).install();
+    try {
+      NameTable.initialize(unit);
+      Types.initialize(unit);
+      return Types.getNSObject();
+    } finally {
+      TranslationContext.restore(previous);
+    }
+  }
+
+  public void testSharedTypesNotReusedAcrossEnvironments() throws IOException {
+    ITypeBinding nsObject = Types.getNSObject();
+    CompilationUnit otherUnit = translateType("Other", "public class Other {}");
+    assertNotSame(SharedTypes.get(ast), SharedTypes.get(otherUnit.getAST()));
+    assertNotSame(nsObject, Types.getNSObject());
+  }
 }
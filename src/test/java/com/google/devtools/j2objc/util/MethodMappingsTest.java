@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.TranslationContext;
+import com.google.devtools.j2objc.types.IOSMethodSignature;
+import com.google.devtools.j2objc.types.IOSParameter;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link MethodMappings}.
+ */
+public class MethodMappingsTest extends TestCase {
+  private static final String JRE_MAPPINGS = "JRE.mappings";
+  private static final String SUBSTRING_KEY = "java.lang.String.substring(I)Ljava/lang/String;";
+
+  private File tempDir;
+  private File cacheDir;
+
+  @Override
+  protected void setUp() {
+    tempDir = Files.createTempDir();
+    cacheDir = new File(tempDir, "cache");
+  }
+
+  @Override
+  protected void tearDown() {
+    delete(tempDir);
+  }
+
+  private void delete(File f) {
+    File[] children = f.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    f.delete();
+  }
+
+  private File addMappingFile(String name, String content) throws IOException {
+    File f = new File(tempDir, name);
+    Files.write(content, f, Charset.defaultCharset());
+    return f;
+  }
+
+  private void assertSameSignature(IOSMethodSignature expected, IOSMethodSignature actual) {
+    assertEquals(expected.getDeclaringClass(), actual.getDeclaringClass());
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.isVarArgs(), actual.isVarArgs());
+    List<IOSParameter> expectedParams = expected.getParameters();
+    List<IOSParameter> actualParams = actual.getParameters();
+    assertEquals(expectedParams.size(), actualParams.size());
+    for (int i = 0; i < expectedParams.size(); i++) {
+      assertEquals(expectedParams.get(i).getParameterName(),
+          actualParams.get(i).getParameterName());
+      assertEquals(expectedParams.get(i).getType(), actualParams.get(i).getType());
+      assertEquals(expectedParams.get(i).getIndex(), actualParams.get(i).getIndex());
+      assertEquals(expectedParams.get(i).isVarArgs(), actualParams.get(i).isVarArgs());
+    }
+  }
+
+  public void testCompiledMappingsMatchParsedMappings() throws IOException {
+    MethodMappings parsed = MethodMappings.load(ImmutableList.of(JRE_MAPPINGS), null);
+    assertTrue(parsed.size() > 0);
+    IOSMethodSignature substring = parsed.get(SUBSTRING_KEY);
+    assertEquals("NSString", substring.getDeclaringClass());
+    assertEquals("substring", substring.getName());
+    assertEquals(1, substring.getParameters().size());
+    assertNull(parsed.get("java.lang.String.noSuchMethod()V"));
+
+    // The first load compiles the mappings, and later loads read them.
+    MethodMappings.load(ImmutableList.of(JRE_MAPPINGS), cacheDir);
+    File[] compiled = cacheDir.listFiles();
+    assertEquals(1, compiled.length);
+    MethodMappings mappings = MethodMappings.load(ImmutableList.of(JRE_MAPPINGS), cacheDir);
+    assertEquals(parsed.size(), mappings.size());
+    assertTrue(mappings.containsKey(SUBSTRING_KEY));
+    assertFalse(mappings.containsKey("java.lang.String.noSuchMethod()V"));
+    assertNull(mappings.get("java.lang.String.noSuchMethod()V"));
+    assertSameSignature(substring, mappings.get(SUBSTRING_KEY));
+    assertSame(mappings.get(SUBSTRING_KEY), mappings.get(SUBSTRING_KEY));
+  }
+
+  public void testChangedMappingFileIsRecompiled() throws IOException {
+    File mappingFile = addMappingFile("test.mappings",
+        "java.lang.Object.toString()Ljava/lang/String; = NSObject description\n");
+    List<String> mappingFiles = Lists.newArrayList(JRE_MAPPINGS, mappingFile.getPath());
+    MethodMappings mappings = MethodMappings.load(mappingFiles, cacheDir);
+    assertEquals("description",
+        mappings.get("java.lang.Object.toString()Ljava/lang/String;").getName());
+
+    Files.write("java.lang.Object.toString()Ljava/lang/String; = NSObject debugDescription\n",
+        mappingFile, Charset.defaultCharset());
+    mappingFile.setLastModified(mappingFile.lastModified() + 2000);
+    mappings = MethodMappings.load(mappingFiles, cacheDir);
+    assertEquals("debugDescription",
+        mappings.get("java.lang.Object.toString()Ljava/lang/String;").getName());
+  }
+
+  public void testCorruptCompiledMappingsAreReparsed() throws IOException {
+    MethodMappings parsed = MethodMappings.load(ImmutableList.of(JRE_MAPPINGS), null);
+    MethodMappings.load(ImmutableList.of(JRE_MAPPINGS), cacheDir);
+    File compiled = cacheDir.listFiles()[0];
+    byte[] bytes = Files.toByteArray(compiled);
+    for (int i = bytes.length - 64; i < bytes.length; i++) {
+      bytes[i] = (byte) 0xff;
+    }
+    Files.write(bytes, compiled);
+
+    MethodMappings mappings = MethodMappings.load(ImmutableList.of(JRE_MAPPINGS), cacheDir);
+    assertEquals(parsed.size(), mappings.size());
+    assertSameSignature(parsed.get(SUBSTRING_KEY), mappings.get(SUBSTRING_KEY));
+
+    // The corrupt file is replaced.
+    assertFalse(Arrays.equals(bytes, Files.toByteArray(compiled)));
+    mappings = MethodMappings.load(ImmutableList.of(JRE_MAPPINGS), cacheDir);
+    assertSameSignature(parsed.get(SUBSTRING_KEY), mappings.get(SUBSTRING_KEY));
+  }
+
+  public void testInvalidMappingsAreReported() throws IOException {
+    File mappingFile = addMappingFile("bad.mappings",
+        "java.lang.Object.hashCode()I = NSObject hash\n"
+        + "java.lang.Object.toString()Ljava/lang/String; = description\n");
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    TranslationContext context =
+        new TranslationContext("Test.java", null, new PrintStream(err, true));
+    TranslationContext previous = context.install();
+    MethodMappings mappings;
+    try {
+      mappings = MethodMappings.load(ImmutableList.of(mappingFile.getPath()), cacheDir);
+    } finally {
+      TranslationContext.restore(previous);
+    }
+    assertEquals(1, context.getErrorCount());
+    assertTrue(err.toString().contains("invalid mapping for java.lang.Object.toString()"));
+    assertEquals("hash", mappings.get("java.lang.Object.hashCode()I").getName());
+
+    // Invalid mappings aren't compiled, so they're reported again.
+    assertFalse(cacheDir.exists() && cacheDir.listFiles().length > 0);
+  }
+}
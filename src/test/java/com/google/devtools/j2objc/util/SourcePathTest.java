@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Unit tests for {@link SourcePath}.
+ */
+public class SourcePathTest extends TestCase {
+  private File tempDir;
+  private File sourceDir;
+  private File jar;
+
+  @Override
+  protected void setUp() throws IOException {
+    tempDir = Files.createTempDir();
+    sourceDir = new File(tempDir, "src");
+    addFile(sourceDir, "foo/Foo.java", "class Foo {}");
+    jar = new File(tempDir, "sources.jar");
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+    try {
+      addEntry(out, "foo/");
+      addEntry(out, "foo/Foo.java", "class Foo { int archived; }");
+      addEntry(out, "bar/Bar.java", "class Bar {}");
+      addEntry(out, "bar/notes.txt", "not a source");
+    } finally {
+      out.close();
+    }
+  }
+
+  @Override
+  protected void tearDown() {
+    delete(tempDir);
+  }
+
+  private void delete(File f) {
+    File[] children = f.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    f.delete();
+  }
+
+  private void addFile(File dir, String path, String content) throws IOException {
+    File f = new File(dir, path);
+    f.getParentFile().mkdirs();
+    Files.write(content, f, Charset.defaultCharset());
+  }
+
+  private void addEntry(ZipOutputStream out, String path) throws IOException {
+    out.putNextEntry(new ZipEntry(path));
+    out.closeEntry();
+  }
+
+  private void addEntry(ZipOutputStream out, String path, String content) throws IOException {
+    out.putNextEntry(new ZipEntry(path));
+    out.write(content.getBytes(Charset.defaultCharset()));
+    out.closeEntry();
+  }
+
+  public void testFindsSourcesInPathOrder() throws IOException {
+    SourcePath path = new SourcePath(new String[] {
+        sourceDir.getPath(), jar.getPath(), new File(tempDir, "missing").getPath() });
+    try {
+      SourcePath.Source foo = path.find("foo/Foo.java");
+      assertFalse(foo.isArchived());
+      assertEquals(new File(sourceDir, "foo/Foo.java"), foo.getFile());
+      assertEquals("class Foo {}", foo.read());
+
+      SourcePath.Source bar = path.find("bar/Bar.java");
+      assertTrue(bar.isArchived());
+      assertNull(bar.getFile());
+      assertEquals("bar/Bar.java", bar.getPath());
+      assertEquals("class Bar {}", bar.read());
+
+      assertNull(path.find("Baz.java"));
+      assertNull(path.find("foo"));
+      assertNull(path.find("foo/"));
+    } finally {
+      path.close();
+    }
+
+    path = new SourcePath(new String[] { jar.getPath(), sourceDir.getPath() });
+    try {
+      assertEquals("class Foo { int archived; }", path.find("foo/Foo.java").read());
+    } finally {
+      path.close();
+    }
+  }
+
+  public void testDirectoriesAreListedOnce() throws IOException {
+    SourcePath path = new SourcePath(new String[] { sourceDir.getPath() });
+    try {
+      assertNull(path.find("foo/Bar.java"));
+      addFile(sourceDir, "foo/Bar.java", "class Bar {}");
+      assertNull(path.find("foo/Bar.java"));
+    } finally {
+      path.close();
+    }
+    path = new SourcePath(new String[] { sourceDir.getPath() });
+    try {
+      assertNotNull(path.find("foo/Bar.java"));
+    } finally {
+      path.close();
+    }
+  }
+
+  public void testArchiveSources() throws IOException {
+    File notArchive = new File(tempDir, "notes.jar");
+    Files.write("not an archive", notArchive, Charsets.UTF_8);
+    SourcePath path = new SourcePath(new String[] { sourceDir.getPath(), notArchive.getPath() });
+    try {
+      List<SourcePath.Source> sources = path.getArchiveSources(jar.getPath());
+      assertEquals(2, sources.size());
+      assertEquals("foo/Foo.java", sources.get(0).getPath());
+      assertEquals("class Foo { int archived; }", sources.get(0).read());
+      assertEquals("bar/Bar.java", sources.get(1).getPath());
+      assertTrue(path.getArchiveSources(notArchive.getPath()).isEmpty());
+      assertTrue(path.getArchiveSources(new File(tempDir, "missing.jar").getPath()).isEmpty());
+    } finally {
+      path.close();
+    }
+  }
+}